@@ -9,7 +9,9 @@ import android.support.v7.app.AppCompatActivity;
 import android.view.View;
 import android.widget.Button;
 
+import com.monsent.commons.BuildConfig;
 import com.monsent.commons.R;
+import com.monsent.commons.buffer.BufferPool;
 import com.monsent.commons.util.LogUtils;
 import com.monsent.commons.util.TimeUtils;
 
@@ -25,6 +27,9 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
 //        SystemUtils.setWifiDormancy(this);
 
+        //debug构建开启缓冲池泄漏检测
+        BufferPool.setLeakDetection(BuildConfig.DEBUG);
+
         btnWifiP2pServer = (Button) findViewById(R.id.btnWifiP2pServer);
         btnWifiP2pServer.setOnClickListener(this);
 
@@ -12,6 +12,7 @@ import android.widget.ListView;
 import android.widget.SimpleAdapter;
 
 import com.monsent.commons.R;
+import com.monsent.commons.socket.ReconnectPolicy;
 import com.monsent.commons.socket.TcpClient;
 import com.monsent.commons.util.LogUtils;
 import com.monsent.commons.util.SystemUtils;
@@ -37,7 +38,6 @@ public class WifiP2pClientActivity extends AppCompatActivity implements WifiP2pA
     private TcpClient tcpClient;
     private String address = null;
     private final static int MAX_REPEAT_TIMES = 3;
-    private int repeatTimes = 0;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -67,6 +67,7 @@ public class WifiP2pClientActivity extends AppCompatActivity implements WifiP2pA
 
         tcpClient = new TcpClient();
         tcpClient.setCallback(this);
+        tcpClient.setReconnectPolicy(new ReconnectPolicy(1000, 30000, MAX_REPEAT_TIMES));
     }
 
     @Override
@@ -118,10 +119,6 @@ public class WifiP2pClientActivity extends AppCompatActivity implements WifiP2pA
     @Override
     public void onDisconnect() {
         LogUtils.d("Wifi P2P Client：onDisconnect");
-        if (repeatTimes <= MAX_REPEAT_TIMES) {
-            tcpClient.connect(address, 9999);
-            repeatTimes++;
-        }
     }
 
     @Override
@@ -9,6 +9,12 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
 
+import com.monsent.commons.buffer.BufferPool;
+import com.monsent.commons.buffer.PooledBuffer;
+import com.monsent.commons.buffer.ReceiveSizePredictor;
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.IdleMonitor;
+import com.monsent.commons.timer.IdleState;
 import com.monsent.commons.util.BtClsUtils;
 
 import java.io.IOException;
@@ -62,14 +68,33 @@ public class BluetoothClient {
         void onError(Exception e);
     }
 
-    private final static long MAX_NO_DATA_SECOND = 30 * 60L;    //最长未接收数据断开连接时长
-    private long lastReadTime = 0L;     //最后接收数据时间
+    /**
+     * 零拷贝接收回调，数据位于复用的读缓冲区中，回调返回后缓冲区即被覆盖，需保留数据时自行拷贝；
+     * 设置后接收的数据只交付此回调，{@link Callback#onReceive(byte[])}不再被调用
+     */
+    public interface BufferCallback {
+
+        void onReceive(byte[] buffer, int offset, int length);
+
+    }
+
+    private final static long DEFAULT_READ_IDLE_SECOND = 30 * 60L;    //默认最长未接收数据断开连接时长
+    private final static int MIN_READ_SIZE = 256;   //读缓冲区最小大小
+    private final static int INITIAL_READ_SIZE = 1024;  //读缓冲区初始大小
+    private final static int MAX_READ_SIZE = 8192;  //读缓冲区最大大小
+    private long readIdleSecond = DEFAULT_READ_IDLE_SECOND;     //读空闲断开时长，0为不检测
+    private long writeIdleSecond = 0L;  //写空闲断开时长，0为不检测
+    private long allIdleSecond = 0L;    //读写空闲断开时长，0为不检测
+    private HashedWheelTimer timer = HashedWheelTimer.getDefault();     //空闲检测定时器
+    private volatile IdleMonitor idleMonitor;   //空闲检测
     private Context context;
     private BluetoothAdapter adapter;
     private BluetoothSocket socket;
     private BluetoothReceiver receiver;
     private Callback callback;
-    private boolean readable = false;
+    private BufferCallback bufferCallback;
+    private volatile boolean readable = false;
+    private volatile boolean idleClosed = false;    //是否因空闲检测关闭，关闭引起的读异常不作为错误回调
     private Thread threadConnect, threadRead;
     private InputStream is = null;
     private OutputStream os = null;
@@ -84,6 +109,39 @@ public class BluetoothClient {
         this.callback = callback;
     }
 
+    /**
+     * 设置零拷贝接收回调，设置后{@link Callback}只收到连接、断开及错误通知
+     *
+     * @param bufferCallback 零拷贝接收回调，null表示通过{@link Callback#onReceive(byte[])}接收
+     */
+    public void setBufferCallback(BufferCallback bufferCallback) {
+        this.bufferCallback = bufferCallback;
+    }
+
+    /**
+     * 设置空闲断开时长，下次连接生效，0为不检测；默认读空闲30分钟
+     *
+     * @param readIdleSecond  未接收数据时长(秒)
+     * @param writeIdleSecond 未发送数据时长(秒)
+     * @param allIdleSecond   既未接收也未发送数据时长(秒)
+     */
+    public void setIdleTimeout(long readIdleSecond, long writeIdleSecond, long allIdleSecond) {
+        this.readIdleSecond = readIdleSecond;
+        this.writeIdleSecond = writeIdleSecond;
+        this.allIdleSecond = allIdleSecond;
+    }
+
+    /**
+     * 设置空闲检测使用的定时器，默认为进程共享的{@link HashedWheelTimer#getDefault()}
+     *
+     * @param timer 定时器
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        if (timer != null) {
+            this.timer = timer;
+        }
+    }
+
     public void registerReceiver() {
         //注册蓝牙扫描广播
         IntentFilter filter = new IntentFilter();
@@ -296,6 +354,7 @@ public class BluetoothClient {
                     //明文传输(不安全)，无需配对
                     socket = device.createRfcommSocketToServiceRecord(UUID.fromString(uuid));
                     socket.connect();
+                    startIdleMonitor();
                     startRead();
                     if (callback != null) {
                         callback.onConnect(device);
@@ -311,6 +370,48 @@ public class BluetoothClient {
         threadConnect.start();
     }
 
+    /**
+     * 启动空闲检测，空闲时断开连接
+     */
+    private void startIdleMonitor() {
+        stopIdleMonitor();
+        if (readIdleSecond <= 0 && writeIdleSecond <= 0 && allIdleSecond <= 0) {
+            return;
+        }
+        IdleMonitor monitor = new IdleMonitor(timer, readIdleSecond * 1000, writeIdleSecond * 1000,
+                allIdleSecond * 1000, new IdleMonitor.Listener() {
+            @Override
+            public void onIdle(IdleMonitor monitor, IdleState state) {
+                if (monitor != idleMonitor) {
+                    return;
+                }
+                //定时器线程只关闭socket，阻塞的读线程随之返回，在读线程断开并回调
+                BluetoothSocket idleSocket = socket;
+                if (idleSocket != null) {
+                    idleClosed = true;
+                    try {
+                        idleSocket.close();
+                    } catch (IOException e) {
+                        //读线程随后按连接断开处理
+                    }
+                }
+            }
+        });
+        idleMonitor = monitor;
+        monitor.start();
+    }
+
+    /**
+     * 停止空闲检测
+     */
+    private void stopIdleMonitor() {
+        IdleMonitor monitor = idleMonitor;
+        if (monitor != null) {
+            monitor.stop();
+            idleMonitor = null;
+        }
+    }
+
     /**
      * 停止连接
      */
@@ -322,42 +423,92 @@ public class BluetoothClient {
     }
 
     /**
-     * 启动读数据
+     * 启动读数据，阻塞读取，读缓冲区大小按近期读到的字节数自适应
      */
     private void startRead() {
         stopRead();
+        final BluetoothSocket socket = this.socket;
+        if (socket == null) {
+            return;
+        }
+        idleClosed = false;
         threadRead = new Thread(new Runnable() {
             @Override
             public void run() {
                 readable = true;
-                while (readable) {
-                    try {
-                        is = socket.getInputStream();
-                        int size = is.available();
-                        if (size > 0) {
-                            byte[] bytes = new byte[size];
-                            size = is.read(bytes);
-                            if (callback != null) {
-                                callback.onReceive(bytes);
+                ReceiveSizePredictor receiveSize = new ReceiveSizePredictor(MIN_READ_SIZE, INITIAL_READ_SIZE,
+                        MAX_READ_SIZE);
+                PooledBuffer pooled = BufferPool.heap().acquire(receiveSize.nextSize());
+                try {
+                    while (readable) {
+                        try {
+                            is = socket.getInputStream();
+                            byte[] buffer = pooled.array();
+                            //阻塞至有数据可读，连接断开时返回-1或抛出异常
+                            int size = is.read(buffer, 0, buffer.length);
+                            if (size < 0) {
+                                connectionLost(null);
+                                return;
                             }
-                        } else {
-                            //{MAX_NO_DATA_SECOND}未收到任何数据，关闭连接
-                            if (System.currentTimeMillis() - lastReadTime > MAX_NO_DATA_SECOND * 1000) {
-                                disconnect();
-                                if (callback != null) {
-                                    callback.onDisconnect();
+                            if (size > 0) {
+                                IdleMonitor monitor = idleMonitor;
+                                if (monitor != null) {
+                                    monitor.onRead();
+                                }
+                                dispatch(buffer, size);
+                                receiveSize.record(size);
+                                if (receiveSize.nextSize() != buffer.length) {
+                                    pooled.release();
+                                    pooled = BufferPool.heap().acquire(receiveSize.nextSize());
                                 }
                             }
+                        } catch (IOException e) {
+                            connectionLost(e);
+                            return;
                         }
-                    } catch (IOException e) {
-                        handleError(e);
                     }
+                } finally {
+                    pooled.release();
                 }
             }
         });
         threadRead.start();
     }
 
+    /**
+     * 读取时连接断开，断开连接并通知；主动断开时忽略
+     *
+     * @param e 异常，远端关闭时为null
+     */
+    private void connectionLost(IOException e) {
+        if (!readable) {
+            return;
+        }
+        if (e != null && !idleClosed) {
+            handleError(e);
+        }
+        disconnect();
+        if (callback != null) {
+            callback.onDisconnect();
+        }
+    }
+
+    /**
+     * 分发接收到的数据，设置零拷贝回调时只交付零拷贝回调、直接使用读缓冲区，否则普通回调得到数据副本
+     *
+     * @param buffer 读缓冲区
+     * @param length 长度
+     */
+    private void dispatch(byte[] buffer, int length) {
+        if (bufferCallback != null) {
+            bufferCallback.onReceive(buffer, 0, length);
+        } else if (callback != null) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, 0, bytes, 0, length);
+            callback.onReceive(bytes);
+        }
+    }
+
     /**
      * 停止读数据
      */
@@ -393,6 +544,7 @@ public class BluetoothClient {
      * 关闭socket
      */
     private void closeSocket() {
+        stopIdleMonitor();
         if (socket != null) {
             try {
                 socket.close();
@@ -449,6 +601,10 @@ public class BluetoothClient {
             os = socket.getOutputStream();
             os.write(bytes, off, len);
             os.flush();
+            IdleMonitor monitor = idleMonitor;
+            if (monitor != null) {
+                monitor.onWrite();
+            }
             return true;
         } catch (Exception e) {
             return false;
@@ -4,6 +4,13 @@ import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothServerSocket;
 import android.bluetooth.BluetoothSocket;
 
+import com.monsent.commons.buffer.BufferPool;
+import com.monsent.commons.buffer.PooledBuffer;
+import com.monsent.commons.buffer.ReceiveSizePredictor;
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.IdleMonitor;
+import com.monsent.commons.timer.IdleState;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -27,16 +34,36 @@ public class BluetoothServer {
 
     }
 
-    private final static long MAX_NO_DATA_SECOND = 30 * 60L;    //最长未接收数据断开连接时长
-    private long lastReadTime = 0L;     //最后接收数据时间
+    /**
+     * 零拷贝接收回调，数据位于复用的读缓冲区中，回调返回后缓冲区即被覆盖，需保留数据时自行拷贝；
+     * 设置后接收的数据只交付此回调，{@link Callback#onReceive(BluetoothSocket, byte[])}不再被调用
+     */
+    public interface BufferCallback {
+
+        void onReceive(BluetoothSocket socket, byte[] buffer, int offset, int length);
+
+    }
+
+    private final static long DEFAULT_READ_IDLE_SECOND = 30 * 60L;    //默认最长未接收数据断开连接时长
+    private final static int MIN_READ_SIZE = 256;   //读缓冲区最小大小
+    private final static int INITIAL_READ_SIZE = 1024;  //读缓冲区初始大小
+    private final static int MAX_READ_SIZE = 8192;  //读缓冲区最大大小
+    private long readIdleSecond = DEFAULT_READ_IDLE_SECOND;     //读空闲断开时长，0为不检测
+    private long writeIdleSecond = 0L;  //写空闲断开时长，0为不检测
+    private long allIdleSecond = 0L;    //读写空闲断开时长，0为不检测
+    private HashedWheelTimer timer = HashedWheelTimer.getDefault();     //空闲检测定时器
+    private volatile IdleMonitor idleMonitor;   //空闲检测
     private BluetoothAdapter adapter;
     private BluetoothServerSocket serverSocket;
     private BluetoothSocket socket;
     private Thread threadAccept, threadRead;
-    private boolean accepted = false, readable = false;
+    private boolean accepted = false;
+    private volatile boolean readable = false;
+    private volatile boolean idleClosed = false;    //是否因空闲检测关闭，关闭引起的读异常不作为错误回调
     private InputStream is = null;
     private OutputStream os = null;
     private Callback callback;
+    private BufferCallback bufferCallback;
 
     public BluetoothServer() {
         this.adapter = BluetoothAdapter.getDefaultAdapter();
@@ -46,6 +73,39 @@ public class BluetoothServer {
         this.callback = callback;
     }
 
+    /**
+     * 设置零拷贝接收回调，设置后{@link Callback}只收到连接、断开及错误通知
+     *
+     * @param bufferCallback 零拷贝接收回调，null表示通过{@link Callback#onReceive(BluetoothSocket, byte[])}接收
+     */
+    public void setBufferCallback(BufferCallback bufferCallback) {
+        this.bufferCallback = bufferCallback;
+    }
+
+    /**
+     * 设置空闲断开时长，下次连接生效，0为不检测；默认读空闲30分钟
+     *
+     * @param readIdleSecond  未接收数据时长(秒)
+     * @param writeIdleSecond 未发送数据时长(秒)
+     * @param allIdleSecond   既未接收也未发送数据时长(秒)
+     */
+    public void setIdleTimeout(long readIdleSecond, long writeIdleSecond, long allIdleSecond) {
+        this.readIdleSecond = readIdleSecond;
+        this.writeIdleSecond = writeIdleSecond;
+        this.allIdleSecond = allIdleSecond;
+    }
+
+    /**
+     * 设置空闲检测使用的定时器，默认为进程共享的{@link HashedWheelTimer#getDefault()}
+     *
+     * @param timer 定时器
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        if (timer != null) {
+            this.timer = timer;
+        }
+    }
+
     /**
      * 启动监听
      *
@@ -68,7 +128,7 @@ public class BluetoothServer {
                         serverSocket = adapter.listenUsingInsecureRfcommWithServiceRecord(name, UUID.fromString(uuid));
                         socket = serverSocket.accept();
                         accepted = false;
-                        lastReadTime = System.currentTimeMillis();
+                        startIdleMonitor();
                         if (callback != null) {
                             callback.onAccept(socket);
                         }
@@ -82,6 +142,48 @@ public class BluetoothServer {
         threadAccept.start();
     }
 
+    /**
+     * 启动空闲检测，空闲时断开连接
+     */
+    private void startIdleMonitor() {
+        stopIdleMonitor();
+        if (readIdleSecond <= 0 && writeIdleSecond <= 0 && allIdleSecond <= 0) {
+            return;
+        }
+        IdleMonitor monitor = new IdleMonitor(timer, readIdleSecond * 1000, writeIdleSecond * 1000,
+                allIdleSecond * 1000, new IdleMonitor.Listener() {
+            @Override
+            public void onIdle(IdleMonitor monitor, IdleState state) {
+                if (monitor != idleMonitor) {
+                    return;
+                }
+                //定时器线程只关闭socket，阻塞的读线程随之返回，在读线程断开并回调
+                BluetoothSocket idleSocket = socket;
+                if (idleSocket != null) {
+                    idleClosed = true;
+                    try {
+                        idleSocket.close();
+                    } catch (IOException e) {
+                        //读线程随后按连接断开处理
+                    }
+                }
+            }
+        });
+        idleMonitor = monitor;
+        monitor.start();
+    }
+
+    /**
+     * 停止空闲检测
+     */
+    private void stopIdleMonitor() {
+        IdleMonitor monitor = idleMonitor;
+        if (monitor != null) {
+            monitor.stop();
+            idleMonitor = null;
+        }
+    }
+
     /**
      * 停止监听
      */
@@ -94,43 +196,95 @@ public class BluetoothServer {
     }
 
     /**
-     * 启动读数据
+     * 启动读数据，阻塞读取，读缓冲区大小按近期读到的字节数自适应
      */
     private void startRead() {
         stopRead();
+        final BluetoothSocket socket = this.socket;
+        if (socket == null) {
+            return;
+        }
+        idleClosed = false;
         threadRead = new Thread(new Runnable() {
             @Override
             public void run() {
                 readable = true;
-                while (readable) {
-                    try {
-                        is = socket.getInputStream();
-                        int size = is.available();
-                        if (size > 0) {
-                            lastReadTime = System.currentTimeMillis();
-                            byte[] bytes = new byte[size];
-                            size = is.read(bytes);
-                            if (callback != null) {
-                                callback.onReceive(socket, bytes);
+                ReceiveSizePredictor receiveSize = new ReceiveSizePredictor(MIN_READ_SIZE, INITIAL_READ_SIZE,
+                        MAX_READ_SIZE);
+                PooledBuffer pooled = BufferPool.heap().acquire(receiveSize.nextSize());
+                try {
+                    while (readable) {
+                        try {
+                            is = socket.getInputStream();
+                            byte[] buffer = pooled.array();
+                            //阻塞至有数据可读，连接断开时返回-1或抛出异常
+                            int size = is.read(buffer, 0, buffer.length);
+                            if (size < 0) {
+                                connectionLost(null);
+                                return;
                             }
-                        } else {
-                            //{MAX_NO_DATA_SECOND}未收到任何数据，关闭连接
-                            if (System.currentTimeMillis() - lastReadTime > MAX_NO_DATA_SECOND * 1000) {
-                                disconnect();
-                                if (callback != null) {
-                                    callback.onDisconnect(socket);
+                            if (size > 0) {
+                                IdleMonitor monitor = idleMonitor;
+                                if (monitor != null) {
+                                    monitor.onRead();
+                                }
+                                dispatch(buffer, size);
+                                receiveSize.record(size);
+                                if (receiveSize.nextSize() != buffer.length) {
+                                    pooled.release();
+                                    pooled = BufferPool.heap().acquire(receiveSize.nextSize());
                                 }
                             }
+                        } catch (IOException e) {
+                            connectionLost(e);
+                            return;
+                        } catch (Exception e) {
+                            handleError(e);
                         }
-                    } catch (Exception e) {
-                        handleError(e);
                     }
+                } finally {
+                    pooled.release();
                 }
             }
         });
         threadRead.start();
     }
 
+    /**
+     * 读取时连接断开，断开连接并通知；主动断开时忽略
+     *
+     * @param e 异常，远端关闭时为null
+     */
+    private void connectionLost(IOException e) {
+        if (!readable) {
+            return;
+        }
+        if (e != null && !idleClosed) {
+            handleError(e);
+        }
+        BluetoothSocket lostSocket = socket;
+        disconnect();
+        if (callback != null) {
+            callback.onDisconnect(lostSocket);
+        }
+    }
+
+    /**
+     * 分发接收到的数据，设置零拷贝回调时只交付零拷贝回调、直接使用读缓冲区，否则普通回调得到数据副本
+     *
+     * @param buffer 读缓冲区
+     * @param length 长度
+     */
+    private void dispatch(byte[] buffer, int length) {
+        if (bufferCallback != null) {
+            bufferCallback.onReceive(socket, buffer, 0, length);
+        } else if (callback != null) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, 0, bytes, 0, length);
+            callback.onReceive(socket, bytes);
+        }
+    }
+
     /**
      * 停止读数据
      */
@@ -180,7 +334,7 @@ public class BluetoothServer {
      * 关闭客户端socket
      */
     private void closeSocket() {
-        lastReadTime = 0L;
+        stopIdleMonitor();
         if (socket != null) {
             try {
                 socket.close();
@@ -238,6 +392,10 @@ public class BluetoothServer {
             os = socket.getOutputStream();
             os.write(bytes, off, len);
             os.flush();
+            IdleMonitor monitor = idleMonitor;
+            if (monitor != null) {
+                monitor.onWrite();
+            }
             return true;
         } catch (Exception e) {
             handleError(e);
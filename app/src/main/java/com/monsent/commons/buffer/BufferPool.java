@@ -0,0 +1,244 @@
+package com.monsent.commons.buffer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按规格分级的缓冲池，规格为256字节到64K字节之间的2的幂，超出最大规格的申请不入池。
+ * 缓冲区用完须显式{@link PooledBuffer#release()}，debug构建可开启泄漏检测：
+ * <pre>
+ * BufferPool.setLeakDetection(BuildConfig.DEBUG);
+ * </pre>
+ */
+public class BufferPool {
+
+    /**
+     * 泄漏回调
+     */
+    public interface LeakListener {
+
+        /**
+         * 缓冲区未归还即被回收
+         *
+         * @param capacity 缓冲区容量
+         * @param trace    申请缓冲区时的调用栈
+         */
+        void onLeak(int capacity, Throwable trace);
+
+    }
+
+    private final static int MIN_SIZE_SHIFT = 8;    //最小规格 256B
+    private final static int MAX_SIZE_SHIFT = 16;   //最大规格 64KB
+    private final static int DEFAULT_MAX_POOLED = 64;   //每个规格默认最多缓存数量
+
+    private static volatile boolean leakDetection = false;
+    private static volatile LeakListener leakListener = new LeakListener() {
+        @Override
+        public void onLeak(int capacity, Throwable trace) {
+            System.err.println("BufferPool: PooledBuffer(" + capacity + ") was garbage collected without release()");
+            trace.printStackTrace();
+        }
+    };
+    private static final ReferenceQueue<PooledBuffer> leakQueue = new ReferenceQueue<PooledBuffer>();
+    private static final Set<LeakTracker> leakTrackers =
+            Collections.newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+
+    private static final BufferPool HEAP = new BufferPool(false, DEFAULT_MAX_POOLED);
+    private static final BufferPool DIRECT = new BufferPool(true, DEFAULT_MAX_POOLED);
+
+    private final boolean direct;   //是否直接内存
+    private final int maxPooled;    //每个规格最多缓存数量
+    private final ArrayDeque<PooledBuffer>[] classes;    //各规格空闲缓冲区
+    private final AtomicLong allocatedCount = new AtomicLong(0);    //累计新建的缓冲区数
+
+    /**
+     * 共享的堆缓冲池
+     *
+     * @return 缓冲池
+     */
+    public static BufferPool heap() {
+        return HEAP;
+    }
+
+    /**
+     * 共享的直接内存缓冲池
+     *
+     * @return 缓冲池
+     */
+    public static BufferPool direct() {
+        return DIRECT;
+    }
+
+    /**
+     * 开启或关闭泄漏检测，开启后每次申请记录调用栈，仅建议在debug构建中开启
+     *
+     * @param enabled 是否开启
+     */
+    public static void setLeakDetection(boolean enabled) {
+        leakDetection = enabled;
+    }
+
+    public static void setLeakListener(LeakListener listener) {
+        if (listener != null) {
+            leakListener = listener;
+        }
+    }
+
+    /**
+     * @param direct    是否直接内存
+     * @param maxPooled 每个规格最多缓存数量
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BufferPool(boolean direct, int maxPooled) {
+        this.direct = direct;
+        this.maxPooled = maxPooled;
+        this.classes = new ArrayDeque[MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ArrayDeque<PooledBuffer>(maxPooled);
+        }
+    }
+
+    /**
+     * 申请缓冲区，容量不小于minCapacity，position为0、limit为容量
+     *
+     * @param minCapacity 最小容量
+     * @return 缓冲区
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        if (leakDetection) {
+            reportLeaks();
+        }
+        int sizeClass = sizeClassOf(minCapacity);
+        PooledBuffer pooled;
+        if (sizeClass < 0) {
+            pooled = new PooledBuffer(null, allocate(minCapacity), -1);
+        } else {
+            ArrayDeque<PooledBuffer> queue = classes[sizeClass];
+            synchronized (queue) {
+                pooled = queue.pollFirst();
+            }
+            if (pooled == null) {
+                pooled = new PooledBuffer(this, allocate(1 << (sizeClass + MIN_SIZE_SHIFT)), sizeClass);
+            }
+        }
+        pooled.acquired();
+        if (leakDetection) {
+            pooled.tracker = new LeakTracker(pooled);
+            leakTrackers.add(pooled.tracker);
+        }
+        return pooled;
+    }
+
+    /**
+     * 回收缓冲区，超出缓存数量时丢弃
+     *
+     * @param pooled 缓冲区
+     */
+    void recycle(PooledBuffer pooled) {
+        ArrayDeque<PooledBuffer> queue = classes[pooled.sizeClass()];
+        synchronized (queue) {
+            if (queue.size() < maxPooled) {
+                queue.offerFirst(pooled);
+            }
+        }
+    }
+
+    /**
+     * 取消泄漏跟踪
+     *
+     * @param pooled 缓冲区
+     */
+    static void untrack(PooledBuffer pooled) {
+        LeakTracker tracker = pooled.tracker;
+        if (tracker != null) {
+            pooled.tracker = null;
+            leakTrackers.remove(tracker);
+            tracker.clear();
+        }
+    }
+
+    /**
+     * 各规格当前缓存的缓冲区总数
+     *
+     * @return 数量
+     */
+    public int getPooledCount() {
+        int count = 0;
+        for (ArrayDeque<PooledBuffer> queue : classes) {
+            synchronized (queue) {
+                count += queue.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 累计新建的缓冲区数，含超出最大规格不入池的缓冲区；稳定运行时不再增长说明申请均由缓存满足
+     *
+     * @return 数量
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        allocatedCount.incrementAndGet();
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * 计算规格索引
+     *
+     * @param capacity 容量
+     * @return 规格索引，超出最大规格返回-1
+     */
+    private static int sizeClassOf(int capacity) {
+        if (capacity > 1 << MAX_SIZE_SHIFT) {
+            return -1;
+        }
+        if (capacity <= 1 << MIN_SIZE_SHIFT) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        return shift - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * 报告已被回收但未归还的缓冲区
+     */
+    private static void reportLeaks() {
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) leakQueue.poll()) != null) {
+            if (leakTrackers.remove(tracker)) {
+                try {
+                    leakListener.onLeak(tracker.capacity, tracker.trace);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 泄漏跟踪，弱引用缓冲区，缓冲区未归还即被回收时进入引用队列
+     */
+    static class LeakTracker extends WeakReference<PooledBuffer> {
+
+        private final int capacity;
+        private final Throwable trace;
+
+        LeakTracker(PooledBuffer referent) {
+            super(referent, leakQueue);
+            this.capacity = referent.capacity();
+            this.trace = new Throwable("PooledBuffer acquired here");
+        }
+
+    }
+
+}
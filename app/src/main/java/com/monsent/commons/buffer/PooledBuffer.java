@@ -0,0 +1,95 @@
+package com.monsent.commons.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从{@link BufferPool}申请的缓冲区，使用完毕须调用{@link #release()}归还，归还后不可再访问
+ */
+public class PooledBuffer {
+
+    private final BufferPool pool;  //所属缓冲池，超出最大规格时为null
+    private final ByteBuffer buffer;
+    private final int sizeClass;    //规格索引
+    private final AtomicBoolean released = new AtomicBoolean(true);
+    BufferPool.LeakTracker tracker;     //泄漏跟踪，仅开启泄漏检测时有值
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer, int sizeClass) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.sizeClass = sizeClass;
+    }
+
+    int sizeClass() {
+        return sizeClass;
+    }
+
+    /**
+     * 标记为已申请
+     */
+    void acquired() {
+        released.set(false);
+        buffer.clear();
+    }
+
+    /**
+     * 缓冲区
+     *
+     * @return ByteBuffer
+     */
+    public ByteBuffer buffer() {
+        ensureAccessible();
+        return buffer;
+    }
+
+    /**
+     * 底层字节数组，仅堆缓冲区可用
+     *
+     * @return 字节数组
+     */
+    public byte[] array() {
+        ensureAccessible();
+        return buffer.array();
+    }
+
+    /**
+     * 容量
+     *
+     * @return 字节数
+     */
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 是否为直接内存缓冲区
+     *
+     * @return 是否
+     */
+    public boolean isDirect() {
+        return buffer.isDirect();
+    }
+
+    /**
+     * 归还到缓冲池
+     */
+    public void release() {
+        if (!released.compareAndSet(false, true)) {
+            throw new IllegalStateException("PooledBuffer already released");
+        }
+        BufferPool.untrack(this);
+        if (pool != null) {
+            pool.recycle(this);
+        }
+    }
+
+    /**
+     * 检查是否已归还
+     */
+    private void ensureAccessible() {
+        if (released.get()) {
+            throw new IllegalStateException("PooledBuffer already released");
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.monsent.commons.buffer;
+
+/**
+ * 自适应读缓冲区大小：读满缓冲区后扩大一倍，连续多次读到不足一半时缩小一半；
+ * 大小为2的幂，与{@link BufferPool}的规格对齐。负载高时单次读取更多数据，减少读调用及回调次数，
+ * 空闲连接的缓冲区逐步缩小。非线程安全，每个读循环一个实例
+ */
+public class ReceiveSizePredictor {
+
+    private final static int DEFAULT_MIN = 256;
+    private final static int DEFAULT_INITIAL = 2048;
+    private final static int DEFAULT_MAX = 64 * 1024;
+    private final static int SHRINK_AFTER = 2;  //连续读到不足一半的次数达到该值时缩小
+    private final int minShift;
+    private final int maxShift;
+    private int shift;  //当前大小为1 << shift
+    private int smallReads = 0;     //连续读到不足一半的次数
+
+    public ReceiveSizePredictor() {
+        this(DEFAULT_MIN, DEFAULT_INITIAL, DEFAULT_MAX);
+    }
+
+    /**
+     * 各大小向上取整为2的幂
+     *
+     * @param min     最小大小
+     * @param initial 初始大小
+     * @param max     最大大小
+     */
+    public ReceiveSizePredictor(int min, int initial, int max) {
+        if (min <= 0 || initial < min || max < initial) {
+            throw new IllegalArgumentException("Invalid receive size, min: " + min + ", initial: " + initial
+                    + ", max: " + max);
+        }
+        this.minShift = shiftOf(min);
+        this.maxShift = shiftOf(max);
+        this.shift = shiftOf(initial);
+    }
+
+    private static int shiftOf(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * 下次读取的大小
+     *
+     * @return 字节数
+     */
+    public int nextSize() {
+        return 1 << shift;
+    }
+
+    /**
+     * 记录一次读取的字节数，调整下次读取的大小
+     *
+     * @param bytesRead 读到的字节数
+     */
+    public void record(int bytesRead) {
+        if (bytesRead >= 1 << shift) {
+            smallReads = 0;
+            if (shift < maxShift) {
+                shift++;
+            }
+        } else if (shift > minShift && bytesRead <= 1 << (shift - 1)) {
+            if (++smallReads >= SHRINK_AFTER) {
+                smallReads = 0;
+                shift--;
+            }
+        } else {
+            smallReads = 0;
+        }
+    }
+
+}
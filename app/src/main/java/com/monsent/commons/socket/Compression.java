@@ -0,0 +1,69 @@
+package com.monsent.commons.socket;
+
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * 压缩配置。开启后连接使用对称的压缩分帧模式，通信双方须同时开启，不是可选的协商：
+ * 连接建立时互发握手交换预置字典标识，双方字典一致时才使用字典；之后每条消息单独封帧，
+ * 小于阈值或压缩后不变小的消息以原样帧发送。
+ * 未开启的对端不发送握手，无法据此回退为不压缩，因此仅一端开启时视为配置错误：
+ * 开启的一端收到的首个数据不是握手时回调onError并断开连接，未开启的一端会把握手当作普通数据收到
+ */
+public class Compression {
+
+    private final static int DEFAULT_THRESHOLD = 256;   //默认压缩阈值
+    private final int threshold;
+    private final int level;
+    private final byte[] dictionary;
+    private final int dictionaryId;     //字典的Adler32校验值，无字典为0
+
+    /**
+     * 默认压缩级别，不使用字典，超过256字节的消息压缩
+     */
+    public Compression() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION, null);
+    }
+
+    /**
+     * @param threshold  压缩阈值(字节)，小于该长度的消息不压缩
+     * @param level      压缩级别，0~9或{@link Deflater#DEFAULT_COMPRESSION}
+     * @param dictionary 预置字典，为消息中常见的内容，可提高短消息的压缩率；null为不使用
+     */
+    public Compression(int threshold, int level, byte[] dictionary) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Invalid threshold: " + threshold);
+        }
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid level: " + level);
+        }
+        this.threshold = threshold;
+        this.level = level;
+        if (dictionary == null || dictionary.length == 0) {
+            this.dictionary = null;
+            this.dictionaryId = 0;
+        } else {
+            this.dictionary = dictionary.clone();
+            Adler32 adler32 = new Adler32();
+            adler32.update(dictionary, 0, dictionary.length);
+            this.dictionaryId = (int) adler32.getValue();
+        }
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    byte[] dictionary() {
+        return dictionary;
+    }
+
+    int dictionaryId() {
+        return dictionaryId;
+    }
+
+}
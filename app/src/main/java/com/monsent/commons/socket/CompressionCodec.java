@@ -0,0 +1,319 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 单个连接的压缩编解码，Deflater、Inflater在连接内复用；解码状态属于一次连接，重连须创建新的实例。
+ * 握手：魔数(4) + 字典标识(4)；之后每条消息为一帧：类型(1) + 长度(4) [+ 原始长度(4)] + 数据，大端序。
+ * 原样帧解码时边收边交付，可承载零拷贝发送的文件；压缩帧收齐后解压交付。
+ * 双方须同时开启的对称分帧模式，握手只协商字典；对端未开启压缩时收到的首个数据不是握手，以明确的错误拒绝
+ */
+class CompressionCodec {
+
+    /**
+     * 解码输出
+     */
+    interface Output {
+
+        void onData(byte[] bytes, int offset, int length) throws IOException;
+
+    }
+
+    private final static int MAGIC = 0x4D435A31;    //"MCZ1"
+    private final static int HELLO_LENGTH = 8;
+    private final static byte RAW = 0;  //原样
+    private final static byte DEFLATE = 1;  //压缩
+    private final static byte DEFLATE_DICTIONARY = 2;   //使用预置字典压缩
+    private final static int RAW_HEADER_LENGTH = 5;
+    private final static int DEFLATE_HEADER_LENGTH = 9;
+    private final static int MAX_FRAME_LENGTH = 16 * 1024 * 1024;   //压缩帧解压后的最大长度
+    private final static int STATE_HELLO = 0;   //等待握手
+    private final static int STATE_HEADER = 1;  //读取帧头
+    private final static int STATE_PAYLOAD = 2;     //读取压缩数据
+    private final static byte[] EMPTY = new byte[0];
+    private final Compression compression;
+    private final CompressionMetrics metrics;
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+    private volatile boolean useDictionary = false;     //对端字典与本端一致
+    private volatile boolean closed = false;
+    //以下解码状态仅读线程访问
+    private final byte[] header = new byte[DEFLATE_HEADER_LENGTH];
+    private int headerLength = 0;
+    private int headerNeeded = HELLO_LENGTH;
+    private int state = STATE_HELLO;
+    private long rawRemaining = 0;  //原样帧剩余字节数
+    private byte flag;
+    private int wireLength;     //压缩数据长度
+    private int originalLength;     //解压后长度
+    private byte[] input = new byte[0];     //压缩数据累积缓冲区，复用
+    private int inputLength = 0;
+    private byte[] output = new byte[0];    //解压缓冲区，复用
+
+    CompressionCodec(Compression compression, CompressionMetrics metrics) {
+        this.compression = compression;
+        this.metrics = metrics;
+        this.deflater = new Deflater(compression.getLevel());
+    }
+
+    /**
+     * 以相同配置及计数创建新的编解码，用于重连
+     *
+     * @return 编解码
+     */
+    CompressionCodec renew() {
+        return new CompressionCodec(compression, metrics);
+    }
+
+    /**
+     * 握手数据，须在连接建立后最先发送
+     *
+     * @return 握手数据
+     */
+    ByteBuffer hello() {
+        byte[] bytes = new byte[HELLO_LENGTH];
+        putInt(bytes, 0, MAGIC);
+        putInt(bytes, 4, compression.dictionaryId());
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * 编码一条消息，达到阈值且压缩后变小时压缩，否则原样封帧；编码与加入待发送队列应在同一锁内，保证顺序
+     *
+     * @param src 消息
+     * @return 帧
+     * @throws IOException 已关闭
+     */
+    synchronized ByteBuffer encode(ByteBuffer src) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        int length = src.remaining();
+        byte[] array;
+        int offset;
+        if (src.hasArray()) {
+            array = src.array();
+            offset = src.arrayOffset() + src.position();
+        } else {
+            array = new byte[length];
+            src.duplicate().get(array);
+            offset = 0;
+        }
+        long nanos = 0;
+        if (length >= compression.getThreshold() && length > RAW_HEADER_LENGTH && length <= MAX_FRAME_LENGTH) {
+            long start = System.nanoTime();
+            //压缩后须比原样帧小，否则放弃
+            int capacity = length + RAW_HEADER_LENGTH - DEFLATE_HEADER_LENGTH - 1;
+            byte[] frame = new byte[DEFLATE_HEADER_LENGTH + capacity];
+            boolean dictionary = useDictionary;
+            deflater.reset();
+            if (dictionary) {
+                deflater.setDictionary(compression.dictionary());
+            }
+            deflater.setInput(array, offset, length);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished() && size < capacity) {
+                size += deflater.deflate(frame, DEFLATE_HEADER_LENGTH + size, capacity - size);
+            }
+            nanos = System.nanoTime() - start;
+            if (deflater.finished()) {
+                frame[0] = dictionary ? DEFLATE_DICTIONARY : DEFLATE;
+                putInt(frame, 1, size);
+                putInt(frame, 5, length);
+                metrics.onCompressed(length, size, nanos);
+                return ByteBuffer.wrap(frame, 0, DEFLATE_HEADER_LENGTH + size);
+            }
+        }
+        metrics.onUncompressed(nanos);
+        byte[] frame = new byte[RAW_HEADER_LENGTH + length];
+        frame[0] = RAW;
+        putInt(frame, 1, length);
+        System.arraycopy(array, offset, frame, RAW_HEADER_LENGTH, length);
+        return ByteBuffer.wrap(frame);
+    }
+
+    /**
+     * 原样帧的帧头，后接count字节的数据，用于零拷贝发送文件
+     *
+     * @param count 数据长度，不超过4GB
+     * @return 帧头
+     */
+    ByteBuffer rawHeader(long count) {
+        byte[] bytes = new byte[RAW_HEADER_LENGTH];
+        bytes[0] = RAW;
+        putInt(bytes, 1, (int) count);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * 解码收到的数据，在读线程调用
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @param out    解码输出
+     * @throws IOException 握手失败或数据损坏
+     */
+    void decode(byte[] bytes, int offset, int length, Output out) throws IOException {
+        int end = offset + length;
+        while (offset < end) {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            if (rawRemaining > 0) {
+                int size = (int) Math.min(rawRemaining, end - offset);
+                rawRemaining -= size;
+                out.onData(bytes, offset, size);
+                offset += size;
+                continue;
+            }
+            if (state == STATE_PAYLOAD) {
+                int size = Math.min(wireLength - inputLength, end - offset);
+                System.arraycopy(bytes, offset, input, inputLength, size);
+                inputLength += size;
+                offset += size;
+                if (inputLength == wireLength) {
+                    state = STATE_HEADER;
+                    inflate(out);
+                }
+                continue;
+            }
+            int size = Math.min(headerNeeded - headerLength, end - offset);
+            System.arraycopy(bytes, offset, header, headerLength, size);
+            headerLength += size;
+            offset += size;
+            if (headerLength == headerNeeded) {
+                onHeader(out);
+            }
+        }
+    }
+
+    /**
+     * 帧头或握手读取完成
+     *
+     * @param out 解码输出
+     * @throws IOException 握手失败或帧头无效
+     */
+    private void onHeader(Output out) throws IOException {
+        if (state == STATE_HELLO) {
+            if (getInt(header, 0) != MAGIC) {
+                throw new IOException("Compression handshake failed: peer did not send a compression hello, "
+                        + "compression is a symmetric framing mode and both ends must enable it");
+            }
+            int peerDictionaryId = getInt(header, 4);
+            useDictionary = peerDictionaryId != 0 && peerDictionaryId == compression.dictionaryId();
+            state = STATE_HEADER;
+            headerLength = 0;
+            headerNeeded = RAW_HEADER_LENGTH;
+            return;
+        }
+        flag = header[0];
+        if (flag == RAW) {
+            rawRemaining = getInt(header, 1) & 0xFFFFFFFFL;
+            headerLength = 0;
+            if (rawRemaining == 0) {
+                //空消息没有数据可边收边交付，在此交付
+                out.onData(EMPTY, 0, 0);
+            }
+            return;
+        }
+        if (flag != DEFLATE && flag != DEFLATE_DICTIONARY) {
+            throw new IOException("Unknown compression flag: " + flag);
+        }
+        if (headerNeeded == RAW_HEADER_LENGTH) {
+            //压缩帧还需读取原始长度
+            headerNeeded = DEFLATE_HEADER_LENGTH;
+            return;
+        }
+        wireLength = getInt(header, 1);
+        originalLength = getInt(header, 5);
+        if (wireLength <= 0 || originalLength <= 0 || originalLength > MAX_FRAME_LENGTH
+                || wireLength > originalLength + RAW_HEADER_LENGTH) {
+            throw new IOException("Invalid compressed frame, length: " + wireLength + ", original: " + originalLength);
+        }
+        if (input.length < wireLength) {
+            input = new byte[wireLength];
+        }
+        inputLength = 0;
+        headerLength = 0;
+        headerNeeded = RAW_HEADER_LENGTH;
+        state = STATE_PAYLOAD;
+    }
+
+    /**
+     * 解压收齐的压缩帧并交付
+     *
+     * @param out 解码输出
+     * @throws IOException 数据损坏或字典不一致
+     */
+    private void inflate(Output out) throws IOException {
+        long start = System.nanoTime();
+        if (output.length < originalLength) {
+            output = new byte[originalLength];
+        }
+        int size = 0;
+        //与close互斥，避免Inflater释放后仍被使用
+        synchronized (inflater) {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+            try {
+                inflater.reset();
+                inflater.setInput(input, 0, wireLength);
+                while (size < originalLength) {
+                    int inflated = inflater.inflate(output, size, originalLength - size);
+                    if (inflated == 0) {
+                        if (inflater.needsDictionary() && flag == DEFLATE_DICTIONARY
+                                && compression.dictionary() != null) {
+                            inflater.setDictionary(compression.dictionary());
+                            continue;
+                        }
+                        break;
+                    }
+                    size += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted compressed frame", e);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Compression dictionary mismatch", e);
+            }
+        }
+        if (size != originalLength) {
+            throw new IOException("Corrupted compressed frame, inflated: " + size + ", expected: " + originalLength);
+        }
+        metrics.onDecompressed(wireLength, size, System.nanoTime() - start);
+        out.onData(output, 0, size);
+    }
+
+    /**
+     * 释放Deflater、Inflater的本地内存
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        deflater.end();
+        synchronized (inflater) {
+            inflater.end();
+        }
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | bytes[offset + 3] & 0xFF;
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.monsent.commons.socket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压缩计数，由服务端或客户端的所有连接共享
+ */
+class CompressionMetrics {
+
+    private final AtomicLong messagesCompressed = new AtomicLong(0);
+    private final AtomicLong messagesUncompressed = new AtomicLong(0);
+    private final AtomicLong bytesBeforeCompression = new AtomicLong(0);
+    private final AtomicLong bytesAfterCompression = new AtomicLong(0);
+    private final AtomicLong compressNanos = new AtomicLong(0);
+    private final AtomicLong messagesDecompressed = new AtomicLong(0);
+    private final AtomicLong bytesBeforeDecompression = new AtomicLong(0);
+    private final AtomicLong bytesAfterDecompression = new AtomicLong(0);
+    private final AtomicLong decompressNanos = new AtomicLong(0);
+
+    /**
+     * 记录一条压缩发送的消息
+     *
+     * @param before 压缩前字节数
+     * @param after  压缩后字节数
+     * @param nanos  耗时(纳秒)
+     */
+    void onCompressed(long before, long after, long nanos) {
+        messagesCompressed.incrementAndGet();
+        bytesBeforeCompression.addAndGet(before);
+        bytesAfterCompression.addAndGet(after);
+        compressNanos.addAndGet(nanos);
+    }
+
+    /**
+     * 记录一条原样发送的消息
+     *
+     * @param nanos 尝试压缩的耗时(纳秒)，未尝试为0
+     */
+    void onUncompressed(long nanos) {
+        messagesUncompressed.incrementAndGet();
+        if (nanos > 0) {
+            compressNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * 记录一条解压的消息
+     *
+     * @param before 解压前字节数
+     * @param after  解压后字节数
+     * @param nanos  耗时(纳秒)
+     */
+    void onDecompressed(long before, long after, long nanos) {
+        messagesDecompressed.incrementAndGet();
+        bytesBeforeDecompression.addAndGet(before);
+        bytesAfterDecompression.addAndGet(after);
+        decompressNanos.addAndGet(nanos);
+    }
+
+    CompressionStats snapshot() {
+        return new CompressionStats(messagesCompressed.get(), messagesUncompressed.get(),
+                bytesBeforeCompression.get(), bytesAfterCompression.get(), compressNanos.get(),
+                messagesDecompressed.get(), bytesBeforeDecompression.get(), bytesAfterDecompression.get(),
+                decompressNanos.get());
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.monsent.commons.socket;
+
+/**
+ * 压缩统计快照，不可变；耗时为调用线程的墙钟时间
+ */
+public class CompressionStats {
+
+    private final long messagesCompressed;
+    private final long messagesUncompressed;
+    private final long bytesBeforeCompression;
+    private final long bytesAfterCompression;
+    private final long compressNanos;
+    private final long messagesDecompressed;
+    private final long bytesBeforeDecompression;
+    private final long bytesAfterDecompression;
+    private final long decompressNanos;
+
+    CompressionStats(long messagesCompressed, long messagesUncompressed, long bytesBeforeCompression,
+                     long bytesAfterCompression, long compressNanos, long messagesDecompressed,
+                     long bytesBeforeDecompression, long bytesAfterDecompression, long decompressNanos) {
+        this.messagesCompressed = messagesCompressed;
+        this.messagesUncompressed = messagesUncompressed;
+        this.bytesBeforeCompression = bytesBeforeCompression;
+        this.bytesAfterCompression = bytesAfterCompression;
+        this.compressNanos = compressNanos;
+        this.messagesDecompressed = messagesDecompressed;
+        this.bytesBeforeDecompression = bytesBeforeDecompression;
+        this.bytesAfterDecompression = bytesAfterDecompression;
+        this.decompressNanos = decompressNanos;
+    }
+
+    /**
+     * 压缩发送的消息数
+     *
+     * @return 数量
+     */
+    public long getMessagesCompressed() {
+        return messagesCompressed;
+    }
+
+    /**
+     * 小于阈值或压缩后不变小而原样发送的消息数
+     *
+     * @return 数量
+     */
+    public long getMessagesUncompressed() {
+        return messagesUncompressed;
+    }
+
+    /**
+     * 压缩发送的消息压缩前的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression;
+    }
+
+    /**
+     * 压缩发送的消息压缩后的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression;
+    }
+
+    /**
+     * 发送方向节省的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesSaved() {
+        return bytesBeforeCompression - bytesAfterCompression;
+    }
+
+    /**
+     * 压缩耗时，含原样发送的消息尝试压缩的耗时
+     *
+     * @return 耗时(纳秒)
+     */
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    /**
+     * 收到并解压的消息数
+     *
+     * @return 数量
+     */
+    public long getMessagesDecompressed() {
+        return messagesDecompressed;
+    }
+
+    /**
+     * 收到的压缩消息解压前的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesBeforeDecompression() {
+        return bytesBeforeDecompression;
+    }
+
+    /**
+     * 收到的压缩消息解压后的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesAfterDecompression() {
+        return bytesAfterDecompression;
+    }
+
+    /**
+     * 解压耗时
+     *
+     * @return 耗时(纳秒)
+     */
+    public long getDecompressNanos() {
+        return decompressNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "messagesCompressed=" + messagesCompressed
+                + ", messagesUncompressed=" + messagesUncompressed
+                + ", bytesBeforeCompression=" + bytesBeforeCompression
+                + ", bytesAfterCompression=" + bytesAfterCompression
+                + ", compressNanos=" + compressNanos
+                + ", messagesDecompressed=" + messagesDecompressed
+                + ", bytesBeforeDecompression=" + bytesBeforeDecompression
+                + ", bytesAfterDecompression=" + bytesAfterDecompression
+                + ", decompressNanos=" + decompressNanos;
+    }
+
+}
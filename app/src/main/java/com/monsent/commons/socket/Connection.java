@@ -0,0 +1,667 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.buffer.BufferPool;
+import com.monsent.commons.buffer.PooledBuffer;
+import com.monsent.commons.buffer.ReceiveSizePredictor;
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.IdleMonitor;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 非阻塞连接，读写由所属{@link EventLoop}驱动
+ */
+public class Connection implements EventLoop.Handler {
+
+    /**
+     * 连接事件监听，由连接的持有者实现
+     */
+    interface Listener {
+
+        void onReceive(Connection connection, byte[] bytes, int offset, int length);
+
+        void onClose(Connection connection);
+
+        void onWritabilityChanged(Connection connection, boolean writable);
+
+        void onError(Exception e);
+
+    }
+
+    private final static int MAX_READS_PER_LOOP = 16;   //单次就绪最多读取次数，避免单连接独占事件循环
+    private final static long MIN_THROTTLED_WRITE = 1024L;  //限速时单次最少写出字节数，避免令牌刚补足时逐字节写出
+    final static int SUSPEND_DISPATCH = 1;  //暂停读取原因：回调队列已满
+    final static int SUSPEND_SHUTDOWN = 2;  //暂停读取原因：服务端正在关闭
+    final static int SUSPEND_RATE_LIMIT = 4;    //暂停读取原因：接收超过限速
+    private final SocketChannel channel;
+    private final Socket socket;
+    private final EventLoop eventLoop;
+    private final Listener listener;
+    private final FrameDecoder frameDecoder;    //帧解码器，为null时直接交付读到的数据
+    private RingBuffer cumulation;  //帧解码累积缓冲区
+    private final OutboundBuffer outbound;  //待发送队列
+    private final ConnectionMetrics metrics = new ConnectionMetrics();  //流量及耗时统计
+    private final ConnectionMetrics closedMetrics;  //连接关闭时累加本连接统计的汇总
+    private long readNanos;     //最近一次读到数据的时间，仅事件循环线程访问
+    private final ReceiveSizePredictor receiveSize = new ReceiveSizePredictor();    //读缓冲区大小，仅事件循环线程访问
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);  //是否已投递写出任务
+    private SelectionKey key;
+    private volatile long id = -1;  //连接ID，由服务端登记时分配
+    private volatile IdleMonitor idleMonitor;   //空闲检测
+    private volatile HeartbeatHandler heartbeat;    //心跳
+    private CompressionCodec codec;     //压缩编解码，为null时不压缩，注册前设置
+    private SerialExecutor callbackExecutor;    //回调串行执行器，为null时在事件循环线程回调，注册前设置
+    private int readSuspended = 0;  //暂停读取的原因，按位组合，仅事件循环线程访问
+    private RateLimiter inboundLimiter;     //接收限速，为null时不限速，注册前设置
+    private RateLimiter outboundLimiter;    //发送限速，为null时不限速，注册前设置
+    private HashedWheelTimer timer;     //限速暂停后恢复的定时器
+    private int deliveredMessages = 0;  //本次读取交付的消息数，仅事件循环线程访问
+    private boolean flushDeferred = false;  //是否因发送限速延后写出，仅事件循环线程访问
+    private boolean notifiedWritable = true;    //最近一次通知的可写状态，仅事件循环线程访问
+    private volatile boolean closed = false;
+
+    private final FrameDecoder.FrameHandler frameHandler = new FrameDecoder.FrameHandler() {
+        @Override
+        public void onFrame(byte[] bytes, int offset, int length) {
+            deliver(bytes, offset, length);
+        }
+    };
+
+    private final CompressionCodec.Output codecOutput = new CompressionCodec.Output() {
+        @Override
+        public void onData(byte[] bytes, int offset, int length) throws IOException {
+            decodeFrames(bytes, offset, length);
+        }
+    };
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private final Runnable resumeReadTask = new Runnable() {
+        @Override
+        public void run() {
+            resumeRead(SUSPEND_RATE_LIMIT);
+        }
+    };
+
+    private final Runnable deferredFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushDeferred = false;
+            flush();
+        }
+    };
+
+    private final Runnable resumeFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            eventLoop.execute(deferredFlushTask);
+        }
+    };
+
+    Connection(SocketChannel channel, EventLoop eventLoop, FrameDecoder frameDecoder, long maxPendingBytes,
+               long lowWaterMark, long highWaterMark, ConnectionMetrics closedMetrics, Listener listener) {
+        this.channel = channel;
+        this.socket = channel.socket();
+        this.eventLoop = eventLoop;
+        this.frameDecoder = frameDecoder;
+        this.listener = listener;
+        this.closedMetrics = closedMetrics;
+        this.outbound = new OutboundBuffer(maxPendingBytes, lowWaterMark, highWaterMark, metrics);
+        eventLoop.connectionAdded();
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+
+    /**
+     * 连接ID，在所属服务端内唯一且不复用
+     *
+     * @return 连接ID，未登记时为-1
+     */
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    public boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    /**
+     * 待发送字节数
+     *
+     * @return 字节数
+     */
+    public long getPendingBytes() {
+        return outbound.pendingBytes();
+    }
+
+    /**
+     * 是否可写，待发送字节数超过高水位后为false，写出到低水位及以下后恢复为true；
+     * 不可写时仍可写入，生产者应据此暂停产生数据
+     *
+     * @return 是否可写
+     */
+    public boolean isWritable() {
+        return !closed && outbound.isWritable();
+    }
+
+    /**
+     * 本连接的流量及耗时统计快照
+     *
+     * @return 快照
+     */
+    public MetricsSnapshot getMetrics() {
+        return metrics.snapshot(isOpen() ? 1 : 0, outbound.pendingBytes(), outbound.size());
+    }
+
+    ConnectionMetrics metrics() {
+        return metrics;
+    }
+
+    int pendingMessages() {
+        return outbound.size();
+    }
+
+    /**
+     * 设置并启动空闲检测，替换原有检测
+     *
+     * @param monitor 空闲检测，null为不检测
+     */
+    void setIdleMonitor(IdleMonitor monitor) {
+        IdleMonitor old = idleMonitor;
+        if (old != null) {
+            old.stop();
+        }
+        idleMonitor = monitor;
+        if (monitor != null && !closed) {
+            monitor.start();
+        }
+    }
+
+    /**
+     * 设置并启动心跳，替换原有心跳
+     *
+     * @param heartbeat 心跳，null为不发送心跳
+     */
+    void setHeartbeat(HeartbeatHandler heartbeat) {
+        HeartbeatHandler old = this.heartbeat;
+        if (old != null) {
+            old.stop();
+        }
+        this.heartbeat = heartbeat;
+        if (heartbeat != null && !closed) {
+            heartbeat.start();
+        }
+    }
+
+    /**
+     * 最近一次心跳往返时延
+     *
+     * @return 时延(纳秒)，未设置心跳或尚未测得时为-1
+     */
+    public long getRttNanos() {
+        HeartbeatHandler heartbeat = this.heartbeat;
+        return heartbeat == null ? -1 : heartbeat.getRttNanos();
+    }
+
+    /**
+     * 开启压缩，须在注册前调用；握手数据加入待发送队列最前，注册后写出
+     *
+     * @param codec 压缩编解码
+     */
+    void enableCompression(CompressionCodec codec) {
+        this.codec = codec;
+        outbound.add(codec.hello(), new WriteFuture());
+    }
+
+    void setCallbackExecutor(SerialExecutor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    SerialExecutor callbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /**
+     * 设置限速，须在注册前调用
+     *
+     * @param inboundLimiter  接收限速，null为不限速
+     * @param outboundLimiter 发送限速，null为不限速
+     * @param timer           超限暂停后恢复的定时器
+     */
+    void setRateLimiters(RateLimiter inboundLimiter, RateLimiter outboundLimiter, HashedWheelTimer timer) {
+        this.inboundLimiter = inboundLimiter;
+        this.outboundLimiter = outboundLimiter;
+        this.timer = timer;
+    }
+
+    /**
+     * 暂停读取，不再关注OP_READ，数据积压在socket缓冲区；可在任意线程调用
+     *
+     * @param reason 原因
+     */
+    void suspendRead(final int reason) {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    suspendRead(reason);
+                }
+            });
+            return;
+        }
+        readSuspended |= reason;
+        updateReadInterest();
+    }
+
+    /**
+     * 恢复读取，所有暂停原因均解除后重新关注OP_READ；可在任意线程调用
+     *
+     * @param reason 原因
+     */
+    void resumeRead(final int reason) {
+        if (!eventLoop.inEventLoop()) {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    resumeRead(reason);
+                }
+            });
+            return;
+        }
+        readSuspended &= ~reason;
+        updateReadInterest();
+    }
+
+    private void updateReadInterest() {
+        if (closed || key == null) {
+            return;
+        }
+        try {
+            int ops = key.interestOps();
+            int newOps = readSuspended != 0 ? ops & ~SelectionKey.OP_READ : ops | SelectionKey.OP_READ;
+            if (newOps != ops) {
+                key.interestOps(newOps);
+            }
+        } catch (CancelledKeyException e) {
+            //连接已被其它线程关闭
+        }
+    }
+
+    EventLoop eventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * 注册到事件循环，须在事件循环线程调用
+     *
+     * @throws IOException 注册失败
+     */
+    void register() throws IOException {
+        channel.configureBlocking(false);
+        key = channel.register(eventLoop.selector(), SelectionKey.OP_READ, this);
+        if (!outbound.isEmpty()) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onSelected(SelectionKey key) {
+        if (key.isWritable()) {
+            flush();
+        }
+        if (key.isValid() && key.isReadable()) {
+            read();
+        }
+    }
+
+    /**
+     * 读取数据，直到未读满缓冲区或达到单次上限；读缓冲区仅在读取期间从缓冲池借用，空闲连接不占用缓冲区，
+     * 大小按近期读到的字节数自适应
+     */
+    private void read() {
+        PooledBuffer pooled = BufferPool.heap().acquire(receiveSize.nextSize());
+        try {
+            for (int i = 0; i < MAX_READS_PER_LOOP; i++) {
+                ByteBuffer readBuffer = pooled.buffer();
+                int size = channel.read(readBuffer);
+                metrics.onRead(size);
+                if (size < 0) {
+                    closeByPeer();
+                    return;
+                }
+                if (size == 0) {
+                    return;
+                }
+                readNanos = System.nanoTime();
+                IdleMonitor monitor = idleMonitor;
+                if (monitor != null) {
+                    monitor.onRead();
+                }
+                HeartbeatHandler heartbeat = this.heartbeat;
+                if (heartbeat != null) {
+                    heartbeat.onRead();
+                }
+                readBuffer.flip();
+                receive(readBuffer.array(), readBuffer.arrayOffset(), readBuffer.limit());
+                readBuffer.clear();
+                if (inboundLimiter != null) {
+                    throttleRead(size);
+                }
+                receiveSize.record(size);
+                //未读满说明socket缓冲区已读空，不再发起一次读到0字节的调用
+                if (closed || readSuspended != 0 || size < readBuffer.capacity()) {
+                    return;
+                }
+                if (receiveSize.nextSize() != readBuffer.capacity()) {
+                    pooled.release();
+                    pooled = BufferPool.heap().acquire(receiveSize.nextSize());
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                listener.onError(e);
+            }
+            closeByPeer();
+        } finally {
+            pooled.release();
+        }
+    }
+
+    /**
+     * 按本次读到的字节数及交付的消息数扣除接收令牌，透支时暂停读取，补足后恢复
+     *
+     * @param size 读到的字节数
+     */
+    private void throttleRead(int size) {
+        long delay = inboundLimiter.acquire(size, deliveredMessages, System.nanoTime());
+        deliveredMessages = 0;
+        if (delay > 0 && (readSuspended & SUSPEND_RATE_LIMIT) == 0) {
+            readSuspended |= SUSPEND_RATE_LIMIT;
+            updateReadInterest();
+            timer.newTimeout(resumeReadTask, toMillis(delay));
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return (nanos + 999999L) / 1000000L;
+    }
+
+    /**
+     * 处理读到的数据，开启压缩时先解压
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @throws IOException 解压或帧解码失败
+     */
+    private void receive(byte[] bytes, int offset, int length) throws IOException {
+        if (codec != null) {
+            codec.decode(bytes, offset, length, codecOutput);
+            return;
+        }
+        decodeFrames(bytes, offset, length);
+    }
+
+    /**
+     * 交付数据，设置了帧解码器时累积后按完整帧交付
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @throws IOException 帧解码失败
+     */
+    private void decodeFrames(byte[] bytes, int offset, int length) throws IOException {
+        if (frameDecoder == null) {
+            deliver(bytes, offset, length);
+            return;
+        }
+        if (cumulation == null) {
+            cumulation = new RingBuffer();
+        }
+        cumulation.write(bytes, offset, length);
+        frameDecoder.decode(cumulation, frameHandler);
+    }
+
+    /**
+     * 交付一条消息并记录读到数据至交付的耗时，心跳帧由心跳处理不再交付
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     */
+    private void deliver(byte[] bytes, int offset, int length) {
+        HeartbeatHandler heartbeat = this.heartbeat;
+        if (heartbeat != null && heartbeat.onFrame(bytes, offset, length)) {
+            return;
+        }
+        metrics.onMessageRead(System.nanoTime() - readNanos);
+        deliveredMessages++;
+        listener.onReceive(this, bytes, offset, length);
+    }
+
+    /**
+     * 异步写入数据，加入待发送队列后由事件循环写出，调用线程不阻塞；
+     * 写入完成前buffer中的数据不可修改
+     *
+     * @param buffer 数据
+     * @return 写入结果
+     */
+    WriteFuture write(ByteBuffer buffer) {
+        WriteFuture future = new WriteFuture();
+        if (closed) {
+            future.setFailure(new IOException("Connection closed"));
+            return future;
+        }
+        boolean added;
+        if (codec == null) {
+            added = outbound.add(buffer, future);
+        } else {
+            //编码与入队在同一锁内，保证帧顺序与写入顺序一致
+            synchronized (codec) {
+                try {
+                    added = outbound.add(codec.encode(buffer), future);
+                } catch (IOException e) {
+                    future.setFailure(e);
+                    return future;
+                }
+            }
+        }
+        if (!added) {
+            future.setFailure(outbound.isClosed() ? new IOException("Connection closed")
+                    : new IOException("Write queue full, pending bytes: " + outbound.pendingBytes()));
+            return future;
+        }
+        scheduleFlush();
+        return future;
+    }
+
+    /**
+     * 异步发送文件区间，与write的数据按调用顺序发送
+     *
+     * @param region 文件区间
+     * @return 写入结果
+     */
+    WriteFuture sendFile(FileRegion region) {
+        WriteFuture future = new WriteFuture();
+        if (closed) {
+            region.release();
+            future.setFailure(new IOException("Connection closed"));
+            return future;
+        }
+        boolean added;
+        if (codec == null) {
+            added = outbound.add(region, future);
+        } else if (region.count() > 0xFFFFFFFFL) {
+            region.release();
+            future.setFailure(new IOException("File region too large for compressed connection: " + region.count()));
+            return future;
+        } else {
+            //文件区间不压缩，以原样帧发送，帧头与文件区间须连续入队
+            synchronized (codec) {
+                added = outbound.add(codec.rawHeader(region.count()), new WriteFuture())
+                        && outbound.add(region, future);
+            }
+        }
+        if (!added) {
+            region.release();
+            future.setFailure(new IOException("Connection closed"));
+            return future;
+        }
+        scheduleFlush();
+        return future;
+    }
+
+    /**
+     * 投递写出任务，多次写入合并为一次
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(flushTask);
+        }
+    }
+
+    /**
+     * 写出待发送队列，未写完时关注OP_WRITE，写完后取消关注；须在事件循环线程调用
+     */
+    private void flush() {
+        if (closed || flushDeferred) {
+            return;
+        }
+        try {
+            long written;
+            if (outboundLimiter == null) {
+                written = outbound.flush(channel);
+            } else {
+                written = throttledFlush();
+            }
+            if (written > 0) {
+                IdleMonitor monitor = idleMonitor;
+                if (monitor != null) {
+                    monitor.onWrite();
+                }
+            }
+            //延后写出期间不关注OP_WRITE，由定时器恢复
+            boolean drained = outbound.isEmpty() || flushDeferred;
+            int ops = key.interestOps();
+            int newOps = drained ? ops & ~SelectionKey.OP_WRITE : ops | SelectionKey.OP_WRITE;
+            if (newOps != ops) {
+                key.interestOps(newOps);
+            }
+            notifyWritability();
+        } catch (CancelledKeyException e) {
+            //连接已被其它线程关闭
+        } catch (IOException e) {
+            if (!closed) {
+                listener.onError(e);
+            }
+            closeByPeer();
+        }
+    }
+
+    /**
+     * 限速写出：透支时延后写出，否则最多写出可用令牌对应的字节数，写出后按字节数及消息数扣除发送令牌
+     *
+     * @return 写出的字节数
+     * @throws IOException 写入失败
+     */
+    private long throttledFlush() throws IOException {
+        long now = System.nanoTime();
+        long delay = outboundLimiter.delay(now);
+        if (delay > 0) {
+            deferFlush(delay);
+            return 0;
+        }
+        long messages = metrics.messagesWritten();
+        //令牌不足时也写出最少字节数，透支部分在之后补足
+        long written = outbound.flush(channel, Math.max(MIN_THROTTLED_WRITE, outboundLimiter.availableBytes(now)));
+        delay = outboundLimiter.acquire(written, metrics.messagesWritten() - messages, System.nanoTime());
+        if (delay > 0 && !outbound.isEmpty()) {
+            deferFlush(delay);
+        }
+        return written;
+    }
+
+    private void deferFlush(long delayNanos) {
+        flushDeferred = true;
+        timer.newTimeout(resumeFlushTask, toMillis(delayNanos));
+    }
+
+    /**
+     * 可写状态与最近一次通知不同时通知持有者，须在事件循环线程调用；
+     * 每次写入都会投递写出任务，因此不可写与恢复可写均在写出后检查并按发生顺序通知
+     */
+    private void notifyWritability() {
+        boolean writable = outbound.isWritable();
+        if (writable != notifiedWritable) {
+            notifiedWritable = writable;
+            listener.onWritabilityChanged(this, writable);
+        }
+    }
+
+    /**
+     * 远端关闭或读取失败，关闭并通知持有者
+     */
+    private void closeByPeer() {
+        if (close()) {
+            listener.onClose(this);
+        }
+    }
+
+    /**
+     * 关闭连接
+     *
+     * @return 是否由本次调用关闭
+     */
+    boolean close() {
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+        }
+        eventLoop.connectionRemoved();
+        if (closedMetrics != null) {
+            closedMetrics.add(metrics);
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        IdleMonitor monitor = idleMonitor;
+        if (monitor != null) {
+            monitor.stop();
+        }
+        HeartbeatHandler heartbeat = this.heartbeat;
+        if (heartbeat != null) {
+            heartbeat.stop();
+        }
+        if (codec != null) {
+            codec.close();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            listener.onError(e);
+        }
+        outbound.failAll(new IOException("Connection closed"));
+        return true;
+    }
+
+}
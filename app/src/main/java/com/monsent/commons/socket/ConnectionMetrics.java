@@ -0,0 +1,139 @@
+package com.monsent.commons.socket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单个连接的流量及耗时统计，计数由该连接的读写线程更新，彼此不竞争；
+ * 耗时直方图在首次记录时创建，未收发消息的空闲连接只占用计数的内存
+ */
+class ConnectionMetrics {
+
+    private final AtomicLong bytesRead = new AtomicLong(0);
+    private final AtomicLong bytesWritten = new AtomicLong(0);
+    private final AtomicLong messagesRead = new AtomicLong(0);
+    private final AtomicLong messagesWritten = new AtomicLong(0);
+    private final AtomicLong readCalls = new AtomicLong(0);
+    private final AtomicLong writeCalls = new AtomicLong(0);
+    private final AtomicReference<LatencyHistogram> readLatency =
+            new AtomicReference<LatencyHistogram>();    //读到数据至交付回调的耗时
+    private final AtomicReference<LatencyHistogram> writeLatency =
+            new AtomicReference<LatencyHistogram>();    //加入待发送队列至全部写出的耗时
+    private final AtomicReference<LatencyHistogram> rtt = new AtomicReference<LatencyHistogram>();  //心跳往返时延
+
+    /**
+     * 记录一次读调用
+     *
+     * @param bytes 读到的字节数
+     */
+    void onRead(long bytes) {
+        readCalls.incrementAndGet();
+        if (bytes > 0) {
+            bytesRead.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * 记录一次写调用
+     *
+     * @param bytes 写出的字节数
+     */
+    void onWrite(long bytes) {
+        writeCalls.incrementAndGet();
+        if (bytes > 0) {
+            bytesWritten.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * 记录交付一条消息
+     *
+     * @param latencyNanos 读到数据至交付回调的耗时(纳秒)
+     */
+    void onMessageRead(long latencyNanos) {
+        messagesRead.incrementAndGet();
+        histogram(readLatency).record(latencyNanos);
+    }
+
+    /**
+     * 记录写出一条消息
+     *
+     * @param latencyNanos 加入待发送队列至全部写出的耗时(纳秒)
+     */
+    void onMessageWritten(long latencyNanos) {
+        messagesWritten.incrementAndGet();
+        histogram(writeLatency).record(latencyNanos);
+    }
+
+    long messagesWritten() {
+        return messagesWritten.get();
+    }
+
+    /**
+     * 记录一次心跳往返
+     *
+     * @param rttNanos 发送ping至收到pong的时延(纳秒)
+     */
+    void onRtt(long rttNanos) {
+        histogram(rtt).record(rttNanos);
+    }
+
+    /**
+     * 累加另一连接的统计
+     *
+     * @param other 统计
+     */
+    void add(ConnectionMetrics other) {
+        bytesRead.addAndGet(other.bytesRead.get());
+        bytesWritten.addAndGet(other.bytesWritten.get());
+        messagesRead.addAndGet(other.messagesRead.get());
+        messagesWritten.addAndGet(other.messagesWritten.get());
+        readCalls.addAndGet(other.readCalls.get());
+        writeCalls.addAndGet(other.writeCalls.get());
+        add(readLatency, other.readLatency);
+        add(writeLatency, other.writeLatency);
+        add(rtt, other.rtt);
+    }
+
+    private static void add(AtomicReference<LatencyHistogram> to, AtomicReference<LatencyHistogram> from) {
+        LatencyHistogram histogram = from.get();
+        if (histogram != null) {
+            histogram(to).add(histogram);
+        }
+    }
+
+    /**
+     * 取直方图，尚未创建时创建
+     *
+     * @param ref 直方图引用
+     * @return 直方图
+     */
+    private static LatencyHistogram histogram(AtomicReference<LatencyHistogram> ref) {
+        LatencyHistogram histogram = ref.get();
+        if (histogram == null) {
+            ref.compareAndSet(null, new LatencyHistogram());
+            histogram = ref.get();
+        }
+        return histogram;
+    }
+
+    private static LatencyHistogram.Snapshot snapshot(AtomicReference<LatencyHistogram> ref) {
+        LatencyHistogram histogram = ref.get();
+        return histogram == null ? LatencyHistogram.Snapshot.EMPTY : histogram.snapshot();
+    }
+
+    /**
+     * 生成快照
+     *
+     * @param connections     连接数
+     * @param pendingBytes    待发送字节数
+     * @param pendingMessages 待发送消息数
+     * @return 快照
+     */
+    MetricsSnapshot snapshot(int connections, long pendingBytes, long pendingMessages) {
+        return new MetricsSnapshot(connections, bytesRead.get(), bytesWritten.get(), messagesRead.get(),
+                messagesWritten.get(), readCalls.get(), writeCalls.get(), pendingBytes, pendingMessages,
+                snapshot(readLatency), snapshot(writeLatency), snapshot(rtt));
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.monsent.commons.socket;
+
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 服务端实例持有的连接表：连接ID由单调递增序号与槽位组成，按ID查找只需一次数组访问；
+ * 槽位复用时序号不同，旧ID不会查到新连接。登记与移除加锁，查找无锁
+ */
+class ConnectionRegistry {
+
+    private final static int SLOT_BITS = 20;    //槽位所占位数
+    private final static int MAX_SLOTS = 1 << SLOT_BITS;    //最多同时登记的连接数
+    private final static long SLOT_MASK = MAX_SLOTS - 1;
+    private final static int INITIAL_SLOTS = 16;
+    private volatile AtomicReferenceArray<Connection> slots = new AtomicReferenceArray<Connection>(INITIAL_SLOTS);
+    private final ConcurrentHashMap<Socket, Connection> sockets = new ConcurrentHashMap<Socket, Connection>();    //按socket查找，兼容socket接口
+    private int[] freeSlots = new int[INITIAL_SLOTS];   //已释放的槽位，仅持锁访问
+    private int freeCount = 0;
+    private int usedSlots = 0;  //已分配过的槽位数
+    private long sequence = 0;  //连接序号
+
+    /**
+     * 登记连接并分配ID
+     *
+     * @param connection 连接
+     * @return 连接ID，连接数已达上限时为-1
+     */
+    synchronized long register(Connection connection) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else if (usedSlots < MAX_SLOTS) {
+            slot = usedSlots++;
+            if (slot >= slots.length()) {
+                grow();
+            }
+        } else {
+            return -1;
+        }
+        long id = (++sequence << SLOT_BITS) | slot;
+        connection.setId(id);
+        slots.set(slot, connection);
+        sockets.put(connection.getSocket(), connection);
+        return id;
+    }
+
+    /**
+     * 槽位数组扩容一倍，只在持锁时调用
+     */
+    private void grow() {
+        AtomicReferenceArray<Connection> old = slots;
+        AtomicReferenceArray<Connection> grown = new AtomicReferenceArray<Connection>(
+                Math.min(old.length() * 2, MAX_SLOTS));
+        for (int i = 0; i < old.length(); i++) {
+            grown.set(i, old.get(i));
+        }
+        slots = grown;
+    }
+
+    /**
+     * 移除连接并释放槽位
+     *
+     * @param connection 连接
+     * @return 是否由本次调用移除
+     */
+    synchronized boolean remove(Connection connection) {
+        long id = connection.getId();
+        if (id < 0) {
+            return false;
+        }
+        int slot = (int) (id & SLOT_MASK);
+        AtomicReferenceArray<Connection> slots = this.slots;
+        if (slot >= slots.length() || slots.get(slot) != connection) {
+            return false;
+        }
+        slots.set(slot, null);
+        sockets.remove(connection.getSocket(), connection);
+        if (freeCount == freeSlots.length) {
+            int[] grown = new int[freeSlots.length * 2];
+            System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+            freeSlots = grown;
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    /**
+     * 按ID查找连接
+     *
+     * @param id 连接ID
+     * @return 连接，不存在或已断开时为null
+     */
+    Connection get(long id) {
+        if (id < 0) {
+            return null;
+        }
+        int slot = (int) (id & SLOT_MASK);
+        AtomicReferenceArray<Connection> slots = this.slots;
+        if (slot >= slots.length()) {
+            return null;
+        }
+        Connection connection = slots.get(slot);
+        return connection != null && connection.getId() == id ? connection : null;
+    }
+
+    /**
+     * 按socket查找连接
+     *
+     * @param socket 客户端
+     * @return 连接，不存在时为null
+     */
+    Connection get(Socket socket) {
+        return socket == null ? null : sockets.get(socket);
+    }
+
+    boolean isEmpty() {
+        return sockets.isEmpty();
+    }
+
+    /**
+     * 当前登记的所有连接
+     *
+     * @return 连接列表的副本
+     */
+    List<Connection> connections() {
+        AtomicReferenceArray<Connection> slots = this.slots;
+        List<Connection> connections = new ArrayList<Connection>(sockets.size());
+        for (int i = 0; i < slots.length(); i++) {
+            Connection connection = slots.get(i);
+            if (connection != null) {
+                connections.add(connection);
+            }
+        }
+        return connections;
+    }
+
+}
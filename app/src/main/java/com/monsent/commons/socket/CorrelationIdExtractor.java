@@ -0,0 +1,18 @@
+package com.monsent.commons.socket;
+
+/**
+ * 从收到的完整帧中提取关联ID，用于将响应匹配到发出的请求
+ */
+public interface CorrelationIdExtractor {
+
+    /**
+     * 提取关联ID，在读线程调用，不应执行耗时操作
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @return 关联ID，负数表示该帧不是响应，按普通数据交付回调
+     */
+    long getCorrelationId(byte[] bytes, int offset, int length);
+
+}
@@ -0,0 +1,451 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.buffer.BufferPool;
+import com.monsent.commons.buffer.PooledBuffer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 非阻塞UDP端点，{@link UdpServer}、{@link UdpClient}共用：独占一个{@link EventLoop}，通道在该线程打开、绑定或连接，
+ * 地址解析不在调用线程进行，通道打开前的发送暂存，打开后依次发出；每次就绪读完所有待接收的数据报，接收缓冲区整个生命周期复用；
+ * 开启序号时每个数据报前加4字节大端序号，按发送方统计丢失、乱序及重复；长时间无收发的对端移除，统计并入汇总
+ */
+class DatagramEndpoint implements EventLoop.Handler {
+
+    /**
+     * 端点事件监听，由端点的持有者实现，事件循环的异常同样交给onError
+     */
+    interface Listener {
+
+        /**
+         * 通道已打开，在事件循环线程调用，此前暂存的数据报已发出
+         */
+        void onOpen();
+
+        void onReceive(InetSocketAddress address, byte[] bytes, int offset, int length);
+
+        void onError(Exception e);
+
+    }
+
+    /**
+     * 通道打开后的设置，在事件循环线程调用
+     */
+    interface Setup {
+
+        /**
+         * 绑定或连接通道
+         *
+         * @param channel 通道，阻塞模式
+         * @return 已连接的对端地址，未连接时为null
+         * @throws IOException 设置失败或地址无法解析
+         */
+        SocketAddress configure(DatagramChannel channel) throws IOException;
+
+    }
+
+    final static int MAX_DATAGRAM_SIZE = 65507;     //UDP数据报最大负载
+    private final static int SEQUENCE_LENGTH = 4;   //序号长度
+    private final static int MAX_DATAGRAMS_PER_LOOP = 64;   //单次就绪最多接收数据报数，避免独占事件循环
+    private final static int MAX_PENDING_SENDS = 64;    //通道打开前最多暂存的数据报数
+    private final static long PEER_IDLE_NANOS = TimeUnit.MINUTES.toNanos(5);   //对端无收发超过该时长即移除
+    private final static long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);   //检查空闲对端的间隔
+    private final EventLoop eventLoop;
+    private volatile DatagramChannel channel;   //在事件循环线程打开，打开前为null
+    private volatile SocketAddress remoteAddress;   //已连接的对端地址
+    private final boolean sequenced;
+    private final Listener listener;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);    //复用的接收缓冲区，仅事件循环线程访问
+    private final ConcurrentHashMap<SocketAddress, Peer> peers
+            = new ConcurrentHashMap<SocketAddress, Peer>();   //对端地址、序号状态键值对，仅开启序号时使用
+    private final long[] purgedTotals = new long[3];    //已移除对端的序号统计，持锁访问
+    private final AtomicLong lastPurgeNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong datagramsSent = new AtomicLong(0);
+    private final AtomicLong bytesSent = new AtomicLong(0);
+    private final AtomicLong sendDropped = new AtomicLong(0);
+    private final AtomicLong datagramsReceived = new AtomicLong(0);
+    private final AtomicLong bytesReceived = new AtomicLong(0);
+    private volatile boolean closed = false;
+    private final ArrayDeque<PendingSend> pendingSends = new ArrayDeque<PendingSend>();     //通道打开前的发送，持锁访问
+
+    private final Runnable purgeTask = new Runnable() {
+        @Override
+        public void run() {
+            purge(System.nanoTime());
+        }
+    };
+
+    /**
+     * 单个对端的序号状态
+     */
+    private static class Peer {
+
+        final SequenceTracker tracker = new SequenceTracker();  //收到的序号统计，仅事件循环线程记录
+        final AtomicInteger sendSequence = new AtomicInteger(0);    //下一个发送序号
+        volatile long lastActiveNanos;  //最近一次收发时间
+
+        Peer(long now) {
+            this.lastActiveNanos = now;
+        }
+
+    }
+
+    /**
+     * 通道打开前暂存的数据报
+     */
+    private static class PendingSend {
+
+        final SocketAddress address;    //接收方，null为已连接的对端
+        final byte[] bytes;     //数据副本
+
+        PendingSend(SocketAddress address, byte[] bytes) {
+            this.address = address;
+            this.bytes = bytes;
+        }
+
+    }
+
+    /**
+     * @param name      事件循环线程名称
+     * @param sequenced 是否收发序号
+     * @param listener  事件监听
+     * @throws IOException 创建Selector失败
+     */
+    DatagramEndpoint(String name, boolean sequenced, final Listener listener) throws IOException {
+        this.eventLoop = new EventLoop(name, new EventLoop.ErrorHandler() {
+            @Override
+            public void onError(Exception e) {
+                listener.onError(e);
+            }
+        });
+        this.sequenced = sequenced;
+        this.listener = listener;
+    }
+
+    /**
+     * 启动事件循环，在事件循环线程打开通道、按setup绑定或连接后注册，发出暂存的数据报并通知onOpen；
+     * 失败时通知onError并关闭
+     *
+     * @param setup 通道设置
+     */
+    void open(final Setup setup) {
+        eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    return;
+                }
+                DatagramChannel channel = null;
+                IOException failure = null;
+                try {
+                    channel = DatagramChannel.open();
+                    remoteAddress = setup.configure(channel);
+                    channel.configureBlocking(false);
+                    List<PendingSend> pending = null;
+                    //与close互斥，关闭后不再注册到已关闭的Selector；与send互斥，此后的发送不再暂存
+                    synchronized (DatagramEndpoint.this) {
+                        if (!closed) {
+                            channel.register(eventLoop.selector(), SelectionKey.OP_READ, DatagramEndpoint.this);
+                            DatagramEndpoint.this.channel = channel;
+                            pending = new ArrayList<PendingSend>(pendingSends);
+                            pendingSends.clear();
+                        }
+                    }
+                    if (pending != null) {
+                        for (PendingSend send : pending) {
+                            send(send.address, send.bytes, 0, send.bytes.length);
+                        }
+                        listener.onOpen();
+                        return;
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+                closeQuietly(channel);
+                close();
+                //关闭后再通知，回调中的写入不再暂存
+                if (failure != null) {
+                    listener.onError(failure);
+                }
+            }
+        });
+        eventLoop.start();
+    }
+
+    /**
+     * 通道是否已打开并注册
+     *
+     * @return 是否
+     */
+    boolean isOpen() {
+        return channel != null && !closed;
+    }
+
+    @Override
+    public void onSelected(SelectionKey key) {
+        if (key.isReadable()) {
+            drain();
+        }
+    }
+
+    /**
+     * 接收所有待接收的数据报，直到无数据或达到单次上限
+     */
+    private void drain() {
+        DatagramChannel channel = this.channel;
+        long now = sequenced ? System.nanoTime() : 0L;
+        for (int i = 0; i < MAX_DATAGRAMS_PER_LOOP && !closed; i++) {
+            receiveBuffer.clear();
+            SocketAddress address;
+            try {
+                address = channel.receive(receiveBuffer);
+            } catch (PortUnreachableException e) {
+                //对端未监听，已连接的通道会收到ICMP错误，不影响后续接收
+                listener.onError(e);
+                continue;
+            } catch (IOException e) {
+                if (!closed) {
+                    listener.onError(e);
+                }
+                return;
+            }
+            if (address == null) {
+                return;
+            }
+            int offset = 0;
+            int length = receiveBuffer.position();
+            if (sequenced) {
+                if (length < SEQUENCE_LENGTH) {
+                    //不含序号的数据报丢弃
+                    continue;
+                }
+                if (!peer(address, now).tracker.record(receiveBuffer.getInt(0))) {
+                    continue;
+                }
+                offset = SEQUENCE_LENGTH;
+                length -= SEQUENCE_LENGTH;
+            }
+            datagramsReceived.incrementAndGet();
+            bytesReceived.addAndGet(length);
+            listener.onReceive((InetSocketAddress) address, receiveBuffer.array(), offset, length);
+        }
+        if (sequenced) {
+            purgeIfDue(now);
+        }
+    }
+
+    /**
+     * 获取对端的序号状态并记录活动时间
+     *
+     * @param address 对端地址
+     * @param now     当前时间(纳秒)
+     * @return 序号状态
+     */
+    private Peer peer(SocketAddress address, long now) {
+        Peer peer = peers.get(address);
+        if (peer == null) {
+            Peer created = new Peer(now);
+            peer = peers.putIfAbsent(address, created);
+            if (peer == null) {
+                return created;
+            }
+        }
+        peer.lastActiveNanos = now;
+        return peer;
+    }
+
+    private int nextSequence(SocketAddress address) {
+        long now = System.nanoTime();
+        int sequence = peer(address, now).sendSequence.getAndIncrement();
+        purgeIfDue(now);
+        return sequence;
+    }
+
+    /**
+     * 到达检查间隔时在事件循环线程移除空闲对端，与记录序号串行
+     *
+     * @param now 当前时间(纳秒)
+     */
+    private void purgeIfDue(long now) {
+        long last = lastPurgeNanos.get();
+        if (now - last < PURGE_INTERVAL_NANOS || !lastPurgeNanos.compareAndSet(last, now)) {
+            return;
+        }
+        if (eventLoop.inEventLoop()) {
+            purge(now);
+        } else {
+            eventLoop.execute(purgeTask);
+        }
+    }
+
+    /**
+     * 移除空闲的对端，其序号统计并入汇总；对端之后再收发时按新的序列统计
+     *
+     * @param now 当前时间(纳秒)
+     */
+    private void purge(long now) {
+        Iterator<Map.Entry<SocketAddress, Peer>> iterator = peers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Peer peer = iterator.next().getValue();
+            if (now - peer.lastActiveNanos < PEER_IDLE_NANOS) {
+                continue;
+            }
+            iterator.remove();
+            synchronized (purgedTotals) {
+                peer.tracker.addTo(purgedTotals);
+            }
+        }
+    }
+
+    /**
+     * 发送数据报，在调用线程直接发送；发送缓冲区已满时丢弃，通道打开前暂存，暂存已满时丢弃
+     *
+     * @param address 接收方，null为已连接的对端
+     * @param bytes   字节数组
+     * @param off     起始位
+     * @param len     长度
+     * @return 是否已发送或暂存
+     */
+    boolean send(SocketAddress address, byte[] bytes, int off, int len) {
+        if (len + (sequenced ? SEQUENCE_LENGTH : 0) > MAX_DATAGRAM_SIZE) {
+            listener.onError(new IOException("Datagram too large: " + len));
+            return false;
+        }
+        DatagramChannel channel = this.channel;
+        if (channel == null) {
+            //通道仍在事件循环线程打开或地址仍在解析，暂存到打开后发出
+            synchronized (this) {
+                channel = this.channel;
+                if (channel == null && !closed) {
+                    if (pendingSends.size() >= MAX_PENDING_SENDS) {
+                        sendDropped.incrementAndGet();
+                        return false;
+                    }
+                    byte[] copy = new byte[len];
+                    System.arraycopy(bytes, off, copy, 0, len);
+                    pendingSends.add(new PendingSend(address, copy));
+                    return true;
+                }
+            }
+        }
+        if (closed) {
+            listener.onError(new IOException("Channel closed"));
+            return false;
+        }
+        if (address == null) {
+            address = remoteAddress;
+        }
+        PooledBuffer pooled = null;
+        ByteBuffer buffer;
+        if (sequenced) {
+            pooled = BufferPool.heap().acquire(len + SEQUENCE_LENGTH);
+            buffer = pooled.buffer();
+            buffer.putInt(nextSequence(address)).put(bytes, off, len).flip();
+        } else {
+            buffer = ByteBuffer.wrap(bytes, off, len);
+        }
+        try {
+            if (channel.send(buffer, address) == 0) {
+                sendDropped.incrementAndGet();
+                return false;
+            }
+            datagramsSent.incrementAndGet();
+            bytesSent.addAndGet(len);
+            return true;
+        } catch (IOException e) {
+            listener.onError(e);
+            return false;
+        } finally {
+            if (pooled != null) {
+                pooled.release();
+            }
+        }
+    }
+
+    /**
+     * 所有发送方的统计汇总，含已移除的对端
+     *
+     * @return 快照
+     */
+    DatagramStats stats() {
+        long[] totals = new long[3];
+        synchronized (purgedTotals) {
+            System.arraycopy(purgedTotals, 0, totals, 0, totals.length);
+        }
+        for (Peer peer : peers.values()) {
+            peer.tracker.addTo(totals);
+        }
+        return stats(totals);
+    }
+
+    /**
+     * 单个发送方的序号统计，收发计数为端点汇总
+     *
+     * @param address 发送方
+     * @return 快照，未收到该发送方的数据报或已因空闲移除时序号统计为0
+     */
+    DatagramStats stats(SocketAddress address) {
+        long[] totals = new long[3];
+        Peer peer = address == null ? null : peers.get(address);
+        if (peer != null) {
+            peer.tracker.addTo(totals);
+        }
+        return stats(totals);
+    }
+
+    private DatagramStats stats(long[] totals) {
+        return new DatagramStats(datagramsSent.get(), bytesSent.get(), sendDropped.get(), datagramsReceived.get(),
+                bytesReceived.get(), totals[0], totals[1], totals[2]);
+    }
+
+    /**
+     * 关闭通道并停止事件循环
+     */
+    void close() {
+        DatagramChannel channel;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            channel = this.channel;
+            //打开前暂存的数据报随关闭丢弃
+            sendDropped.addAndGet(pendingSends.size());
+            pendingSends.clear();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                listener.onError(e);
+            }
+        }
+        eventLoop.shutdown();
+    }
+
+    private void closeQuietly(DatagramChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
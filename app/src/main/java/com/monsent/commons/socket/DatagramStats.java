@@ -0,0 +1,113 @@
+package com.monsent.commons.socket;
+
+/**
+ * UDP收发统计快照，不可变；丢失、乱序、重复仅在开启序号时统计
+ */
+public class DatagramStats {
+
+    private final long datagramsSent;
+    private final long bytesSent;
+    private final long sendDropped;
+    private final long datagramsReceived;
+    private final long bytesReceived;
+    private final long lost;
+    private final long reordered;
+    private final long duplicates;
+
+    DatagramStats(long datagramsSent, long bytesSent, long sendDropped, long datagramsReceived, long bytesReceived,
+                  long lost, long reordered, long duplicates) {
+        this.datagramsSent = datagramsSent;
+        this.bytesSent = bytesSent;
+        this.sendDropped = sendDropped;
+        this.datagramsReceived = datagramsReceived;
+        this.bytesReceived = bytesReceived;
+        this.lost = lost;
+        this.reordered = reordered;
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * 发送的数据报数
+     *
+     * @return 数量
+     */
+    public long getDatagramsSent() {
+        return datagramsSent;
+    }
+
+    /**
+     * 发送的字节数，不含序号
+     *
+     * @return 字节数
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * 因发送缓冲区已满未能发送的数据报数
+     *
+     * @return 数量
+     */
+    public long getSendDropped() {
+        return sendDropped;
+    }
+
+    /**
+     * 交付回调的数据报数，不含重复
+     *
+     * @return 数量
+     */
+    public long getDatagramsReceived() {
+        return datagramsReceived;
+    }
+
+    /**
+     * 交付回调的字节数，不含序号
+     *
+     * @return 字节数
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * 按序号判断丢失的数据报数，迟到的数据报到达后扣除
+     *
+     * @return 数量
+     */
+    public long getLost() {
+        return lost;
+    }
+
+    /**
+     * 序号小于已收到的最大序号的数据报数
+     *
+     * @return 数量
+     */
+    public long getReordered() {
+        return reordered;
+    }
+
+    /**
+     * 重复收到并已丢弃的数据报数
+     *
+     * @return 数量
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    @Override
+    public String toString() {
+        return "datagramsSent=" + datagramsSent
+                + ", bytesSent=" + bytesSent
+                + ", sendDropped=" + sendDropped
+                + ", datagramsReceived=" + datagramsReceived
+                + ", bytesReceived=" + bytesReceived
+                + ", lost=" + lost
+                + ", reordered=" + reordered
+                + ", duplicates=" + duplicates;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+
+/**
+ * 分隔符帧解码器，如以\r\n结尾的文本行
+ */
+public class DelimiterFrameDecoder implements FrameDecoder {
+
+    private final static int DEFAULT_MAX_FRAME_LENGTH = 64 * 1024;     //默认最大帧长度
+    private final byte[] delimiter;     //分隔符
+    private final boolean stripDelimiter;   //输出的帧是否去掉分隔符
+    private final int maxFrameLength;   //最大帧长度(不含分隔符)
+
+    /**
+     * 输出去掉分隔符
+     *
+     * @param delimiter 分隔符
+     */
+    public DelimiterFrameDecoder(byte[] delimiter) {
+        this(delimiter, true, DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * @param delimiter      分隔符
+     * @param stripDelimiter 输出的帧是否去掉分隔符
+     * @param maxFrameLength 最大帧长度(不含分隔符)，超出仍未找到分隔符视为数据错误
+     */
+    public DelimiterFrameDecoder(byte[] delimiter, boolean stripDelimiter, int maxFrameLength) {
+        if (delimiter == null || delimiter.length == 0) {
+            throw new IllegalArgumentException("delimiter is empty");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive: " + maxFrameLength);
+        }
+        this.delimiter = delimiter.clone();
+        this.stripDelimiter = stripDelimiter;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public void decode(RingBuffer in, FrameHandler handler) throws IOException {
+        while (true) {
+            int index = in.indexOf(delimiter);
+            if (index < 0) {
+                if (in.readableBytes() > maxFrameLength + delimiter.length) {
+                    throw new IOException("Frame length exceeds " + maxFrameLength);
+                }
+                return;
+            }
+            if (index > maxFrameLength) {
+                throw new IOException("Frame length exceeds " + maxFrameLength);
+            }
+            if (stripDelimiter) {
+                in.readFrame(index, handler);
+                in.skip(delimiter.length);
+            } else {
+                in.readFrame(index + delimiter.length, handler);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.monsent.commons.socket;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * 服务发现报文：魔数(4) + 类型(1) + 服务名长度(2) + 服务名(UTF-8) + 端口号(2) + 有效期秒数(4)，大端序
+ */
+class DiscoveryPacket {
+
+    final static String GROUP = "239.255.77.77";    //组播地址，仅限本地网络
+    final static int PORT = 47777;  //组播端口号
+    final static int MAX_SIZE = 512;    //报文最大长度，即接收缓冲区大小
+    private final static int HEADER_LENGTH = 13;    //服务名以外的长度
+    final static int MAX_NAME_LENGTH = MAX_SIZE - HEADER_LENGTH;   //服务名UTF-8编码后的最大长度
+    final static byte QUERY = 1;    //查询
+    final static byte ANNOUNCE = 2;     //通告
+    private final static int MAGIC = 0x4D534431;    //"MSD1"
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    final byte type;
+    final String name;  //服务名，查询时为空表示所有服务
+    final int port;     //服务端口号，查询时为0
+    final int ttlSecond;    //有效期，查询时为0
+
+    DiscoveryPacket(byte type, String name, int port, int ttlSecond) {
+        this.type = type;
+        this.name = name;
+        this.port = port;
+        this.ttlSecond = ttlSecond;
+    }
+
+    /**
+     * 检查服务名，编码后超过报文最大长度时对端收到的是截断的报文，无法解析
+     *
+     * @param name 服务名
+     */
+    static void checkName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name is null");
+        }
+        int length = name.getBytes(UTF_8).length;
+        if (length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Service name too long: " + length + " bytes, max: " + MAX_NAME_LENGTH);
+        }
+    }
+
+    byte[] encode() {
+        byte[] nameBytes = name.getBytes(UTF_8);
+        if (nameBytes.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Service name too long: " + nameBytes.length + " bytes, max: "
+                    + MAX_NAME_LENGTH);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + nameBytes.length);
+        buffer.putInt(MAGIC).put(type).putShort((short) nameBytes.length).put(nameBytes)
+                .putShort((short) port).putInt(ttlSecond);
+        return buffer.array();
+    }
+
+    /**
+     * 解析报文
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @return 报文，不是服务发现报文时为null
+     */
+    static DiscoveryPacket decode(byte[] bytes, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                return null;
+            }
+            byte type = buffer.get();
+            if (type != QUERY && type != ANNOUNCE) {
+                return null;
+            }
+            byte[] nameBytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(nameBytes);
+            int port = buffer.getShort() & 0xFFFF;
+            int ttlSecond = buffer.getInt();
+            return new DiscoveryPacket(type, new String(nameBytes, UTF_8), port, ttlSecond);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NIO事件循环：单线程 + Selector，只在通道就绪或有任务投递时唤醒
+ */
+class EventLoop implements Runnable {
+
+    /**
+     * 就绪事件处理器，作为SelectionKey的attachment注册
+     */
+    interface Handler {
+
+        void onSelected(SelectionKey key);
+
+    }
+
+    /**
+     * 事件循环异常处理
+     */
+    interface ErrorHandler {
+
+        void onError(Exception e);
+
+    }
+
+    private final static long SELECT_TIMEOUT = 1000L;   //select最长阻塞时长(毫秒)
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();  //待执行任务
+    private final AtomicBoolean wakenUp = new AtomicBoolean(false);    //是否已唤醒selector
+    private final AtomicInteger connectionCount = new AtomicInteger(0);    //所属连接数
+    private final String name;
+    private final ErrorHandler errorHandler;
+    private final Object terminationLock = new Object();   //退出后执行剩余任务的锁
+    private volatile boolean running = false;
+    private volatile boolean terminated = false;    //线程已退出或未启动即停止
+    private volatile Thread thread;
+
+    EventLoop(String name, ErrorHandler errorHandler) throws IOException {
+        this.name = name;
+        this.errorHandler = errorHandler;
+        this.selector = Selector.open();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * 启动事件循环线程
+     */
+    void start() {
+        running = true;
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    /**
+     * 当前线程是否为事件循环线程；退出后正在执行剩余任务的线程视同事件循环线程
+     *
+     * @return 是否
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread || (terminated && Thread.holdsLock(terminationLock));
+    }
+
+    /**
+     * 投递任务到事件循环线程执行；事件循环已退出时由调用线程执行，关闭、释放等任务不会丢失
+     *
+     * @param task 任务
+     */
+    void execute(Runnable task) {
+        tasks.offer(task);
+        if (terminated) {
+            //正在执行剩余任务时由外层继续取出
+            if (!Thread.holdsLock(terminationLock)) {
+                runRemainingTasks();
+            }
+            return;
+        }
+        if (!inEventLoop() && wakenUp.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 停止事件循环，线程退出时关闭selector；未启动时直接关闭selector并执行已投递的任务
+     */
+    void shutdown() {
+        running = false;
+        if (thread == null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                handleError(e);
+            }
+            terminated = true;
+            runRemainingTasks();
+            return;
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * 所属连接数，用于按负载分配新连接
+     *
+     * @return 连接数
+     */
+    int connectionCount() {
+        return connectionCount.get();
+    }
+
+    void connectionAdded() {
+        connectionCount.incrementAndGet();
+    }
+
+    void connectionRemoved() {
+        connectionCount.decrementAndGet();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select(SELECT_TIMEOUT);
+                wakenUp.set(false);
+                processSelectedKeys();
+                runTasks();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Exception e) {
+                handleError(e);
+            }
+        }
+        //先标记退出，之后投递的任务由投递线程执行
+        terminated = true;
+        runRemainingTasks();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            handleError(e);
+        }
+    }
+
+    /**
+     * 处理就绪的通道
+     */
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            Handler handler = (Handler) key.attachment();
+            try {
+                handler.onSelected(key);
+            } catch (Exception e) {
+                handleError(e);
+            }
+        }
+    }
+
+    /**
+     * 执行投递的任务
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                handleError(e);
+            }
+        }
+    }
+
+    /**
+     * 事件循环退出后执行剩余任务，加锁保证任务之间仍串行
+     */
+    private void runRemainingTasks() {
+        synchronized (terminationLock) {
+            runTasks();
+        }
+    }
+
+    /**
+     * 错误处理
+     *
+     * @param e 异常
+     */
+    private void handleError(Exception e) {
+        if (errorHandler != null) {
+            try {
+                errorHandler.onError(e);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+}
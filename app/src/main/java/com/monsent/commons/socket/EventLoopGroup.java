@@ -0,0 +1,77 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组事件循环，新连接按{@link WorkerChooser}分配到其中之一，连接的读写始终在所分配的线程执行
+ */
+class EventLoopGroup {
+
+    private final EventLoop[] loops;
+    private final WorkerChooser chooser;
+    private final AtomicInteger index = new AtomicInteger(0);   //轮询位置
+
+    /**
+     * @param name         线程名前缀
+     * @param count        事件循环数
+     * @param chooser      分配方式
+     * @param errorHandler 异常处理
+     * @throws IOException 创建Selector失败
+     */
+    EventLoopGroup(String name, int count, WorkerChooser chooser, EventLoop.ErrorHandler errorHandler)
+            throws IOException {
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be positive: " + count);
+        }
+        this.chooser = chooser == null ? WorkerChooser.ROUND_ROBIN : chooser;
+        this.loops = new EventLoop[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                loops[i] = new EventLoop(name + "-" + i, errorHandler);
+            } catch (IOException e) {
+                for (int j = 0; j < i; j++) {
+                    loops[j].shutdown();
+                }
+                throw e;
+            }
+        }
+    }
+
+    void start() {
+        for (EventLoop loop : loops) {
+            loop.start();
+        }
+    }
+
+    void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+
+    /**
+     * 选择新连接所属的事件循环
+     *
+     * @return 事件循环
+     */
+    EventLoop next() {
+        if (loops.length == 1) {
+            return loops[0];
+        }
+        if (chooser == WorkerChooser.LEAST_CONNECTIONS) {
+            //从轮询位置开始比较，连接数相同时依次分散
+            int start = (index.getAndIncrement() & Integer.MAX_VALUE) % loops.length;
+            EventLoop least = loops[start];
+            for (int i = 1; i < loops.length; i++) {
+                EventLoop loop = loops[(start + i) % loops.length];
+                if (loop.connectionCount() < least.connectionCount()) {
+                    least = loop;
+                }
+            }
+            return least;
+        }
+        return loops[(index.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 待发送的文件区间，由{@link FileChannel#transferTo(long, long, WritableByteChannel)}直接发送，
+ * 文件内容不经过用户态缓冲区
+ */
+class FileRegion {
+
+    private final FileChannel file;
+    private final long position;    //起始位置
+    private final long count;   //发送字节数
+    private final boolean closeOnComplete;  //发送结束后是否关闭文件
+    private final ProgressListener listener;
+    private long transferred = 0;
+
+    FileRegion(FileChannel file, long position, long count, boolean closeOnComplete, ProgressListener listener) {
+        this.file = file;
+        this.position = position;
+        this.count = count;
+        this.closeOnComplete = closeOnComplete;
+        this.listener = listener;
+    }
+
+    long count() {
+        return count;
+    }
+
+    boolean isComplete() {
+        return transferred >= count;
+    }
+
+    /**
+     * 发送剩余数据，非阻塞通道可能只发送部分
+     *
+     * @param target 目标通道
+     * @return 本次发送的字节数
+     * @throws IOException 发送失败或文件长度不足
+     */
+    long transferTo(WritableByteChannel target) throws IOException {
+        if (isComplete()) {
+            return 0;
+        }
+        long written = file.transferTo(position + transferred, count - transferred, target);
+        if (written == 0 && position + transferred >= file.size()) {
+            throw new IOException("File truncated, transferred " + transferred + " of " + count);
+        }
+        transferred += written;
+        if (written > 0 && listener != null) {
+            try {
+                listener.onProgress(transferred, count);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 发送结束，关闭由本类打开的文件
+     */
+    void release() {
+        if (closeOnComplete) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.monsent.commons.socket;
+
+/**
+ * 定长帧解码器
+ */
+public class FixedLengthFrameDecoder implements FrameDecoder {
+
+    private final int frameLength;  //帧长度
+
+    /**
+     * @param frameLength 帧长度
+     */
+    public FixedLengthFrameDecoder(int frameLength) {
+        if (frameLength <= 0) {
+            throw new IllegalArgumentException("frameLength must be positive: " + frameLength);
+        }
+        this.frameLength = frameLength;
+    }
+
+    @Override
+    public void decode(RingBuffer in, FrameHandler handler) {
+        while (in.readableBytes() >= frameLength) {
+            in.readFrame(frameLength, handler);
+        }
+    }
+
+}
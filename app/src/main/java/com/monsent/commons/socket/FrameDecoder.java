@@ -0,0 +1,29 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+
+/**
+ * 帧解码器：从累积的接收数据中切分出完整帧，不完整的数据留在缓冲区等待后续数据。
+ * 解码器不保存连接状态，可被多个连接共享
+ */
+public interface FrameDecoder {
+
+    /**
+     * 帧处理，bytes在回调返回后可能被复用，需保留数据时自行拷贝
+     */
+    interface FrameHandler {
+
+        void onFrame(byte[] bytes, int offset, int length);
+
+    }
+
+    /**
+     * 解出所有完整帧
+     *
+     * @param in      累积缓冲区
+     * @param handler 帧处理
+     * @throws IOException 数据不符合帧格式
+     */
+    void decode(RingBuffer in, FrameHandler handler) throws IOException;
+
+}
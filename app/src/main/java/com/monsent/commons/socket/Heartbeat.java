@@ -0,0 +1,87 @@
+package com.monsent.commons.socket;
+
+/**
+ * 应用层心跳配置：每隔intervalMillis发送ping，收到ping自动回复pong，收到pong时记录往返时延；
+ * 超过timeoutMillis未收到任何数据即断开连接。心跳帧不交付给接收回调，须配合帧解码器使用，
+ * 保证心跳是独立的帧，未设置帧解码器时设置心跳抛出IllegalStateException；默认按内容逐字节匹配，帧解码器剥离帧头等情况可重写{@link #isPing}、{@link #isPong}
+ */
+public class Heartbeat {
+
+    private final byte[] ping;
+    private final byte[] pong;
+    private final long intervalMillis;  //发送ping的间隔
+    private final long timeoutMillis;   //未收到数据断开的时长
+
+    /**
+     * @param ping           发送的ping，已按协议编码
+     * @param pong           回复的pong，已按协议编码
+     * @param intervalMillis 发送ping的间隔(毫秒)
+     * @param timeoutMillis  未收到任何数据断开的时长(毫秒)，应大于intervalMillis
+     */
+    public Heartbeat(byte[] ping, byte[] pong, long intervalMillis, long timeoutMillis) {
+        if (ping == null || pong == null || ping.length == 0 || pong.length == 0) {
+            throw new IllegalArgumentException("ping and pong must not be empty");
+        }
+        if (intervalMillis <= 0 || timeoutMillis <= intervalMillis) {
+            throw new IllegalArgumentException("Invalid heartbeat, interval: " + intervalMillis
+                    + ", timeout: " + timeoutMillis);
+        }
+        this.ping = ping.clone();
+        this.pong = pong.clone();
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    byte[] ping() {
+        return ping;
+    }
+
+    byte[] pong() {
+        return pong;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 收到的帧是否为ping，在读线程调用
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @return 是否
+     */
+    public boolean isPing(byte[] bytes, int offset, int length) {
+        return equals(ping, bytes, offset, length);
+    }
+
+    /**
+     * 收到的帧是否为pong，在读线程调用
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @return 是否
+     */
+    public boolean isPong(byte[] bytes, int offset, int length) {
+        return equals(pong, bytes, offset, length);
+    }
+
+    private static boolean equals(byte[] expected, byte[] bytes, int offset, int length) {
+        if (expected.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (expected[i] != bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
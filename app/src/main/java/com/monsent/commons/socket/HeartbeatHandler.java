@@ -0,0 +1,141 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个连接的心跳：由时间轮定时发送ping并检查超时，读到数据时只更新时间戳；
+ * 超时及往返时延均按System.nanoTime计算，不受系统时钟调整影响
+ */
+class HeartbeatHandler implements Runnable {
+
+    /**
+     * 心跳所属的连接
+     */
+    interface Channel {
+
+        void sendHeartbeat(byte[] bytes);
+
+        void onHeartbeatTimeout();
+
+    }
+
+    private final Heartbeat heartbeat;
+    private final HashedWheelTimer timer;
+    private final ConnectionMetrics metrics;
+    private final Channel channel;
+    private volatile long lastReadNanos;     //最近一次读到数据的时间(System.nanoTime)
+    private boolean pingTimed = false;  //是否有用于测量往返时延的ping，由this保护
+    private long pingNanos;     //用于测量往返时延的ping的发送时间，由this保护
+    private int outstandingPings = 0;   //已发送未收到pong的ping数，由this保护
+    private volatile long rttNanos = -1;    //最近一次往返时延
+    private volatile boolean stopped = true;
+    private Timeout timeout;
+
+    HeartbeatHandler(Heartbeat heartbeat, HashedWheelTimer timer, ConnectionMetrics metrics, Channel channel) {
+        this.heartbeat = heartbeat;
+        this.timer = timer;
+        this.metrics = metrics;
+        this.channel = channel;
+    }
+
+    synchronized void start() {
+        if (!stopped) {
+            return;
+        }
+        stopped = false;
+        lastReadNanos = System.nanoTime();
+        pingTimed = false;
+        outstandingPings = 0;
+        timeout = timer.newTimeout(this, heartbeat.getIntervalMillis());
+    }
+
+    synchronized void stop() {
+        stopped = true;
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
+
+    /**
+     * 记录读到数据
+     */
+    void onRead() {
+        lastReadNanos = System.nanoTime();
+    }
+
+    /**
+     * 处理收到的帧，ping回复pong，pong记录往返时延；pong按ping的发送顺序到达，
+     * 只测量发送时没有其它等待中ping的那一个，前一个ping未回复时发送的ping不测量，避免与较新的ping配对而低估时延
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     * @return 是否为心跳帧，心跳帧不再交付给接收回调
+     */
+    boolean onFrame(byte[] bytes, int offset, int length) {
+        if (heartbeat.isPong(bytes, offset, length)) {
+            boolean timed;
+            long sent;
+            synchronized (this) {
+                if (outstandingPings == 0) {
+                    //未发送ping时收到的pong
+                    return true;
+                }
+                outstandingPings--;
+                timed = pingTimed;
+                sent = pingNanos;
+                pingTimed = false;
+            }
+            if (timed) {
+                long rtt = System.nanoTime() - sent;
+                rttNanos = rtt;
+                metrics.onRtt(rtt);
+            }
+            return true;
+        }
+        if (heartbeat.isPing(bytes, offset, length)) {
+            channel.sendHeartbeat(heartbeat.pong());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 最近一次往返时延
+     *
+     * @return 时延(纳秒)，尚未测得时为-1
+     */
+    long getRttNanos() {
+        return rttNanos;
+    }
+
+    @Override
+    public void run() {
+        if (stopped) {
+            return;
+        }
+        long idleNanos = System.nanoTime() - lastReadNanos;
+        if (idleNanos >= TimeUnit.MILLISECONDS.toNanos(heartbeat.getTimeoutMillis())) {
+            stop();
+            channel.onHeartbeatTimeout();
+            return;
+        }
+        synchronized (this) {
+            if (outstandingPings++ == 0) {
+                pingTimed = true;
+                pingNanos = System.nanoTime();
+            }
+        }
+        channel.sendHeartbeat(heartbeat.ping());
+        synchronized (this) {
+            if (!stopped) {
+                timeout = timer.newTimeout(this, heartbeat.getIntervalMillis());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.monsent.commons.socket;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁耗时直方图：按2的幂分段、每段再线性分为8个子桶，相对误差不超过12.5%；
+ * 记录只做数组下标计算和原子自增，可在I/O线程常开
+ */
+public class LatencyHistogram {
+
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;    //每段子桶数
+    private final static int MAX_BITS = 42;     //可区分的最大耗时约73分钟，超出计入最后一个桶
+    private final static long MAX_VALUE = (1L << MAX_BITS) - 1;
+    private final static int BUCKET_COUNT = (MAX_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong sum = new AtomicLong(0);
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时(纳秒)，负数按0计
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+        buckets.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 累加另一直方图的记录
+     *
+     * @param other 直方图
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long n = other.buckets.get(i);
+            if (n > 0) {
+                buckets.addAndGet(i, n);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        long otherMax = other.max.get();
+        long current;
+        while (otherMax > (current = max.get())) {
+            if (max.compareAndSet(current, otherMax)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 当前记录的快照，记录期间取快照各字段可能相差正在进行的几次记录
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts, count.get(), sum.get(), max.get());
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * 桶的上界
+     *
+     * @param index 桶下标
+     * @return 上界(纳秒)
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long sub = SUB_BUCKETS + (index & (SUB_BUCKETS - 1));
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * 直方图快照，不可变
+     */
+    public static class Snapshot {
+
+        final static Snapshot EMPTY = new Snapshot(new long[0], 0, 0, 0);   //没有记录
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * 记录次数
+         *
+         * @return 次数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 平均耗时
+         *
+         * @return 耗时(纳秒)，无记录时为0
+         */
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * 最大耗时
+         *
+         * @return 耗时(纳秒)
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 分位耗时，取所在桶的上界且不超过最大值
+         *
+         * @param quantile 分位，0~1，如0.99
+         * @return 耗时(纳秒)，无记录时为0
+         */
+        public long getPercentile(double quantile) {
+            long total = 0;
+            for (long n : counts) {
+                total += n;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(Math.min(Math.max(quantile, 0d), 1d) * total);
+            rank = Math.max(rank, 1L);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + getMean() + "ns, p50=" + getPercentile(0.5)
+                    + "ns, p99=" + getPercentile(0.99) + "ns, p999=" + getPercentile(0.999) + "ns, max=" + max + "ns";
+        }
+
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+/**
+ * 长度前缀帧解码器，长度字段为1、2或4字节无符号整数
+ */
+public class LengthFieldFrameDecoder implements FrameDecoder {
+
+    private final static int DEFAULT_MAX_FRAME_LENGTH = 1024 * 1024;   //默认最大帧长度
+    private final int lengthFieldSize;  //长度字段字节数
+    private final ByteOrder byteOrder;  //长度字段字节序
+    private final boolean lengthIncludesHeader;     //长度值是否包含长度字段本身
+    private final boolean stripHeader;  //输出的帧是否去掉长度字段
+    private final int maxFrameLength;   //最大帧长度(不含长度字段)
+
+    /**
+     * 大端、长度不含长度字段、输出去掉长度字段
+     *
+     * @param lengthFieldSize 长度字段字节数，1、2或4
+     */
+    public LengthFieldFrameDecoder(int lengthFieldSize) {
+        this(lengthFieldSize, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * 长度不含长度字段、输出去掉长度字段
+     *
+     * @param lengthFieldSize 长度字段字节数，1、2或4
+     * @param byteOrder       字节序
+     */
+    public LengthFieldFrameDecoder(int lengthFieldSize, ByteOrder byteOrder) {
+        this(lengthFieldSize, byteOrder, false, true, DEFAULT_MAX_FRAME_LENGTH);
+    }
+
+    /**
+     * @param lengthFieldSize      长度字段字节数，1、2或4
+     * @param byteOrder            字节序
+     * @param lengthIncludesHeader 长度值是否包含长度字段本身
+     * @param stripHeader          输出的帧是否去掉长度字段
+     * @param maxFrameLength       最大帧长度(不含长度字段)，超出视为数据错误
+     */
+    public LengthFieldFrameDecoder(int lengthFieldSize, ByteOrder byteOrder, boolean lengthIncludesHeader,
+                                   boolean stripHeader, int maxFrameLength) {
+        if (lengthFieldSize != 1 && lengthFieldSize != 2 && lengthFieldSize != 4) {
+            throw new IllegalArgumentException("lengthFieldSize must be 1, 2 or 4: " + lengthFieldSize);
+        }
+        if (byteOrder == null) {
+            throw new IllegalArgumentException("byteOrder is null");
+        }
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("maxFrameLength must be positive: " + maxFrameLength);
+        }
+        this.lengthFieldSize = lengthFieldSize;
+        this.byteOrder = byteOrder;
+        this.lengthIncludesHeader = lengthIncludesHeader;
+        this.stripHeader = stripHeader;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    public void decode(RingBuffer in, FrameHandler handler) throws IOException {
+        while (in.readableBytes() >= lengthFieldSize) {
+            long bodyLength = getLength(in);
+            if (lengthIncludesHeader) {
+                bodyLength -= lengthFieldSize;
+            }
+            if (bodyLength < 0 || bodyLength > maxFrameLength) {
+                throw new IOException("Invalid frame length: " + bodyLength);
+            }
+            int frameLength = lengthFieldSize + (int) bodyLength;
+            if (in.readableBytes() < frameLength) {
+                return;
+            }
+            if (stripHeader) {
+                in.skip(lengthFieldSize);
+                in.readFrame((int) bodyLength, handler);
+            } else {
+                in.readFrame(frameLength, handler);
+            }
+        }
+    }
+
+    /**
+     * 读取长度字段的值
+     *
+     * @param in 累积缓冲区
+     * @return 长度
+     */
+    private long getLength(RingBuffer in) {
+        long length = 0;
+        for (int i = 0; i < lengthFieldSize; i++) {
+            int index = byteOrder == ByteOrder.BIG_ENDIAN ? i : lengthFieldSize - 1 - i;
+            length = (length << 8) | (in.getByte(index) & 0xFF);
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.monsent.commons.socket;
+
+/**
+ * 连接或服务端的流量及耗时统计快照，不可变，可直接导出
+ */
+public class MetricsSnapshot {
+
+    private final int connections;
+    private final long bytesRead;
+    private final long bytesWritten;
+    private final long messagesRead;
+    private final long messagesWritten;
+    private final long readCalls;
+    private final long writeCalls;
+    private final long pendingBytes;
+    private final long pendingMessages;
+    private final LatencyHistogram.Snapshot readLatency;
+    private final LatencyHistogram.Snapshot writeLatency;
+    private final LatencyHistogram.Snapshot rtt;
+
+    MetricsSnapshot(int connections, long bytesRead, long bytesWritten, long messagesRead, long messagesWritten,
+                    long readCalls, long writeCalls, long pendingBytes, long pendingMessages,
+                    LatencyHistogram.Snapshot readLatency, LatencyHistogram.Snapshot writeLatency,
+                    LatencyHistogram.Snapshot rtt) {
+        this.connections = connections;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.messagesRead = messagesRead;
+        this.messagesWritten = messagesWritten;
+        this.readCalls = readCalls;
+        this.writeCalls = writeCalls;
+        this.pendingBytes = pendingBytes;
+        this.pendingMessages = pendingMessages;
+        this.readLatency = readLatency;
+        this.writeLatency = writeLatency;
+        this.rtt = rtt;
+    }
+
+    /**
+     * 当前连接数
+     *
+     * @return 连接数
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * 接收字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * 发送字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * 交付回调的消息数，设置帧解码器时为帧数，否则为读取次数
+     *
+     * @return 消息数
+     */
+    public long getMessagesRead() {
+        return messagesRead;
+    }
+
+    /**
+     * 全部写出的消息数，每次write或sendFile为一条
+     *
+     * @return 消息数
+     */
+    public long getMessagesWritten() {
+        return messagesWritten;
+    }
+
+    /**
+     * 读系统调用次数
+     *
+     * @return 次数
+     */
+    public long getReadCalls() {
+        return readCalls;
+    }
+
+    /**
+     * 写系统调用次数，一次聚集写计为一次
+     *
+     * @return 次数
+     */
+    public long getWriteCalls() {
+        return writeCalls;
+    }
+
+    /**
+     * 待发送队列中的字节数
+     *
+     * @return 字节数
+     */
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * 待发送队列中的消息数
+     *
+     * @return 消息数
+     */
+    public long getPendingMessages() {
+        return pendingMessages;
+    }
+
+    /**
+     * 读到数据至交付回调的耗时分布
+     *
+     * @return 耗时分布
+     */
+    public LatencyHistogram.Snapshot getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * 加入待发送队列至全部写出的耗时分布
+     *
+     * @return 耗时分布
+     */
+    public LatencyHistogram.Snapshot getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * 心跳往返时延分布，未设置心跳时为空
+     *
+     * @return 时延分布
+     */
+    public LatencyHistogram.Snapshot getRtt() {
+        return rtt;
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + connections
+                + ", bytesRead=" + bytesRead
+                + ", bytesWritten=" + bytesWritten
+                + ", messagesRead=" + messagesRead
+                + ", messagesWritten=" + messagesWritten
+                + ", readCalls=" + readCalls
+                + ", writeCalls=" + writeCalls
+                + ", pendingBytes=" + pendingBytes
+                + ", pendingMessages=" + pendingMessages
+                + ", readLatency={" + readLatency + "}"
+                + ", writeLatency={" + writeLatency + "}"
+                + ", rtt={" + rtt + "}";
+    }
+
+}
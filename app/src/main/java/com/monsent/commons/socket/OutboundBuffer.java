@@ -0,0 +1,301 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 连接的待发送队列，按字节数限长，由单一写线程以聚集写(gathering write)批量写出，文件区间零拷贝发送；
+ * 待发送字节数超过高水位后不可写，写出到低水位及以下后恢复可写，供生产者据此限速
+ */
+class OutboundBuffer {
+
+    private final static int MAX_GATHER = 64;   //单次聚集写最多缓冲区数
+    private final ArrayDeque<Entry> queue = new ArrayDeque<Entry>();
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];     //复用的聚集写数组，仅写线程访问
+    private final long maxPendingBytes;     //最多待发送字节数
+    private final long lowWaterMark;    //低水位
+    private final long highWaterMark;   //高水位
+    private final ConnectionMetrics metrics;
+    private long pendingBytes = 0;
+    private volatile boolean writable = true;
+    private boolean closed = false;     //已丢弃所有数据，不再接受写入
+
+    /**
+     * @param maxPendingBytes 最多待发送字节数
+     * @param lowWaterMark    低水位，待发送字节数降到该值及以下时恢复可写
+     * @param highWaterMark   高水位，待发送字节数超过该值时不可写
+     * @param metrics         写出统计
+     */
+    OutboundBuffer(long maxPendingBytes, long lowWaterMark, long highWaterMark, ConnectionMetrics metrics) {
+        this.maxPendingBytes = maxPendingBytes;
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 加入待发送队列
+     *
+     * @param buffer 数据
+     * @param future 写入结果
+     * @return 是否加入成功，超出限长或已关闭时返回false
+     */
+    synchronized boolean add(ByteBuffer buffer, WriteFuture future) {
+        int size = buffer.remaining();
+        if (closed || pendingBytes + size > maxPendingBytes && !queue.isEmpty()) {
+            return false;
+        }
+        addEntry(new Entry(buffer, future));
+        pendingBytes += size;
+        if (writable && pendingBytes > highWaterMark) {
+            writable = false;
+        }
+        return true;
+    }
+
+    /**
+     * 加入待发送的文件区间，文件不计入待发送字节数限长
+     *
+     * @param region 文件区间
+     * @param future 写入结果
+     * @return 是否加入成功，已关闭时返回false
+     */
+    synchronized boolean add(FileRegion region, WriteFuture future) {
+        if (closed) {
+            return false;
+        }
+        addEntry(new Entry(region, future));
+        return true;
+    }
+
+    private void addEntry(Entry entry) {
+        queue.addLast(entry);
+        if (queue.size() == 1) {
+            //唤醒等待数据的写线程
+            notifyAll();
+        }
+    }
+
+    /**
+     * 待发送字节数
+     *
+     * @return 字节数
+     */
+    synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    synchronized boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * 待发送消息数
+     *
+     * @return 消息数
+     */
+    synchronized int size() {
+        return queue.size();
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 是否可写，待发送字节数超过高水位后为false，写出到低水位及以下后恢复为true
+     *
+     * @return 是否可写
+     */
+    boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * 阻塞等待队列非空，供阻塞模式的写线程使用
+     *
+     * @throws InterruptedException 等待被中断
+     */
+    synchronized void awaitPending() throws InterruptedException {
+        while (queue.isEmpty()) {
+            wait();
+        }
+    }
+
+    /**
+     * 写出待发送数据，连续的缓冲区以聚集写批量写出，文件区间以transferTo零拷贝发送，
+     * 直到队列为空或通道暂时不可写；写入通道时不持有锁，阻塞通道上写出不影响其它线程加入队列。
+     * 须由单一线程调用
+     *
+     * @param channel 通道
+     * @return 写出的字节数
+     * @throws IOException 写入失败
+     */
+    long flush(GatheringByteChannel channel) throws IOException {
+        return flush(channel, Long.MAX_VALUE);
+    }
+
+    /**
+     * 写出待发送数据，写出字节数达到maxBytes后停止；缓冲区按maxBytes截断写出，文件区间单次写出可能超出maxBytes
+     *
+     * @param channel  通道
+     * @param maxBytes 本次最多写出的字节数
+     * @return 写出的字节数
+     * @throws IOException 写入失败
+     */
+    long flush(GatheringByteChannel channel, long maxBytes) throws IOException {
+        long total = 0;
+        while (total < maxBytes) {
+            Entry head;
+            int count = 0;
+            ByteBuffer limited = null;  //按剩余字节数截断的缓冲区，写出后恢复limit
+            int limit = 0;
+            synchronized (this) {
+                head = queue.peekFirst();
+                if (head == null) {
+                    break;
+                }
+                if (head.buffer != null) {
+                    long budget = maxBytes - total;
+                    for (Entry entry : queue) {
+                        if (entry.buffer == null) {
+                            break;
+                        }
+                        gather[count++] = entry.buffer;
+                        if (entry.buffer.remaining() >= budget) {
+                            if (entry.buffer.remaining() > budget) {
+                                limited = entry.buffer;
+                                limit = limited.limit();
+                                limited.limit(limited.position() + (int) budget);
+                            }
+                            break;
+                        }
+                        budget -= entry.buffer.remaining();
+                        if (count == MAX_GATHER) {
+                            break;
+                        }
+                    }
+                }
+            }
+            long written;
+            if (head.region != null) {
+                written = head.region.transferTo(channel);
+            } else {
+                try {
+                    written = channel.write(gather, 0, count);
+                } finally {
+                    if (limited != null) {
+                        limited.limit(limit);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        gather[i] = null;
+                    }
+                }
+            }
+            metrics.onWrite(written);
+            total += written;
+            boolean progressed = complete(head, written);
+            if (written == 0 && !progressed) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 移出已全部写出的数据并完成其写入结果
+     *
+     * @param head    本次写出前的队首
+     * @param written 本次写出的字节数
+     * @return 队首是否被移出
+     */
+    private boolean complete(Entry head, long written) {
+        List<Entry> completed = null;
+        synchronized (this) {
+            if (queue.peekFirst() != head) {
+                //队列已被清空
+                return false;
+            }
+            if (head.region != null) {
+                if (head.region.isComplete()) {
+                    queue.pollFirst();
+                    completed = Collections.singletonList(head);
+                }
+            } else {
+                pendingBytes -= written;
+                Entry entry;
+                while ((entry = queue.peekFirst()) != null && entry.buffer != null && !entry.buffer.hasRemaining()) {
+                    queue.pollFirst();
+                    if (completed == null) {
+                        completed = new ArrayList<Entry>();
+                    }
+                    completed.add(entry);
+                }
+                if (!writable && pendingBytes <= lowWaterMark) {
+                    writable = true;
+                }
+            }
+        }
+        if (completed == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        for (Entry entry : completed) {
+            if (entry.region != null) {
+                entry.region.release();
+            }
+            metrics.onMessageWritten(now - entry.enqueueNanos);
+            entry.future.setSuccess();
+        }
+        return true;
+    }
+
+    /**
+     * 丢弃所有待发送数据，写入结果置为失败，之后不再接受写入
+     *
+     * @param cause 失败原因
+     */
+    void failAll(Throwable cause) {
+        ArrayDeque<Entry> failed;
+        synchronized (this) {
+            failed = new ArrayDeque<Entry>(queue);
+            queue.clear();
+            pendingBytes = 0;
+            writable = true;
+            closed = true;
+        }
+        for (Entry entry : failed) {
+            if (entry.region != null) {
+                entry.region.release();
+            }
+            entry.future.setFailure(cause);
+        }
+    }
+
+    private static class Entry {
+
+        final ByteBuffer buffer;    //数据，文件区间时为null
+        final FileRegion region;    //文件区间，数据时为null
+        final WriteFuture future;
+        final long enqueueNanos = System.nanoTime();    //加入队列的时间
+
+        Entry(ByteBuffer buffer, WriteFuture future) {
+            this.buffer = buffer;
+            this.region = null;
+            this.future = future;
+        }
+
+        Entry(FileRegion region, WriteFuture future) {
+            this.buffer = null;
+            this.region = region;
+            this.future = future;
+        }
+
+    }
+
+}
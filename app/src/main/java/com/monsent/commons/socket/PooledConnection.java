@@ -0,0 +1,96 @@
+package com.monsent.commons.socket;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * 从{@link TcpClientPool}租用的连接，使用完毕后调用{@link #release()}归还，不可用时调用{@link #close()}丢弃；
+ * 归还后不应再写入
+ */
+public class PooledConnection {
+
+    private final TcpClientPool pool;
+    private final InetSocketAddress address;
+    private Connection connection;  //注册前设置
+    boolean leased = false;     //是否已租出，由所属主机的连接池锁保护
+    long idleNanos;     //归还的时间，由所属主机的连接池锁保护
+
+    PooledConnection(TcpClientPool pool, InetSocketAddress address) {
+        this.pool = pool;
+        this.address = address;
+    }
+
+    void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * 服务端地址
+     *
+     * @return 地址
+     */
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public Socket getSocket() {
+        return connection.getSocket();
+    }
+
+    public boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    /**
+     * 本连接的流量及耗时统计快照
+     *
+     * @return 快照
+     */
+    public MetricsSnapshot getMetrics() {
+        return connection.getMetrics();
+    }
+
+    /**
+     * 异步写入数据，加入待发送队列后立即返回，写入完成前bytes不可修改
+     *
+     * @param bytes 字节数组
+     * @param off   起始位
+     * @param len   长度
+     * @return 写入结果
+     */
+    public WriteFuture write(byte[] bytes, int off, int len) {
+        if (bytes == null) {
+            return WriteFuture.failed(new IllegalArgumentException("bytes is null"));
+        }
+        return connection.write(ByteBuffer.wrap(bytes, off, len));
+    }
+
+    public WriteFuture write(byte[] bytes) {
+        return write(bytes, 0, bytes == null ? 0 : bytes.length);
+    }
+
+    /**
+     * 归还到连接池，供其它调用方复用
+     */
+    public void release() {
+        pool.release(this);
+    }
+
+    /**
+     * 关闭并从连接池移除
+     */
+    public void close() {
+        pool.discard(this);
+    }
+
+    @Override
+    public String toString() {
+        return "PooledConnection{" + address + ", id=" + System.identityHashCode(this) + "}";
+    }
+
+}
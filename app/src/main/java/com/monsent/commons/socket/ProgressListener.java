@@ -0,0 +1,14 @@
+package com.monsent.commons.socket;
+
+/**
+ * 发送进度回调，在执行发送的线程调用，不应执行耗时操作
+ */
+public interface ProgressListener {
+
+    /**
+     * @param transferred 已发送字节数
+     * @param total       总字节数
+     */
+    void onProgress(long transferred, long total);
+
+}
@@ -0,0 +1,52 @@
+package com.monsent.commons.socket;
+
+/**
+ * 令牌桶限速配置：按字节数、消息数两个维度限速，任一维度超限即暂停该方向的读取或写出，
+ * 欠下的令牌补足后自动恢复，数据不丢弃。桶容量为burstMillis内的配额，允许短时突发
+ */
+public class RateLimit {
+
+    private final static long DEFAULT_BURST_MILLIS = 1000L;     //默认突发时长
+
+    private final long bytesPerSecond;
+    private final long messagesPerSecond;
+    private final long burstMillis;
+
+    /**
+     * 桶容量为1秒的配额
+     *
+     * @param bytesPerSecond    每秒字节数，0为不限制
+     * @param messagesPerSecond 每秒消息数，0为不限制
+     */
+    public RateLimit(long bytesPerSecond, long messagesPerSecond) {
+        this(bytesPerSecond, messagesPerSecond, DEFAULT_BURST_MILLIS);
+    }
+
+    /**
+     * @param bytesPerSecond    每秒字节数，0为不限制
+     * @param messagesPerSecond 每秒消息数，0为不限制
+     * @param burstMillis       桶容量对应的时长(毫秒)
+     */
+    public RateLimit(long bytesPerSecond, long messagesPerSecond, long burstMillis) {
+        if (bytesPerSecond < 0 || messagesPerSecond < 0 || burstMillis <= 0) {
+            throw new IllegalArgumentException("Invalid rate limit, bytes: " + bytesPerSecond
+                    + ", messages: " + messagesPerSecond + ", burst: " + burstMillis);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.messagesPerSecond = messagesPerSecond;
+        this.burstMillis = burstMillis;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public long getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public long getBurstMillis() {
+        return burstMillis;
+    }
+
+}
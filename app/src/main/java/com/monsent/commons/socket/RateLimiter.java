@@ -0,0 +1,78 @@
+package com.monsent.commons.socket;
+
+/**
+ * 单方向的限速器，由字节数、消息数两个令牌桶组成；可指定上级限速器(如服务端全局限速)，
+ * 取令牌时同时从上级扣除，取两者中较长的暂停时长
+ */
+class RateLimiter {
+
+    private final TokenBucket bytes;    //字节数令牌桶，null为不限制
+    private final TokenBucket messages;     //消息数令牌桶，null为不限制
+    private final RateLimiter parent;   //上级限速器，可为null
+
+    private RateLimiter(RateLimit limit, RateLimiter parent) {
+        this.bytes = limit == null || limit.getBytesPerSecond() == 0 ? null
+                : new TokenBucket(limit.getBytesPerSecond(), limit.getBurstMillis());
+        this.messages = limit == null || limit.getMessagesPerSecond() == 0 ? null
+                : new TokenBucket(limit.getMessagesPerSecond(), limit.getBurstMillis());
+        this.parent = parent;
+    }
+
+    /**
+     * 创建限速器
+     *
+     * @param limit  本级限速，可为null
+     * @param parent 上级限速器，可为null
+     * @return 限速器，均不限速时为null
+     */
+    static RateLimiter create(RateLimit limit, RateLimiter parent) {
+        if (limit == null || limit.getBytesPerSecond() == 0 && limit.getMessagesPerSecond() == 0) {
+            return parent;
+        }
+        return new RateLimiter(limit, parent);
+    }
+
+    /**
+     * 取令牌，不足时透支
+     *
+     * @param byteCount    字节数
+     * @param messageCount 消息数
+     * @param now          当前时刻(纳秒)
+     * @return 应暂停的时长(纳秒)，未透支为0
+     */
+    long acquire(long byteCount, long messageCount, long now) {
+        long delay = 0;
+        if (bytes != null) {
+            delay = bytes.acquire(byteCount, now);
+        }
+        if (messages != null) {
+            delay = Math.max(delay, messages.acquire(messageCount, now));
+        }
+        if (parent != null) {
+            delay = Math.max(delay, parent.acquire(byteCount, messageCount, now));
+        }
+        return delay;
+    }
+
+    /**
+     * 应暂停的时长
+     *
+     * @param now 当前时刻(纳秒)
+     * @return 时长(纳秒)，未透支为0
+     */
+    long delay(long now) {
+        return acquire(0, 0, now);
+    }
+
+    /**
+     * 不透支时最多可用的字节数
+     *
+     * @param now 当前时刻(纳秒)
+     * @return 字节数，不限制字节数时为Long.MAX_VALUE
+     */
+    long availableBytes(long now) {
+        long available = bytes == null ? Long.MAX_VALUE : bytes.available(now);
+        return parent == null ? available : Math.min(available, parent.availableBytes(now));
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.monsent.commons.socket;
+
+import java.util.Random;
+
+/**
+ * 断线重连策略：指数退避加随机抖动，避免网络抖动后大量客户端同时重连；连接成功后重新计数
+ */
+public class ReconnectPolicy {
+
+    private final static double DEFAULT_MULTIPLIER = 2d;
+    private final static double DEFAULT_JITTER = 0.2d;
+    private final long initialDelayMillis;  //首次重连延迟
+    private final long maxDelayMillis;  //最大重连延迟
+    private final double multiplier;    //延迟增长倍数
+    private final double jitter;    //随机抖动比例
+    private final int maxAttempts;  //最多连续重连次数，0为不限
+    private final boolean bufferWrites;     //重连期间是否缓存写入
+    private final Random random = new Random();
+
+    /**
+     * 延迟每次翻倍、随机抖动±20%，重连期间不缓存写入
+     *
+     * @param initialDelayMillis 首次重连延迟(毫秒)
+     * @param maxDelayMillis     最大重连延迟(毫秒)
+     * @param maxAttempts        最多连续重连次数，0为不限
+     */
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, int maxAttempts) {
+        this(initialDelayMillis, maxDelayMillis, DEFAULT_MULTIPLIER, DEFAULT_JITTER, maxAttempts, false);
+    }
+
+    /**
+     * @param initialDelayMillis 首次重连延迟(毫秒)
+     * @param maxDelayMillis     最大重连延迟(毫秒)
+     * @param multiplier         延迟增长倍数，不小于1
+     * @param jitter             随机抖动比例，0~1，实际延迟在计算值的(1-jitter)~(1+jitter)倍之间
+     * @param maxAttempts        最多连续重连次数，0为不限
+     * @param bufferWrites       重连期间是否缓存写入，缓存的数据在重连成功后发送，受最多待发送字节数限制
+     */
+    public ReconnectPolicy(long initialDelayMillis, long maxDelayMillis, double multiplier, double jitter,
+                           int maxAttempts, boolean bufferWrites) {
+        if (initialDelayMillis < 0 || maxDelayMillis < initialDelayMillis) {
+            throw new IllegalArgumentException("Invalid delay, initial: " + initialDelayMillis + ", max: " + maxDelayMillis);
+        }
+        if (multiplier < 1d) {
+            throw new IllegalArgumentException("multiplier must not be less than 1: " + multiplier);
+        }
+        if (jitter < 0d || jitter > 1d) {
+            throw new IllegalArgumentException("jitter out of range: " + jitter);
+        }
+        if (maxAttempts < 0) {
+            throw new IllegalArgumentException("maxAttempts must not be negative: " + maxAttempts);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.maxAttempts = maxAttempts;
+        this.bufferWrites = bufferWrites;
+    }
+
+    /**
+     * 第attempt次重连前的延迟
+     *
+     * @param attempt 连续重连次数，从1开始
+     * @return 延迟(毫秒)
+     */
+    public long nextDelay(int attempt) {
+        double delay = initialDelayMillis * Math.pow(multiplier, Math.max(attempt - 1, 0));
+        delay = Math.min(delay, maxDelayMillis);
+        if (jitter > 0) {
+            delay *= 1d - jitter + 2d * jitter * random.nextDouble();
+        }
+        return Math.min((long) delay, maxDelayMillis);
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isBufferWrites() {
+        return bufferWrites;
+    }
+
+}
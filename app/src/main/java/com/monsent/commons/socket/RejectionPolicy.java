@@ -0,0 +1,21 @@
+package com.monsent.commons.socket;
+
+/**
+ * 连接的回调队列已满时的处理方式
+ */
+public enum RejectionPolicy {
+
+    /**
+     * 丢弃该消息
+     */
+    DROP,
+    /**
+     * 断开该连接
+     */
+    DISCONNECT,
+    /**
+     * 暂停读取该连接，回调队列处理到一半以下后恢复；数据积压在socket缓冲区，由TCP流量控制使对端减速
+     */
+    PAUSE_READ
+
+}
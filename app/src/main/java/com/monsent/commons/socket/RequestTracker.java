@@ -0,0 +1,105 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.timer.HashedWheelTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 在途请求表：按关联ID匹配响应，超时由共享的时间轮定时器处理，同一连接可同时有多个请求在途
+ */
+class RequestTracker {
+
+    private final ConcurrentHashMap<Long, ResponseFuture> pending = new ConcurrentHashMap<Long, ResponseFuture>();    //关联ID、在途请求键值对
+
+    /**
+     * 登记请求，须在发出请求前调用，避免响应先于登记到达
+     *
+     * @param correlationId 关联ID，不可为负数
+     * @param timer         超时定时器
+     * @param timeoutMillis 超时时长(毫秒)，0为不超时
+     * @return 响应结果，关联ID已在途时为失败的结果
+     */
+    ResponseFuture register(final long correlationId, HashedWheelTimer timer, long timeoutMillis) {
+        if (correlationId < 0) {
+            return ResponseFuture.failed(correlationId,
+                    new IllegalArgumentException("correlationId must not be negative: " + correlationId));
+        }
+        final ResponseFuture future = new ResponseFuture(correlationId);
+        if (pending.putIfAbsent(correlationId, future) != null) {
+            return ResponseFuture.failed(correlationId,
+                    new IllegalStateException("Request already in flight, correlationId: " + correlationId));
+        }
+        if (timeoutMillis > 0) {
+            future.timeout = timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    if (pending.remove(correlationId, future)) {
+                        future.setFailure(new TimeoutException("Request timeout, correlationId: " + correlationId));
+                    }
+                }
+            }, timeoutMillis);
+        }
+        return future;
+    }
+
+    /**
+     * 收到响应，完成对应的请求
+     *
+     * @param correlationId 关联ID
+     * @param bytes         字节数组
+     * @param offset        起始位
+     * @param length        长度
+     * @return 是否匹配到在途请求
+     */
+    boolean complete(long correlationId, byte[] bytes, int offset, int length) {
+        ResponseFuture future = pending.remove(correlationId);
+        if (future == null) {
+            return false;
+        }
+        byte[] response = new byte[length];
+        System.arraycopy(bytes, offset, response, 0, length);
+        future.setSuccess(response);
+        return true;
+    }
+
+    /**
+     * 请求失败，如请求写入失败
+     *
+     * @param future 响应结果
+     * @param cause  失败原因
+     */
+    void fail(ResponseFuture future, Throwable cause) {
+        if (pending.remove(future.getCorrelationId(), future)) {
+            future.setFailure(cause);
+        }
+    }
+
+    /**
+     * 所有在途请求置为失败，如连接断开
+     *
+     * @param cause 失败原因
+     */
+    void failAll(Throwable cause) {
+        List<ResponseFuture> failed = new ArrayList<ResponseFuture>(pending.values());
+        for (ResponseFuture future : failed) {
+            fail(future, cause);
+        }
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * 在途请求数
+     *
+     * @return 请求数
+     */
+    int size() {
+        return pending.size();
+    }
+
+}
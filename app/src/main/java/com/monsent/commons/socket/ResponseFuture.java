@@ -0,0 +1,169 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.timer.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 请求的响应结果，收到关联ID相同的响应、超时或连接断开时完成
+ */
+public class ResponseFuture {
+
+    /**
+     * 完成监听，在读线程或定时器线程回调，不应执行耗时操作
+     */
+    public interface Listener {
+
+        void onComplete(ResponseFuture future);
+
+    }
+
+    private final long correlationId;
+    private boolean done = false;
+    private byte[] response;
+    private Throwable cause;
+    private List<Listener> listeners;
+    volatile Timeout timeout;   //超时任务，完成时取消
+
+    ResponseFuture(long correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * 创建已失败的结果
+     *
+     * @param correlationId 关联ID
+     * @param cause         失败原因
+     * @return 结果
+     */
+    static ResponseFuture failed(long correlationId, Throwable cause) {
+        ResponseFuture future = new ResponseFuture(correlationId);
+        future.setFailure(cause);
+        return future;
+    }
+
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    /**
+     * 是否已完成
+     *
+     * @return 是否
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 是否成功收到响应
+     *
+     * @return 是否
+     */
+    public synchronized boolean isSuccess() {
+        return done && cause == null;
+    }
+
+    /**
+     * 响应数据，为完整帧的副本
+     *
+     * @return 响应数据，未完成或失败时为null
+     */
+    public synchronized byte[] getResponse() {
+        return response;
+    }
+
+    /**
+     * 失败原因，超时为{@link java.util.concurrent.TimeoutException}
+     *
+     * @return 失败原因，未完成或成功时为null
+     */
+    public synchronized Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * 等待完成
+     *
+     * @param timeoutMillis 最长等待时长(毫秒)
+     * @return 是否在超时前完成
+     * @throws InterruptedException 等待被中断
+     */
+    public synchronized boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!done) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 添加完成监听，已完成时立即回调
+     *
+     * @param listener 监听
+     */
+    public void addListener(Listener listener) {
+        synchronized (this) {
+            if (!done) {
+                if (listeners == null) {
+                    listeners = new ArrayList<Listener>(1);
+                }
+                listeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    void setSuccess(byte[] response) {
+        complete(response, null);
+    }
+
+    void setFailure(Throwable cause) {
+        complete(null, cause);
+    }
+
+    /**
+     * 完成并通知监听，重复完成被忽略
+     *
+     * @param response 响应数据
+     * @param cause    失败原因，成功为null
+     */
+    private void complete(byte[] response, Throwable cause) {
+        List<Listener> toNotify;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            this.done = true;
+            this.response = response;
+            this.cause = cause;
+            toNotify = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        if (toNotify != null) {
+            for (Listener listener : toNotify) {
+                notifyListener(listener);
+            }
+        }
+    }
+
+    private void notifyListener(Listener listener) {
+        try {
+            listener.onComplete(this);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+}
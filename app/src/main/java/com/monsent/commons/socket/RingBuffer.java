@@ -0,0 +1,184 @@
+package com.monsent.commons.socket;
+
+/**
+ * 可扩容的环形字节缓冲区，用于累积接收数据并按帧取出
+ */
+public class RingBuffer {
+
+    private final static int DEFAULT_CAPACITY = 1024;   //默认初始容量
+    private byte[] array;   //数据，容量为2的幂
+    private int mask;
+    private int head = 0;   //读位置
+    private int size = 0;   //可读字节数
+    private int searched = 0;   //indexOf已确定不是匹配起点的字节数，读位置移动时相应减少
+    private byte[] scratch = new byte[0];   //帧跨越数组尾部时的拼接缓冲区
+
+    public RingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity 初始容量，向上取整为2的幂
+     */
+    public RingBuffer(int initialCapacity) {
+        int capacity = tableSizeFor(initialCapacity);
+        this.array = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 可读字节数
+     *
+     * @return 字节数
+     */
+    public int readableBytes() {
+        return size;
+    }
+
+    /**
+     * 当前容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return array.length;
+    }
+
+    /**
+     * 写入数据，容量不足时扩容为2倍
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位
+     * @param length 长度
+     */
+    public void write(byte[] bytes, int offset, int length) {
+        ensureWritable(length);
+        int tail = (head + size) & mask;
+        int first = Math.min(length, array.length - tail);
+        System.arraycopy(bytes, offset, array, tail, first);
+        if (first < length) {
+            System.arraycopy(bytes, offset + first, array, 0, length - first);
+        }
+        size += length;
+    }
+
+    /**
+     * 读取相对读位置的字节，不移动读位置
+     *
+     * @param index 相对读位置的索引
+     * @return 字节
+     */
+    public byte getByte(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", readable: " + size);
+        }
+        return array[(head + index) & mask];
+    }
+
+    /**
+     * 查找字节序列，从上次未找到的位置继续，分多次到达的大帧不重复比较已查找过的数据；
+     * 同一缓冲区应始终查找同一字节序列
+     *
+     * @param pattern 字节序列
+     * @return 相对读位置的索引，未找到返回-1
+     */
+    public int indexOf(byte[] pattern) {
+        int last = size - pattern.length;
+        for (int i = searched; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && array[(head + i + j) & mask] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                searched = i;
+                return i;
+            }
+        }
+        searched = Math.max(searched, last + 1);
+        return -1;
+    }
+
+    /**
+     * 跳过数据
+     *
+     * @param length 长度
+     */
+    public void skip(int length) {
+        if (length < 0 || length > size) {
+            throw new IndexOutOfBoundsException("length: " + length + ", readable: " + size);
+        }
+        searched = Math.max(searched - length, 0);
+        size -= length;
+        //读空后回到数组起始，使后续帧尽量连续
+        head = size == 0 ? 0 : (head + length) & mask;
+    }
+
+    /**
+     * 取出一帧交给handler并移动读位置；帧在数组中连续时直接传递数组分片，否则拼接到复用缓冲区
+     *
+     * @param length  帧长度
+     * @param handler 帧处理
+     */
+    public void readFrame(int length, FrameDecoder.FrameHandler handler) {
+        if (length < 0 || length > size) {
+            throw new IndexOutOfBoundsException("length: " + length + ", readable: " + size);
+        }
+        if (head + length <= array.length) {
+            int offset = head;
+            skip(length);
+            handler.onFrame(array, offset, length);
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[tableSizeFor(length)];
+            }
+            int first = array.length - head;
+            System.arraycopy(array, head, scratch, 0, first);
+            System.arraycopy(array, 0, scratch, first, length - first);
+            skip(length);
+            handler.onFrame(scratch, 0, length);
+        }
+    }
+
+    /**
+     * 清空数据
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+        searched = 0;
+    }
+
+    /**
+     * 确保可写入指定长度，容量不足时扩容并把数据移到数组起始
+     *
+     * @param length 长度
+     */
+    private void ensureWritable(int length) {
+        int required = size + length;
+        if (required <= array.length) {
+            return;
+        }
+        byte[] newArray = new byte[tableSizeFor(required)];
+        int first = Math.min(size, array.length - head);
+        System.arraycopy(array, head, newArray, 0, first);
+        System.arraycopy(array, 0, newArray, first, size - first);
+        array = newArray;
+        mask = newArray.length - 1;
+        head = 0;
+    }
+
+    /**
+     * 向上取整为2的幂
+     *
+     * @param capacity 容量
+     * @return 2的幂
+     */
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        if (n <= 0) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.monsent.commons.socket;
+
+/**
+ * 单个发送方的序号统计，按滑动窗口判断丢失、乱序及重复；序号按int回绕。
+ * 序号大幅回退视为发送方重启后从头编号，按新的序列重新统计，已累计的计数保留
+ */
+class SequenceTracker {
+
+    private final static int WINDOW_SIZE = 64;  //判断重复的窗口大小
+    private final static int RESTART_DISTANCE = 1024;   //回退达到该距离视为发送方重启，UDP乱序不会相差这么远
+    private boolean started = false;
+    private int highest;    //收到的最大序号
+    private long window;     //最大序号及之前63个序号的到达位图，最低位为最大序号
+    private long lost = 0;
+    private long reordered = 0;
+    private long duplicates = 0;
+
+    /**
+     * 记录收到的序号，在接收线程调用
+     *
+     * @param sequence 序号
+     * @return 是否应交付，重复的数据报为false
+     */
+    synchronized boolean record(int sequence) {
+        if (!started) {
+            started = true;
+            highest = sequence;
+            window = 1L;
+            return true;
+        }
+        int diff = sequence - highest;
+        if (diff <= -RESTART_DISTANCE) {
+            //新序列，旧序列中跳过的序号不会再到达，保留已记的丢失
+            highest = sequence;
+            window = 1L;
+            return true;
+        }
+        if (diff > 0) {
+            //跳过的序号先记为丢失，迟到时再扣除
+            lost += diff - 1;
+            window = diff >= WINDOW_SIZE ? 1L : (window << diff) | 1L;
+            highest = sequence;
+            return true;
+        }
+        int back = -diff;
+        if (back < WINDOW_SIZE) {
+            long bit = 1L << back;
+            if ((window & bit) != 0) {
+                duplicates++;
+                return false;
+            }
+            window |= bit;
+        }
+        //超出窗口的迟到包无法判断是否重复，按乱序计
+        reordered++;
+        if (lost > 0) {
+            lost--;
+        }
+        return true;
+    }
+
+    /**
+     * 累加到汇总数组：lost、reordered、duplicates
+     *
+     * @param totals 汇总
+     */
+    synchronized void addTo(long[] totals) {
+        totals[0] += lost;
+        totals[1] += reordered;
+        totals[2] += duplicates;
+    }
+
+}
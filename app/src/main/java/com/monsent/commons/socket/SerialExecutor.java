@@ -0,0 +1,113 @@
+package com.monsent.commons.socket;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 串行执行器：任务在共享线程池中按提交顺序逐个执行，同一时刻至多占用一个线程；
+ * 每次最多连续执行若干任务后让出线程，避免单个连接独占线程池
+ */
+class SerialExecutor implements Runnable {
+
+    private final static int MAX_TASKS_PER_RUN = 64;    //每次占用线程最多执行的任务数
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+    private boolean scheduled = false;  //是否已提交到线程池
+    final AtomicBoolean readSuspended = new AtomicBoolean(false);   //是否因队列已满暂停读取
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param task       任务
+     * @param maxPending 最多排队任务数，0为不限制
+     * @return 是否已加入队列，队列已满时为false
+     */
+    boolean execute(Runnable task, int maxPending) {
+        synchronized (this) {
+            if (maxPending > 0 && tasks.size() >= maxPending) {
+                return false;
+            }
+            tasks.offer(task);
+            if (scheduled) {
+                return true;
+            }
+            scheduled = true;
+        }
+        schedule();
+        return true;
+    }
+
+    /**
+     * 排队任务数
+     *
+     * @return 任务数
+     */
+    synchronized int size() {
+        return tasks.size();
+    }
+
+    /**
+     * 是否空闲，无排队任务且没有任务正在执行
+     *
+     * @return 是否空闲
+     */
+    synchronized boolean isIdle() {
+        return !scheduled;
+    }
+
+    /**
+     * 丢弃排队的任务，正在执行的任务不受影响
+     *
+     * @return 丢弃的任务数
+     */
+    synchronized int clear() {
+        int size = tasks.size();
+        tasks.clear();
+        return size;
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            //线程池已关闭，丢弃剩余任务
+            synchronized (this) {
+                tasks.clear();
+                scheduled = false;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+                if (task == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        synchronized (this) {
+            if (tasks.isEmpty()) {
+                scheduled = false;
+                return;
+            }
+        }
+        schedule();
+    }
+
+}
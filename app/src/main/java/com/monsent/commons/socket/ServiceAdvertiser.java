@@ -0,0 +1,90 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+
+/**
+ * 服务通告：加入组播组监听查询，服务名匹配时向查询方单播回复通告；只应答查询，启动及关闭时不主动通告，
+ * 客户端缓存按有效期过期。Android上接收组播须持有WifiManager.MulticastLock
+ */
+class ServiceAdvertiser implements Runnable {
+
+    private final String name;
+    private final int port;
+    private final int ttlSecond;
+    private final EventLoop.ErrorHandler errorHandler;
+    private MulticastSocket socket;
+    private volatile boolean closed = false;
+
+    /**
+     * @param name         服务名
+     * @param port         服务端口号
+     * @param ttlSecond    客户端缓存有效期(秒)
+     * @param errorHandler 异常处理
+     */
+    ServiceAdvertiser(String name, int port, int ttlSecond, EventLoop.ErrorHandler errorHandler) {
+        DiscoveryPacket.checkName(name);
+        this.name = name;
+        this.port = port;
+        this.ttlSecond = ttlSecond;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * 加入组播组并启动监听线程
+     *
+     * @throws IOException 加入失败
+     */
+    void start() throws IOException {
+        MulticastSocket socket = new MulticastSocket(null);
+        try {
+            socket.setReuseAddress(true);
+            socket.bind(new InetSocketAddress(DiscoveryPacket.PORT));
+            socket.joinGroup(InetAddress.getByName(DiscoveryPacket.GROUP));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        this.socket = socket;
+        Thread thread = new Thread(this, "ServiceAdvertiser-" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        byte[] buffer = new byte[DiscoveryPacket.MAX_SIZE];
+        byte[] announce = new DiscoveryPacket(DiscoveryPacket.ANNOUNCE, name, port, ttlSecond).encode();
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!closed) {
+            try {
+                packet.setData(buffer);
+                socket.receive(packet);
+                DiscoveryPacket query = DiscoveryPacket.decode(packet.getData(), packet.getOffset(), packet.getLength());
+                if (query == null || query.type != DiscoveryPacket.QUERY
+                        || !query.name.isEmpty() && !query.name.equals(name)) {
+                    continue;
+                }
+                socket.send(new DatagramPacket(announce, announce.length, packet.getSocketAddress()));
+            } catch (IOException e) {
+                if (!closed) {
+                    errorHandler.onError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止通告
+     */
+    void close() {
+        closed = true;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+}
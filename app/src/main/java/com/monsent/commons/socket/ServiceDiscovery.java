@@ -0,0 +1,156 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 局域网服务发现：向组播组发送查询，在限定时长内收集{@link TcpServer#advertise(String)}的通告；
+ * 结果按通告的有效期缓存，有效期内重复查询直接返回
+ */
+public class ServiceDiscovery {
+
+    private final static long QUERY_INTERVAL = 500L;    //未收到通告时重发查询的间隔(毫秒)
+    private final Map<String, ServiceInfo> cache = new LinkedHashMap<String, ServiceInfo>();    //服务名@地址:端口、服务键值对
+
+    /**
+     * 查找服务，收到第一个通告即返回；缓存中有未过期的结果时直接返回
+     *
+     * @param name          服务名
+     * @param timeoutMillis 最长等待时长(毫秒)
+     * @return 服务，超时未发现时为null
+     * @throws IOException 发送查询失败
+     */
+    public ServiceInfo lookup(String name, long timeoutMillis) throws IOException {
+        List<ServiceInfo> services = query(name, timeoutMillis, true);
+        return services.isEmpty() ? null : services.get(0);
+    }
+
+    /**
+     * 发现服务，等待满timeoutMillis收集所有通告；缓存中有未过期的结果时直接返回，
+     * 查询所有服务时无法判断缓存是否完整，总是重新查询
+     *
+     * @param name          服务名，空字符串为所有服务
+     * @param timeoutMillis 等待时长(毫秒)
+     * @return 服务列表
+     * @throws IOException 发送查询失败
+     */
+    public List<ServiceInfo> discover(String name, long timeoutMillis) throws IOException {
+        return query(name, timeoutMillis, false);
+    }
+
+    /**
+     * 清空缓存，下次查询重新发送
+     */
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private List<ServiceInfo> query(String name, long timeoutMillis, boolean firstOnly) throws IOException {
+        DiscoveryPacket.checkName(name);
+        List<ServiceInfo> services = cached(name);
+        if (!services.isEmpty() && !name.isEmpty()) {
+            return services;
+        }
+        services.clear();
+        byte[] query = new DiscoveryPacket(DiscoveryPacket.QUERY, name, 0, 0).encode();
+        DatagramPacket queryPacket = new DatagramPacket(query, query.length,
+                InetAddress.getByName(DiscoveryPacket.GROUP), DiscoveryPacket.PORT);
+        byte[] buffer = new byte[DiscoveryPacket.MAX_SIZE];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        DatagramSocket socket = new DatagramSocket();
+        try {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long nextQuery = 0;
+            while (true) {
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    break;
+                }
+                if (now >= nextQuery) {
+                    if (services.isEmpty()) {
+                        socket.send(queryPacket);
+                        nextQuery = now + QUERY_INTERVAL;
+                    } else {
+                        //已收到通告，不再重发，等待其它服务端的通告
+                        nextQuery = deadline;
+                    }
+                }
+                socket.setSoTimeout((int) Math.max(1, Math.min(deadline, nextQuery) - now));
+                packet.setData(buffer);
+                try {
+                    socket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                DiscoveryPacket announce = DiscoveryPacket.decode(packet.getData(), packet.getOffset(),
+                        packet.getLength());
+                if (announce == null || announce.type != DiscoveryPacket.ANNOUNCE
+                        || !name.isEmpty() && !name.equals(announce.name)) {
+                    continue;
+                }
+                ServiceInfo service = new ServiceInfo(announce.name, packet.getAddress().getHostAddress(),
+                        announce.port, System.currentTimeMillis() + announce.ttlSecond * 1000L);
+                put(service, services);
+                if (firstOnly) {
+                    break;
+                }
+            }
+        } finally {
+            socket.close();
+        }
+        return services;
+    }
+
+    /**
+     * 缓存中未过期的服务，同时清理已过期的
+     *
+     * @param name 服务名，空字符串为所有服务
+     * @return 服务列表
+     */
+    private List<ServiceInfo> cached(String name) {
+        List<ServiceInfo> services = new ArrayList<ServiceInfo>();
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Iterator<ServiceInfo> iterator = cache.values().iterator();
+            while (iterator.hasNext()) {
+                ServiceInfo service = iterator.next();
+                if (service.isExpired(now)) {
+                    iterator.remove();
+                } else if (name.isEmpty() || name.equals(service.getName())) {
+                    services.add(service);
+                }
+            }
+        }
+        return services;
+    }
+
+    /**
+     * 加入或更新缓存
+     *
+     * @param service  服务
+     * @param services 本次查询的结果
+     */
+    private void put(ServiceInfo service, List<ServiceInfo> services) {
+        synchronized (cache) {
+            cache.put(service.toString(), service);
+        }
+        for (ServiceInfo found : services) {
+            if (found.toString().equals(service.toString())) {
+                //重发查询引起的重复通告
+                return;
+            }
+        }
+        services.add(service);
+    }
+
+}
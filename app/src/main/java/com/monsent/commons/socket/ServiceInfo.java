@@ -0,0 +1,52 @@
+package com.monsent.commons.socket;
+
+/**
+ * 发现的服务，不可变
+ */
+public class ServiceInfo {
+
+    private final String name;
+    private final String address;
+    private final int port;
+    private final long expireTime;  //缓存过期时间
+
+    ServiceInfo(String name, String address, int port, long expireTime) {
+        this.name = name;
+        this.address = address;
+        this.port = port;
+        this.expireTime = expireTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 服务端地址，可直接用于{@link TcpClient#connect(String, int)}
+     *
+     * @return 地址
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 是否已过期
+     *
+     * @param now 当前时间(毫秒)
+     * @return 是否
+     */
+    boolean isExpired(long now) {
+        return now >= expireTime;
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + address + ":" + port;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.monsent.commons.socket;
+
+/**
+ * 优雅关闭结果，不可变；写出与丢弃的统计为关闭时刻的近似值
+ */
+public class ShutdownReport {
+
+    private final int connections;
+    private final long bytesDrained;
+    private final long messagesDrained;
+    private final long bytesDropped;
+    private final long messagesDropped;
+    private final long callbacksDropped;
+    private final long elapsedNanos;
+    private final boolean completed;
+
+    ShutdownReport(int connections, long bytesDrained, long messagesDrained, long bytesDropped,
+                   long messagesDropped, long callbacksDropped, long elapsedNanos, boolean completed) {
+        this.connections = connections;
+        this.bytesDrained = bytesDrained;
+        this.messagesDrained = messagesDrained;
+        this.bytesDropped = bytesDropped;
+        this.messagesDropped = messagesDropped;
+        this.callbacksDropped = callbacksDropped;
+        this.elapsedNanos = elapsedNanos;
+        this.completed = completed;
+    }
+
+    /**
+     * 开始关闭时的连接数
+     *
+     * @return 连接数
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * 关闭过程中写出的字节数，含回调在关闭过程中写入的数据
+     *
+     * @return 字节数
+     */
+    public long getBytesDrained() {
+        return bytesDrained;
+    }
+
+    /**
+     * 关闭过程中写出的消息数
+     *
+     * @return 消息数
+     */
+    public long getMessagesDrained() {
+        return messagesDrained;
+    }
+
+    /**
+     * 超时后未写出而丢弃的字节数
+     *
+     * @return 字节数
+     */
+    public long getBytesDropped() {
+        return bytesDropped;
+    }
+
+    /**
+     * 超时后未写出而丢弃的消息数
+     *
+     * @return 消息数
+     */
+    public long getMessagesDropped() {
+        return messagesDropped;
+    }
+
+    /**
+     * 超时后未执行而丢弃的回调数
+     *
+     * @return 回调数
+     */
+    public long getCallbacksDropped() {
+        return callbacksDropped;
+    }
+
+    /**
+     * 关闭耗时
+     *
+     * @return 耗时(纳秒)
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 是否在超时前写完所有数据并执行完所有回调
+     *
+     * @return 是否完成
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + connections
+                + ", bytesDrained=" + bytesDrained
+                + ", messagesDrained=" + messagesDrained
+                + ", bytesDropped=" + bytesDropped
+                + ", messagesDropped=" + messagesDropped
+                + ", callbacksDropped=" + callbacksDropped
+                + ", elapsedNanos=" + elapsedNanos
+                + ", completed=" + completed;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.monsent.commons.socket;
+
+/**
+ * 广播时待发送数据积压超过上限的连接的处理方式
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * 该连接跳过本条消息
+     */
+    DROP,
+
+    /**
+     * 断开该连接
+     */
+    DISCONNECT
+
+}
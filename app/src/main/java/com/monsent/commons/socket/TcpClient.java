@@ -1,9 +1,26 @@
 package com.monsent.commons.socket;
 
+import com.monsent.commons.buffer.BufferPool;
+import com.monsent.commons.buffer.PooledBuffer;
+import com.monsent.commons.buffer.ReceiveSizePredictor;
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.IdleMonitor;
+import com.monsent.commons.timer.IdleState;
+
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public class TcpClient {
 
@@ -18,214 +35,1012 @@ public class TcpClient {
         void onError(Exception e);
     }
 
-    private final static long MAX_NO_DATA_SECOND = 30 * 60L;    //最长未接收数据断开连接时长
-    private long lastReadTime = 0L;     //最后接收数据时间
+    /**
+     * 零拷贝接收回调，数据位于复用的读缓冲区中，回调返回后缓冲区即被覆盖，需保留数据时自行拷贝；
+     * 设置后接收的数据只交付此回调，{@link Callback#onReceive(byte[])}不再被调用
+     */
+    public interface BufferCallback {
+
+        void onReceive(byte[] buffer, int offset, int length);
+
+    }
+
+    /**
+     * 可写状态变化回调，在写线程或调用write的线程回调；待发送字节数超过高水位时writable为false，写出到低水位及以下后为true
+     */
+    public interface WritabilityCallback {
+
+        void onWritabilityChanged(boolean writable);
+
+    }
+
+    private final static long DEFAULT_READ_IDLE_SECOND = 30 * 60L;    //默认最长未接收数据断开连接时长
+    private final static int CONNECT_TIMEOUT = 10000;   //连接超时(毫秒)
+    private final static int READ_TIMEOUT = 10000;  //单次阻塞读超时(毫秒)，超时后读线程检查连接是否已被替换
+    private final static long CONNECTOR_KEEP_ALIVE_SECOND = 60L;    //连接线程空闲退出时长
+    private final static long DEFAULT_MAX_PENDING_BYTES = 4 * 1024 * 1024L;   //默认最多待发送字节数
+    private final static long DEFAULT_LOW_WATER_MARK = 32 * 1024L;    //默认低水位
+    private final static long DEFAULT_HIGH_WATER_MARK = 64 * 1024L;   //默认高水位
+    private long maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;   //最多待发送字节数，下次连接生效
+    private long lowWaterMark = DEFAULT_LOW_WATER_MARK;     //低水位，下次连接生效
+    private long highWaterMark = DEFAULT_HIGH_WATER_MARK;   //高水位，下次连接生效
+    private long readIdleSecond = DEFAULT_READ_IDLE_SECOND;     //读空闲断开时长，0为不检测
+    private long writeIdleSecond = 0L;  //写空闲断开时长，0为不检测
+    private long allIdleSecond = 0L;    //读写空闲断开时长，0为不检测
+    private HashedWheelTimer timer = HashedWheelTimer.getDefault();     //空闲检测及心跳定时器
+    private volatile IdleMonitor idleMonitor;   //空闲检测
+    private Heartbeat heartbeat;    //心跳配置，下次连接生效，null为不发送心跳
+    private volatile HeartbeatHandler heartbeatHandler;     //当前连接的心跳
+    private Compression compression;    //压缩配置，下次调用connect生效，null为不压缩
+    private volatile CompressionCodec codec;    //当前连接的压缩编解码，每次连接断开时换新，旧连接的读线程仍持有旧实例
+    private final CompressionMetrics compressionMetrics = new CompressionMetrics();     //压缩计数，跨重连累计
+    private volatile SocketChannel channel;
     private Socket socket;
-    private boolean readable = false;
-    private Thread threadRead, threadConnect;
-    private OutputStream os = null;
-    private InputStream is = null;
+    private Thread threadRead, threadWrite;
+    private final Object stateLock = new Object();  //连接状态锁
+    private String address;     //服务端地址
+    private int port;   //服务端端口号
+    private ReconnectPolicy reconnectPolicy;    //断线重连策略，null为不重连
+    private ScheduledThreadPoolExecutor connector;  //连接及重连调度，单线程复用
+    private ScheduledFuture<?> connectFuture;   //待执行的连接任务
+    private int connectAttempt = 0;     //连接任务序号，取消或重新发起后旧任务失效
+    private int reconnectAttempts = 0;  //连续重连次数，连接成功后清零
+    private boolean active = false;     //是否处于连接或自动重连中，主动断开后为false
+    private volatile int generation = 0;    //连接代数，连接建立或关闭时加一，旧连接的读写线程据此忽略事件
+    private volatile OutboundBuffer outbound;   //待发送队列，由写线程写出
+    private final ConnectionMetrics metrics = new ConnectionMetrics();  //流量及耗时统计，跨重连累计
+    private long readNanos;     //最近一次读到数据的时间，仅读线程访问
+    private volatile boolean notifiedWritable = true;   //最近一次通知的可写状态
+    private final Object writabilityLock = new Object();
     private Callback callback;
+    private BufferCallback bufferCallback;
+    private WritabilityCallback writabilityCallback;
+    private FrameDecoder frameDecoder;  //帧解码器
+    private CorrelationIdExtractor correlationIdExtractor;  //响应关联ID提取，为null时不匹配响应
+    private final RequestTracker requests = new RequestTracker();   //在途请求
+
+    private final FrameDecoder.FrameHandler frameHandler = new FrameDecoder.FrameHandler() {
+        @Override
+        public void onFrame(byte[] bytes, int offset, int length) {
+            dispatch(bytes, offset, length);
+        }
+    };
 
     public void setCallback(Callback callback) {
         this.callback = callback;
     }
 
     /**
-     * 连接服务端
+     * 设置零拷贝接收回调，设置后{@link Callback}只收到连接、断开及错误通知
+     *
+     * @param bufferCallback 零拷贝接收回调，null表示通过{@link Callback#onReceive(byte[])}接收
+     */
+    public void setBufferCallback(BufferCallback bufferCallback) {
+        this.bufferCallback = bufferCallback;
+    }
+
+    public void setWritabilityCallback(WritabilityCallback writabilityCallback) {
+        this.writabilityCallback = writabilityCallback;
+    }
+
+    /**
+     * 设置帧解码器，设置后回调收到的是完整帧而非单次读取的数据
+     *
+     * @param frameDecoder 帧解码器，null表示不解码，已设置心跳时不可为null
+     */
+    public void setFrameDecoder(FrameDecoder frameDecoder) {
+        if (frameDecoder == null && heartbeat != null) {
+            throw new IllegalStateException("Heartbeat requires a frame decoder");
+        }
+        this.frameDecoder = frameDecoder;
+    }
+
+    /**
+     * 设置响应关联ID提取，设置后{@link #request(long, byte[], long)}的响应按关联ID匹配到请求，
+     * 不再交付给onReceive；须同时设置帧解码器，保证每次提取的是完整帧
+     *
+     * @param correlationIdExtractor 关联ID提取，null为不匹配响应
+     */
+    public void setCorrelationIdExtractor(CorrelationIdExtractor correlationIdExtractor) {
+        this.correlationIdExtractor = correlationIdExtractor;
+    }
+
+    /**
+     * 设置待发送队列的最大字节数，超出后写入直接失败，下次连接生效
+     *
+     * @param maxPendingBytes 最大字节数
+     */
+    public void setMaxPendingBytes(long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * 设置待发送队列的高低水位，下次连接生效；默认低水位32KB、高水位64KB
+     *
+     * @param lowWaterMark  低水位，待发送字节数降到该值及以下时恢复可写
+     * @param highWaterMark 高水位，待发送字节数超过该值时不可写
+     */
+    public void setWriteBufferWaterMark(long lowWaterMark, long highWaterMark) {
+        if (lowWaterMark < 0 || highWaterMark < lowWaterMark) {
+            throw new IllegalArgumentException("Invalid water mark, low: " + lowWaterMark + ", high: " + highWaterMark);
+        }
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * 设置断线重连策略，连接失败或断开后按策略自动重连，主动{@link #disconnect()}后不重连
+     *
+     * @param reconnectPolicy 重连策略，null为不重连
+     */
+    public void setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        synchronized (stateLock) {
+            this.reconnectPolicy = reconnectPolicy;
+        }
+    }
+
+    /**
+     * 设置空闲断开时长，下次连接生效，0为不检测；默认读空闲30分钟
+     *
+     * @param readIdleSecond  未接收数据时长(秒)
+     * @param writeIdleSecond 未发送数据时长(秒)
+     * @param allIdleSecond   既未接收也未发送数据时长(秒)
+     */
+    public void setIdleTimeout(long readIdleSecond, long writeIdleSecond, long allIdleSecond) {
+        this.readIdleSecond = readIdleSecond;
+        this.writeIdleSecond = writeIdleSecond;
+        this.allIdleSecond = allIdleSecond;
+    }
+
+    /**
+     * 设置心跳，下次连接生效：定时发送ping并自动回复服务端的ping，超时未收到任何数据即断开，
+     * 按重连策略重连；往返时延计入统计；默认不发送心跳。须先设置帧解码器，保证心跳是独立的帧
+     *
+     * @param heartbeat 心跳，null为不发送心跳
+     */
+    public void setHeartbeat(Heartbeat heartbeat) {
+        if (heartbeat != null && frameDecoder == null) {
+            //无帧解码器时心跳可能与数据合并在一次读取中，无法识别
+            throw new IllegalStateException("Heartbeat requires a frame decoder");
+        }
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * 设置压缩，下次调用connect生效；压缩是对称的分帧模式，服务端须同样开启，连接建立时互发握手协商预置字典；
+     * 服务端未开启时不会回退为不压缩，本端收到的数据不是握手时回调onError并断开连接
+     *
+     * @param compression 压缩配置，null为不压缩
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * 压缩统计，包括节省的字节数及压缩、解压耗时，跨重连累计
+     *
+     * @return 快照
+     */
+    public CompressionStats getCompressionStats() {
+        return compressionMetrics.snapshot();
+    }
+
+    /**
+     * 设置空闲检测及心跳使用的定时器，默认为进程共享的{@link HashedWheelTimer#getDefault()}
+     *
+     * @param timer 定时器
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        if (timer != null) {
+            this.timer = timer;
+        }
+    }
+
+    /**
+     * 连接服务端，在连接线程中异步进行；已有连接先断开
      *
      * @param address 服务端地址
      * @param port    服务端端口号
      */
-    public void connect(final String address, final int port) {
-        //停止连接
-        stopConnect();
-        //关闭socket
-        closeSocket();
-        threadConnect = new Thread(new Runnable() {
+    public void connect(String address, int port) {
+        synchronized (stateLock) {
+            cancelConnect();
+            closeConnection();
+            closeCodec();
+            if (compression != null) {
+                codec = new CompressionCodec(compression, compressionMetrics);
+            }
+            this.address = address;
+            this.port = port;
+            active = true;
+            reconnectAttempts = 0;
+            bufferWritesIfNeeded();
+            scheduleConnect(0);
+        }
+        requests.failAll(new IOException("Connection closed"));
+    }
+
+    /**
+     * 是否已连接
+     *
+     * @return 是否
+     */
+    public boolean isConnected() {
+        return channel != null;
+    }
+
+    /**
+     * 投递连接任务，须持有stateLock
+     *
+     * @param delayMillis 延迟(毫秒)
+     */
+    private void scheduleConnect(long delayMillis) {
+        final int attempt = ++connectAttempt;
+        if (connector == null) {
+            connector = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "TcpClient-connect");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            connector.setKeepAliveTime(CONNECTOR_KEEP_ALIVE_SECOND, TimeUnit.SECONDS);
+            connector.allowCoreThreadTimeOut(true);
+            connector.setRemoveOnCancelPolicy(true);
+        }
+        connectFuture = connector.schedule(new Runnable() {
             @Override
             public void run() {
-                try {
-                    socket = new Socket(address, port);
-                    socket.setKeepAlive(true);
-                    socket.setTcpNoDelay(true);
-                    socket.setSoLinger(false, -1);
-                    socket.setSoTimeout(10000);
-                    lastReadTime = System.currentTimeMillis();
-                    //启动读线程
-                    startRead();
-                    if (callback != null) {
-                        callback.onConnect();
-                    }
-                } catch (IOException e) {
-                    handleError(e);
-                    if (callback != null) {
-                        callback.onDisconnect();
-                    }
+                doConnect(attempt);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取消待执行或正在进行的连接任务，须持有stateLock
+     */
+    private void cancelConnect() {
+        connectAttempt++;
+        if (connectFuture != null) {
+            connectFuture.cancel(true);
+            connectFuture = null;
+        }
+    }
+
+    /**
+     * 在连接线程中建立连接，失败时按重连策略重试
+     *
+     * @param attempt 连接任务序号
+     */
+    private void doConnect(int attempt) {
+        String address;
+        int port;
+        synchronized (stateLock) {
+            if (attempt != connectAttempt || !active) {
+                return;
+            }
+            connectFuture = null;
+            address = this.address;
+            port = this.port;
+        }
+        SocketChannel channel = null;
+        try {
+            //阻塞模式通道，写直接走通道，文件发送可使用transferTo零拷贝
+            channel = SocketChannel.open();
+            Socket socket = channel.socket();
+            socket.setKeepAlive(true);
+            socket.setTcpNoDelay(true);
+            socket.setSoLinger(false, -1);
+            //通道的read不受SO_TIMEOUT限制，读线程经socket的输入流读取
+            socket.setSoTimeout(READ_TIMEOUT);
+            socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT);
+            CompressionCodec codec = this.codec;
+            if (codec != null) {
+                //握手须先于待发送队列中的数据写出
+                ByteBuffer hello = codec.hello();
+                while (hello.hasRemaining()) {
+                    channel.write(hello);
                 }
             }
+        } catch (IOException e) {
+            closeQuietly(channel);
+            synchronized (stateLock) {
+                if (attempt != connectAttempt) {
+                    //已取消
+                    return;
+                }
+                scheduleReconnect();
+            }
+            handleError(e);
+            if (callback != null) {
+                callback.onDisconnect();
+            }
+            return;
+        }
+        synchronized (stateLock) {
+            if (attempt != connectAttempt || !active) {
+                closeQuietly(channel);
+                return;
+            }
+            reconnectAttempts = 0;
+            this.channel = channel;
+            this.socket = channel.socket();
+            int generation = ++this.generation;
+            startIdleMonitor(generation);
+            startHeartbeat(generation);
+            //启动读写线程
+            startRead(generation);
+            startWrite(generation);
+        }
+        if (callback != null) {
+            callback.onConnect();
+        }
+    }
+
+    /**
+     * 按重连策略投递下次连接，无策略或超过最多次数时停止，须持有stateLock
+     */
+    private void scheduleReconnect() {
+        ReconnectPolicy policy = reconnectPolicy;
+        if (!active) {
+            return;
+        }
+        reconnectAttempts++;
+        if (policy == null || policy.getMaxAttempts() > 0 && reconnectAttempts > policy.getMaxAttempts()) {
+            active = false;
+            stopWrite();
+            return;
+        }
+        scheduleConnect(policy.nextDelay(reconnectAttempts));
+    }
+
+    /**
+     * 连接断开，关闭连接并按重连策略重连；同一连接只处理一次
+     *
+     * @param generation 连接代数
+     * @param e          异常，正常断开为null
+     */
+    private void connectionLost(int generation, Exception e) {
+        synchronized (stateLock) {
+            if (generation != this.generation) {
+                return;
+            }
+            closeConnection();
+            renewCodec();
+            bufferWritesIfNeeded();
+            scheduleReconnect();
+        }
+        requests.failAll(new IOException("Connection closed"));
+        if (e != null) {
+            handleError(e);
+        }
+        if (callback != null) {
+            callback.onDisconnect();
+        }
+    }
+
+    /**
+     * 重连策略要求缓存写入时，创建供下次连接使用的待发送队列，须持有stateLock
+     */
+    private void bufferWritesIfNeeded() {
+        ReconnectPolicy policy = reconnectPolicy;
+        if (active && outbound == null && policy != null && policy.isBufferWrites()) {
+            notifiedWritable = true;
+            outbound = new OutboundBuffer(maxPendingBytes, lowWaterMark, highWaterMark, metrics);
+        }
+    }
+
+    /**
+     * 关闭当前连接，未写出的数据置为失败，须持有stateLock
+     */
+    private void closeConnection() {
+        generation++;
+        stopIdleMonitor();
+        stopHeartbeat();
+        stopRead();
+        stopWrite();
+        closeSocket();
+    }
+
+    /**
+     * 启动空闲检测，空闲时断开连接
+     *
+     * @param generation 连接代数
+     */
+    private void startIdleMonitor(final int generation) {
+        stopIdleMonitor();
+        if (readIdleSecond <= 0 && writeIdleSecond <= 0 && allIdleSecond <= 0) {
+            return;
+        }
+        IdleMonitor monitor = new IdleMonitor(timer, readIdleSecond * 1000, writeIdleSecond * 1000,
+                allIdleSecond * 1000, new IdleMonitor.Listener() {
+            @Override
+            public void onIdle(IdleMonitor monitor, IdleState state) {
+                connectionLostLater(generation, null);
+            }
         });
-        threadConnect.start();
+        idleMonitor = monitor;
+        monitor.start();
     }
 
     /**
-     * 停止连接线程
+     * 在连接线程处理连接断开，供定时器回调使用，用户回调不在共享的定时器线程执行
+     *
+     * @param generation 连接代数
+     * @param e          异常，正常断开为null
      */
-    private void stopConnect() {
-        if (threadConnect != null && !threadConnect.isInterrupted()) {
-            threadConnect.interrupt();
+    private void connectionLostLater(final int generation, final Exception e) {
+        synchronized (stateLock) {
+            if (generation != this.generation || connector == null) {
+                return;
+            }
+            connector.execute(new Runnable() {
+                @Override
+                public void run() {
+                    connectionLost(generation, e);
+                }
+            });
         }
-        threadConnect = null;
     }
 
     /**
-     * 启动读线程
+     * 停止空闲检测
      */
-    private void startRead() {
+    private void stopIdleMonitor() {
+        IdleMonitor monitor = idleMonitor;
+        if (monitor != null) {
+            monitor.stop();
+            idleMonitor = null;
+        }
+    }
+
+    /**
+     * 启动心跳，超时未收到数据时按连接断开处理
+     *
+     * @param generation 连接代数
+     */
+    private void startHeartbeat(final int generation) {
+        stopHeartbeat();
+        Heartbeat heartbeat = this.heartbeat;
+        if (heartbeat == null) {
+            return;
+        }
+        HeartbeatHandler handler = new HeartbeatHandler(heartbeat, timer, metrics, new HeartbeatHandler.Channel() {
+            @Override
+            public void sendHeartbeat(byte[] bytes) {
+                write(bytes);
+            }
+
+            @Override
+            public void onHeartbeatTimeout() {
+                connectionLostLater(generation, new SocketTimeoutException("Heartbeat timeout"));
+            }
+        });
+        heartbeatHandler = handler;
+        handler.start();
+    }
+
+    /**
+     * 停止心跳
+     */
+    private void stopHeartbeat() {
+        HeartbeatHandler handler = heartbeatHandler;
+        if (handler != null) {
+            handler.stop();
+            heartbeatHandler = null;
+        }
+    }
+
+    /**
+     * 启动读线程，阻塞读取到从缓冲池借用的读缓冲区，空闲由idleMonitor检测
+     *
+     * @param generation 连接代数
+     */
+    private void startRead(final int generation) {
         stopRead();
+        final SocketChannel channel = this.channel;
         threadRead = new Thread(new Runnable() {
             @Override
             public void run() {
-                readable = true;
-                while (readable) {
+                read(channel, generation);
+            }
+        });
+        threadRead.start();
+    }
+
+    /**
+     * 循环读取数据直到连接断开，读缓冲区大小按近期读到的字节数自适应；
+     * 经socket的输入流阻塞读取，遵守SO_TIMEOUT，超时只用于检查连接代数，不断开连接；
+     * 对端失去响应由读空闲检测或心跳发现并断开
+     *
+     * @param channel    通道
+     * @param generation 连接代数
+     */
+    private void read(SocketChannel channel, int generation) {
+        final FrameDecoder decoder = frameDecoder;
+        //帧解码累积缓冲区，每次连接的读线程独有，旧读线程不会写入新连接的缓冲区
+        final RingBuffer cumulation = decoder == null ? null : new RingBuffer();
+        CompressionCodec codec = this.codec;
+        CompressionCodec.Output codecOutput = null;
+        if (codec != null) {
+            codecOutput = new CompressionCodec.Output() {
+                @Override
+                public void onData(byte[] bytes, int offset, int length) throws IOException {
+                    decodeFrames(decoder, cumulation, bytes, offset, length);
+                }
+            };
+        }
+        ReceiveSizePredictor receiveSize = new ReceiveSizePredictor();
+        PooledBuffer pooled = BufferPool.heap().acquire(receiveSize.nextSize());
+        byte[] buffer = pooled.array();
+        try {
+            InputStream in = channel.socket().getInputStream();
+            while (generation == this.generation) {
+                try {
+                    int size;
                     try {
-                        is = socket.getInputStream();
-                        int size = is.available();
-                        if (size > 0) {
-                            byte[] bytes = new byte[size];
-                            size = is.read(bytes);
-                            if (callback != null) {
-                                callback.onReceive(bytes);
-                            }
+                        size = in.read(buffer, 0, buffer.length);
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    }
+                    metrics.onRead(size);
+                    if (size < 0) {
+                        //服务端关闭连接
+                        connectionLost(generation, null);
+                        return;
+                    }
+                    if (size > 0) {
+                        readNanos = System.nanoTime();
+                        IdleMonitor monitor = idleMonitor;
+                        if (monitor != null) {
+                            monitor.onRead();
+                        }
+                        HeartbeatHandler heartbeat = heartbeatHandler;
+                        if (heartbeat != null) {
+                            heartbeat.onRead();
+                        }
+                        if (codec != null) {
+                            codec.decode(buffer, 0, size, codecOutput);
                         } else {
-                            //{MAX_NO_DATA_SECOND}未收到任何数据，关闭连接
-                            if (System.currentTimeMillis() - lastReadTime > MAX_NO_DATA_SECOND * 1000) {
-                                disconnect();
-                                if (callback != null) {
-                                    callback.onDisconnect();
-                                }
-                            }
+                            decodeFrames(decoder, cumulation, buffer, 0, size);
+                        }
+                        receiveSize.record(size);
+                        if (receiveSize.nextSize() != buffer.length) {
+                            pooled.release();
+                            pooled = BufferPool.heap().acquire(receiveSize.nextSize());
+                            buffer = pooled.array();
                         }
-                    } catch (IOException e) {
-                        handleError(e);
                     }
+                } catch (IOException e) {
+                    connectionLost(generation, e);
+                    return;
                 }
             }
-        });
-        threadRead.start();
+        } catch (IOException e) {
+            //连接已关闭
+            connectionLost(generation, e);
+        } finally {
+            pooled.release();
+        }
+    }
+
+    /**
+     * 交付数据，设置了帧解码器时累积后按完整帧交付
+     *
+     * @param decoder    帧解码器
+     * @param cumulation 累积缓冲区，无帧解码器时为null
+     * @param bytes      字节数组
+     * @param offset     起始位
+     * @param length     长度
+     * @throws IOException 帧解码失败
+     */
+    private void decodeFrames(FrameDecoder decoder, RingBuffer cumulation, byte[] bytes, int offset, int length)
+            throws IOException {
+        if (decoder == null) {
+            dispatch(bytes, offset, length);
+        } else {
+            cumulation.write(bytes, offset, length);
+            decoder.decode(cumulation, frameHandler);
+        }
     }
 
     /**
-     * 停止读线程
+     * 分发接收到的数据，设置零拷贝回调时只交付零拷贝回调、直接使用读缓冲区，否则普通回调得到数据副本
+     *
+     * @param buffer 读缓冲区
+     * @param offset 起始位
+     * @param length 长度
+     */
+    private void dispatch(byte[] buffer, int offset, int length) {
+        HeartbeatHandler heartbeat = heartbeatHandler;
+        if (heartbeat != null && heartbeat.onFrame(buffer, offset, length)) {
+            return;
+        }
+        metrics.onMessageRead(System.nanoTime() - readNanos);
+        CorrelationIdExtractor extractor = correlationIdExtractor;
+        if (extractor != null && !requests.isEmpty()) {
+            long correlationId = extractor.getCorrelationId(buffer, offset, length);
+            if (correlationId >= 0 && requests.complete(correlationId, buffer, offset, length)) {
+                return;
+            }
+        }
+        BufferCallback bufferCallback = this.bufferCallback;
+        if (bufferCallback != null) {
+            bufferCallback.onReceive(buffer, offset, length);
+            return;
+        }
+        Callback callback = this.callback;
+        if (callback != null) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(buffer, offset, bytes, 0, length);
+            callback.onReceive(bytes);
+        }
+    }
+
+    /**
+     * 停止读线程，在读线程自身调用时不中断
      */
     private void stopRead() {
-        readable = false;
-        if (threadRead != null && !threadRead.isInterrupted()) {
+        if (threadRead != null && threadRead != Thread.currentThread()) {
             threadRead.interrupt();
         }
         threadRead = null;
     }
 
     /**
-     * 判断远程socket是否关闭
+     * 启动写线程，队列有数据时以阻塞聚集写写出，调用write的线程不阻塞；沿用重连期间缓存写入的队列
      *
-     * @return 是否关闭
+     * @param generation 连接代数
      */
-    private boolean isServerSocketClosed() {
-        try {
-            socket.sendUrgentData(0xFF);
-            return false;
-        } catch (IOException e) {
-            return true;
+    private void startWrite(final int generation) {
+        final SocketChannel channel = this.channel;
+        if (outbound == null) {
+            notifiedWritable = true;
+            outbound = new OutboundBuffer(maxPendingBytes, lowWaterMark, highWaterMark, metrics);
+        }
+        final OutboundBuffer outbound = this.outbound;
+        threadWrite = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        outbound.awaitPending();
+                        if (outbound.flush(channel) > 0) {
+                            IdleMonitor monitor = idleMonitor;
+                            if (monitor != null) {
+                                monitor.onWrite();
+                            }
+                        }
+                        notifyWritability(outbound);
+                    }
+                } catch (InterruptedException e) {
+                    //停止写线程
+                } catch (IOException e) {
+                    connectionLost(generation, e);
+                }
+            }
+        });
+        threadWrite.start();
+    }
+
+    /**
+     * 停止写线程，未写出的数据置为失败；在写线程自身调用时不中断
+     */
+    private void stopWrite() {
+        OutboundBuffer outbound = this.outbound;
+        this.outbound = null;
+        if (threadWrite != null && threadWrite != Thread.currentThread()) {
+            threadWrite.interrupt();
+        }
+        threadWrite = null;
+        if (outbound != null) {
+            outbound.failAll(new IOException("Connection closed"));
+        }
+    }
+
+    /**
+     * 可写状态与最近一次通知不同时回调
+     *
+     * @param outbound 待发送队列
+     */
+    private void notifyWritability(OutboundBuffer outbound) {
+        if (outbound.isWritable() == notifiedWritable) {
+            return;
+        }
+        synchronized (writabilityLock) {
+            boolean writable = outbound.isWritable();
+            if (outbound != this.outbound || writable == notifiedWritable) {
+                return;
+            }
+            notifiedWritable = writable;
+            if (writabilityCallback != null) {
+                writabilityCallback.onWritabilityChanged(writable);
+            }
+        }
+    }
+
+    /**
+     * 是否可写，待发送字节数超过高水位后为false，写出到低水位及以下后恢复为true；
+     * 不可写时仍可写入，生产者应据此暂停产生数据
+     *
+     * @return 是否可写，未连接时为false
+     */
+    public boolean isWritable() {
+        OutboundBuffer outbound = this.outbound;
+        return outbound != null && outbound.isWritable();
+    }
+
+    /**
+     * 待发送字节数
+     *
+     * @return 字节数
+     */
+    public long getPendingBytes() {
+        OutboundBuffer outbound = this.outbound;
+        return outbound == null ? 0 : outbound.pendingBytes();
+    }
+
+    /**
+     * 自创建起的流量及耗时统计，跨重连累计；统计常开，取快照不影响读写
+     *
+     * @return 快照
+     */
+    public MetricsSnapshot getMetrics() {
+        OutboundBuffer outbound = this.outbound;
+        int connections = isConnected() ? 1 : 0;
+        if (outbound == null) {
+            return metrics.snapshot(connections, 0, 0);
         }
+        return metrics.snapshot(connections, outbound.pendingBytes(), outbound.size());
+    }
+
+    /**
+     * 最近一次心跳往返时延
+     *
+     * @return 时延(纳秒)，未连接、未设置心跳或尚未测得时为-1
+     */
+    public long getRttNanos() {
+        HeartbeatHandler heartbeat = heartbeatHandler;
+        return heartbeat == null ? -1 : heartbeat.getRttNanos();
     }
 
     /**
-     * 写入数据
+     * 异步写入数据，加入待发送队列后由写线程写出，调用线程不阻塞；写入完成前bytes不可修改。
+     * 重连策略要求缓存写入时，重连期间的写入在重连成功后发送
      *
      * @param bytes 字节数组
      * @param off   起始位
      * @param len   长度
-     * @return 是否成功
+     * @return 写入结果
      */
-    public boolean write(byte[] bytes, int off, int len) {
-        if (socket == null || bytes == null) {
-            return false;
+    public WriteFuture write(byte[] bytes, int off, int len) {
+        if (bytes == null) {
+            return WriteFuture.failed(new IllegalArgumentException("bytes is null"));
         }
-        try {
-            os = socket.getOutputStream();
-            os.write(bytes, off, len);
-            os.flush();
-        } catch (IOException e) {
-            handleError(e);
-            return false;
+        OutboundBuffer outbound = this.outbound;
+        if (outbound == null) {
+            return WriteFuture.failed(new IOException("Socket not connected"));
         }
-        return true;
+        WriteFuture future = new WriteFuture();
+        boolean added;
+        CompressionCodec codec = this.codec;
+        if (codec == null) {
+            added = outbound.add(ByteBuffer.wrap(bytes, off, len), future);
+        } else {
+            //编码与入队在同一锁内，保证帧顺序与写入顺序一致
+            synchronized (codec) {
+                try {
+                    added = outbound.add(codec.encode(ByteBuffer.wrap(bytes, off, len)), future);
+                } catch (IOException e) {
+                    future.setFailure(e);
+                    return future;
+                }
+            }
+        }
+        if (!added) {
+            future.setFailure(outbound.isClosed() ? new IOException("Connection closed")
+                    : new IOException("Write queue full, pending bytes: " + outbound.pendingBytes()));
+            return future;
+        }
+        notifyWritability(outbound);
+        return future;
     }
 
     /**
-     * 写入数据
+     * 异步写入数据
      *
      * @param bytes 字节数组
-     * @return 是否成功
+     * @return 写入结果
      */
-    public boolean write(byte[] bytes) {
-        return write(bytes, 0, bytes == null ? 0 : bytes.length);
+    public WriteFuture write(byte[] bytes) {
+        if (bytes == null) {
+            return WriteFuture.failed(new IllegalArgumentException("bytes is null"));
+        }
+        return write(bytes, 0, bytes.length);
     }
 
     /**
-     * 写入数据
+     * 异步写入数据
      *
      * @param message 字符串
-     * @return 是否成功
+     * @return 写入结果
      */
-    public boolean write(String message) {
-        return message != null && write(message.getBytes());
+    public WriteFuture write(String message) {
+        if (message == null) {
+            return WriteFuture.failed(new IllegalArgumentException("message is null"));
+        }
+        return write(message.getBytes());
     }
 
     /**
-     * 关闭socket
+     * 发出请求，不等待响应即可继续发出其它请求；收到关联ID相同的响应、超时或连接断开时完成。
+     * 须先设置{@link #setCorrelationIdExtractor(CorrelationIdExtractor)}及帧解码器，
+     * 请求数据中的关联ID由调用方按协议编码
+     *
+     * @param correlationId 关联ID，不可为负数，同一时刻在途的请求不可重复
+     * @param bytes         请求数据
+     * @param timeoutMillis 超时时长(毫秒)，0为不超时
+     * @return 响应结果
      */
-    private void closeSocket() {
-        lastReadTime = 0L;
-        if (socket != null) {
-            try {
-                socket.close();
-            } catch (IOException e) {
-                handleError(e);
+    public ResponseFuture request(long correlationId, byte[] bytes, long timeoutMillis) {
+        if (bytes == null) {
+            return ResponseFuture.failed(correlationId, new IllegalArgumentException("bytes is null"));
+        }
+        if (correlationIdExtractor == null) {
+            return ResponseFuture.failed(correlationId, new IllegalStateException("CorrelationIdExtractor not set"));
+        }
+        //先登记再写入，避免响应先于登记到达
+        final ResponseFuture future = requests.register(correlationId, timer, timeoutMillis);
+        if (future.isDone()) {
+            return future;
+        }
+        write(bytes).addListener(new WriteFuture.Listener() {
+            @Override
+            public void onComplete(WriteFuture writeFuture) {
+                if (!writeFuture.isSuccess()) {
+                    requests.fail(future, writeFuture.getCause());
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 在途请求数
+     *
+     * @return 请求数
+     */
+    public int getPendingRequests() {
+        return requests.size();
+    }
+
+    /**
+     * 异步发送整个文件，文件内容由内核直接发送到socket，不拷贝到用户态；与write的数据按调用顺序发送
+     *
+     * @param file     文件
+     * @param listener 发送进度回调，可为null
+     * @return 写入结果
+     */
+    public WriteFuture sendFile(File file, ProgressListener listener) {
+        if (file == null) {
+            return WriteFuture.failed(new IllegalArgumentException("file is null"));
+        }
+        FileChannel fileChannel;
+        try {
+            fileChannel = new FileInputStream(file).getChannel();
+        } catch (IOException e) {
+            return WriteFuture.failed(e);
+        }
+        return sendFile(fileChannel, 0, file.length(), true, listener);
+    }
+
+    /**
+     * 异步发送文件区间，文件内容由内核直接发送到socket，不拷贝到用户态；发送结束后不关闭fileChannel
+     *
+     * @param fileChannel 文件通道
+     * @param position    起始位置
+     * @param count       发送字节数
+     * @param listener    发送进度回调，可为null
+     * @return 写入结果
+     */
+    public WriteFuture sendFile(FileChannel fileChannel, long position, long count, ProgressListener listener) {
+        return sendFile(fileChannel, position, count, false, listener);
+    }
+
+    private WriteFuture sendFile(FileChannel fileChannel, long position, long count, boolean closeOnComplete,
+                                 ProgressListener listener) {
+        FileRegion region = new FileRegion(fileChannel, position, count, closeOnComplete, listener);
+        if (fileChannel == null || position < 0 || count < 0) {
+            region.release();
+            return WriteFuture.failed(new IllegalArgumentException("Invalid file region"));
+        }
+        OutboundBuffer outbound = this.outbound;
+        if (outbound == null) {
+            region.release();
+            return WriteFuture.failed(new IOException("Socket not connected"));
+        }
+        WriteFuture future = new WriteFuture();
+        boolean added;
+        CompressionCodec codec = this.codec;
+        if (codec == null) {
+            added = outbound.add(region, future);
+        } else if (count > 0xFFFFFFFFL) {
+            region.release();
+            return WriteFuture.failed(new IOException("File region too large for compressed connection: " + count));
+        } else {
+            //文件区间不压缩，以原样帧发送，帧头与文件区间须连续入队
+            synchronized (codec) {
+                added = outbound.add(codec.rawHeader(count), new WriteFuture()) && outbound.add(region, future);
             }
-            socket = null;
         }
+        if (!added) {
+            region.release();
+            future.setFailure(new IOException("Connection closed"));
+        }
+        return future;
     }
 
     /**
-     * 关闭数据流
+     * 换用新的压缩编解码，须持有stateLock；旧连接的读线程可能仍在解码，不与其共享状态，
+     * 关闭旧实例后其解码以连接已关闭结束。重连期间缓存的写入由新实例编码，不使用旧连接协商的字典
      */
-    private void closeStream() {
-        if (is != null) {
+    private void renewCodec() {
+        CompressionCodec codec = this.codec;
+        if (codec != null) {
+            this.codec = codec.renew();
+            codec.close();
+        }
+    }
+
+    /**
+     * 释放压缩编解码
+     */
+    private void closeCodec() {
+        CompressionCodec codec = this.codec;
+        if (codec != null) {
+            codec.close();
+            this.codec = null;
+        }
+    }
+
+    /**
+     * 关闭socket
+     */
+    private void closeSocket() {
+        SocketChannel channel = this.channel;
+        this.channel = null;
+        if (channel != null) {
             try {
-                is.close();
+                channel.close();
             } catch (IOException e) {
                 handleError(e);
             }
         }
-        if (os != null) {
+        socket = null;
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
             try {
-                os.close();
+                channel.close();
             } catch (IOException e) {
-                handleError(e);
+                e.printStackTrace();
             }
         }
     }
 
     /**
-     * 关闭连接
+     * 关闭连接并停止自动重连，未写出及重连期间缓存的数据置为失败
      */
     public void disconnect() {
-        stopConnect();
-        stopRead();
-        closeStream();
-        closeSocket();
+        synchronized (stateLock) {
+            active = false;
+            cancelConnect();
+            closeConnection();
+            closeCodec();
+        }
+        requests.failAll(new IOException("Connection closed"));
     }
 
     /**
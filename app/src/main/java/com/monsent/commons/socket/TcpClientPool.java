@@ -0,0 +1,703 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端连接池：连接多个服务端的所有连接共享少量I/O线程，连接数增长时线程数不变；
+ * 按服务端地址租用、归还连接，每个服务端至多maxPerHost个连接，空闲时保持至少minIdle个连接；
+ * 定时移除超时空闲连接并补足空闲连接，设置心跳后超时未收到数据的连接自动关闭
+ */
+public class TcpClientPool {
+
+    public interface Callback {
+
+        void onReceive(PooledConnection connection, byte[] bytes);
+
+        void onDisconnect(PooledConnection connection);
+
+        void onError(Exception e);
+    }
+
+    private final static int DEFAULT_MIN_IDLE = 0;  //默认每个服务端最少空闲连接数
+    private final static int DEFAULT_MAX_PER_HOST = 8;  //默认每个服务端最多连接数
+    private final static long DEFAULT_CONNECT_TIMEOUT = 10000L;     //默认连接超时(毫秒)
+    private final static long DEFAULT_MAX_IDLE_MILLIS = 5 * 60 * 1000L;     //默认空闲连接最长保留时长
+    private final static long MAINTAIN_INTERVAL_MILLIS = 1000L;     //移除超时空闲连接、补足空闲连接的间隔
+    private final static long DEFAULT_MAX_PENDING_BYTES = 4 * 1024 * 1024L;   //默认每个连接最多待发送字节数
+    private final static long DEFAULT_LOW_WATER_MARK = 32 * 1024L;    //默认低水位
+    private final static long DEFAULT_HIGH_WATER_MARK = 64 * 1024L;   //默认高水位
+    private final EventLoopGroup group;     //所有连接共享的I/O线程
+    private final ConcurrentHashMap<InetSocketAddress, HostPool> pools =
+            new ConcurrentHashMap<InetSocketAddress, HostPool>();   //按服务端地址分组的连接
+    private final ConnectionMetrics closedMetrics = new ConnectionMetrics();    //已关闭连接的统计汇总
+    private int minIdle = DEFAULT_MIN_IDLE;
+    private int maxPerHost = DEFAULT_MAX_PER_HOST;
+    private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+    private FrameDecoder frameDecoder;  //帧解码器，对之后建立的连接生效
+    private Heartbeat heartbeat;    //心跳，对之后建立的连接生效，null为不发送心跳
+    private HashedWheelTimer timer = HashedWheelTimer.getDefault();     //连接超时、心跳及维护定时器
+    private volatile Timeout maintainTimeout;   //下次维护
+    private volatile boolean closed = false;
+    private Callback callback;
+
+    private final EventLoop.ErrorHandler errorHandler = new EventLoop.ErrorHandler() {
+        @Override
+        public void onError(Exception e) {
+            handleError(e);
+        }
+    };
+
+    private final Runnable maintainTask = new Runnable() {
+        @Override
+        public void run() {
+            if (closed) {
+                return;
+            }
+            for (HostPool hostPool : pools.values()) {
+                maintain(hostPool);
+            }
+            maintainTimeout = timer.newTimeout(this, MAINTAIN_INTERVAL_MILLIS);
+        }
+    };
+
+    /**
+     * @param ioThreads I/O线程数，所有连接共享
+     * @throws IOException 创建Selector失败
+     */
+    public TcpClientPool(int ioThreads) throws IOException {
+        group = new EventLoopGroup("TcpClientPool-io", ioThreads, WorkerChooser.LEAST_CONNECTIONS, errorHandler);
+        group.start();
+        maintainTimeout = timer.newTimeout(maintainTask, MAINTAIN_INTERVAL_MILLIS);
+    }
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * 设置帧解码器，对之后建立的连接生效
+     *
+     * @param frameDecoder 帧解码器，null表示不解码，已设置心跳时不可为null
+     */
+    public void setFrameDecoder(FrameDecoder frameDecoder) {
+        if (frameDecoder == null && heartbeat != null) {
+            throw new IllegalStateException("Heartbeat requires a frame decoder");
+        }
+        this.frameDecoder = frameDecoder;
+    }
+
+    /**
+     * 设置每个服务端的连接数
+     *
+     * @param minIdle    最少空闲连接数，不足时后台补足
+     * @param maxPerHost 最多连接数，含已租出及正在连接的连接，达到后租用须等待归还
+     */
+    public void setPoolSize(int minIdle, int maxPerHost) {
+        if (minIdle < 0 || maxPerHost <= 0 || minIdle > maxPerHost) {
+            throw new IllegalArgumentException("Invalid pool size, minIdle: " + minIdle + ", maxPerHost: " + maxPerHost);
+        }
+        this.minIdle = minIdle;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * 设置连接超时
+     *
+     * @param connectTimeout 连接超时(毫秒)
+     */
+    public void setConnectTimeout(long connectTimeout) {
+        if (connectTimeout > 0) {
+            this.connectTimeout = connectTimeout;
+        }
+    }
+
+    /**
+     * 设置空闲连接最长保留时长，超过后关闭，但保留minIdle个
+     *
+     * @param maxIdleMillis 时长(毫秒)
+     */
+    public void setMaxIdleTime(long maxIdleMillis) {
+        if (maxIdleMillis > 0) {
+            this.maxIdleMillis = maxIdleMillis;
+        }
+    }
+
+    /**
+     * 设置心跳作为健康检查，对之后建立的连接生效；超时未收到任何数据的连接关闭并从连接池移除；
+     * 须先设置帧解码器，保证心跳是独立的帧
+     *
+     * @param heartbeat 心跳配置，null为不发送心跳
+     */
+    public void setHeartbeat(Heartbeat heartbeat) {
+        if (heartbeat != null && frameDecoder == null) {
+            //无帧解码器时心跳可能与数据合并在一次读取中，无法识别
+            throw new IllegalStateException("Heartbeat requires a frame decoder");
+        }
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * 设置连接超时、心跳及维护使用的定时器，默认为进程共享的{@link HashedWheelTimer#getDefault()}
+     *
+     * @param timer 定时器
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        if (timer != null) {
+            this.timer = timer;
+        }
+    }
+
+    /**
+     * 预热连接，后台建立minIdle个空闲连接；域名在I/O线程解析，不阻塞调用线程，解析失败时回调onError
+     *
+     * @param host 服务端地址
+     * @param port 服务端端口号
+     */
+    public void warmUp(final String host, final int port) {
+        group.next().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (closed) {
+                    return;
+                }
+                InetSocketAddress address = new InetSocketAddress(host, port);
+                if (address.isUnresolved()) {
+                    handleError(new IOException("Unresolved address: " + host));
+                    return;
+                }
+                maintain(hostPool(address));
+            }
+        });
+    }
+
+    /**
+     * 租用连接，优先复用最近归还的空闲连接，没有空闲连接时新建，达到maxPerHost时等待其它调用方归还；
+     * 阻塞调用线程，不可在回调中调用
+     *
+     * @param host          服务端地址
+     * @param port          服务端端口号
+     * @param timeoutMillis 最长等待时间(毫秒)，含建立连接的时间
+     * @return 连接
+     * @throws IOException 超时、连接失败或连接池已关闭
+     */
+    public PooledConnection acquire(String host, int port, long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeoutMillis));
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            throw new IOException("Unresolved address: " + host);
+        }
+        HostPool hostPool = hostPool(address);
+        ConnectRequest request;
+        synchronized (hostPool) {
+            while (true) {
+                if (closed) {
+                    throw new IOException("Pool closed");
+                }
+                PooledConnection connection = hostPool.idle.pollFirst();
+                if (connection != null) {
+                    if (connection.isOpen()) {
+                        connection.leased = true;
+                        return connection;
+                    }
+                    continue;
+                }
+                if (hostPool.total < maxPerHost) {
+                    hostPool.total++;
+                    request = new ConnectRequest(true);
+                    hostPool.pending.add(request);
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Acquire timeout: " + address);
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(hostPool, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Acquire interrupted", e);
+                }
+            }
+        }
+        connect(hostPool, request);
+        try {
+            request.future.await(Math.max(0L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (hostPool) {
+            hostPool.pending.remove(request);
+            //连接池已关闭时交给租用方的连接由close关闭
+            if (request.connection != null && !closed) {
+                return request.connection;
+            }
+            //连接完成后放入空闲连接
+            request.abandoned = true;
+        }
+        if (closed) {
+            throw new IOException("Pool closed");
+        }
+        Throwable cause = request.future.getCause();
+        if (cause != null) {
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        throw new SocketTimeoutException("Acquire timeout: " + address);
+    }
+
+    /**
+     * 归还连接，已关闭的连接不再放回
+     *
+     * @param connection 连接
+     */
+    void release(PooledConnection connection) {
+        HostPool hostPool = pools.get(connection.getAddress());
+        if (hostPool == null) {
+            return;
+        }
+        boolean close = false;
+        synchronized (hostPool) {
+            if (!connection.leased) {
+                return;
+            }
+            connection.leased = false;
+            if (closed) {
+                close = true;
+            } else if (connection.isOpen()) {
+                connection.idleNanos = System.nanoTime();
+                hostPool.idle.addFirst(connection);
+                hostPool.notifyAll();
+            }
+        }
+        if (close) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * 关闭连接并从连接池移除
+     *
+     * @param connection 连接
+     */
+    void discard(PooledConnection connection) {
+        if (connection.connection().close()) {
+            onClosed(connection);
+        }
+    }
+
+    /**
+     * 在连接的I/O线程关闭连接并通知，供定时器回调使用，用户回调不在共享的定时器线程执行
+     *
+     * @param connection 连接
+     */
+    private void discardLater(final PooledConnection connection) {
+        connection.connection().eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                discard(connection);
+            }
+        });
+    }
+
+    /**
+     * 连接已关闭，从连接池移除，唤醒等待租用的调用方
+     *
+     * @param connection 连接
+     */
+    private void onClosed(PooledConnection connection) {
+        HostPool hostPool = pools.get(connection.getAddress());
+        if (hostPool != null) {
+            synchronized (hostPool) {
+                if (hostPool.connections.remove(connection)) {
+                    hostPool.idle.remove(connection);
+                    hostPool.total--;
+                    hostPool.notifyAll();
+                }
+            }
+        }
+        if (callback != null) {
+            callback.onDisconnect(connection);
+        }
+    }
+
+    private HostPool hostPool(InetSocketAddress address) {
+        HostPool hostPool = pools.get(address);
+        if (hostPool == null) {
+            HostPool created = new HostPool(address);
+            hostPool = pools.putIfAbsent(address, created);
+            if (hostPool == null) {
+                hostPool = created;
+            }
+        }
+        return hostPool;
+    }
+
+    /**
+     * 移除超时空闲连接，补足最少空闲连接；超时空闲连接交给各自的I/O线程关闭
+     *
+     * @param hostPool 服务端的连接
+     */
+    private void maintain(HostPool hostPool) {
+        List<PooledConnection> expired = null;
+        int replenish;
+        synchronized (hostPool) {
+            long now = System.nanoTime();
+            long maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+            //从最早归还的连接开始检查
+            Iterator<PooledConnection> iterator = hostPool.idle.descendingIterator();
+            while (iterator.hasNext() && hostPool.idle.size() > minIdle) {
+                PooledConnection connection = iterator.next();
+                if (now - connection.idleNanos > maxIdleNanos) {
+                    iterator.remove();
+                    if (expired == null) {
+                        expired = new ArrayList<PooledConnection>();
+                    }
+                    expired.add(connection);
+                }
+            }
+            replenish = Math.min(minIdle - hostPool.idle.size() - hostPool.connecting, maxPerHost - hostPool.total);
+            if (replenish > 0) {
+                hostPool.total += replenish;
+            }
+        }
+        if (expired != null) {
+            for (PooledConnection connection : expired) {
+                discardLater(connection);
+            }
+        }
+        for (int i = 0; i < replenish; i++) {
+            connect(hostPool, new ConnectRequest(false));
+        }
+    }
+
+    /**
+     * 在I/O线程以非阻塞方式建立连接，超时后关闭；调用前已计入连接数
+     *
+     * @param hostPool 服务端的连接
+     * @param request  连接请求
+     */
+    private void connect(final HostPool hostPool, final ConnectRequest request) {
+        synchronized (hostPool) {
+            hostPool.connecting++;
+        }
+        final SocketChannel channel;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            onConnectFailed(hostPool, request, null, e);
+            return;
+        }
+        final EventLoop eventLoop = group.next();
+        //先于连接任务创建，连接完成时即可取消
+        request.timeout = timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                eventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        onConnectFailed(hostPool, request, channel,
+                                new SocketTimeoutException("Connect timeout: " + hostPool.address));
+                    }
+                });
+            }
+        }, connectTimeout);
+        eventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (channel.connect(hostPool.address)) {
+                        onConnected(hostPool, request, channel, eventLoop);
+                        return;
+                    }
+                    channel.register(eventLoop.selector(), SelectionKey.OP_CONNECT, new EventLoop.Handler() {
+                        @Override
+                        public void onSelected(SelectionKey key) {
+                            try {
+                                if (channel.finishConnect()) {
+                                    onConnected(hostPool, request, channel, eventLoop);
+                                }
+                            } catch (IOException e) {
+                                onConnectFailed(hostPool, request, channel, e);
+                            }
+                        }
+                    });
+                } catch (IOException e) {
+                    onConnectFailed(hostPool, request, channel, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 连接建立，注册到I/O线程后交给等待的调用方，或放入空闲连接；在I/O线程调用
+     */
+    private void onConnected(HostPool hostPool, ConnectRequest request, SocketChannel channel, EventLoop eventLoop) {
+        if (request.done) {
+            return;
+        }
+        final PooledConnection pooled = new PooledConnection(this, hostPool.address);
+        Connection connection = new Connection(channel, eventLoop, frameDecoder, DEFAULT_MAX_PENDING_BYTES,
+                DEFAULT_LOW_WATER_MARK, DEFAULT_HIGH_WATER_MARK, closedMetrics, new Connection.Listener() {
+            @Override
+            public void onReceive(Connection connection, byte[] bytes, int offset, int length) {
+                if (callback != null) {
+                    byte[] data = new byte[length];
+                    System.arraycopy(bytes, offset, data, 0, length);
+                    callback.onReceive(pooled, data);
+                }
+            }
+
+            @Override
+            public void onClose(Connection connection) {
+                onClosed(pooled);
+            }
+
+            @Override
+            public void onWritabilityChanged(Connection connection, boolean writable) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                handleError(e);
+            }
+        });
+        pooled.setConnection(connection);
+        try {
+            channel.socket().setTcpNoDelay(true);
+            //同一Selector上重新注册，替换为连接的读写处理
+            connection.register();
+        } catch (IOException e) {
+            connection.close();
+            onConnectFailed(hostPool, request, null, e);
+            return;
+        }
+        request.done = true;
+        request.timeout.cancel();
+        boolean close = false;
+        synchronized (hostPool) {
+            hostPool.connecting--;
+            hostPool.connections.add(pooled);
+            if (closed) {
+                close = true;
+            } else if (request.lease && !request.abandoned) {
+                pooled.leased = true;
+                request.connection = pooled;
+            } else {
+                pooled.idleNanos = System.nanoTime();
+                hostPool.idle.addFirst(pooled);
+                hostPool.notifyAll();
+            }
+        }
+        if (close) {
+            discard(pooled);
+        } else if (heartbeat != null) {
+            connection.setHeartbeat(newHeartbeat(pooled, heartbeat));
+        }
+        request.future.setSuccess();
+    }
+
+    /**
+     * 连接失败或超时，释放计入的连接数；在I/O线程调用，连接已建立时忽略
+     */
+    private void onConnectFailed(HostPool hostPool, ConnectRequest request, SocketChannel channel, IOException e) {
+        if (request.done) {
+            return;
+        }
+        request.done = true;
+        if (request.timeout != null) {
+            request.timeout.cancel();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                handleError(ex);
+            }
+        }
+        synchronized (hostPool) {
+            hostPool.connecting--;
+            hostPool.total--;
+            hostPool.notifyAll();
+        }
+        if (!request.lease) {
+            handleError(e);
+        }
+        request.future.setFailure(e);
+    }
+
+    /**
+     * 创建连接的心跳，超时未收到数据时关闭连接
+     *
+     * @param pooled    连接
+     * @param heartbeat 心跳配置
+     * @return 心跳
+     */
+    private HeartbeatHandler newHeartbeat(final PooledConnection pooled, Heartbeat heartbeat) {
+        return new HeartbeatHandler(heartbeat, timer, pooled.connection().metrics(), new HeartbeatHandler.Channel() {
+            @Override
+            public void sendHeartbeat(byte[] bytes) {
+                pooled.connection().write(ByteBuffer.wrap(bytes));
+            }
+
+            @Override
+            public void onHeartbeatTimeout() {
+                discardLater(pooled);
+            }
+        });
+    }
+
+    /**
+     * 连接数，含已租出、空闲及正在连接的连接
+     *
+     * @return 连接数
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (HostPool hostPool : pools.values()) {
+            synchronized (hostPool) {
+                count += hostPool.total;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 空闲连接数
+     *
+     * @return 连接数
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (HostPool hostPool : pools.values()) {
+            synchronized (hostPool) {
+                count += hostPool.idle.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 所有连接的流量及耗时统计快照，含已关闭的连接
+     *
+     * @return 快照
+     */
+    public MetricsSnapshot getMetrics() {
+        ConnectionMetrics total = new ConnectionMetrics();
+        total.add(closedMetrics);
+        int connections = 0;
+        long pendingBytes = 0;
+        long pendingMessages = 0;
+        for (HostPool hostPool : pools.values()) {
+            List<PooledConnection> list;
+            synchronized (hostPool) {
+                list = new ArrayList<PooledConnection>(hostPool.connections);
+            }
+            for (PooledConnection pooled : list) {
+                Connection connection = pooled.connection();
+                total.add(connection.metrics());
+                connections++;
+                pendingBytes += connection.getPendingBytes();
+                pendingMessages += connection.pendingMessages();
+            }
+        }
+        return total.snapshot(connections, pendingBytes, pendingMessages);
+    }
+
+    /**
+     * 关闭连接池，关闭所有连接及I/O线程，等待租用的调用方抛出异常
+     */
+    public void close() {
+        closed = true;
+        Timeout timeout = maintainTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        IOException closedException = new IOException("Pool closed");
+        for (HostPool hostPool : pools.values()) {
+            List<PooledConnection> list;
+            List<ConnectRequest> pending;
+            synchronized (hostPool) {
+                list = new ArrayList<PooledConnection>(hostPool.connections);
+                pending = new ArrayList<ConnectRequest>(hostPool.pending);
+                hostPool.notifyAll();
+            }
+            //不等连接完成或超时，直接唤醒等待连接的租用方
+            for (ConnectRequest request : pending) {
+                request.future.setFailure(closedException);
+            }
+            for (PooledConnection pooled : list) {
+                discard(pooled);
+            }
+        }
+        group.shutdown();
+    }
+
+    /**
+     * 错误处理
+     *
+     * @param e 异常
+     */
+    private void handleError(Exception e) {
+        if (callback != null) {
+            try {
+                callback.onError(e);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 一个服务端的连接，由自身监视器保护
+     */
+    private static class HostPool {
+
+        final InetSocketAddress address;
+        final ArrayDeque<PooledConnection> idle = new ArrayDeque<PooledConnection>();   //空闲连接，最近归还的在前
+        final Set<PooledConnection> connections = new HashSet<PooledConnection>();  //已建立的连接
+        final Set<ConnectRequest> pending = new HashSet<ConnectRequest>();  //租用方正在等待的连接请求
+        int total = 0;  //连接数，含已租出、空闲及正在连接的连接
+        int connecting = 0;     //正在连接的连接数
+
+        HostPool(InetSocketAddress address) {
+            this.address = address;
+        }
+
+    }
+
+    /**
+     * 一次建立连接的请求，done仅I/O线程访问，timeout在交给I/O线程前设置，其余字段由所属主机的连接池锁保护
+     */
+    private static class ConnectRequest {
+
+        final boolean lease;    //是否由租用发起，否则为补足空闲连接
+        final WriteFuture future = new WriteFuture();   //连接结果
+        boolean done = false;
+        Timeout timeout;    //连接超时，连接完成或失败时取消
+        boolean abandoned = false;  //租用方已超时放弃，连接建立后放入空闲连接
+        PooledConnection connection;    //交给租用方的连接
+
+        ConnectRequest(boolean lease) {
+            this.lease = lease;
+        }
+
+    }
+
+}
@@ -1,12 +1,30 @@
 package com.monsent.commons.socket;
 
+import com.monsent.commons.buffer.BufferPool;
+import com.monsent.commons.buffer.PooledBuffer;
+import com.monsent.commons.timer.HashedWheelTimer;
+import com.monsent.commons.timer.IdleMonitor;
+import com.monsent.commons.timer.IdleState;
+
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class TcpServer {
@@ -23,280 +41,1036 @@ public class TcpServer {
 
     }
 
-    private final static long MAX_NO_DATA_SECOND = 30 * 60L;    //最长未接收数据断开连接时长
-    private static Map<Socket, AtomicLong> mapSocket = new ConcurrentHashMap<Socket, AtomicLong>(); //socket、最后接收数据时间键值对
-    private ServerSocket serverSocket;  //服务端socket
-    private boolean accepted = false, readable = false;     //是否可以接收连接，是否继续读数据
-    private Thread threadAccept, threadRead;    //接收线程、读线程
-    private OutputStream os = null;
-    private InputStream is = null;
+    /**
+     * 零拷贝接收回调，数据位于复用的缓冲区中，回调返回后缓冲区即被覆盖，需保留数据时自行拷贝；
+     * 设置后接收的数据只交付此回调，{@link Callback#onReceive(Socket, byte[])}不再被调用
+     */
+    public interface BufferCallback {
+
+        void onReceive(Socket socket, byte[] buffer, int offset, int length);
+
+    }
+
+    /**
+     * 可写状态变化回调，在I/O线程调用；待发送字节数超过高水位时writable为false，写出到低水位及以下后为true
+     */
+    public interface WritabilityCallback {
+
+        void onWritabilityChanged(Socket socket, boolean writable);
+
+    }
+
+    private final static long DEFAULT_READ_IDLE_SECOND = 30 * 60L;    //默认最长未接收数据断开连接时长
+    private final static long DEFAULT_MAX_PENDING_BYTES = 4 * 1024 * 1024L;   //默认每个连接最多待发送字节数
+    private final static long DEFAULT_LOW_WATER_MARK = 32 * 1024L;    //默认低水位
+    private final static long DEFAULT_HIGH_WATER_MARK = 64 * 1024L;   //默认高水位
+    private final static int DEFAULT_ADVERTISE_TTL_SECOND = 60;     //默认服务通告缓存有效期
+    private final static int DEFAULT_MAX_PENDING_CALLBACKS = 1024;  //默认每个连接最多排队回调数
+    private final static long SHUTDOWN_POLL_MILLIS = 10L;   //优雅关闭时检查是否写完的间隔
+    private final ConnectionRegistry registry = new ConnectionRegistry();   //本实例的连接表
+    private volatile ServerSocketChannel serverChannel;  //服务端通道，在接收线程关闭
+    private volatile boolean accepting = false;     //是否接收新连接，关闭时先于通道置为false
+    private EventLoop bossLoop;     //接收连接的事件循环
+    private int port;   //监听端口号
+    private ServiceAdvertiser advertiser;   //局域网服务通告
+    private volatile EventLoopGroup workerGroup;     //读写数据的事件循环组
+    private int workerCount = Runtime.getRuntime().availableProcessors();   //I/O线程数，下次开启生效
+    private WorkerChooser workerChooser = WorkerChooser.ROUND_ROBIN;    //新连接分配方式，下次开启生效
+    private int dispatchThreads = 0;    //回调线程数，0为在I/O线程回调，下次开启生效
+    private int maxPendingCallbacks = DEFAULT_MAX_PENDING_CALLBACKS;    //每个连接最多排队回调数
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.PAUSE_READ;   //回调队列已满时的处理方式
+    private ThreadPoolExecutor dispatchPool;    //回调线程池
+    private final AtomicLong droppedCallbacks = new AtomicLong(0);  //因回调队列已满丢弃的消息数
     private Callback callback;
+    private BufferCallback bufferCallback;
+    private WritabilityCallback writabilityCallback;
+    private FrameDecoder frameDecoder;  //帧解码器，对之后接收的连接生效
+    private long maxPendingBytes = DEFAULT_MAX_PENDING_BYTES;   //每个连接最多待发送字节数，对之后接收的连接生效
+    private long lowWaterMark = DEFAULT_LOW_WATER_MARK;     //低水位，对之后接收的连接生效
+    private long highWaterMark = DEFAULT_HIGH_WATER_MARK;   //高水位，对之后接收的连接生效
+    private long maxBroadcastLagBytes = DEFAULT_MAX_PENDING_BYTES / 4;   //广播时允许的最大积压字节数
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP;    //积压超限连接的处理方式
+    private long readIdleSecond = DEFAULT_READ_IDLE_SECOND;     //读空闲断开时长，0为不检测
+    private long writeIdleSecond = 0L;  //写空闲断开时长，0为不检测
+    private long allIdleSecond = 0L;    //读写空闲断开时长，0为不检测
+    private Heartbeat heartbeat;    //心跳，对之后接收的连接生效，null为不发送心跳
+    private Compression compression;    //压缩，对之后接收的连接生效，null为不压缩
+    private RateLimit inboundRateLimit;     //每个连接的接收限速，对之后接收的连接生效，null为不限速
+    private RateLimit outboundRateLimit;    //每个连接的发送限速，对之后接收的连接生效，null为不限速
+    private RateLimiter globalInboundLimiter;   //所有连接共享的接收限速，对之后接收的连接生效
+    private RateLimiter globalOutboundLimiter;  //所有连接共享的发送限速，对之后接收的连接生效
+    private final CompressionMetrics compressionMetrics = new CompressionMetrics();     //所有连接的压缩计数
+    private HashedWheelTimer timer = HashedWheelTimer.getDefault();     //空闲检测及心跳定时器
+    private final ConnectionMetrics closedMetrics = new ConnectionMetrics();    //已关闭连接的统计汇总
+
+    private final EventLoop.ErrorHandler errorHandler = new EventLoop.ErrorHandler() {
+        @Override
+        public void onError(Exception e) {
+            handleError(e);
+        }
+    };
+
+    private final Connection.Listener connectionListener = new Connection.Listener() {
+        @Override
+        public void onReceive(Connection connection, byte[] bytes, int offset, int length) {
+            fireReceive(connection, bytes, offset, length);
+        }
+
+        @Override
+        public void onClose(Connection connection) {
+            registry.remove(connection);
+            fireDisconnect(connection);
+        }
+
+        @Override
+        public void onWritabilityChanged(Connection connection, boolean writable) {
+            fireWritabilityChanged(connection, writable);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            handleError(e);
+        }
+    };
+
+    private final EventLoop.Handler acceptHandler = new EventLoop.Handler() {
+        @Override
+        public void onSelected(SelectionKey key) {
+            if (key.isAcceptable()) {
+                accept();
+            }
+        }
+    };
 
     public void setCallback(Callback callback) {
         this.callback = callback;
     }
 
     /**
-     * 开启接收连接线程
+     * 设置零拷贝接收回调，设置后{@link Callback}只收到连接、断开及错误通知
+     *
+     * @param bufferCallback 零拷贝接收回调，null表示通过{@link Callback#onReceive(Socket, byte[])}接收
+     */
+    public void setBufferCallback(BufferCallback bufferCallback) {
+        this.bufferCallback = bufferCallback;
+    }
+
+    public void setWritabilityCallback(WritabilityCallback writabilityCallback) {
+        this.writabilityCallback = writabilityCallback;
+    }
+
+    /**
+     * 设置帧解码器，设置后回调收到的是完整帧而非单次读取的数据
+     *
+     * @param frameDecoder 帧解码器，null表示不解码，已设置心跳时不可为null
+     */
+    public void setFrameDecoder(FrameDecoder frameDecoder) {
+        if (frameDecoder == null && heartbeat != null) {
+            throw new IllegalStateException("Heartbeat requires a frame decoder");
+        }
+        this.frameDecoder = frameDecoder;
+    }
+
+    /**
+     * 设置每个连接待发送队列的最大字节数，超出后写入直接失败
+     *
+     * @param maxPendingBytes 最大字节数
+     */
+    public void setMaxPendingBytes(long maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+    /**
+     * 设置每个连接待发送队列的高低水位，对之后接收的连接生效；默认低水位32KB、高水位64KB
+     *
+     * @param lowWaterMark  低水位，待发送字节数降到该值及以下时恢复可写
+     * @param highWaterMark 高水位，待发送字节数超过该值时不可写
+     */
+    public void setWriteBufferWaterMark(long lowWaterMark, long highWaterMark) {
+        if (lowWaterMark < 0 || highWaterMark < lowWaterMark) {
+            throw new IllegalArgumentException("Invalid water mark, low: " + lowWaterMark + ", high: " + highWaterMark);
+        }
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * 设置广播的慢连接处理，待发送数据积压超过maxLagBytes的连接按policy处理，不影响其它连接
+     *
+     * @param maxLagBytes 最大积压字节数
+     * @param policy      处理方式
+     */
+    public void setSlowConsumerPolicy(long maxLagBytes, SlowConsumerPolicy policy) {
+        this.maxBroadcastLagBytes = maxLagBytes;
+        this.slowConsumerPolicy = policy == null ? SlowConsumerPolicy.DROP : policy;
+    }
+
+    /**
+     * 设置读写数据的I/O线程数及新连接的分配方式，下次{@link #startAccept(int)}生效；
+     * 默认线程数为CPU核数、轮询分配。多个线程时不同连接的回调可能在不同线程并发执行，同一连接的回调始终在同一线程
+     *
+     * @param workerCount   I/O线程数
+     * @param workerChooser 分配方式
+     */
+    public void setWorkers(int workerCount, WorkerChooser workerChooser) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount must be positive: " + workerCount);
+        }
+        this.workerCount = workerCount;
+        this.workerChooser = workerChooser == null ? WorkerChooser.ROUND_ROBIN : workerChooser;
+    }
+
+    /**
+     * 设置回调线程，下次开启生效：回调在线程池中执行，同一连接的回调按顺序串行执行，慢回调不阻塞I/O线程；
+     * 此时BufferCallback收到的是数据的拷贝，与Callback共用
+     *
+     * @param threads    回调线程数，0为在I/O线程回调
+     * @param maxPending 每个连接最多排队的回调数，0为不限制
+     * @param policy     回调队列已满时的处理方式
+     */
+    public void setCallbackDispatch(int threads, int maxPending, RejectionPolicy policy) {
+        if (threads < 0 || maxPending < 0) {
+            throw new IllegalArgumentException("Invalid callback dispatch, threads: " + threads
+                    + ", maxPending: " + maxPending);
+        }
+        this.dispatchThreads = threads;
+        this.maxPendingCallbacks = maxPending;
+        this.rejectionPolicy = policy == null ? RejectionPolicy.PAUSE_READ : policy;
+    }
+
+    /**
+     * 因回调队列已满按{@link RejectionPolicy#DROP}或{@link RejectionPolicy#DISCONNECT}丢弃的消息数
+     *
+     * @return 消息数
+     */
+    public long getDroppedCallbacks() {
+        return droppedCallbacks.get();
+    }
+
+    /**
+     * 设置空闲断开时长，对之后接收的连接生效，0为不检测；默认读空闲30分钟
+     *
+     * @param readIdleSecond  未接收数据时长(秒)
+     * @param writeIdleSecond 未发送数据时长(秒)
+     * @param allIdleSecond   既未接收也未发送数据时长(秒)
+     */
+    public void setIdleTimeout(long readIdleSecond, long writeIdleSecond, long allIdleSecond) {
+        this.readIdleSecond = readIdleSecond;
+        this.writeIdleSecond = writeIdleSecond;
+        this.allIdleSecond = allIdleSecond;
+    }
+
+    /**
+     * 设置单个连接的空闲断开时长，0为不检测
+     *
+     * @param socket          客户端
+     * @param readIdleSecond  未接收数据时长(秒)
+     * @param writeIdleSecond 未发送数据时长(秒)
+     * @param allIdleSecond   既未接收也未发送数据时长(秒)
+     */
+    public void setIdleTimeout(Socket socket, long readIdleSecond, long writeIdleSecond, long allIdleSecond) {
+        Connection connection = registry.get(socket);
+        if (connection != null) {
+            connection.setIdleMonitor(newIdleMonitor(connection, readIdleSecond, writeIdleSecond, allIdleSecond));
+        }
+    }
+
+    /**
+     * 设置心跳，对之后接收的连接生效：定时发送ping并自动回复对端的ping，超时未收到任何数据即断开，
+     * 半开连接可在数秒内回收，往返时延计入统计；默认不发送心跳。须先设置帧解码器，保证心跳是独立的帧
+     *
+     * @param heartbeat 心跳，null为不发送心跳
+     */
+    public void setHeartbeat(Heartbeat heartbeat) {
+        if (heartbeat != null && frameDecoder == null) {
+            //无帧解码器时心跳可能与数据合并在一次读取中，无法识别
+            throw new IllegalStateException("Heartbeat requires a frame decoder");
+        }
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * 设置压缩，对之后接收的连接生效；压缩是对称的分帧模式，客户端须同样开启，连接建立时互发握手协商预置字典；
+     * 客户端未开启时不会回退为不压缩，本端收到的数据不是握手时回调onError并断开该连接
+     *
+     * @param compression 压缩配置，null为不压缩
+     */
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * 所有连接的压缩统计，包括节省的字节数及压缩、解压耗时
+     *
+     * @return 快照
+     */
+    public CompressionStats getCompressionStats() {
+        return compressionMetrics.snapshot();
+    }
+
+    /**
+     * 设置每个连接的限速，对之后接收的连接生效；接收超限时暂停读取该连接，发送超限时延后写出，数据不丢弃
+     *
+     * @param inbound  接收限速，null为不限速
+     * @param outbound 发送限速，null为不限速
+     */
+    public void setRateLimit(RateLimit inbound, RateLimit outbound) {
+        this.inboundRateLimit = inbound;
+        this.outboundRateLimit = outbound;
+    }
+
+    /**
+     * 设置所有连接共享的限速，对之后接收的连接生效；与每个连接的限速同时生效，超限时暂停触发超限的连接
+     *
+     * @param inbound  接收限速，null为不限速
+     * @param outbound 发送限速，null为不限速
+     */
+    public void setGlobalRateLimit(RateLimit inbound, RateLimit outbound) {
+        this.globalInboundLimiter = RateLimiter.create(inbound, null);
+        this.globalOutboundLimiter = RateLimiter.create(outbound, null);
+    }
+
+    /**
+     * 设置空闲检测、心跳及限速恢复使用的定时器，默认为进程共享的{@link HashedWheelTimer#getDefault()}
+     *
+     * @param timer 定时器
+     */
+    public void setTimer(HashedWheelTimer timer) {
+        if (timer != null) {
+            this.timer = timer;
+        }
+    }
+
+    /**
+     * 开启接收连接，由一个接收线程接收连接后分配给I/O线程组，连接的读写由所分配的I/O线程处理；
+     * 由Selector在连接就绪、数据可读时唤醒，空闲时不占用CPU
      *
      * @param port 监听端口号
      */
     public void startAccept(final int port) {
-        stopAccept();
-        //断开所有客户端
-        disconnectAll();
-        //关闭服务端
-        closeServerSocket();
-        threadAccept = new Thread(new Runnable() {
+        //关闭已有服务端及所有客户端
+        close();
+        final EventLoop bossLoop;
+        try {
+            bossLoop = new EventLoop("TcpServer-" + port + "-boss", errorHandler);
+        } catch (IOException e) {
+            handleError(e);
+            return;
+        }
+        try {
+            workerGroup = new EventLoopGroup("TcpServer-" + port + "-worker", workerCount, workerChooser, errorHandler);
+        } catch (IOException e) {
+            handleError(e);
+            bossLoop.shutdown();
+            return;
+        }
+        final ServerSocketChannel serverChannel;
+        try {
+            serverChannel = ServerSocketChannel.open();
+        } catch (IOException e) {
+            handleError(e);
+            bossLoop.shutdown();
+            workerGroup.shutdown();
+            workerGroup = null;
+            return;
+        }
+        this.bossLoop = bossLoop;
+        this.port = port;
+        this.serverChannel = serverChannel;
+        accepting = true;
+        if (dispatchThreads > 0) {
+            dispatchPool = newDispatchPool("TcpServer-" + port + "-dispatch-", dispatchThreads);
+        }
+        bossLoop.execute(new Runnable() {
             @Override
             public void run() {
                 try {
-                    serverSocket = new ServerSocket(port);
-                    accepted = true;
+                    serverChannel.configureBlocking(false);
+                    serverChannel.socket().setReuseAddress(true);
+                    serverChannel.socket().bind(new InetSocketAddress(port));
+                    serverChannel.register(bossLoop.selector(), SelectionKey.OP_ACCEPT, acceptHandler);
                 } catch (IOException e) {
                     handleError(e);
+                    closeServerSocket();
                 }
-                while (accepted) {
-                    try {
-                        Socket socket = serverSocket.accept();
-                        mapSocket.put(socket, new AtomicLong(System.currentTimeMillis()));
-                        if (callback != null) {
-                            callback.onAccept(socket);
-                        }
-                    } catch (IOException e) {
-                        handleError(e);
-                    }
+            }
+        });
+        workerGroup.start();
+        bossLoop.start();
+    }
+
+    /**
+     * 在局域网内通告本服务，客户端可通过{@link ServiceDiscovery}按服务名查找地址及端口号；
+     * 须在{@link #startAccept(int)}之后调用，关闭服务端时停止通告
+     *
+     * @param serviceName 服务名，UTF-8编码后不超过499字节
+     */
+    public void advertise(String serviceName) {
+        advertise(serviceName, DEFAULT_ADVERTISE_TTL_SECOND);
+    }
+
+    /**
+     * 在局域网内通告本服务
+     *
+     * @param serviceName 服务名，UTF-8编码后不超过499字节
+     * @param ttlSecond   客户端缓存有效期(秒)
+     * @throws IllegalArgumentException 服务名过长
+     */
+    public void advertise(String serviceName, int ttlSecond) {
+        if (serviceName == null || serviceName.isEmpty()) {
+            handleError(new IllegalArgumentException("serviceName is empty"));
+            return;
+        }
+        //先于停止原有通告检查
+        DiscoveryPacket.checkName(serviceName);
+        if (bossLoop == null) {
+            handleError(new IOException("Server not started"));
+            return;
+        }
+        stopAdvertise();
+        ServiceAdvertiser advertiser = new ServiceAdvertiser(serviceName, port, ttlSecond, errorHandler);
+        try {
+            advertiser.start();
+        } catch (IOException e) {
+            handleError(e);
+            return;
+        }
+        this.advertiser = advertiser;
+    }
+
+    /**
+     * 停止局域网服务通告
+     */
+    public void stopAdvertise() {
+        if (advertiser != null) {
+            advertiser.close();
+            advertiser = null;
+        }
+    }
+
+    /**
+     * 接收所有待处理的连接，分配给I/O线程
+     */
+    private void accept() {
+        EventLoopGroup workerGroup = this.workerGroup;
+        ServerSocketChannel serverChannel = this.serverChannel;
+        if (workerGroup == null || serverChannel == null) {
+            return;
+        }
+        while (accepting) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                handleError(e);
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            final Connection connection = new Connection(channel, workerGroup.next(), frameDecoder, maxPendingBytes,
+                    lowWaterMark, highWaterMark, closedMetrics, connectionListener);
+            if (dispatchPool != null) {
+                connection.setCallbackExecutor(new SerialExecutor(dispatchPool));
+            }
+            RateLimiter inboundLimiter = RateLimiter.create(inboundRateLimit, globalInboundLimiter);
+            RateLimiter outboundLimiter = RateLimiter.create(outboundRateLimit, globalOutboundLimiter);
+            if (inboundLimiter != null || outboundLimiter != null) {
+                connection.setRateLimiters(inboundLimiter, outboundLimiter, timer);
+            }
+            Compression compression = this.compression;
+            if (compression != null) {
+                connection.enableCompression(new CompressionCodec(compression, compressionMetrics));
+            }
+            connection.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    register(connection);
                 }
+            });
+        }
+    }
+
+    /**
+     * 注册连接到所分配的I/O线程，须在该线程调用
+     *
+     * @param connection 连接
+     */
+    private void register(Connection connection) {
+        if (!accepting) {
+            //服务端已关闭
+            connection.close();
+            return;
+        }
+        try {
+            connection.getSocket().setTcpNoDelay(true);
+            connection.register();
+        } catch (IOException e) {
+            handleError(e);
+            connection.close();
+            return;
+        }
+        if (registry.register(connection) < 0) {
+            handleError(new IOException("Too many connections"));
+            connection.close();
+            return;
+        }
+        connection.setIdleMonitor(newIdleMonitor(connection, readIdleSecond, writeIdleSecond, allIdleSecond));
+        if (heartbeat != null) {
+            connection.setHeartbeat(newHeartbeat(connection, heartbeat));
+        }
+        fireAccept(connection);
+    }
+
+    /**
+     * 创建回调线程池，线程数固定，任务队列中每个连接至多一个任务
+     *
+     * @param name    线程名前缀
+     * @param threads 线程数
+     * @return 线程池
+     */
+    private static ThreadPoolExecutor newDispatchPool(final String name, int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, name + index.getAndIncrement());
             }
         });
-        threadAccept.start();
-        startRead();
     }
 
     /**
-     * 停止接收连接线程
+     * 在连接的回调线程执行，未设置回调线程时直接执行
+     *
+     * @param connection 连接
+     * @param task       回调任务
      */
-    private void stopAccept() {
-        accepted = false;
-        if (threadAccept != null && !threadAccept.isInterrupted()) {
-            threadAccept.interrupt();
+    private void dispatch(Connection connection, Runnable task) {
+        SerialExecutor executor = connection.callbackExecutor();
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task, 0);
+        }
+    }
+
+    private void fireAccept(final Connection connection) {
+        if (callback == null) {
+            return;
         }
-        threadAccept = null;
+        dispatch(connection, new Runnable() {
+            @Override
+            public void run() {
+                if (callback != null) {
+                    callback.onAccept(connection.getSocket());
+                }
+            }
+        });
+    }
+
+    private void fireDisconnect(final Connection connection) {
+        if (callback == null) {
+            return;
+        }
+        dispatch(connection, new Runnable() {
+            @Override
+            public void run() {
+                if (callback != null) {
+                    callback.onDisconnect(connection.getSocket());
+                }
+            }
+        });
+    }
+
+    private void fireWritabilityChanged(final Connection connection, final boolean writable) {
+        if (writabilityCallback == null) {
+            return;
+        }
+        dispatch(connection, new Runnable() {
+            @Override
+            public void run() {
+                if (writabilityCallback != null) {
+                    writabilityCallback.onWritabilityChanged(connection.getSocket(), writable);
+                }
+            }
+        });
     }
 
     /**
-     * 开启读数据线程
+     * 交付收到的数据，设置零拷贝回调时只交付零拷贝回调；设置回调线程时拷贝后排队，队列已满按{@link RejectionPolicy}处理
+     *
+     * @param connection 连接
+     * @param bytes      字节数组
+     * @param offset     起始位
+     * @param length     长度
      */
-    private void startRead() {
-        stopRead();
-        threadRead = new Thread(new Runnable() {
+    private void fireReceive(final Connection connection, byte[] bytes, int offset, int length) {
+        final SerialExecutor executor = connection.callbackExecutor();
+        if (executor == null) {
+            if (bufferCallback != null) {
+                bufferCallback.onReceive(connection.getSocket(), bytes, offset, length);
+            } else if (callback != null) {
+                byte[] data = new byte[length];
+                System.arraycopy(bytes, offset, data, 0, length);
+                callback.onReceive(connection.getSocket(), data);
+            }
+            return;
+        }
+        final byte[] data = new byte[length];
+        System.arraycopy(bytes, offset, data, 0, length);
+        Runnable task = new Runnable() {
             @Override
             public void run() {
-                readable = true;
-                while (readable) {
-                    for (Socket socket : mapSocket.keySet()) {
-                        try {
-                            is = socket.getInputStream();
-                            int size = is.available();
-                            if (size > 0) {
-                                mapSocket.get(socket).set(System.currentTimeMillis());
-                                byte[] bytes = new byte[size];
-                                size = is.read(bytes);
-                                if (callback != null) {
-                                    callback.onReceive(socket, bytes);
-                                }
-                            } else {
-                                //{MAX_NO_DATA_SECOND}未收到任何数据，关闭连接
-                                long lastTime = mapSocket.get(socket).get();
-                                if (System.currentTimeMillis() - lastTime > MAX_NO_DATA_SECOND * 1000) {
-                                    disconnect(socket);
-                                    if (callback != null) {
-                                        callback.onDisconnect(socket);
-                                    }
-                                }
-                            }
-                        } catch (IOException e) {
-                            handleError(e);
-                        }
+                if (bufferCallback != null) {
+                    bufferCallback.onReceive(connection.getSocket(), data, 0, data.length);
+                } else if (callback != null) {
+                    callback.onReceive(connection.getSocket(), data);
+                }
+                //队列处理到一半以下后恢复读取
+                if (executor.readSuspended.get() && executor.size() <= maxPendingCallbacks / 2
+                        && executor.readSuspended.compareAndSet(true, false)) {
+                    connection.resumeRead(Connection.SUSPEND_DISPATCH);
+                }
+            }
+        };
+        if (executor.execute(task, maxPendingCallbacks)) {
+            return;
+        }
+        switch (rejectionPolicy) {
+            case DROP:
+                droppedCallbacks.incrementAndGet();
+                break;
+            case DISCONNECT:
+                droppedCallbacks.incrementAndGet();
+                if (connection.close()) {
+                    registry.remove(connection);
+                    fireDisconnect(connection);
+                }
+                break;
+            default:
+                //不丢弃，暂停读取直到队列处理到一半以下
+                executor.execute(task, 0);
+                if (executor.readSuspended.compareAndSet(false, true)) {
+                    connection.suspendRead(Connection.SUSPEND_DISPATCH);
+                }
+                break;
+        }
+    }
+
+    /**
+     * 创建连接的空闲检测，空闲时关闭连接
+     *
+     * @param connection      连接
+     * @param readIdleSecond  未接收数据时长(秒)
+     * @param writeIdleSecond 未发送数据时长(秒)
+     * @param allIdleSecond   既未接收也未发送数据时长(秒)
+     * @return 空闲检测，均不检测时为null
+     */
+    private IdleMonitor newIdleMonitor(final Connection connection, long readIdleSecond, long writeIdleSecond,
+                                       long allIdleSecond) {
+        if (readIdleSecond <= 0 && writeIdleSecond <= 0 && allIdleSecond <= 0) {
+            return null;
+        }
+        return new IdleMonitor(timer, readIdleSecond * 1000, writeIdleSecond * 1000, allIdleSecond * 1000,
+                new IdleMonitor.Listener() {
+                    @Override
+                    public void onIdle(IdleMonitor monitor, IdleState state) {
+                        closeLater(connection);
                     }
+                });
+    }
+
+    /**
+     * 在连接的I/O线程关闭连接并通知，供定时器回调使用，用户回调不在共享的定时器线程执行
+     *
+     * @param connection 连接
+     */
+    private void closeLater(final Connection connection) {
+        connection.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (connection.close()) {
+                    registry.remove(connection);
+                    fireDisconnect(connection);
                 }
             }
         });
-        threadRead.start();
     }
 
     /**
-     * 停止读数据线程
+     * 创建连接的心跳，超时未收到数据时关闭连接
+     *
+     * @param connection 连接
+     * @param heartbeat  心跳配置
+     * @return 心跳
      */
-    private void stopRead() {
-        readable = false;
-        if (threadRead != null && !threadRead.isInterrupted()) {
-            threadRead.interrupt();
-        }
-        threadRead = null;
+    private HeartbeatHandler newHeartbeat(final Connection connection, Heartbeat heartbeat) {
+        return new HeartbeatHandler(heartbeat, timer, connection.metrics(), new HeartbeatHandler.Channel() {
+            @Override
+            public void sendHeartbeat(byte[] bytes) {
+                connection.write(ByteBuffer.wrap(bytes));
+            }
+
+            @Override
+            public void onHeartbeatTimeout() {
+                closeLater(connection);
+            }
+        });
     }
 
     /**
-     * 判断远程socket是否关闭
+     * 客户端连接最近一次心跳往返时延
      *
-     * @param socket socket
-     * @return 是否关闭
+     * @param socket 客户端
+     * @return 时延(纳秒)，未连接、未设置心跳或尚未测得时为-1
      */
-    private boolean isSocketClosed(Socket socket) {
-        try {
-            socket.sendUrgentData(0xFF);
-            return false;
-        } catch (IOException e) {
-            return true;
+    public long getRttNanos(Socket socket) {
+        Connection connection = registry.get(socket);
+        return connection == null ? -1 : connection.getRttNanos();
+    }
+
+    /**
+     * 客户端连接是否可写，不可写时应暂停向其写入，待{@link WritabilityCallback}通知恢复后继续
+     *
+     * @param socket 客户端
+     * @return 是否可写，未连接时为false
+     */
+    public boolean isWritable(Socket socket) {
+        Connection connection = registry.get(socket);
+        return connection != null && connection.isWritable();
+    }
+
+    /**
+     * 所有连接自服务端创建起的流量及耗时统计汇总，包括已断开的连接；统计常开，取快照不影响读写
+     *
+     * @return 快照
+     */
+    public MetricsSnapshot getMetrics() {
+        ConnectionMetrics total = new ConnectionMetrics();
+        total.add(closedMetrics);
+        int connections = 0;
+        long pendingBytes = 0;
+        long pendingMessages = 0;
+        for (Connection connection : registry.connections()) {
+            if (!connection.isOpen()) {
+                continue;
+            }
+            total.add(connection.metrics());
+            connections++;
+            pendingBytes += connection.getPendingBytes();
+            pendingMessages += connection.pendingMessages();
         }
+        return total.snapshot(connections, pendingBytes, pendingMessages);
+    }
+
+    /**
+     * 单个客户端连接的流量及耗时统计
+     *
+     * @param socket 客户端
+     * @return 快照，未连接时为null
+     */
+    public MetricsSnapshot getMetrics(Socket socket) {
+        Connection connection = registry.get(socket);
+        return connection == null ? null : connection.getMetrics();
     }
 
     /**
-     * 向客户端写入数据
+     * 向客户端异步写入数据，加入该连接的待发送队列后立即返回，写入完成前bytes不可修改
      *
      * @param socket 客户端
      * @param bytes  字节数组
      * @param off    起始位
      * @param len    长度
-     * @return 是否写入成功
+     * @return 写入结果
      */
-    public boolean write(Socket socket, byte[] bytes, int off, int len) {
+    public WriteFuture write(Socket socket, byte[] bytes, int off, int len) {
         if (socket == null || bytes == null) {
-            return false;
+            return WriteFuture.failed(new IllegalArgumentException("socket or bytes is null"));
         }
-        try {
-            os = socket.getOutputStream();
-            os.write(bytes, off, len);
-            os.flush();
-        } catch (IOException e) {
-            handleError(e);
-            return false;
+        return write(registry.get(socket), bytes, off, len);
+    }
+
+    /**
+     * 按连接ID向客户端异步写入数据，写入完成前bytes不可修改
+     *
+     * @param id    连接ID
+     * @param bytes 字节数组
+     * @param off   起始位
+     * @param len   长度
+     * @return 写入结果
+     */
+    public WriteFuture write(long id, byte[] bytes, int off, int len) {
+        if (bytes == null) {
+            return WriteFuture.failed(new IllegalArgumentException("bytes is null"));
         }
-        return true;
+        return write(registry.get(id), bytes, off, len);
     }
 
     /**
-     * 向客户端写入数据
+     * 按连接ID向客户端异步写入数据
+     *
+     * @param id    连接ID
+     * @param bytes 字节数组
+     * @return 写入结果
+     */
+    public WriteFuture write(long id, byte[] bytes) {
+        if (bytes == null) {
+            return WriteFuture.failed(new IllegalArgumentException("bytes is null"));
+        }
+        return write(id, bytes, 0, bytes.length);
+    }
+
+    private WriteFuture write(Connection connection, byte[] bytes, int off, int len) {
+        if (connection == null) {
+            return WriteFuture.failed(new IOException("Socket not connected"));
+        }
+        return connection.write(ByteBuffer.wrap(bytes, off, len));
+    }
+
+    /**
+     * 向客户端异步写入数据
      *
      * @param socket 客户端
      * @param bytes  字节数组
-     * @return 是否写入成功
+     * @return 写入结果
      */
-    public boolean write(Socket socket, byte[] bytes) {
-        return bytes != null && write(socket, bytes, 0, bytes.length);
+    public WriteFuture write(Socket socket, byte[] bytes) {
+        if (bytes == null) {
+            return WriteFuture.failed(new IllegalArgumentException("bytes is null"));
+        }
+        return write(socket, bytes, 0, bytes.length);
     }
 
     /**
-     * 向客户端写入数据
+     * 向客户端异步写入数据
      *
      * @param socket  客户端
      * @param message 字符串
-     * @return 是否写入成功
+     * @return 写入结果
      */
-    public boolean write(Socket socket, String message) {
-        return message != null && write(socket, message.getBytes());
+    public WriteFuture write(Socket socket, String message) {
+        if (message == null) {
+            return WriteFuture.failed(new IllegalArgumentException("message is null"));
+        }
+        return write(socket, message.getBytes());
     }
 
     /**
-     * 向客户端广播写入数据
+     * 向客户端异步发送整个文件，文件内容由内核直接发送到socket，不拷贝到用户态
+     *
+     * @param socket   客户端
+     * @param file     文件
+     * @param listener 发送进度回调，可为null
+     * @return 写入结果
+     */
+    public WriteFuture sendFile(Socket socket, File file, ProgressListener listener) {
+        if (file == null) {
+            return WriteFuture.failed(new IllegalArgumentException("file is null"));
+        }
+        FileChannel channel;
+        try {
+            channel = new FileInputStream(file).getChannel();
+        } catch (IOException e) {
+            return WriteFuture.failed(e);
+        }
+        return sendFile(socket, channel, 0, file.length(), true, listener);
+    }
+
+    /**
+     * 向客户端异步发送文件区间，文件内容由内核直接发送到socket，不拷贝到用户态；发送结束后不关闭channel
+     *
+     * @param socket   客户端
+     * @param channel  文件通道
+     * @param position 起始位置
+     * @param count    发送字节数
+     * @param listener 发送进度回调，可为null
+     * @return 写入结果
+     */
+    public WriteFuture sendFile(Socket socket, FileChannel channel, long position, long count,
+                                ProgressListener listener) {
+        return sendFile(socket, channel, position, count, false, listener);
+    }
+
+    private WriteFuture sendFile(Socket socket, FileChannel channel, long position, long count,
+                                 boolean closeOnComplete, ProgressListener listener) {
+        FileRegion region = new FileRegion(channel, position, count, closeOnComplete, listener);
+        if (socket == null || channel == null || position < 0 || count < 0) {
+            region.release();
+            return WriteFuture.failed(new IllegalArgumentException("Invalid file region"));
+        }
+        Connection connection = registry.get(socket);
+        if (connection == null) {
+            region.release();
+            return WriteFuture.failed(new IOException("Socket not connected"));
+        }
+        return connection.sendFile(region);
+    }
+
+    /**
+     * 向客户端广播写入数据，数据只拷贝一次到共享的只读直接内存缓冲区，各连接的待发送队列引用同一份数据；
+     * 积压超限的慢连接按{@link #setSlowConsumerPolicy(long, SlowConsumerPolicy)}处理，不拖慢其它连接
      *
      * @param bytes 字节数组
      * @param off   起始位
      * @param len   长度
+     * @return 加入待发送队列的连接数
+     * @throws IndexOutOfBoundsException off、len越界，与write一致
      */
-    public void broadcast(byte[] bytes, int off, int len) {
-        for (Socket socket : mapSocket.keySet()) {
-            write(socket, bytes, off, len);
+    public int broadcast(byte[] bytes, int off, int len) {
+        if (bytes == null) {
+            return 0;
+        }
+        //先于借用缓冲区检查，越界时不泄漏
+        if (off < 0 || len < 0 || off > bytes.length - len) {
+            throw new IndexOutOfBoundsException("off: " + off + ", len: " + len + ", length: " + bytes.length);
+        }
+        if (registry.isEmpty()) {
+            return 0;
         }
+        PooledBuffer pooled = BufferPool.direct().acquire(len);
+        ByteBuffer shared = pooled.buffer();
+        shared.put(bytes, off, len).flip();
+        ByteBuffer readOnly = shared.asReadOnlyBuffer();
+        SharedBufferReleaser releaser = new SharedBufferReleaser(pooled);
+        int count = 0;
+        for (Connection connection : registry.connections()) {
+            if (connection.getPendingBytes() > maxBroadcastLagBytes) {
+                //已被对端、空闲检测或之前的广播关闭时不再通知
+                if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT && connection.close()) {
+                    registry.remove(connection);
+                    fireDisconnect(connection);
+                }
+                continue;
+            }
+            releaser.retain();
+            connection.write(readOnly.duplicate()).addListener(releaser);
+            count++;
+        }
+        releaser.onComplete(null);
+        return count;
     }
 
     /**
      * 向客户端广播写入数据
      *
      * @param bytes 字节数组
+     * @return 加入待发送队列的连接数
      */
-    public void broadcast(byte[] bytes) {
-        broadcast(bytes, 0, bytes == null ? 0 : bytes.length);
+    public int broadcast(byte[] bytes) {
+        return broadcast(bytes, 0, bytes == null ? 0 : bytes.length);
     }
 
     /**
      * 向客户端广播写入数据
      *
      * @param message 字符串
+     * @return 加入待发送队列的连接数
      */
-    public void broadcast(String message) {
-        if (message != null) {
-            broadcast(message.getBytes());
-        }
+    public int broadcast(String message) {
+        return message == null ? 0 : broadcast(message.getBytes());
     }
 
     /**
-     * 关闭客户端
+     * 断开客户端连接
      *
-     * @param socket 客户端socket
+     * @param socket 客户端
      */
-    private void closeSocket(Socket socket) {
-        if (socket == null) {
-            return;
-        }
-        try {
-            socket.close();
-        } catch (IOException e) {
-            handleError(e);
-        }
-        socket = null;
+    public void disconnect(Socket socket) {
+        disconnect(registry.get(socket));
     }
 
     /**
-     * 断开客户端连接
+     * 按连接ID断开客户端连接
      *
-     * @param socket 客户端
+     * @param id 连接ID
      */
-    public void disconnect(Socket socket) {
-        closeSocket(socket);
-        mapSocket.remove(socket);
+    public void disconnect(long id) {
+        disconnect(registry.get(id));
+    }
+
+    private void disconnect(Connection connection) {
+        if (connection != null) {
+            registry.remove(connection);
+            connection.close();
+        }
     }
 
     /**
      * 断开所有客户端连接
      */
     public void disconnectAll() {
-        for (Socket socket : mapSocket.keySet()) {
-            disconnect(socket);
+        for (Connection connection : registry.connections()) {
+            disconnect(connection);
         }
     }
 
     /**
-     * 关闭服务端连接
+     * 客户端的连接ID，在本服务端内唯一且不复用，可代替socket寻址
+     *
+     * @param socket 客户端
+     * @return 连接ID，未连接时为-1
+     */
+    public long getConnectionId(Socket socket) {
+        Connection connection = registry.get(socket);
+        return connection == null ? -1 : connection.getId();
+    }
+
+    /**
+     * 连接ID对应的客户端
+     *
+     * @param id 连接ID
+     * @return 客户端，未连接时为null
+     */
+    public Socket getSocket(long id) {
+        Connection connection = registry.get(id);
+        return connection == null ? null : connection.getSocket();
+    }
+
+    /**
+     * 关闭服务端连接：立即停止接收新连接，通道在接收线程关闭，不与正在进行的accept并发
      */
     private void closeServerSocket() {
-        if (serverSocket != null) {
-            try {
-                serverSocket.close();
-            } catch (IOException e) {
-                handleError(e);
+        accepting = false;
+        final ServerSocketChannel serverChannel = this.serverChannel;
+        if (serverChannel == null) {
+            return;
+        }
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serverChannel.close();
+                } catch (IOException e) {
+                    handleError(e);
+                }
             }
-            serverSocket = null;
+        };
+        EventLoop bossLoop = this.bossLoop;
+        if (bossLoop == null || bossLoop.inEventLoop()) {
+            task.run();
+        } else {
+            bossLoop.execute(task);
         }
     }
 
     /**
-     * 关闭数据流
+     * 停止事件循环
      */
-    private void closeStream() {
-        if (is != null) {
-            try {
-                is.close();
-            } catch (IOException e) {
-                handleError(e);
-            }
+    private void stopEventLoop() {
+        if (bossLoop != null) {
+            bossLoop.shutdown();
+            bossLoop = null;
         }
-        if (os != null) {
-            try {
-                os.close();
-            } catch (IOException e) {
-                handleError(e);
-            }
+        if (workerGroup != null) {
+            workerGroup.shutdown();
+            workerGroup = null;
+        }
+        if (dispatchPool != null) {
+            //已排队的回调执行完后线程退出
+            dispatchPool.shutdown();
+            dispatchPool = null;
         }
     }
 
@@ -304,11 +1078,127 @@ public class TcpServer {
      * 关闭连接
      */
     public void close() {
-        stopAccept();
-        stopRead();
-        closeStream();
+        stopAdvertise();
         disconnectAll();
         closeServerSocket();
+        stopEventLoop();
+    }
+
+    /**
+     * 优雅关闭：停止接收新连接，暂停读取新数据，等待已收到数据的回调执行完、待发送队列写完后关闭；
+     * 超时后丢弃剩余数据及回调并关闭。阻塞调用线程，不可在回调中调用
+     *
+     * @param timeoutMillis 最长等待时间(毫秒)
+     * @return 关闭结果
+     */
+    public ShutdownReport shutdownGracefully(long timeoutMillis) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeoutMillis));
+        stopAdvertise();
+        closeServerSocket();
+        List<Connection> connections = registry.connections();
+        long[] bytesWritten = new long[connections.size()];
+        long[] messagesWritten = new long[connections.size()];
+        Set<EventLoop> eventLoops = new HashSet<EventLoop>();
+        for (int i = 0; i < connections.size(); i++) {
+            Connection connection = connections.get(i);
+            MetricsSnapshot metrics = connection.getMetrics();
+            bytesWritten[i] = metrics.getBytesWritten();
+            messagesWritten[i] = metrics.getMessagesWritten();
+            connection.suspendRead(Connection.SUSPEND_SHUTDOWN);
+            eventLoops.add(connection.eventLoop());
+        }
+        boolean completed = awaitEventLoops(eventLoops, deadline) && awaitDrained(connections, deadline);
+        long bytesDropped = 0;
+        long messagesDropped = 0;
+        long callbacksDropped = 0;
+        for (Connection connection : connections) {
+            if (connection.isOpen()) {
+                bytesDropped += connection.getPendingBytes();
+                messagesDropped += connection.pendingMessages();
+            }
+            SerialExecutor executor = connection.callbackExecutor();
+            if (executor != null) {
+                callbacksDropped += executor.clear();
+            }
+        }
+        ThreadPoolExecutor dispatchPool = this.dispatchPool;
+        close();
+        if (dispatchPool != null) {
+            //等待正在执行的回调结束
+            try {
+                dispatchPool.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long bytesDrained = 0;
+        long messagesDrained = 0;
+        for (int i = 0; i < connections.size(); i++) {
+            MetricsSnapshot metrics = connections.get(i).getMetrics();
+            bytesDrained += metrics.getBytesWritten() - bytesWritten[i];
+            messagesDrained += metrics.getMessagesWritten() - messagesWritten[i];
+        }
+        return new ShutdownReport(connections.size(), bytesDrained, messagesDrained, bytesDropped, messagesDropped,
+                callbacksDropped, System.nanoTime() - start, completed);
+    }
+
+    /**
+     * 等待I/O线程执行完已投递的任务，此后暂停读取已生效，I/O线程上不再有正在交付的数据
+     *
+     * @param eventLoops I/O线程
+     * @param deadline   截止时间(纳秒)
+     * @return 是否在截止时间前完成
+     */
+    private boolean awaitEventLoops(Set<EventLoop> eventLoops, long deadline) {
+        final CountDownLatch latch = new CountDownLatch(eventLoops.size());
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            return latch.await(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 等待所有连接的回调执行完、待发送队列写完；先检查回调再检查队列，回调中写入的数据也会等待写完
+     *
+     * @param connections 连接
+     * @param deadline    截止时间(纳秒)
+     * @return 是否在截止时间前完成
+     */
+    private boolean awaitDrained(List<Connection> connections, long deadline) {
+        while (true) {
+            boolean drained = true;
+            for (Connection connection : connections) {
+                SerialExecutor executor = connection.callbackExecutor();
+                if (executor != null && !executor.isIdle() || connection.isOpen() && connection.pendingMessages() > 0) {
+                    drained = false;
+                    break;
+                }
+            }
+            if (drained) {
+                return true;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(SHUTDOWN_POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remaining) + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
     }
 
     /**
@@ -326,4 +1216,29 @@ public class TcpServer {
         }
     }
 
+    /**
+     * 广播共享缓冲区的引用计数，所有连接写入完成后归还缓冲池
+     */
+    private static class SharedBufferReleaser implements WriteFuture.Listener {
+
+        private final PooledBuffer pooled;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        SharedBufferReleaser(PooledBuffer pooled) {
+            this.pooled = pooled;
+        }
+
+        void retain() {
+            refCount.incrementAndGet();
+        }
+
+        @Override
+        public void onComplete(WriteFuture future) {
+            if (refCount.decrementAndGet() == 0) {
+                pooled.release();
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,68 @@
+package com.monsent.commons.socket;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶：只保存令牌耗尽的时刻，取令牌为一次CAS；令牌可透支，
+ * 透支后返回补足所需的时长，由调用方暂停相应时长，保证长期速率不超过配额
+ */
+class TokenBucket {
+
+    private final static double NANOS_PER_SECOND = 1000000000D;
+    private final double nanosPerToken;     //生成一个令牌的时长
+    private final long burstNanos;  //桶容量对应的时长
+    private final AtomicLong emptyNanos;    //令牌耗尽的时刻，不晚于当前时刻-burstNanos时桶为满
+
+    /**
+     * @param tokensPerSecond 每秒令牌数，须为正数
+     * @param burstMillis     桶容量对应的时长(毫秒)
+     */
+    TokenBucket(long tokensPerSecond, long burstMillis) {
+        this.nanosPerToken = NANOS_PER_SECOND / tokensPerSecond;
+        this.burstNanos = burstMillis * 1000000L;
+        this.emptyNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * 取令牌，不足时透支
+     *
+     * @param tokens 令牌数
+     * @param now    当前时刻(纳秒)
+     * @return 补足透支所需的时长(纳秒)，未透支为0
+     */
+    long acquire(long tokens, long now) {
+        if (tokens <= 0) {
+            return delay(now);
+        }
+        long cost = (long) (tokens * nanosPerToken);
+        while (true) {
+            long current = emptyNanos.get();
+            long next = Math.max(current, now - burstNanos) + cost;
+            if (emptyNanos.compareAndSet(current, next)) {
+                return Math.max(0L, next - now);
+            }
+        }
+    }
+
+    /**
+     * 补足透支所需的时长
+     *
+     * @param now 当前时刻(纳秒)
+     * @return 时长(纳秒)，未透支为0
+     */
+    long delay(long now) {
+        return Math.max(0L, emptyNanos.get() - now);
+    }
+
+    /**
+     * 可用令牌数
+     *
+     * @param now 当前时刻(纳秒)
+     * @return 令牌数，透支时为0
+     */
+    long available(long now) {
+        long elapsed = Math.min(now - emptyNanos.get(), burstNanos);
+        return elapsed <= 0 ? 0L : (long) (elapsed / nanosPerToken);
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * UDP客户端，通道连接到固定的服务端，只收发该服务端的数据报；接收由单个事件循环线程处理
+ */
+public class UdpClient {
+
+    public interface Callback {
+
+        /**
+         * 地址已解析、本地端口已绑定，在接收线程调用，连接前的写入已发出
+         */
+        void onConnect();
+
+        void onReceive(byte[] bytes);
+
+        void onError(Exception e);
+
+    }
+
+    /**
+     * 零拷贝接收回调，数据位于复用的接收缓冲区中，回调返回后缓冲区即被覆盖，需保留数据时自行拷贝；
+     * 设置后接收的数据只交付此回调，{@link Callback#onReceive(byte[])}不再被调用
+     */
+    public interface BufferCallback {
+
+        void onReceive(byte[] buffer, int offset, int length);
+
+    }
+
+    private volatile DatagramEndpoint endpoint;
+    private boolean sequenceEnabled = false;    //是否收发序号，下次连接生效
+    private Callback callback;
+    private BufferCallback bufferCallback;
+
+    private final DatagramEndpoint.Listener endpointListener = new DatagramEndpoint.Listener() {
+        @Override
+        public void onOpen() {
+            if (callback != null) {
+                callback.onConnect();
+            }
+        }
+
+        @Override
+        public void onReceive(InetSocketAddress address, byte[] bytes, int offset, int length) {
+            if (bufferCallback != null) {
+                bufferCallback.onReceive(bytes, offset, length);
+            } else if (callback != null) {
+                byte[] data = new byte[length];
+                System.arraycopy(bytes, offset, data, 0, length);
+                callback.onReceive(data);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            handleError(e);
+        }
+    };
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * 设置零拷贝接收回调，设置后{@link Callback}只收到连接及错误通知
+     *
+     * @param bufferCallback 零拷贝接收回调，null表示通过{@link Callback#onReceive(byte[])}接收
+     */
+    public void setBufferCallback(BufferCallback bufferCallback) {
+        this.bufferCallback = bufferCallback;
+    }
+
+    /**
+     * 设置是否收发序号，下次连接生效；开启后每个数据报前加4字节序号，用于统计丢失、乱序及重复，
+     * 收发双方须一致
+     *
+     * @param sequenceEnabled 是否开启
+     */
+    public void setSequenceEnabled(boolean sequenceEnabled) {
+        this.sequenceEnabled = sequenceEnabled;
+    }
+
+    /**
+     * 连接服务端，UDP无握手，只绑定本地端口并限定收发对象；地址在接收线程中异步解析，完成后回调onConnect，
+     * 解析完成前的写入暂存到连接后发出，解析失败时回调onError
+     *
+     * @param address 服务端地址
+     * @param port    服务端端口号
+     */
+    public void connect(final String address, final int port) {
+        disconnect();
+        DatagramEndpoint endpoint;
+        try {
+            endpoint = new DatagramEndpoint("UdpClient-" + port, sequenceEnabled, endpointListener);
+        } catch (IOException e) {
+            handleError(e);
+            return;
+        }
+        this.endpoint = endpoint;
+        endpoint.open(new DatagramEndpoint.Setup() {
+            @Override
+            public SocketAddress configure(DatagramChannel channel) throws IOException {
+                InetSocketAddress remoteAddress = new InetSocketAddress(address, port);
+                if (remoteAddress.isUnresolved()) {
+                    throw new IOException("Unresolved address: " + address);
+                }
+                channel.connect(remoteAddress);
+                return remoteAddress;
+            }
+        });
+    }
+
+    /**
+     * 是否已连接，地址解析完成并已绑定本地端口
+     *
+     * @return 是否
+     */
+    public boolean isConnected() {
+        DatagramEndpoint endpoint = this.endpoint;
+        return endpoint != null && endpoint.isOpen();
+    }
+
+    /**
+     * 发送数据报，连接后在调用线程直接发送，不排队；发送缓冲区已满时丢弃。连接完成前暂存，最多64个
+     *
+     * @param bytes 字节数组
+     * @param off   起始位
+     * @param len   长度
+     * @return 是否已发送或暂存
+     */
+    public boolean write(byte[] bytes, int off, int len) {
+        if (bytes == null) {
+            handleError(new IllegalArgumentException("bytes is null"));
+            return false;
+        }
+        DatagramEndpoint endpoint = this.endpoint;
+        if (endpoint == null) {
+            handleError(new IOException("Socket not connected"));
+            return false;
+        }
+        return endpoint.send(null, bytes, off, len);
+    }
+
+    /**
+     * 发送数据报
+     *
+     * @param bytes 字节数组
+     * @return 是否已发送或暂存
+     */
+    public boolean write(byte[] bytes) {
+        if (bytes == null) {
+            handleError(new IllegalArgumentException("bytes is null"));
+            return false;
+        }
+        return write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 发送字符串
+     *
+     * @param message 字符串
+     * @return 是否已发送或暂存
+     */
+    public boolean write(String message) {
+        if (message == null) {
+            handleError(new IllegalArgumentException("message is null"));
+            return false;
+        }
+        return write(message.getBytes());
+    }
+
+    /**
+     * 收发统计
+     *
+     * @return 快照，未连接时为null
+     */
+    public DatagramStats getStats() {
+        DatagramEndpoint endpoint = this.endpoint;
+        return endpoint == null ? null : endpoint.stats();
+    }
+
+    /**
+     * 断开连接
+     */
+    public void disconnect() {
+        DatagramEndpoint endpoint = this.endpoint;
+        if (endpoint != null) {
+            endpoint.close();
+            this.endpoint = null;
+        }
+    }
+
+    /**
+     * 错误处理
+     *
+     * @param e 异常
+     */
+    private void handleError(Exception e) {
+        if (callback != null) {
+            try {
+                callback.onError(e);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+}
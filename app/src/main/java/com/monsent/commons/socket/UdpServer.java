@@ -0,0 +1,205 @@
+package com.monsent.commons.socket;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * UDP服务端，适用于允许丢失的高频数据：无连接、无队头阻塞，接收由单个事件循环线程处理
+ */
+public class UdpServer {
+
+    public interface Callback {
+
+        void onReceive(InetSocketAddress address, byte[] bytes);
+
+        void onError(Exception e);
+
+    }
+
+    /**
+     * 零拷贝接收回调，数据位于复用的接收缓冲区中，回调返回后缓冲区即被覆盖，需保留数据时自行拷贝；
+     * 设置后接收的数据只交付此回调，{@link Callback#onReceive(InetSocketAddress, byte[])}不再被调用
+     */
+    public interface BufferCallback {
+
+        void onReceive(InetSocketAddress address, byte[] buffer, int offset, int length);
+
+    }
+
+    private volatile DatagramEndpoint endpoint;
+    private boolean sequenceEnabled = false;    //是否收发序号，下次开启生效
+    private int receiveBufferSize = 0;  //socket接收缓冲区大小，0为系统默认，下次开启生效
+    private Callback callback;
+    private BufferCallback bufferCallback;
+
+    private final DatagramEndpoint.Listener endpointListener = new DatagramEndpoint.Listener() {
+        @Override
+        public void onOpen() {
+        }
+
+        @Override
+        public void onReceive(InetSocketAddress address, byte[] bytes, int offset, int length) {
+            if (bufferCallback != null) {
+                bufferCallback.onReceive(address, bytes, offset, length);
+            } else if (callback != null) {
+                byte[] data = new byte[length];
+                System.arraycopy(bytes, offset, data, 0, length);
+                callback.onReceive(address, data);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            handleError(e);
+        }
+    };
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * 设置零拷贝接收回调，设置后{@link Callback}只收到错误通知
+     *
+     * @param bufferCallback 零拷贝接收回调，null表示通过{@link Callback#onReceive(InetSocketAddress, byte[])}接收
+     */
+    public void setBufferCallback(BufferCallback bufferCallback) {
+        this.bufferCallback = bufferCallback;
+    }
+
+    /**
+     * 设置是否收发序号，下次开启生效；开启后每个数据报前加4字节序号，用于统计丢失、乱序及重复，
+     * 收发双方须一致
+     *
+     * @param sequenceEnabled 是否开启
+     */
+    public void setSequenceEnabled(boolean sequenceEnabled) {
+        this.sequenceEnabled = sequenceEnabled;
+    }
+
+    /**
+     * 设置socket接收缓冲区大小，下次开启生效；突发数据较多时调大可减少丢包
+     *
+     * @param receiveBufferSize 字节数，0为系统默认
+     */
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * 开启接收，由Selector在数据可读时唤醒，每次唤醒读完所有待接收的数据报；在接收线程中异步绑定端口，
+     * 绑定失败时回调onError
+     *
+     * @param port 监听端口号
+     */
+    public void start(final int port) {
+        close();
+        DatagramEndpoint endpoint;
+        try {
+            endpoint = new DatagramEndpoint("UdpServer-" + port, sequenceEnabled, endpointListener);
+        } catch (IOException e) {
+            handleError(e);
+            return;
+        }
+        final int receiveBufferSize = this.receiveBufferSize;
+        this.endpoint = endpoint;
+        endpoint.open(new DatagramEndpoint.Setup() {
+            @Override
+            public SocketAddress configure(DatagramChannel channel) throws IOException {
+                channel.socket().setReuseAddress(true);
+                if (receiveBufferSize > 0) {
+                    channel.socket().setReceiveBufferSize(receiveBufferSize);
+                }
+                channel.socket().bind(new InetSocketAddress(port));
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 向客户端发送数据报，绑定端口后在调用线程直接发送，不排队；发送缓冲区已满时丢弃。绑定完成前暂存，最多64个
+     *
+     * @param address 客户端地址
+     * @param bytes   字节数组
+     * @param off     起始位
+     * @param len     长度
+     * @return 是否已发送或暂存
+     */
+    public boolean send(InetSocketAddress address, byte[] bytes, int off, int len) {
+        if (address == null || bytes == null) {
+            handleError(new IllegalArgumentException("address or bytes is null"));
+            return false;
+        }
+        DatagramEndpoint endpoint = this.endpoint;
+        if (endpoint == null) {
+            handleError(new IOException("Server not started"));
+            return false;
+        }
+        return endpoint.send(address, bytes, off, len);
+    }
+
+    /**
+     * 向客户端发送数据报
+     *
+     * @param address 客户端地址
+     * @param bytes   字节数组
+     * @return 是否已发送或暂存
+     */
+    public boolean send(InetSocketAddress address, byte[] bytes) {
+        if (bytes == null) {
+            handleError(new IllegalArgumentException("bytes is null"));
+            return false;
+        }
+        return send(address, bytes, 0, bytes.length);
+    }
+
+    /**
+     * 收发统计汇总，序号统计为所有客户端之和
+     *
+     * @return 快照，未开启时为null
+     */
+    public DatagramStats getStats() {
+        DatagramEndpoint endpoint = this.endpoint;
+        return endpoint == null ? null : endpoint.stats();
+    }
+
+    /**
+     * 单个客户端的序号统计
+     *
+     * @param address 客户端地址
+     * @return 快照，未开启时为null
+     */
+    public DatagramStats getStats(InetSocketAddress address) {
+        DatagramEndpoint endpoint = this.endpoint;
+        return endpoint == null ? null : endpoint.stats(address);
+    }
+
+    /**
+     * 关闭服务端
+     */
+    public void close() {
+        DatagramEndpoint endpoint = this.endpoint;
+        if (endpoint != null) {
+            endpoint.close();
+            this.endpoint = null;
+        }
+    }
+
+    /**
+     * 错误处理
+     *
+     * @param e 异常
+     */
+    private void handleError(Exception e) {
+        if (callback != null) {
+            try {
+                callback.onError(e);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.monsent.commons.socket;
+
+/**
+ * 新连接分配到I/O线程(worker)的方式
+ */
+public enum WorkerChooser {
+
+    /**
+     * 依次轮流分配
+     */
+    ROUND_ROBIN,
+
+    /**
+     * 分配到当前连接数最少的线程
+     */
+    LEAST_CONNECTIONS
+
+}
@@ -0,0 +1,140 @@
+package com.monsent.commons.socket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 异步写入结果，数据全部写入socket发送缓冲区或写入失败时完成
+ */
+public class WriteFuture {
+
+    /**
+     * 完成监听，在完成写入的线程(通常为I/O线程)回调，不应执行耗时操作
+     */
+    public interface Listener {
+
+        void onComplete(WriteFuture future);
+
+    }
+
+    private boolean done = false;
+    private Throwable cause;
+    private List<Listener> listeners;
+
+    /**
+     * 创建已失败的结果
+     *
+     * @param cause 失败原因
+     * @return 结果
+     */
+    static WriteFuture failed(Throwable cause) {
+        WriteFuture future = new WriteFuture();
+        future.setFailure(cause);
+        return future;
+    }
+
+    /**
+     * 是否已完成
+     *
+     * @return 是否
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 是否成功完成
+     *
+     * @return 是否
+     */
+    public synchronized boolean isSuccess() {
+        return done && cause == null;
+    }
+
+    /**
+     * 失败原因
+     *
+     * @return 失败原因，未完成或成功时为null
+     */
+    public synchronized Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * 等待完成
+     *
+     * @param timeoutMillis 最长等待时长(毫秒)
+     * @return 是否在超时前完成
+     * @throws InterruptedException 等待被中断
+     */
+    public synchronized boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!done) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * 添加完成监听，已完成时立即回调
+     *
+     * @param listener 监听
+     */
+    public void addListener(Listener listener) {
+        synchronized (this) {
+            if (!done) {
+                if (listeners == null) {
+                    listeners = new ArrayList<Listener>(1);
+                }
+                listeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    void setSuccess() {
+        complete(null);
+    }
+
+    void setFailure(Throwable cause) {
+        complete(cause);
+    }
+
+    /**
+     * 完成并通知监听，重复完成被忽略
+     *
+     * @param cause 失败原因，成功为null
+     */
+    private void complete(Throwable cause) {
+        List<Listener> toNotify;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            this.done = true;
+            this.cause = cause;
+            toNotify = listeners;
+            listeners = null;
+            notifyAll();
+        }
+        if (toNotify != null) {
+            for (Listener listener : toNotify) {
+                notifyListener(listener);
+            }
+        }
+    }
+
+    private void notifyListener(Listener listener) {
+        try {
+            listener.onComplete(this);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.monsent.commons.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 时间轮定时器：任务按到期时间散列到环形槽位，添加、取消均为O(1)，单个工作线程按刻度推进。
+ * 精度为一个刻度，适合大量连接的空闲、心跳、请求超时等不要求精确的定时；
+ * 任务在工作线程执行，不应阻塞
+ */
+public class HashedWheelTimer {
+
+    private final static long DEFAULT_TICK_MILLIS = 100L;   //默认刻度(毫秒)
+    private final static int DEFAULT_TICKS_PER_WHEEL = 512;     //默认槽位数
+    private final static int MAX_TRANSFER_PER_TICK = 100000;    //每个刻度最多转移的新任务数
+    private static volatile HashedWheelTimer defaultTimer;
+
+    private final long tickMillis;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<Timeout>();    //待放入槽位的新任务
+    private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<Timeout>();  //待移出槽位的已取消任务
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final String name;
+    private volatile boolean running = false;
+    private volatile boolean stopped = false;   //已停止，不再接受新任务
+    private volatile long startTime = 0L;
+    private final Object startLock = new Object();
+    private Thread worker;
+    private long tick = 0L;
+
+    /**
+     * 进程内共享的定时器，刻度100毫秒
+     *
+     * @return 定时器
+     */
+    public static HashedWheelTimer getDefault() {
+        if (defaultTimer == null) {
+            synchronized (HashedWheelTimer.class) {
+                if (defaultTimer == null) {
+                    defaultTimer = new HashedWheelTimer("HashedWheelTimer", DEFAULT_TICK_MILLIS, DEFAULT_TICKS_PER_WHEEL);
+                }
+            }
+        }
+        return defaultTimer;
+    }
+
+    /**
+     * @param name          工作线程名称
+     * @param tickMillis    刻度(毫秒)
+     * @param ticksPerWheel 槽位数，向上取整为2的幂
+     */
+    public HashedWheelTimer(String name, long tickMillis, int ticksPerWheel) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive: " + tickMillis);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 20) {
+            throw new IllegalArgumentException("ticksPerWheel out of range: " + ticksPerWheel);
+        }
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        size = Math.max(size, 1);
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * 添加定时任务
+     *
+     * @param task        任务
+     * @param delayMillis 延迟(毫秒)
+     * @return 任务句柄
+     * @throws IllegalStateException 定时器已停止
+     */
+    public Timeout newTimeout(Runnable task, long delayMillis) {
+        if (task == null) {
+            throw new IllegalArgumentException("task is null");
+        }
+        if (stopped) {
+            throw new IllegalStateException("Timer stopped: " + name);
+        }
+        start();
+        long deadline = now() - startTime + Math.max(delayMillis, 0L);
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 停止工作线程，未到期的任务不再执行，之后不能再添加任务
+     */
+    public void stop() {
+        stopped = true;
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        pendingTimeouts.clear();
+    }
+
+    void cancelled(Timeout timeout) {
+        cancelledTimeouts.add(timeout);
+    }
+
+    /**
+     * 首次添加任务时启动工作线程
+     */
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            running = true;
+            worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, name);
+            worker.setDaemon(true);
+            synchronized (startLock) {
+                worker.start();
+                while (startTime == 0L) {
+                    try {
+                        startLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void work() {
+        synchronized (startLock) {
+            //startTime为0表示未启动，避免取值恰为0
+            startTime = Math.max(now(), 1L);
+            startLock.notifyAll();
+        }
+        while (running) {
+            long deadline = waitForNextTick();
+            if (deadline < 0) {
+                break;
+            }
+            removeCancelled();
+            transferTimeouts();
+            wheel[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * 等待到下一个刻度
+     *
+     * @return 当前相对时间，停止时返回-1
+     */
+    private long waitForNextTick() {
+        long deadline = tickMillis * (tick + 1);
+        while (true) {
+            long current = now() - startTime;
+            long sleep = deadline - current;
+            if (sleep <= 0) {
+                return current;
+            }
+            try {
+                Thread.sleep(sleep);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 新任务放入对应槽位
+     */
+    private void transferTimeouts() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickMillis;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            //已过期的任务放入当前槽位，本刻度即执行
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * 已取消的任务移出槽位
+     */
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    /**
+     * 槽位：任务双向链表，仅工作线程访问
+     */
+    static class Bucket {
+
+        private Timeout head, tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * 执行到期任务，未到期任务的剩余轮数减一
+         *
+         * @param deadline 当前相对时间
+         */
+        void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.deadline <= deadline) {
+                        timeout.expire();
+                    }
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.monsent.commons.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接空闲检测：读写时只更新时间戳，到期时比较时间戳决定触发空闲或按剩余时长重新调度，
+ * 每次读写的开销为O(1)且不操作定时器；时间戳取{@link System#nanoTime()}，不受系统时间调整影响
+ */
+public class IdleMonitor {
+
+    /**
+     * 空闲回调，在定时器工作线程调用；定时器为多个连接共享，不应在回调中执行耗时操作或用户回调，应转交其它线程
+     */
+    public interface Listener {
+
+        void onIdle(IdleMonitor monitor, IdleState state);
+
+    }
+
+    private final HashedWheelTimer timer;
+    private final long readIdleMillis;  //读空闲时长，0为不检测
+    private final long writeIdleMillis;     //写空闲时长，0为不检测
+    private final long allIdleMillis;   //读写空闲时长，0为不检测
+    private final Listener listener;
+    private volatile long lastReadNanos;
+    private volatile long lastWriteNanos;
+    private volatile boolean stopped = true;
+    private Timeout readTimeout, writeTimeout, allTimeout;
+
+    /**
+     * @param timer           定时器
+     * @param readIdleMillis  读空闲时长(毫秒)，0为不检测
+     * @param writeIdleMillis 写空闲时长(毫秒)，0为不检测
+     * @param allIdleMillis   读写空闲时长(毫秒)，0为不检测
+     * @param listener        空闲回调
+     */
+    public IdleMonitor(HashedWheelTimer timer, long readIdleMillis, long writeIdleMillis, long allIdleMillis,
+                       Listener listener) {
+        this.timer = timer;
+        this.readIdleMillis = Math.max(readIdleMillis, 0L);
+        this.writeIdleMillis = Math.max(writeIdleMillis, 0L);
+        this.allIdleMillis = Math.max(allIdleMillis, 0L);
+        this.listener = listener;
+    }
+
+    /**
+     * 开始检测
+     */
+    public synchronized void start() {
+        if (!stopped) {
+            return;
+        }
+        stopped = false;
+        long now = System.nanoTime();
+        lastReadNanos = now;
+        lastWriteNanos = now;
+        if (readIdleMillis > 0) {
+            readTimeout = timer.newTimeout(new IdleTask(IdleState.READER_IDLE, readIdleMillis), readIdleMillis);
+        }
+        if (writeIdleMillis > 0) {
+            writeTimeout = timer.newTimeout(new IdleTask(IdleState.WRITER_IDLE, writeIdleMillis), writeIdleMillis);
+        }
+        if (allIdleMillis > 0) {
+            allTimeout = timer.newTimeout(new IdleTask(IdleState.ALL_IDLE, allIdleMillis), allIdleMillis);
+        }
+    }
+
+    /**
+     * 停止检测
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (readTimeout != null) {
+            readTimeout.cancel();
+            readTimeout = null;
+        }
+        if (writeTimeout != null) {
+            writeTimeout.cancel();
+            writeTimeout = null;
+        }
+        if (allTimeout != null) {
+            allTimeout.cancel();
+            allTimeout = null;
+        }
+    }
+
+    /**
+     * 记录读到数据
+     */
+    public void onRead() {
+        lastReadNanos = System.nanoTime();
+    }
+
+    /**
+     * 记录写出数据
+     */
+    public void onWrite() {
+        lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * 最近一次读到数据的时间，只可用于与{@link System#nanoTime()}比较求间隔
+     *
+     * @return 时间(纳秒)
+     */
+    public long getLastReadNanos() {
+        return lastReadNanos;
+    }
+
+    /**
+     * 最近一次写出数据的时间，只可用于与{@link System#nanoTime()}比较求间隔
+     *
+     * @return 时间(纳秒)
+     */
+    public long getLastWriteNanos() {
+        return lastWriteNanos;
+    }
+
+    /**
+     * 到期检查任务，未空闲时按剩余时长重新调度，触发空闲后按完整时长继续检测
+     */
+    private class IdleTask implements Runnable {
+
+        private final IdleState state;
+        private final long idleMillis;
+
+        IdleTask(IdleState state, long idleMillis) {
+            this.state = state;
+            this.idleMillis = idleMillis;
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            long now = System.nanoTime();
+            long elapsedNanos;
+            if (state == IdleState.READER_IDLE) {
+                elapsedNanos = now - lastReadNanos;
+            } else if (state == IdleState.WRITER_IDLE) {
+                elapsedNanos = now - lastWriteNanos;
+            } else {
+                elapsedNanos = Math.min(now - lastReadNanos, now - lastWriteNanos);
+            }
+            long delay = idleMillis - TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            if (delay <= 0) {
+                delay = idleMillis;
+                try {
+                    listener.onIdle(IdleMonitor.this, state);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            schedule(delay);
+        }
+
+        private void schedule(long delay) {
+            synchronized (IdleMonitor.this) {
+                if (stopped) {
+                    return;
+                }
+                Timeout timeout = timer.newTimeout(this, delay);
+                if (state == IdleState.READER_IDLE) {
+                    readTimeout = timeout;
+                } else if (state == IdleState.WRITER_IDLE) {
+                    writeTimeout = timeout;
+                } else {
+                    allTimeout = timeout;
+                }
+            }
+        }
+
+    }
+
+}
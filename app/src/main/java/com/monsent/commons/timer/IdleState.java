@@ -0,0 +1,23 @@
+package com.monsent.commons.timer;
+
+/**
+ * 空闲类型
+ */
+public enum IdleState {
+
+    /**
+     * 读空闲：超时未收到数据
+     */
+    READER_IDLE,
+
+    /**
+     * 写空闲：超时未发送数据
+     */
+    WRITER_IDLE,
+
+    /**
+     * 读写空闲：超时既未收到也未发送数据
+     */
+    ALL_IDLE
+
+}
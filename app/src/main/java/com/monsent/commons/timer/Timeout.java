@@ -0,0 +1,63 @@
+package com.monsent.commons.timer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HashedWheelTimer}中的定时任务句柄
+ */
+public class Timeout {
+
+    private final static int ST_INIT = 0;
+    private final static int ST_CANCELLED = 1;
+    private final static int ST_EXPIRED = 2;
+
+    private final HashedWheelTimer timer;
+    private final Runnable task;
+    final long deadline;    //相对定时器启动时间的到期时间(毫秒)
+    long remainingRounds;   //剩余轮数，仅工作线程访问
+    Timeout next, prev;     //所在槽位的双向链表，仅工作线程访问
+    HashedWheelTimer.Bucket bucket;
+    private final AtomicInteger state = new AtomicInteger(ST_INIT);
+
+    Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+        this.timer = timer;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    /**
+     * 取消任务，O(1)
+     *
+     * @return 是否由本次调用取消，已到期或已取消返回false
+     */
+    public boolean cancel() {
+        if (!state.compareAndSet(ST_INIT, ST_CANCELLED)) {
+            return false;
+        }
+        timer.cancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == ST_CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state.get() == ST_EXPIRED;
+    }
+
+    /**
+     * 到期执行任务，在定时器工作线程调用
+     */
+    void expire() {
+        if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+            return;
+        }
+        try {
+            task.run();
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.monsent.commons.buffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * BufferPool：规格向上取整、归还后复用、新建计数、重复归还、超出最大规格不入池及泄漏检测
+ */
+public class BufferPoolTest {
+
+    @After
+    public void tearDown() {
+        BufferPool.setLeakDetection(false);
+    }
+
+    @Test
+    public void acquire_roundedUpToSizeClass() {
+        BufferPool pool = new BufferPool(false, 4);
+        assertEquals(256, pool.acquire(0).capacity());
+        assertEquals(256, pool.acquire(1).capacity());
+        assertEquals(256, pool.acquire(256).capacity());
+        assertEquals(512, pool.acquire(257).capacity());
+        assertEquals(4096, pool.acquire(3000).capacity());
+        assertEquals(64 * 1024, pool.acquire(64 * 1024).capacity());
+    }
+
+    @Test
+    public void acquire_positionAndLimitReset() {
+        BufferPool pool = new BufferPool(false, 4);
+        PooledBuffer pooled = pool.acquire(100);
+        pooled.buffer().put(new byte[10]).limit(50);
+        pooled.release();
+        PooledBuffer reused = pool.acquire(100);
+        assertSame(pooled, reused);
+        assertEquals(0, reused.buffer().position());
+        assertEquals(reused.capacity(), reused.buffer().limit());
+    }
+
+    @Test
+    public void release_reusedWithinSizeClass() {
+        BufferPool pool = new BufferPool(false, 4);
+        PooledBuffer first = pool.acquire(1000);
+        first.release();
+        assertEquals(1, pool.getPooledCount());
+        //同一规格内的申请复用
+        assertSame(first, pool.acquire(600));
+        assertEquals(0, pool.getPooledCount());
+        //其它规格新建
+        PooledBuffer other = pool.acquire(2000);
+        assertNotSame(first, other);
+        assertEquals(2048, other.capacity());
+    }
+
+    @Test
+    public void allocatedCount_countsOnlyNewBuffers() {
+        BufferPool pool = new BufferPool(false, 4);
+        assertEquals(0, pool.getAllocatedCount());
+        pool.acquire(300).release();
+        pool.acquire(300).release();
+        assertEquals(1, pool.getAllocatedCount());
+        pool.acquire(2000).release();
+        //超出最大规格每次都新建
+        pool.acquire(64 * 1024 + 1).release();
+        pool.acquire(64 * 1024 + 1).release();
+        assertEquals(4, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void release_mostRecentReusedFirst() {
+        BufferPool pool = new BufferPool(false, 4);
+        PooledBuffer first = pool.acquire(300);
+        PooledBuffer second = pool.acquire(300);
+        first.release();
+        second.release();
+        assertSame(second, pool.acquire(300));
+        assertSame(first, pool.acquire(300));
+    }
+
+    @Test
+    public void release_beyondMaxPooled_discarded() {
+        BufferPool pool = new BufferPool(false, 2);
+        List<PooledBuffer> buffers = new ArrayList<PooledBuffer>();
+        for (int i = 0; i < 3; i++) {
+            buffers.add(pool.acquire(300));
+        }
+        for (PooledBuffer pooled : buffers) {
+            pooled.release();
+        }
+        assertEquals(2, pool.getPooledCount());
+    }
+
+    @Test
+    public void release_twice_rejected() {
+        BufferPool pool = new BufferPool(false, 4);
+        PooledBuffer pooled = pool.acquire(300);
+        pooled.release();
+        try {
+            pooled.release();
+            fail("released twice");
+        } catch (IllegalStateException e) {
+            //重复归还
+        }
+        //重复归还不会让同一缓冲区入池两次
+        assertEquals(1, pool.getPooledCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void access_afterRelease_rejected() {
+        BufferPool pool = new BufferPool(false, 4);
+        PooledBuffer pooled = pool.acquire(300);
+        pooled.release();
+        pooled.buffer();
+    }
+
+    @Test
+    public void oversize_notPooled() {
+        BufferPool pool = new BufferPool(false, 4);
+        PooledBuffer pooled = pool.acquire(64 * 1024 + 1);
+        assertEquals(64 * 1024 + 1, pooled.capacity());
+        pooled.release();
+        assertEquals(0, pool.getPooledCount());
+        assertNotSame(pooled, pool.acquire(64 * 1024 + 1));
+    }
+
+    @Test
+    public void direct_allocatesDirectBuffers() {
+        BufferPool pool = new BufferPool(true, 4);
+        PooledBuffer pooled = pool.acquire(300);
+        assertTrue(pooled.isDirect());
+        assertTrue(pooled.buffer().isDirect());
+        assertFalse(new BufferPool(false, 4).acquire(300).isDirect());
+    }
+
+    @Test(timeout = 10000)
+    public void leakDetection_reportsUnreleased() throws InterruptedException {
+        final List<Integer> leaks = new ArrayList<Integer>();
+        BufferPool.setLeakListener(new BufferPool.LeakListener() {
+            @Override
+            public void onLeak(int capacity, Throwable trace) {
+                synchronized (leaks) {
+                    leaks.add(capacity);
+                }
+            }
+        });
+        BufferPool.setLeakDetection(true);
+        BufferPool pool = new BufferPool(false, 4);
+        //归还的缓冲区不报告
+        pool.acquire(300).release();
+        pool.acquire(1000);
+        while (true) {
+            System.gc();
+            Thread.sleep(10);
+            //申请时报告已被回收的缓冲区
+            pool.acquire(300).release();
+            synchronized (leaks) {
+                if (!leaks.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        synchronized (leaks) {
+            assertEquals(1, leaks.size());
+            assertEquals(1024, (int) leaks.get(0));
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.monsent.commons.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ReceiveSizePredictor：读满后扩大一倍、连续两次读到不足一半后缩小一半，上下限及取整
+ */
+public class ReceiveSizePredictorTest {
+
+    @Test
+    public void defaults() {
+        assertEquals(2048, new ReceiveSizePredictor().nextSize());
+    }
+
+    @Test
+    public void fullRead_doubles() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor();
+        predictor.record(2048);
+        assertEquals(4096, predictor.nextSize());
+        predictor.record(4096);
+        assertEquals(8192, predictor.nextSize());
+    }
+
+    @Test
+    public void fullReads_cappedAtMax() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor();
+        for (int i = 0; i < 20; i++) {
+            predictor.record(predictor.nextSize());
+        }
+        assertEquals(64 * 1024, predictor.nextSize());
+    }
+
+    @Test
+    public void shortReads_halveAfterTwo() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor();
+        predictor.record(100);
+        assertEquals(2048, predictor.nextSize());
+        predictor.record(1024);
+        assertEquals(1024, predictor.nextSize());
+        predictor.record(10);
+        assertEquals(1024, predictor.nextSize());
+        predictor.record(10);
+        assertEquals(512, predictor.nextSize());
+    }
+
+    @Test
+    public void shortReads_flooredAtMin() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor();
+        for (int i = 0; i < 20; i++) {
+            predictor.record(1);
+        }
+        assertEquals(256, predictor.nextSize());
+    }
+
+    @Test
+    public void moreThanHalf_resetsShrinkCount() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor();
+        predictor.record(10);
+        //超过一半但未读满，不扩大也不缩小，并中断连续计数
+        predictor.record(1500);
+        predictor.record(10);
+        assertEquals(2048, predictor.nextSize());
+        predictor.record(10);
+        assertEquals(1024, predictor.nextSize());
+    }
+
+    @Test
+    public void fullRead_resetsShrinkCount() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor();
+        predictor.record(10);
+        predictor.record(2048);
+        assertEquals(4096, predictor.nextSize());
+        predictor.record(10);
+        assertEquals(4096, predictor.nextSize());
+    }
+
+    @Test
+    public void growThenDecay() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor(256, 256, 4096);
+        while (predictor.nextSize() < 4096) {
+            predictor.record(predictor.nextSize());
+        }
+        int reads = 0;
+        while (predictor.nextSize() > 256) {
+            predictor.record(0);
+            reads++;
+        }
+        //4096到256共缩小4次，每次需连续两次短读
+        assertEquals(8, reads);
+    }
+
+    @Test
+    public void sizes_roundedUpToPowerOfTwo() {
+        ReceiveSizePredictor predictor = new ReceiveSizePredictor(100, 1000, 5000);
+        assertEquals(1024, predictor.nextSize());
+        for (int i = 0; i < 10; i++) {
+            predictor.record(predictor.nextSize());
+        }
+        assertEquals(8192, predictor.nextSize());
+        for (int i = 0; i < 40; i++) {
+            predictor.record(0);
+        }
+        assertEquals(128, predictor.nextSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRange_rejected() {
+        new ReceiveSizePredictor(1024, 512, 4096);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroMin_rejected() {
+        new ReceiveSizePredictor(0, 512, 4096);
+    }
+
+}
@@ -0,0 +1,324 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * CompressionCodec：握手、原样帧与压缩帧的封帧及解码、预置字典协商、分多次到达及零拷贝的原样帧
+ */
+public class CompressionCodecTest {
+
+    private final static byte RAW = 0;
+    private final static byte DEFLATE = 1;
+    private final static byte DEFLATE_DICTIONARY = 2;
+    private final static byte[] DICTIONARY = "{\"type\":\"status\",\"device\":\"".getBytes();
+
+    /**
+     * 记录每次交付的数据
+     */
+    private static class Received implements CompressionCodec.Output {
+
+        private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+        @Override
+        public void onData(byte[] bytes, int offset, int length) {
+            chunks.add(Arrays.copyOfRange(bytes, offset, offset + length));
+        }
+
+        byte[] all() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (byte[] chunk : chunks) {
+                out.write(chunk, 0, chunk.length);
+            }
+            return out.toByteArray();
+        }
+
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] compressible(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('a' + i % 4);
+        }
+        return bytes;
+    }
+
+    private static byte[] repeat(byte[] bytes, int times) {
+        byte[] repeated = new byte[bytes.length * times];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(bytes, 0, repeated, i * bytes.length, bytes.length);
+        }
+        return repeated;
+    }
+
+    private static CompressionCodec newCodec(Compression compression) {
+        return new CompressionCodec(compression, new CompressionMetrics());
+    }
+
+    /**
+     * 解码方收到发送方的握手
+     */
+    private static void handshake(CompressionCodec sender, CompressionCodec receiver) throws IOException {
+        byte[] hello = toArray(sender.hello());
+        receiver.decode(hello, 0, hello.length, new Received());
+    }
+
+    private static byte[] roundTrip(CompressionCodec sender, CompressionCodec receiver, byte[] message)
+            throws IOException {
+        byte[] frame = toArray(sender.encode(ByteBuffer.wrap(message)));
+        Received received = new Received();
+        receiver.decode(frame, 0, frame.length, received);
+        return received.all();
+    }
+
+    @Test
+    public void belowThreshold_rawFrame() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        byte[] frame = toArray(sender.encode(ByteBuffer.wrap("hello".getBytes())));
+        assertEquals(5 + 5, frame.length);
+        assertEquals(RAW, frame[0]);
+        assertArrayEquals(new byte[]{0, 0, 0, 5}, Arrays.copyOfRange(frame, 1, 5));
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        Received received = new Received();
+        receiver.decode(frame, 0, frame.length, received);
+        assertEquals(1, received.chunks.size());
+        assertArrayEquals("hello".getBytes(), received.chunks.get(0));
+    }
+
+    @Test
+    public void emptyMessage_deliveredAsEmptyArray() throws IOException {
+        CompressionCodec sender = newCodec(new Compression(0, 9, null));
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        byte[] frame = toArray(sender.encode(ByteBuffer.wrap(new byte[0])));
+        assertArrayEquals(new byte[]{RAW, 0, 0, 0, 0}, frame);
+        Received received = new Received();
+        receiver.decode(frame, 0, frame.length, received);
+        receiver.decode(frame, 0, frame.length, received);
+        assertEquals(2, received.chunks.size());
+        assertEquals(0, received.chunks.get(0).length);
+        assertEquals(0, received.chunks.get(1).length);
+    }
+
+    @Test
+    public void compressible_deflateFrame() throws IOException {
+        CompressionMetrics metrics = new CompressionMetrics();
+        CompressionCodec sender = new CompressionCodec(new Compression(), metrics);
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        byte[] message = compressible(4096);
+        byte[] frame = toArray(sender.encode(ByteBuffer.wrap(message)));
+        assertEquals(DEFLATE, frame[0]);
+        assertTrue(frame.length < message.length);
+        Received received = new Received();
+        receiver.decode(frame, 0, frame.length, received);
+        assertEquals(1, received.chunks.size());
+        assertArrayEquals(message, received.chunks.get(0));
+        assertEquals(1, metrics.snapshot().getMessagesCompressed());
+        assertEquals(4096, metrics.snapshot().getBytesBeforeCompression());
+    }
+
+    @Test
+    public void incompressible_rawFrame() throws IOException {
+        CompressionMetrics metrics = new CompressionMetrics();
+        CompressionCodec sender = new CompressionCodec(new Compression(), metrics);
+        byte[] message = new byte[4096];
+        new Random(42).nextBytes(message);
+        byte[] frame = toArray(sender.encode(ByteBuffer.wrap(message)));
+        assertEquals(RAW, frame[0]);
+        assertEquals(5 + message.length, frame.length);
+        assertEquals(0, metrics.snapshot().getMessagesCompressed());
+        assertEquals(1, metrics.snapshot().getMessagesUncompressed());
+    }
+
+    @Test
+    public void directBuffer_encoded() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        byte[] message = compressible(1000);
+        ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+        direct.put(message).flip();
+        byte[] frame = toArray(sender.encode(direct));
+        Received received = new Received();
+        receiver.decode(frame, 0, frame.length, received);
+        assertArrayEquals(message, received.all());
+        assertEquals(message.length, direct.remaining());
+    }
+
+    @Test
+    public void sameDictionary_used() throws IOException {
+        CompressionCodec first = newCodec(new Compression(0, 9, DICTIONARY));
+        CompressionCodec second = newCodec(new Compression(0, 9, DICTIONARY));
+        handshake(first, second);
+        handshake(second, first);
+        byte[] message = "{\"type\":\"status\",\"device\":\"A1\"}".getBytes();
+        byte[] frame = toArray(first.encode(ByteBuffer.wrap(message)));
+        assertEquals(DEFLATE_DICTIONARY, frame[0]);
+        Received received = new Received();
+        second.decode(frame, 0, frame.length, received);
+        assertArrayEquals(message, received.all());
+    }
+
+    @Test
+    public void differentDictionary_notUsed() throws IOException {
+        CompressionCodec first = newCodec(new Compression(0, 9, DICTIONARY));
+        CompressionCodec second = newCodec(new Compression(0, 9, "other".getBytes()));
+        handshake(first, second);
+        handshake(second, first);
+        byte[] message = compressible(1000);
+        byte[] frame = toArray(first.encode(ByteBuffer.wrap(message)));
+        assertEquals(DEFLATE, frame[0]);
+        assertArrayEquals(message, roundTrip(second, first, message));
+    }
+
+    @Test
+    public void framesSplitByteByByte() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] hello = toArray(sender.hello());
+        stream.write(hello, 0, hello.length);
+        byte[][] messages = {"short".getBytes(), compressible(2000), "tail".getBytes()};
+        for (byte[] message : messages) {
+            byte[] frame = toArray(sender.encode(ByteBuffer.wrap(message)));
+            stream.write(frame, 0, frame.length);
+        }
+        byte[] bytes = stream.toByteArray();
+        Received received = new Received();
+        for (int i = 0; i < bytes.length; i++) {
+            receiver.decode(bytes, i, 1, received);
+        }
+        //原样帧逐字节交付，压缩帧收齐后一次交付
+        assertEquals(5 + 1 + 4, received.chunks.size());
+        assertArrayEquals(compressible(2000), received.chunks.get(5));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (byte[] message : messages) {
+            expected.write(message, 0, message.length);
+        }
+        assertArrayEquals(expected.toByteArray(), received.all());
+    }
+
+    @Test
+    public void framesInOneRead() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        byte[] hello = toArray(sender.hello());
+        stream.write(hello, 0, hello.length);
+        for (int i = 0; i < 3; i++) {
+            byte[] frame = toArray(sender.encode(ByteBuffer.wrap(compressible(1000 + i))));
+            stream.write(frame, 0, frame.length);
+        }
+        byte[] bytes = stream.toByteArray();
+        Received received = new Received();
+        receiver.decode(bytes, 0, bytes.length, received);
+        assertEquals(3, received.chunks.size());
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(compressible(1000 + i), received.chunks.get(i));
+        }
+    }
+
+    @Test
+    public void rawHeader_streamedPayload() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        byte[] header = toArray(sender.rawHeader(10));
+        assertArrayEquals(new byte[]{RAW, 0, 0, 0, 10}, header);
+        Received received = new Received();
+        receiver.decode(header, 0, header.length, received);
+        receiver.decode("01234".getBytes(), 0, 5, received);
+        receiver.decode("56789next".getBytes(), 0, 9, received);
+        //帧后剩余的"next"作为下一帧帧头的一部分
+        assertArrayEquals("0123456789".getBytes(), received.all());
+    }
+
+    @Test(expected = IOException.class)
+    public void badMagic_rejected() throws IOException {
+        CompressionCodec receiver = newCodec(new Compression());
+        byte[] hello = {'M', 'C', 'Z', '0', 0, 0, 0, 0};
+        receiver.decode(hello, 0, hello.length, new Received());
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownFlag_rejected() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        byte[] frame = {9, 0, 0, 0, 1, 'x'};
+        receiver.decode(frame, 0, frame.length, new Received());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidCompressedLength_rejected() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        //压缩数据比原始长度加原样帧头还长
+        byte[] frame = {DEFLATE, 0, 0, 0, 100, 0, 0, 0, 10};
+        receiver.decode(frame, 0, frame.length, new Received());
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedPayload_rejected() throws IOException {
+        CompressionCodec sender = newCodec(new Compression());
+        CompressionCodec receiver = newCodec(new Compression());
+        handshake(sender, receiver);
+        byte[] frame = toArray(sender.encode(ByteBuffer.wrap(compressible(1000))));
+        for (int i = 9; i < frame.length; i++) {
+            frame[i] = (byte) 0xFF;
+        }
+        receiver.decode(frame, 0, frame.length, new Received());
+    }
+
+    @Test
+    public void renew_expectsHelloAgain() throws IOException {
+        CompressionCodec first = newCodec(new Compression(0, 9, DICTIONARY));
+        CompressionCodec second = newCodec(new Compression(0, 9, DICTIONARY));
+        handshake(second, first);
+        byte[] message = repeat(DICTIONARY, 4);
+        byte[] frame = toArray(first.encode(ByteBuffer.wrap(message)));
+        assertEquals(DEFLATE_DICTIONARY, frame[0]);
+        CompressionCodec renewed = first.renew();
+        first.close();
+        //新实例未收到握手前不使用字典
+        frame = toArray(renewed.encode(ByteBuffer.wrap(message)));
+        assertEquals(DEFLATE, frame[0]);
+        CompressionCodec peer = newCodec(new Compression(0, 9, DICTIONARY));
+        handshake(peer, renewed);
+        assertArrayEquals("again".getBytes(), roundTrip(peer, renewed, "again".getBytes()));
+        //旧实例关闭后不再解码
+        try {
+            first.decode(new byte[1], 0, 1, new Received());
+            fail("decoded after close");
+        } catch (IOException e) {
+            //已关闭
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void closed_encodeRejected() throws IOException {
+        CompressionCodec codec = newCodec(new Compression());
+        codec.close();
+        codec.close();
+        codec.encode(ByteBuffer.wrap("x".getBytes()));
+    }
+
+}
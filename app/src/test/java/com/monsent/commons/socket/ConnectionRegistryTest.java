@@ -0,0 +1,138 @@
+package com.monsent.commons.socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * ConnectionRegistry：ID由序号与槽位组成(seq << 20 | slot)、槽位复用后旧ID失效、按socket查找及扩容
+ */
+public class ConnectionRegistryTest {
+
+    private final static int SLOT_BITS = 20;
+    private final static long SLOT_MASK = (1L << SLOT_BITS) - 1;
+    private EventLoop eventLoop;
+    private final List<SocketChannel> channels = new ArrayList<SocketChannel>();
+
+    @Before
+    public void setUp() throws IOException {
+        //事件循环不启动，仅供连接计数
+        eventLoop = new EventLoop("ConnectionRegistryTest", null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        eventLoop.shutdown();
+    }
+
+    /**
+     * 未连接的通道即可创建连接，登记只用到socket
+     */
+    private Connection newConnection() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channels.add(channel);
+        return new Connection(channel, eventLoop, null, 0, 0, 0, null, null);
+    }
+
+    @Test
+    public void register_assignsSequenceAndSlot() throws IOException {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        Connection first = newConnection();
+        Connection second = newConnection();
+        long firstId = registry.register(first);
+        long secondId = registry.register(second);
+        assertEquals(1L << SLOT_BITS, firstId);
+        assertEquals((2L << SLOT_BITS) | 1, secondId);
+        assertEquals(firstId, first.getId());
+        assertSame(first, registry.get(firstId));
+        assertSame(second, registry.get(secondId));
+        assertSame(second, registry.get(second.getSocket()));
+        assertEquals(2, registry.connections().size());
+    }
+
+    @Test
+    public void slotReused_withNewId_staleIdMisses() throws IOException {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        Connection first = newConnection();
+        long firstId = registry.register(first);
+        assertTrue(registry.remove(first));
+        Connection second = newConnection();
+        long secondId = registry.register(second);
+        assertEquals(firstId & SLOT_MASK, secondId & SLOT_MASK);
+        assertNotEquals(firstId, secondId);
+        assertEquals(2, secondId >>> SLOT_BITS);
+        //旧ID落在同一槽位，不会查到新连接
+        assertNull(registry.get(firstId));
+        assertSame(second, registry.get(secondId));
+    }
+
+    @Test
+    public void remove_onlyOnce() throws IOException {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        Connection connection = newConnection();
+        long id = registry.register(connection);
+        assertTrue(registry.remove(connection));
+        assertFalse(registry.remove(connection));
+        assertNull(registry.get(id));
+        assertNull(registry.get(connection.getSocket()));
+        assertTrue(registry.isEmpty());
+        assertTrue(registry.connections().isEmpty());
+    }
+
+    @Test
+    public void remove_staleConnection_keepsReusedSlot() throws IOException {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        Connection first = newConnection();
+        registry.register(first);
+        registry.remove(first);
+        Connection second = newConnection();
+        long secondId = registry.register(second);
+        //旧连接再次移除不影响复用槽位的新连接
+        assertFalse(registry.remove(first));
+        assertSame(second, registry.get(secondId));
+    }
+
+    @Test
+    public void remove_unregistered() throws IOException {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        assertFalse(registry.remove(newConnection()));
+    }
+
+    @Test
+    public void get_invalidId() {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        assertNull(registry.get(-1));
+        assertNull(registry.get(0));
+        assertNull(registry.get((1L << SLOT_BITS) | 1000));
+        assertNull(registry.get((Socket) null));
+    }
+
+    @Test
+    public void grow_keepsExistingConnections() throws IOException {
+        ConnectionRegistry registry = new ConnectionRegistry();
+        List<Connection> connections = new ArrayList<Connection>();
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < 40; i++) {
+            Connection connection = newConnection();
+            connections.add(connection);
+            ids.add(registry.register(connection));
+        }
+        for (int i = 0; i < connections.size(); i++) {
+            assertEquals(i, ids.get(i) & SLOT_MASK);
+            assertSame(connections.get(i), registry.get(ids.get(i)));
+        }
+        assertEquals(40, registry.connections().size());
+    }
+
+}
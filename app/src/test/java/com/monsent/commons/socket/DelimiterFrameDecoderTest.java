@@ -0,0 +1,120 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * DelimiterFrameDecoder：多字节分隔符、保留分隔符、超长拒绝及分多次到达的帧
+ */
+public class DelimiterFrameDecoderTest {
+
+    private final static byte[] CRLF = {'\r', '\n'};
+
+    private static RingBufferTest.Frames decode(FrameDecoder decoder, String... reads) throws IOException {
+        RingBuffer buffer = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        for (String read : reads) {
+            byte[] bytes = read.getBytes();
+            buffer.write(bytes, 0, bytes.length);
+            decoder.decode(buffer, frames);
+        }
+        return frames;
+    }
+
+    @Test
+    public void stripDelimiter() throws IOException {
+        RingBufferTest.Frames frames = decode(new DelimiterFrameDecoder(CRLF), "ab\r\n\r\ncd\r\n");
+        assertEquals(3, frames.frames.size());
+        assertArrayEquals("ab".getBytes(), frames.frames.get(0));
+        assertArrayEquals(new byte[0], frames.frames.get(1));
+        assertArrayEquals("cd".getBytes(), frames.frames.get(2));
+    }
+
+    @Test
+    public void keepDelimiter() throws IOException {
+        RingBufferTest.Frames frames = decode(new DelimiterFrameDecoder(CRLF, false, 1024), "ab\r\ncd\r\n");
+        assertArrayEquals("ab\r\n".getBytes(), frames.frames.get(0));
+        assertArrayEquals("cd\r\n".getBytes(), frames.frames.get(1));
+    }
+
+    @Test
+    public void delimiterSplitAcrossReads() throws IOException {
+        RingBufferTest.Frames frames = decode(new DelimiterFrameDecoder(CRLF), "ab\r", "\ncd", "\r", "\n");
+        assertEquals(2, frames.frames.size());
+        assertArrayEquals("ab".getBytes(), frames.frames.get(0));
+        assertArrayEquals("cd".getBytes(), frames.frames.get(1));
+    }
+
+    @Test
+    public void largeFrameInSmallReads() throws IOException {
+        FrameDecoder decoder = new DelimiterFrameDecoder(CRLF, true, 64 * 1024);
+        RingBuffer buffer = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        byte[] chunk = new byte[7];
+        for (int i = 0; i < 4096; i++) {
+            for (int j = 0; j < chunk.length; j++) {
+                chunk[j] = (byte) ('a' + (i + j) % 26);
+            }
+            buffer.write(chunk, 0, chunk.length);
+            decoder.decode(buffer, frames);
+        }
+        assertTrue(frames.frames.isEmpty());
+        buffer.write(CRLF, 0, CRLF.length);
+        decoder.decode(buffer, frames);
+        assertEquals(1, frames.frames.size());
+        assertEquals(4096 * 7, frames.frames.get(0).length);
+        assertEquals(0, buffer.readableBytes());
+    }
+
+    @Test
+    public void partialFrame_leftInBuffer() throws IOException {
+        RingBuffer buffer = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        buffer.write("ab\r\ncd".getBytes(), 0, 6);
+        new DelimiterFrameDecoder(CRLF).decode(buffer, frames);
+        assertEquals(1, frames.frames.size());
+        assertEquals(2, buffer.readableBytes());
+    }
+
+    @Test(expected = IOException.class)
+    public void exceedsMaxFrameLength_withoutDelimiter_rejected() throws IOException {
+        decode(new DelimiterFrameDecoder(CRLF, true, 4), "abcdefg");
+    }
+
+    @Test(expected = IOException.class)
+    public void exceedsMaxFrameLength_withDelimiter_rejected() throws IOException {
+        decode(new DelimiterFrameDecoder(CRLF, true, 4), "abcde\r\n");
+    }
+
+    @Test
+    public void maxFrameLength_accepted() throws IOException {
+        RingBufferTest.Frames frames = decode(new DelimiterFrameDecoder(CRLF, true, 4), "abcd\r\n");
+        assertArrayEquals("abcd".getBytes(), frames.frames.get(0));
+    }
+
+    @Test
+    public void sharedDecoder_independentBuffers() throws IOException {
+        FrameDecoder decoder = new DelimiterFrameDecoder(new byte[]{'\n'});
+        RingBuffer first = new RingBuffer(16);
+        RingBuffer second = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        first.write("aaaa".getBytes(), 0, 4);
+        decoder.decode(first, frames);
+        second.write("b\n".getBytes(), 0, 2);
+        decoder.decode(second, frames);
+        first.write("\n".getBytes(), 0, 1);
+        decoder.decode(first, frames);
+        assertEquals(2, frames.frames.size());
+        assertArrayEquals("b".getBytes(), frames.frames.get(0));
+        assertArrayEquals("aaaa".getBytes(), frames.frames.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyDelimiter_rejected() {
+        new DelimiterFrameDecoder(new byte[0]);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * DiscoveryPacket：编解码往返、服务名长度上限按UTF-8字节数计算
+ */
+public class DiscoveryPacketTest {
+
+    private static String name(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void encodeDecode_roundTrip() {
+        byte[] bytes = new DiscoveryPacket(DiscoveryPacket.ANNOUNCE, "printer", 9100, 60).encode();
+        DiscoveryPacket packet = DiscoveryPacket.decode(bytes, 0, bytes.length);
+        assertNotNull(packet);
+        assertEquals(DiscoveryPacket.ANNOUNCE, packet.type);
+        assertEquals("printer", packet.name);
+        assertEquals(9100, packet.port);
+        assertEquals(60, packet.ttlSecond);
+    }
+
+    @Test
+    public void maxName_fitsReceiveBuffer() {
+        String name = name('a', DiscoveryPacket.MAX_NAME_LENGTH);
+        DiscoveryPacket.checkName(name);
+        byte[] bytes = new DiscoveryPacket(DiscoveryPacket.ANNOUNCE, name, 65535, 60).encode();
+        assertEquals(DiscoveryPacket.MAX_SIZE, bytes.length);
+        DiscoveryPacket packet = DiscoveryPacket.decode(bytes, 0, bytes.length);
+        assertNotNull(packet);
+        assertEquals(name, packet.name);
+        assertEquals(65535, packet.port);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void longName_rejected() {
+        DiscoveryPacket.checkName(name('a', DiscoveryPacket.MAX_NAME_LENGTH + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void multiByteName_countedInUtf8Bytes() {
+        //每个汉字3字节
+        DiscoveryPacket.checkName(name('服', DiscoveryPacket.MAX_NAME_LENGTH / 3 + 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encode_longNameRejected() {
+        new DiscoveryPacket(DiscoveryPacket.QUERY, name('a', 70000), 0, 0).encode();
+    }
+
+    @Test
+    public void truncated_ignored() {
+        byte[] bytes = new DiscoveryPacket(DiscoveryPacket.QUERY, "printer", 0, 0).encode();
+        assertNull(DiscoveryPacket.decode(bytes, 0, bytes.length - 1));
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.monsent.commons.socket;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * EventLoopGroup：轮询依次分配、最少连接分配到连接数最少的线程、连接关闭后所属线程的连接数减少
+ */
+public class EventLoopGroupTest {
+
+    private EventLoopGroup group;
+    private final List<SocketChannel> channels = new ArrayList<SocketChannel>();
+
+    @After
+    public void tearDown() throws IOException {
+        for (SocketChannel channel : channels) {
+            channel.close();
+        }
+        if (group != null) {
+            group.shutdown();
+        }
+    }
+
+    /**
+     * 事件循环不启动，仅供分配及连接计数
+     */
+    private EventLoopGroup newGroup(int count, WorkerChooser chooser) throws IOException {
+        group = new EventLoopGroup("EventLoopGroupTest", count, chooser, null);
+        return group;
+    }
+
+    /**
+     * 未连接的通道即可创建连接，创建时计入所属事件循环
+     */
+    private Connection newConnection(EventLoop loop) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        channels.add(channel);
+        return new Connection(channel, loop, null, 0, 0, 0, null, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCount_rejected() throws IOException {
+        newGroup(0, WorkerChooser.ROUND_ROBIN);
+    }
+
+    @Test
+    public void roundRobin_cyclesThroughLoops() throws IOException {
+        EventLoopGroup group = newGroup(3, WorkerChooser.ROUND_ROBIN);
+        EventLoop first = group.next();
+        EventLoop second = group.next();
+        EventLoop third = group.next();
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        assertNotSame(first, third);
+        for (int i = 0; i < 3; i++) {
+            assertSame(first, group.next());
+            assertSame(second, group.next());
+            assertSame(third, group.next());
+        }
+    }
+
+    @Test
+    public void roundRobin_ignoresConnectionCount() throws IOException {
+        EventLoopGroup group = newGroup(2, WorkerChooser.ROUND_ROBIN);
+        EventLoop first = group.next();
+        EventLoop second = group.next();
+        for (int i = 0; i < 3; i++) {
+            newConnection(first);
+        }
+        assertSame(first, group.next());
+        assertSame(second, group.next());
+    }
+
+    @Test
+    public void nullChooser_defaultsToRoundRobin() throws IOException {
+        EventLoopGroup group = newGroup(2, null);
+        EventLoop first = group.next();
+        newConnection(first);
+        assertNotSame(first, group.next());
+        assertSame(first, group.next());
+    }
+
+    @Test
+    public void singleLoop_alwaysChosen() throws IOException {
+        EventLoopGroup group = newGroup(1, WorkerChooser.LEAST_CONNECTIONS);
+        EventLoop loop = group.next();
+        newConnection(loop);
+        assertSame(loop, group.next());
+    }
+
+    @Test
+    public void leastConnections_spreadsEvenly() throws IOException {
+        EventLoopGroup group = newGroup(3, WorkerChooser.LEAST_CONNECTIONS);
+        Map<EventLoop, Integer> assigned = new HashMap<EventLoop, Integer>();
+        for (int i = 0; i < 9; i++) {
+            EventLoop loop = group.next();
+            newConnection(loop);
+            Integer count = assigned.get(loop);
+            assigned.put(loop, count == null ? 1 : count + 1);
+        }
+        assertEquals(3, assigned.size());
+        for (Map.Entry<EventLoop, Integer> entry : assigned.entrySet()) {
+            assertEquals(3, (int) entry.getValue());
+            assertEquals(3, entry.getKey().connectionCount());
+        }
+    }
+
+    @Test
+    public void leastConnections_prefersLoopWithClosedConnections() throws IOException {
+        EventLoopGroup group = newGroup(3, WorkerChooser.LEAST_CONNECTIONS);
+        Map<EventLoop, List<Connection>> connections = new HashMap<EventLoop, List<Connection>>();
+        for (int i = 0; i < 6; i++) {
+            EventLoop loop = group.next();
+            List<Connection> list = connections.get(loop);
+            if (list == null) {
+                list = new ArrayList<Connection>();
+                connections.put(loop, list);
+            }
+            list.add(newConnection(loop));
+        }
+        //关闭其中一个线程的全部连接，之后的新连接都分配到该线程，直到连接数追平
+        EventLoop drained = connections.keySet().iterator().next();
+        for (Connection connection : connections.get(drained)) {
+            assertTrue(connection.close());
+        }
+        assertEquals(0, drained.connectionCount());
+        assertSame(drained, group.next());
+        newConnection(drained);
+        assertSame(drained, group.next());
+        newConnection(drained);
+        assertEquals(2, drained.connectionCount());
+    }
+
+    @Test
+    public void close_decrementsCountOnce() throws IOException {
+        EventLoopGroup group = newGroup(2, WorkerChooser.LEAST_CONNECTIONS);
+        EventLoop loop = group.next();
+        Connection first = newConnection(loop);
+        Connection second = newConnection(loop);
+        assertEquals(2, loop.connectionCount());
+        assertTrue(first.close());
+        assertEquals(1, loop.connectionCount());
+        //重复关闭不再减少
+        assertFalse(first.close());
+        assertEquals(1, loop.connectionCount());
+        assertTrue(second.close());
+        assertEquals(0, loop.connectionCount());
+    }
+
+}
@@ -0,0 +1,185 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * EventLoop：投递的任务在事件循环线程串行执行，停止前后投递的任务都会执行
+ */
+public class EventLoopTest {
+
+    private final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+
+    private EventLoop newLoop() throws IOException {
+        return new EventLoop("EventLoopTest", new EventLoop.ErrorHandler() {
+            @Override
+            public void onError(Exception e) {
+                errors.add(e);
+            }
+        });
+    }
+
+    /**
+     * 等待线程退出：selector在线程退出前关闭
+     */
+    private static void awaitTerminated(EventLoop loop) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loop.selector().isOpen()) {
+            assertTrue("not terminated", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void execute_runsInEventLoop() throws Exception {
+        final EventLoop loop = newLoop();
+        loop.start();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final boolean[] inEventLoop = new boolean[1];
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                inEventLoop[0] = loop.inEventLoop();
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(inEventLoop[0]);
+        assertFalse(loop.inEventLoop());
+        loop.shutdown();
+    }
+
+    @Test
+    public void tasksQueuedBeforeShutdown_run() throws Exception {
+        EventLoop loop = newLoop();
+        loop.start();
+        final AtomicInteger count = new AtomicInteger(0);
+        for (int i = 0; i < 1000; i++) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+        loop.shutdown();
+        awaitTerminated(loop);
+        assertEquals(1000, count.get());
+    }
+
+    @Test
+    public void execute_afterTermination_runsOnCaller() throws Exception {
+        final EventLoop loop = newLoop();
+        loop.start();
+        loop.shutdown();
+        awaitTerminated(loop);
+        final boolean[] ran = new boolean[1];
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = loop.inEventLoop();
+            }
+        });
+        //不再有事件循环线程，由投递线程执行且视同事件循环线程
+        assertTrue(ran[0]);
+        assertFalse(loop.inEventLoop());
+    }
+
+    @Test
+    public void redispatch_afterTermination_noRecursion() throws Exception {
+        final EventLoop loop = newLoop();
+        loop.start();
+        loop.shutdown();
+        awaitTerminated(loop);
+        final AtomicInteger count = new AtomicInteger(0);
+        //与Connection.suspendRead相同的写法：不在事件循环线程时投递自身
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (!loop.inEventLoop()) {
+                    loop.execute(this);
+                    return;
+                }
+                count.incrementAndGet();
+            }
+        };
+        task.run();
+        assertEquals(1, count.get());
+    }
+
+    @Test
+    public void nestedExecute_afterTermination_runsInOrder() throws Exception {
+        final EventLoop loop = newLoop();
+        loop.start();
+        loop.shutdown();
+        awaitTerminated(loop);
+        final List<Integer> order = new ArrayList<Integer>();
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                order.add(1);
+                loop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add(3);
+                    }
+                });
+                order.add(2);
+            }
+        });
+        assertEquals(3, order.size());
+        assertEquals(Integer.valueOf(1), order.get(0));
+        assertEquals(Integer.valueOf(2), order.get(1));
+        assertEquals(Integer.valueOf(3), order.get(2));
+    }
+
+    @Test
+    public void shutdownBeforeStart_runsQueuedTasks() throws Exception {
+        EventLoop loop = newLoop();
+        final AtomicInteger count = new AtomicInteger(0);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        loop.execute(task);
+        loop.shutdown();
+        assertEquals(1, count.get());
+        assertFalse(loop.selector().isOpen());
+        loop.execute(task);
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void throwingTask_reportedAndLoopContinues() throws Exception {
+        EventLoop loop = newLoop();
+        loop.start();
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected by test");
+            }
+        });
+        final CountDownLatch latch = new CountDownLatch(1);
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, errors.size());
+        loop.shutdown();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.timer.HashedWheelTimer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * HeartbeatHandler：未读到数据时按超时断开、读到数据推迟超时、pong测量往返时延
+ */
+public class HeartbeatHandlerTest {
+
+    private final static byte[] PING = "ping".getBytes();
+    private final static byte[] PONG = "pong".getBytes();
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer("HeartbeatHandlerTest", 10L, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    /**
+     * 记录发出的心跳及超时
+     */
+    private static class Channel implements HeartbeatHandler.Channel {
+
+        final AtomicInteger pings = new AtomicInteger(0);
+        final CountDownLatch pinged = new CountDownLatch(1);
+        final CountDownLatch timedOut = new CountDownLatch(1);
+        volatile long timedOutNanos;
+
+        @Override
+        public void sendHeartbeat(byte[] bytes) {
+            pings.incrementAndGet();
+            pinged.countDown();
+        }
+
+        @Override
+        public void onHeartbeatTimeout() {
+            timedOutNanos = System.nanoTime();
+            timedOut.countDown();
+        }
+
+    }
+
+    @Test(timeout = 10000)
+    public void noRead_timesOut() throws InterruptedException {
+        Channel channel = new Channel();
+        HeartbeatHandler handler = new HeartbeatHandler(new Heartbeat(PING, PONG, 20, 100),
+                timer, new ConnectionMetrics(), channel);
+        long start = System.nanoTime();
+        handler.start();
+        assertTrue(channel.timedOut.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(channel.timedOutNanos - start) >= 100);
+        assertTrue(channel.pings.get() > 0);
+    }
+
+    @Test(timeout = 10000)
+    public void reads_postponeTimeout() throws InterruptedException {
+        Channel channel = new Channel();
+        HeartbeatHandler handler = new HeartbeatHandler(new Heartbeat(PING, PONG, 20, 100),
+                timer, new ConnectionMetrics(), channel);
+        handler.start();
+        //持续读到数据300毫秒，期间不超时
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(30);
+            handler.onRead();
+        }
+        assertEquals(1, channel.timedOut.getCount());
+        long lastRead = System.nanoTime();
+        assertTrue(channel.timedOut.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(channel.timedOutNanos - lastRead) >= 90);
+        handler.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void pong_measuresRtt() throws InterruptedException {
+        Channel channel = new Channel();
+        HeartbeatHandler handler = new HeartbeatHandler(new Heartbeat(PING, PONG, 20, 5000),
+                timer, new ConnectionMetrics(), channel);
+        assertEquals(-1, handler.getRttNanos());
+        handler.start();
+        assertTrue(channel.pinged.await(5, TimeUnit.SECONDS));
+        //停止后不再发送ping，之后的pong只对应已发送的ping
+        handler.stop();
+        Thread.sleep(5);
+        assertTrue(handler.onFrame(PONG, 0, PONG.length));
+        long rtt = handler.getRttNanos();
+        assertTrue("rtt: " + rtt, rtt >= TimeUnit.MILLISECONDS.toNanos(5));
+        //已测量的ping之后收到的pong不再测量
+        assertTrue(handler.onFrame(PONG, 0, PONG.length));
+        assertEquals(rtt, handler.getRttNanos());
+    }
+
+}
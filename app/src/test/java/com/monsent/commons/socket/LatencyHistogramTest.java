@@ -0,0 +1,160 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * LatencyHistogram：值与桶的对应关系(相对误差不超过12.5%)、分位、合并及空快照
+ */
+public class LatencyHistogramTest {
+
+    private final static long LARGE = 1L << 40;
+
+    /**
+     * 值所在桶的上界：记录该值及一个更大的值，中位数即该值所在桶的上界
+     */
+    private static long bucketUpperBound(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(LARGE);
+        return histogram.snapshot().getPercentile(0.5);
+    }
+
+    private static void assertBucket(long value) {
+        long upper = bucketUpperBound(value);
+        assertTrue("upper bound " + upper + " below value " + value, upper >= value);
+        assertTrue("upper bound " + upper + " too far from value " + value, upper - value <= value / 8);
+    }
+
+    @Test
+    public void empty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getPercentile(0.99));
+        assertEquals(0, LatencyHistogram.Snapshot.EMPTY.getPercentile(0.5));
+        assertEquals(0, LatencyHistogram.Snapshot.EMPTY.getCount());
+    }
+
+    @Test
+    public void smallValues_exact() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, bucketUpperBound(value));
+        }
+    }
+
+    @Test
+    public void bucketBoundaries_roundTrip() {
+        for (int bit = 3; bit < 40; bit++) {
+            long power = 1L << bit;
+            assertBucket(power - 1);
+            assertBucket(power);
+            assertBucket(power + 1);
+            assertBucket(power + power / 2);
+        }
+    }
+
+    @Test
+    public void randomValues_roundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            assertBucket(random.nextLong() & (LARGE - 1));
+        }
+    }
+
+    @Test
+    public void bucketUpperBound_isStable() {
+        //同一桶内的值上界相同，上界本身落在同一桶
+        long upper = bucketUpperBound(1000);
+        assertEquals(upper, bucketUpperBound(upper));
+        assertTrue(bucketUpperBound(upper + 1) > upper);
+    }
+
+    @Test
+    public void negative_recordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getPercentile(1));
+    }
+
+    @Test
+    public void hugeValue_clampedToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals((1L << 42) - 1, snapshot.getMax());
+        assertEquals(snapshot.getMax(), snapshot.getPercentile(1));
+    }
+
+    @Test
+    public void percentiles_countMeanMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500, snapshot.getMean());
+        assertEquals(1000, snapshot.getMax());
+        assertWithin(500, snapshot.getPercentile(0.5));
+        assertWithin(990, snapshot.getPercentile(0.99));
+        assertEquals(1000, snapshot.getPercentile(0.999));
+        assertEquals(1000, snapshot.getPercentile(1));
+        //分位超出范围时截断
+        assertEquals(1000, snapshot.getPercentile(2));
+        assertEquals(bucketUpperBound(1), snapshot.getPercentile(-1));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected && actual - expected <= expected / 8);
+    }
+
+    @Test
+    public void add_mergesCountsAndMax() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(100);
+        first.record(200);
+        second.record(5000);
+        first.add(second);
+        LatencyHistogram.Snapshot snapshot = first.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals((100 + 200 + 5000) / 3, snapshot.getMean());
+        assertEquals(5000, snapshot.getMax());
+        assertEquals(1, second.snapshot().getCount());
+    }
+
+    @Test
+    public void concurrentRecord_noLostCounts() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final long value = (i + 1) * 1000L;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        histogram.record(value);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(2500, snapshot.getMean());
+        assertEquals(4000, snapshot.getMax());
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * LengthFieldFrameDecoder：长度字段字节数、字节序、长度含头部、保留头部、超长拒绝及分多次到达的帧
+ */
+public class LengthFieldFrameDecoderTest {
+
+    private static RingBufferTest.Frames decode(FrameDecoder decoder, byte[]... reads) throws IOException {
+        RingBuffer buffer = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        for (byte[] read : reads) {
+            buffer.write(read, 0, read.length);
+            decoder.decode(buffer, frames);
+        }
+        return frames;
+    }
+
+    @Test
+    public void oneByteLength() throws IOException {
+        RingBufferTest.Frames frames = decode(new LengthFieldFrameDecoder(1),
+                new byte[]{2, 'a', 'b', 0, 1, 'c'});
+        assertEquals(3, frames.frames.size());
+        assertArrayEquals(new byte[]{'a', 'b'}, frames.frames.get(0));
+        assertArrayEquals(new byte[0], frames.frames.get(1));
+        assertArrayEquals(new byte[]{'c'}, frames.frames.get(2));
+    }
+
+    @Test
+    public void oneByteLength_unsigned() throws IOException {
+        byte[] read = new byte[1 + 200];
+        read[0] = (byte) 200;
+        RingBufferTest.Frames frames = decode(new LengthFieldFrameDecoder(1), read);
+        assertEquals(1, frames.frames.size());
+        assertEquals(200, frames.frames.get(0).length);
+    }
+
+    @Test
+    public void twoByteLength_bigEndian() throws IOException {
+        byte[] read = new byte[2 + 0x0102];
+        read[0] = 0x01;
+        read[1] = 0x02;
+        RingBufferTest.Frames frames = decode(new LengthFieldFrameDecoder(2), read);
+        assertEquals(1, frames.frames.size());
+        assertEquals(0x0102, frames.frames.get(0).length);
+    }
+
+    @Test
+    public void twoByteLength_littleEndian() throws IOException {
+        byte[] read = new byte[2 + 0x0102];
+        read[0] = 0x02;
+        read[1] = 0x01;
+        RingBufferTest.Frames frames = decode(new LengthFieldFrameDecoder(2, ByteOrder.LITTLE_ENDIAN), read);
+        assertEquals(1, frames.frames.size());
+        assertEquals(0x0102, frames.frames.get(0).length);
+    }
+
+    @Test
+    public void fourByteLength_bothByteOrders() throws IOException {
+        RingBufferTest.Frames big = decode(new LengthFieldFrameDecoder(4),
+                new byte[]{0, 0, 0, 3, 'x', 'y', 'z'});
+        assertArrayEquals(new byte[]{'x', 'y', 'z'}, big.frames.get(0));
+        RingBufferTest.Frames little = decode(new LengthFieldFrameDecoder(4, ByteOrder.LITTLE_ENDIAN),
+                new byte[]{3, 0, 0, 0, 'x', 'y', 'z'});
+        assertArrayEquals(new byte[]{'x', 'y', 'z'}, little.frames.get(0));
+    }
+
+    @Test
+    public void lengthIncludesHeader_keepHeader() throws IOException {
+        FrameDecoder decoder = new LengthFieldFrameDecoder(2, ByteOrder.BIG_ENDIAN, true, false, 1024);
+        RingBufferTest.Frames frames = decode(decoder, new byte[]{0, 4, 'a', 'b', 0, 2});
+        assertEquals(2, frames.frames.size());
+        assertArrayEquals(new byte[]{0, 4, 'a', 'b'}, frames.frames.get(0));
+        assertArrayEquals(new byte[]{0, 2}, frames.frames.get(1));
+    }
+
+    @Test(expected = IOException.class)
+    public void lengthIncludesHeader_shorterThanHeader_rejected() throws IOException {
+        FrameDecoder decoder = new LengthFieldFrameDecoder(2, ByteOrder.BIG_ENDIAN, true, true, 1024);
+        decode(decoder, new byte[]{0, 1});
+    }
+
+    @Test(expected = IOException.class)
+    public void exceedsMaxFrameLength_rejected() throws IOException {
+        FrameDecoder decoder = new LengthFieldFrameDecoder(4, ByteOrder.BIG_ENDIAN, false, true, 16);
+        //只有长度字段到达即拒绝，不等待帧体
+        decode(decoder, new byte[]{0, 0, 0, 17});
+    }
+
+    @Test
+    public void maxFrameLength_accepted() throws IOException {
+        FrameDecoder decoder = new LengthFieldFrameDecoder(1, ByteOrder.BIG_ENDIAN, false, true, 16);
+        byte[] read = new byte[1 + 16];
+        read[0] = 16;
+        assertEquals(1, decode(decoder, read).frames.size());
+    }
+
+    @Test
+    public void frameSplitAcrossReads() throws IOException {
+        RingBufferTest.Frames frames = decode(new LengthFieldFrameDecoder(4),
+                new byte[]{0, 0},
+                new byte[]{0, 5, 'h'},
+                new byte[]{'e', 'l'},
+                new byte[]{'l', 'o', 0, 0, 0, 1, '!'});
+        assertEquals(2, frames.frames.size());
+        assertArrayEquals("hello".getBytes(), frames.frames.get(0));
+        assertArrayEquals(new byte[]{'!'}, frames.frames.get(1));
+    }
+
+    @Test
+    public void partialFrame_leftInBuffer() throws IOException {
+        RingBuffer buffer = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        buffer.write(new byte[]{0, 3, 'a'}, 0, 3);
+        new LengthFieldFrameDecoder(2).decode(buffer, frames);
+        assertTrue(frames.frames.isEmpty());
+        assertEquals(3, buffer.readableBytes());
+    }
+
+    @Test
+    public void frameAcrossRingEnd() throws IOException {
+        RingBuffer buffer = new RingBuffer(16);
+        RingBufferTest.Frames frames = new RingBufferTest.Frames();
+        FrameDecoder decoder = new LengthFieldFrameDecoder(1);
+        buffer.write(new byte[]{10, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, 0, 11);
+        buffer.write(new byte[]{5}, 0, 1);
+        decoder.decode(buffer, frames);
+        //第二帧位于数组下标12~15及0，跨越数组尾部
+        buffer.write(new byte[]{'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j'}, 0, 10);
+        decoder.decode(buffer, frames);
+        assertEquals(2, frames.frames.size());
+        assertArrayEquals("abcde".getBytes(), frames.frames.get(1));
+        assertEquals(5, buffer.readableBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLengthFieldSize_rejected() {
+        new LengthFieldFrameDecoder(3);
+    }
+
+}
@@ -0,0 +1,280 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * OutboundBuffer：聚集写、部分写出、文件区间部分发送后续传、高低水位切换、限长拒绝及写入结果
+ */
+public class OutboundBufferTest {
+
+    /**
+     * 每次至多写出perWrite字节、累计至多写出budget字节的通道，写满后返回0，模拟socket发送缓冲区已满
+     */
+    private static class FakeChannel implements GatheringByteChannel {
+
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final List<Integer> gatherLengths = new ArrayList<Integer>();   //每次聚集写的缓冲区数
+        int perWrite;
+        long budget;
+
+        FakeChannel(int perWrite, long budget) {
+            this.perWrite = perWrite;
+            this.budget = budget;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            gatherLengths.add(length);
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                while (srcs[i].hasRemaining() && total < perWrite && budget > 0) {
+                    written.write(srcs[i].get());
+                    total++;
+                    budget--;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            return (int) write(new ByteBuffer[]{src}, 0, 1);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    private static OutboundBuffer newBuffer(long maxPendingBytes, long lowWaterMark, long highWaterMark) {
+        return new OutboundBuffer(maxPendingBytes, lowWaterMark, highWaterMark, new ConnectionMetrics());
+    }
+
+    private static ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes());
+    }
+
+    @Test
+    public void flush_gathersQueuedBuffersInOneWrite() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 32, 64);
+        WriteFuture first = new WriteFuture();
+        WriteFuture second = new WriteFuture();
+        WriteFuture third = new WriteFuture();
+        assertTrue(outbound.add(bytes("ab"), first));
+        assertTrue(outbound.add(bytes("cde"), second));
+        assertTrue(outbound.add(bytes("f"), third));
+        FakeChannel channel = new FakeChannel(Integer.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(6, outbound.flush(channel));
+        assertEquals("abcdef", channel.written.toString());
+        assertEquals(1, channel.gatherLengths.size());
+        assertEquals(3, (int) channel.gatherLengths.get(0));
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertTrue(third.isSuccess());
+        assertTrue(outbound.isEmpty());
+        assertEquals(0, outbound.pendingBytes());
+    }
+
+    @Test
+    public void flush_gatherLimitedTo64Buffers() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 32, 512);
+        for (int i = 0; i < 100; i++) {
+            outbound.add(bytes("x"), new WriteFuture());
+        }
+        FakeChannel channel = new FakeChannel(Integer.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(100, outbound.flush(channel));
+        assertEquals(2, channel.gatherLengths.size());
+        assertEquals(64, (int) channel.gatherLengths.get(0));
+        assertEquals(36, (int) channel.gatherLengths.get(1));
+    }
+
+    @Test
+    public void flush_partialWrites_completeOnlyFullyWritten() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 32, 64);
+        WriteFuture first = new WriteFuture();
+        WriteFuture second = new WriteFuture();
+        outbound.add(bytes("abcd"), first);
+        outbound.add(bytes("efgh"), second);
+        //每次写出3字节，共可写5字节后通道写满
+        FakeChannel channel = new FakeChannel(3, 5);
+        assertEquals(5, outbound.flush(channel));
+        assertEquals("abcde", channel.written.toString());
+        assertTrue(first.isSuccess());
+        assertFalse(second.isDone());
+        assertEquals(3, outbound.pendingBytes());
+        assertEquals(1, outbound.size());
+        //通道恢复可写后从断点继续
+        channel.budget = Long.MAX_VALUE;
+        assertEquals(3, outbound.flush(channel));
+        assertEquals("abcdefgh", channel.written.toString());
+        assertTrue(second.isSuccess());
+        assertTrue(outbound.isEmpty());
+    }
+
+    @Test
+    public void flush_maxBytes_truncatesAndRestoresLimit() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 32, 64);
+        ByteBuffer buffer = bytes("abcdef");
+        WriteFuture future = new WriteFuture();
+        outbound.add(buffer, future);
+        FakeChannel channel = new FakeChannel(Integer.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(4, outbound.flush(channel, 4));
+        assertEquals("abcd", channel.written.toString());
+        assertEquals(6, buffer.limit());
+        assertFalse(future.isDone());
+        assertEquals(2, outbound.flush(channel, 4));
+        assertTrue(future.isSuccess());
+    }
+
+    @Test
+    public void waterMarks_writabilityTransitions() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 4, 8);
+        outbound.add(bytes("12345"), new WriteFuture());
+        assertTrue(outbound.isWritable());
+        outbound.add(bytes("678"), new WriteFuture());
+        //等于高水位仍可写
+        assertTrue(outbound.isWritable());
+        outbound.add(bytes("9"), new WriteFuture());
+        assertFalse(outbound.isWritable());
+        FakeChannel channel = new FakeChannel(Integer.MAX_VALUE, 4);
+        outbound.flush(channel);
+        //剩余5字节，仍高于低水位
+        assertEquals(5, outbound.pendingBytes());
+        assertFalse(outbound.isWritable());
+        channel.budget = 1;
+        outbound.flush(channel);
+        assertEquals(4, outbound.pendingBytes());
+        assertTrue(outbound.isWritable());
+    }
+
+    @Test
+    public void maxPendingBytes_rejectsWhenFull() {
+        OutboundBuffer outbound = newBuffer(10, 4, 8);
+        assertTrue(outbound.add(bytes("12345678"), new WriteFuture()));
+        assertFalse(outbound.add(bytes("123"), new WriteFuture()));
+        assertTrue(outbound.add(bytes("12"), new WriteFuture()));
+        assertEquals(10, outbound.pendingBytes());
+        assertEquals(2, outbound.size());
+    }
+
+    @Test
+    public void maxPendingBytes_oversizeAcceptedWhenEmpty() {
+        OutboundBuffer outbound = newBuffer(10, 4, 8);
+        assertTrue(outbound.add(ByteBuffer.allocate(20), new WriteFuture()));
+        assertFalse(outbound.isWritable());
+        assertFalse(outbound.add(bytes("1"), new WriteFuture()));
+    }
+
+    @Test
+    public void failAll_failsPendingAndRejectsLaterWrites() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 4, 8);
+        WriteFuture first = new WriteFuture();
+        WriteFuture second = new WriteFuture();
+        outbound.add(bytes("123456789"), first);
+        outbound.add(bytes("abc"), second);
+        assertFalse(outbound.isWritable());
+        IOException cause = new IOException("closed");
+        outbound.failAll(cause);
+        assertSame(cause, first.getCause());
+        assertSame(cause, second.getCause());
+        assertTrue(outbound.isClosed());
+        assertTrue(outbound.isWritable());
+        assertEquals(0, outbound.pendingBytes());
+        assertFalse(outbound.add(bytes("late"), new WriteFuture()));
+        assertEquals(0, outbound.flush(new FakeChannel(Integer.MAX_VALUE, Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void emptyBuffer_completedOnFlush() throws IOException {
+        OutboundBuffer outbound = newBuffer(1024, 4, 8);
+        WriteFuture future = new WriteFuture();
+        outbound.add(ByteBuffer.allocate(0), future);
+        outbound.flush(new FakeChannel(Integer.MAX_VALUE, Long.MAX_VALUE));
+        assertTrue(future.isSuccess());
+        assertTrue(outbound.isEmpty());
+    }
+
+    @Test
+    public void fileRegion_partialTransfer_resumesAndCompletes() throws IOException {
+        byte[] content = new byte[20000];
+        new Random(1).nextBytes(content);
+        File file = File.createTempFile("OutboundBufferTest", ".bin");
+        FileChannel fileChannel = null;
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            fileChannel = new FileInputStream(file).getChannel();
+            final List<Long> progress = new ArrayList<Long>();
+            FileRegion region = new FileRegion(fileChannel, 0, content.length, true, new ProgressListener() {
+                @Override
+                public void onProgress(long transferred, long total) {
+                    progress.add(transferred);
+                }
+            });
+            OutboundBuffer outbound = newBuffer(1024, 4, 8);
+            WriteFuture header = new WriteFuture();
+            WriteFuture future = new WriteFuture();
+            WriteFuture trailer = new WriteFuture();
+            outbound.add(bytes("head"), header);
+            outbound.add(region, future);
+            outbound.add(bytes("tail"), trailer);
+            //每次写出3000字节，共可写10000字节后通道写满，文件区间只发送一部分
+            FakeChannel channel = new FakeChannel(3000, 10000);
+            assertEquals(10000, outbound.flush(channel));
+            assertTrue(header.isSuccess());
+            assertFalse(future.isDone());
+            assertFalse(trailer.isDone());
+            assertTrue(fileChannel.isOpen());
+            assertEquals(9996L, (long) progress.get(progress.size() - 1));
+            //通道恢复可写后从断点继续，文件发送结束后才发送其后的数据
+            channel.budget = Long.MAX_VALUE;
+            assertEquals(content.length - 9996 + 4, outbound.flush(channel));
+            assertTrue(future.isSuccess());
+            assertTrue(trailer.isSuccess());
+            assertTrue(outbound.isEmpty());
+            assertFalse(fileChannel.isOpen());
+            assertEquals((long) content.length, (long) progress.get(progress.size() - 1));
+            byte[] written = channel.written.toByteArray();
+            assertEquals(content.length + 8, written.length);
+            assertEquals("head", new String(written, 0, 4));
+            assertArrayEquals(content, Arrays.copyOfRange(written, 4, 4 + content.length));
+            assertEquals("tail", new String(written, 4 + content.length, 4));
+        } finally {
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+            assertTrue(file.delete());
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * RateLimiter：字节数、消息数两个维度及与上级(全局)限速器共享配额
+ */
+public class RateLimiterTest {
+
+    private final static long MILLIS = 1000000L;
+
+    @Test
+    public void create_withoutLimit_returnsParent() {
+        assertNull(RateLimiter.create(null, null));
+        assertNull(RateLimiter.create(new RateLimit(0, 0), null));
+        RateLimiter parent = RateLimiter.create(new RateLimit(1000, 0), null);
+        assertSame(parent, RateLimiter.create(null, parent));
+        assertSame(parent, RateLimiter.create(new RateLimit(0, 0), parent));
+    }
+
+    @Test
+    public void bytesOnly() {
+        RateLimiter limiter = RateLimiter.create(new RateLimit(1000, 0), null);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.acquire(1000, 1000000, now));
+        assertEquals(MILLIS, limiter.acquire(1, 1, now));
+        assertEquals(0, limiter.availableBytes(now));
+    }
+
+    @Test
+    public void messagesOnly() {
+        RateLimiter limiter = RateLimiter.create(new RateLimit(0, 10), null);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.acquire(1000000, 10, now));
+        assertEquals(100 * MILLIS, limiter.acquire(0, 1, now));
+        assertEquals(Long.MAX_VALUE, limiter.availableBytes(now));
+    }
+
+    @Test
+    public void bothDimensions_longerDelayWins() {
+        RateLimiter limiter = RateLimiter.create(new RateLimit(1000, 10), null);
+        long now = System.nanoTime();
+        //字节透支200毫秒，消息透支500毫秒
+        assertEquals(500 * MILLIS, limiter.acquire(1200, 15, now));
+        assertEquals(500 * MILLIS, limiter.delay(now));
+    }
+
+    @Test
+    public void delay_doesNotConsume() {
+        RateLimiter limiter = RateLimiter.create(new RateLimit(1000, 0), null);
+        long now = System.nanoTime();
+        limiter.acquire(1100, 1, now);
+        assertEquals(100 * MILLIS, limiter.delay(now));
+        assertEquals(100 * MILLIS, limiter.delay(now));
+        assertEquals(0, limiter.delay(now + 100 * MILLIS));
+    }
+
+    @Test
+    public void parent_sharedBetweenChildren() {
+        RateLimiter global = RateLimiter.create(new RateLimit(1000, 0), null);
+        RateLimiter first = RateLimiter.create(new RateLimit(10000, 0), global);
+        RateLimiter second = RateLimiter.create(new RateLimit(10000, 0), global);
+        long now = System.nanoTime();
+        assertEquals(0, first.acquire(800, 1, now));
+        //各自的配额充足，全局配额被第一个连接用去800
+        assertEquals(600 * MILLIS, second.acquire(800, 1, now));
+        assertEquals(600 * MILLIS, first.delay(now));
+        assertEquals(0, first.availableBytes(now));
+        assertEquals(100, second.availableBytes(now + 700 * MILLIS));
+    }
+
+    @Test
+    public void child_stricterThanParent() {
+        RateLimiter global = RateLimiter.create(new RateLimit(10000, 0), null);
+        RateLimiter child = RateLimiter.create(new RateLimit(1000, 0), global);
+        long now = System.nanoTime();
+        assertEquals(500 * MILLIS, child.acquire(1500, 1, now));
+        assertEquals(8500, global.availableBytes(now));
+        assertEquals(0, child.availableBytes(now));
+    }
+
+}
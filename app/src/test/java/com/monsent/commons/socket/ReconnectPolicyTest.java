@@ -0,0 +1,105 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ReconnectPolicy：指数增长、最大延迟上限、随机抖动范围及参数校验
+ */
+public class ReconnectPolicyTest {
+
+    private final static int SAMPLES = 1000;
+
+    @Test
+    public void noJitter_growsExponentially() {
+        ReconnectPolicy policy = new ReconnectPolicy(100, 10000, 2d, 0d, 0, false);
+        assertEquals(100, policy.nextDelay(1));
+        assertEquals(200, policy.nextDelay(2));
+        assertEquals(400, policy.nextDelay(3));
+        assertEquals(800, policy.nextDelay(4));
+        //次数小于1按首次计算
+        assertEquals(100, policy.nextDelay(0));
+    }
+
+    @Test
+    public void noJitter_cappedAtMax() {
+        ReconnectPolicy policy = new ReconnectPolicy(100, 1000, 3d, 0d, 0, false);
+        assertEquals(900, policy.nextDelay(3));
+        assertEquals(1000, policy.nextDelay(4));
+        //次数很大时不溢出
+        assertEquals(1000, policy.nextDelay(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void multiplierOne_constantDelay() {
+        ReconnectPolicy policy = new ReconnectPolicy(500, 1000, 1d, 0d, 0, false);
+        for (int attempt = 1; attempt < 10; attempt++) {
+            assertEquals(500, policy.nextDelay(attempt));
+        }
+    }
+
+    @Test
+    public void jitter_withinBounds() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 100000, 2d, 0.2d, 0, false);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long delay = policy.nextDelay(3);
+            assertTrue("delay: " + delay, delay >= 3200 && delay <= 4800);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        //抖动确实生效，且分布在计算值两侧
+        assertTrue("min: " + min, min < 4000);
+        assertTrue("max: " + max, max > 4000);
+    }
+
+    @Test
+    public void jitter_neverExceedsMax() {
+        ReconnectPolicy policy = new ReconnectPolicy(1000, 5000, 2d, 0.5d, 0, false);
+        boolean belowMax = false;
+        for (int i = 0; i < SAMPLES; i++) {
+            long delay = policy.nextDelay(10);
+            assertTrue("delay: " + delay, delay >= 2500 && delay <= 5000);
+            belowMax |= delay < 5000;
+        }
+        //达到上限后仍向下抖动，避免同时重连
+        assertTrue(belowMax);
+    }
+
+    @Test
+    public void defaults() {
+        ReconnectPolicy policy = new ReconnectPolicy(100, 1000, 3);
+        assertEquals(2d, policy.getMultiplier(), 0d);
+        assertEquals(0.2d, policy.getJitter(), 0d);
+        assertEquals(3, policy.getMaxAttempts());
+        assertFalse(policy.isBufferWrites());
+        for (int i = 0; i < SAMPLES; i++) {
+            long delay = policy.nextDelay(1);
+            assertTrue("delay: " + delay, delay >= 80 && delay <= 120);
+        }
+    }
+
+    @Test
+    public void invalidArguments_rejected() {
+        assertInvalid(-1, 1000, 2d, 0d, 0);
+        assertInvalid(1000, 999, 2d, 0d, 0);
+        assertInvalid(100, 1000, 0.5d, 0d, 0);
+        assertInvalid(100, 1000, 2d, -0.1d, 0);
+        assertInvalid(100, 1000, 2d, 1.1d, 0);
+        assertInvalid(100, 1000, 2d, 0d, -1);
+    }
+
+    private static void assertInvalid(long initialDelayMillis, long maxDelayMillis, double multiplier,
+                                      double jitter, int maxAttempts) {
+        try {
+            new ReconnectPolicy(initialDelayMillis, maxDelayMillis, multiplier, jitter, maxAttempts, false);
+            fail("initial: " + initialDelayMillis + ", max: " + maxDelayMillis + ", multiplier: " + multiplier
+                    + ", jitter: " + jitter + ", maxAttempts: " + maxAttempts);
+        } catch (IllegalArgumentException e) {
+            //参数无效
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.timer.HashedWheelTimer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * RequestTracker：按关联ID匹配响应、乱序响应、重复及非法ID、超时、单个失败及全部失败
+ */
+public class RequestTrackerTest {
+
+    private final static long TIMEOUT_MILLIS = 5000L;
+    private HashedWheelTimer timer;
+    private RequestTracker tracker;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer("RequestTrackerTest", 10L, 8);
+        tracker = new RequestTracker();
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void complete_matchesByCorrelationId() {
+        ResponseFuture first = tracker.register(1, timer, 0);
+        ResponseFuture second = tracker.register(2, timer, 0);
+        assertEquals(2, tracker.size());
+        //响应乱序到达
+        byte[] bytes = "xx-second-xx".getBytes();
+        assertTrue(tracker.complete(2, bytes, 3, 6));
+        assertTrue(second.isSuccess());
+        assertArrayEquals("second".getBytes(), second.getResponse());
+        assertFalse(first.isDone());
+        assertTrue(tracker.complete(1, "first".getBytes(), 0, 5));
+        assertArrayEquals("first".getBytes(), first.getResponse());
+        assertTrue(tracker.isEmpty());
+    }
+
+    @Test
+    public void complete_copiesResponse() {
+        ResponseFuture future = tracker.register(1, timer, 0);
+        byte[] bytes = "abc".getBytes();
+        tracker.complete(1, bytes, 0, bytes.length);
+        bytes[0] = 'x';
+        assertArrayEquals("abc".getBytes(), future.getResponse());
+    }
+
+    @Test
+    public void complete_unknownOrRepeated_notMatched() {
+        assertFalse(tracker.complete(1, new byte[0], 0, 0));
+        ResponseFuture future = tracker.register(1, timer, 0);
+        assertTrue(tracker.complete(1, "a".getBytes(), 0, 1));
+        //重复的响应不影响已完成的结果
+        assertFalse(tracker.complete(1, "b".getBytes(), 0, 1));
+        assertArrayEquals("a".getBytes(), future.getResponse());
+    }
+
+    @Test
+    public void register_duplicateId_failsWithoutReplacing() {
+        ResponseFuture first = tracker.register(7, timer, 0);
+        ResponseFuture duplicate = tracker.register(7, timer, 0);
+        assertTrue(duplicate.isDone());
+        assertTrue(duplicate.getCause() instanceof IllegalStateException);
+        assertEquals(1, tracker.size());
+        tracker.complete(7, "a".getBytes(), 0, 1);
+        assertTrue(first.isSuccess());
+        //完成后可重新使用该关联ID
+        assertFalse(tracker.register(7, timer, 0).isDone());
+    }
+
+    @Test
+    public void register_negativeId_rejected() {
+        ResponseFuture future = tracker.register(-1, timer, 0);
+        assertTrue(future.isDone());
+        assertTrue(future.getCause() instanceof IllegalArgumentException);
+        assertTrue(tracker.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void timeout_failsAndRemoves() throws InterruptedException {
+        long start = System.nanoTime();
+        ResponseFuture future = tracker.register(1, timer, 50);
+        assertTrue(future.await(TIMEOUT_MILLIS));
+        assertTrue((System.nanoTime() - start) / 1000000L >= 50);
+        assertTrue(future.getCause() instanceof TimeoutException);
+        assertTrue(tracker.isEmpty());
+        //超时后到达的响应不再匹配
+        assertFalse(tracker.complete(1, "late".getBytes(), 0, 4));
+        assertFalse(future.isSuccess());
+    }
+
+    @Test(timeout = 10000)
+    public void complete_beforeTimeout_notFailedLater() throws InterruptedException {
+        ResponseFuture future = tracker.register(1, timer, 50);
+        assertTrue(tracker.complete(1, "a".getBytes(), 0, 1));
+        Thread.sleep(150);
+        assertTrue(future.isSuccess());
+        assertNull(future.getCause());
+    }
+
+    @Test(timeout = 10000)
+    public void timeout_doesNotFailReusedId() throws InterruptedException {
+        ResponseFuture first = tracker.register(1, timer, 50);
+        tracker.fail(first, new IOException("write failed"));
+        //同一关联ID的新请求不受前一请求超时影响
+        ResponseFuture second = tracker.register(1, timer, 0);
+        Thread.sleep(150);
+        assertFalse(second.isDone());
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    public void fail_onlyTheGivenRequest() {
+        ResponseFuture first = tracker.register(1, timer, 0);
+        ResponseFuture second = tracker.register(2, timer, 0);
+        IOException cause = new IOException("write failed");
+        tracker.fail(first, cause);
+        assertSame(cause, first.getCause());
+        assertFalse(second.isDone());
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    public void failAll_failsEveryPending() {
+        ResponseFuture first = tracker.register(1, timer, 0);
+        ResponseFuture second = tracker.register(2, timer, 1000);
+        ResponseFuture done = tracker.register(3, timer, 0);
+        tracker.complete(3, "a".getBytes(), 0, 1);
+        IOException cause = new IOException("Connection closed");
+        tracker.failAll(cause);
+        assertSame(cause, first.getCause());
+        assertSame(cause, second.getCause());
+        assertTrue(done.isSuccess());
+        assertTrue(tracker.isEmpty());
+    }
+
+}
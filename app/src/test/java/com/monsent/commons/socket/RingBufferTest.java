@@ -0,0 +1,164 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * RingBuffer：回绕、扩容、跨数组尾部的帧拼接及分隔符查找
+ */
+public class RingBufferTest {
+
+    /**
+     * 收集帧的拷贝
+     */
+    static class Frames implements FrameDecoder.FrameHandler {
+
+        final List<byte[]> frames = new ArrayList<byte[]>();
+
+        @Override
+        public void onFrame(byte[] bytes, int offset, int length) {
+            frames.add(Arrays.copyOfRange(bytes, offset, offset + length));
+        }
+
+    }
+
+    private static byte[] bytes(int from, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (from + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void capacity_roundedUpToPowerOfTwo() {
+        assertEquals(16, new RingBuffer(1).capacity());
+        assertEquals(128, new RingBuffer(100).capacity());
+        assertEquals(1024, new RingBuffer().capacity());
+    }
+
+    @Test
+    public void writeAndGetByte_wrapAround() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 12), 0, 12);
+        buffer.skip(10);
+        //写入跨越数组尾部
+        buffer.write(bytes(12, 10), 0, 10);
+        assertEquals(16, buffer.capacity());
+        assertEquals(12, buffer.readableBytes());
+        for (int i = 0; i < 12; i++) {
+            assertEquals(10 + i, buffer.getByte(i));
+        }
+    }
+
+    @Test
+    public void readFrame_acrossArrayEnd_isJoined() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 12), 0, 12);
+        buffer.skip(12);
+        buffer.write(bytes(50, 8), 0, 8);
+        //读空后读位置回到起始，帧连续
+        Frames frames = new Frames();
+        buffer.readFrame(8, frames);
+        assertArrayEquals(bytes(50, 8), frames.frames.get(0));
+
+        buffer.write(bytes(0, 12), 0, 12);
+        buffer.skip(10);
+        buffer.write(bytes(12, 10), 0, 10);
+        buffer.readFrame(12, frames);
+        assertArrayEquals(bytes(10, 12), frames.frames.get(1));
+        assertEquals(0, buffer.readableBytes());
+    }
+
+    @Test
+    public void write_grows_keepsOrder() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 12), 0, 12);
+        buffer.skip(6);
+        buffer.write(bytes(12, 30), 0, 30);
+        assertEquals(64, buffer.capacity());
+        assertEquals(36, buffer.readableBytes());
+        Frames frames = new Frames();
+        buffer.readFrame(36, frames);
+        assertArrayEquals(bytes(6, 36), frames.frames.get(0));
+    }
+
+    @Test
+    public void write_withOffset() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 10), 3, 4);
+        assertEquals(4, buffer.readableBytes());
+        assertEquals(3, buffer.getByte(0));
+        assertEquals(6, buffer.getByte(3));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getByte_beyondReadable_throws() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 4), 0, 4);
+        buffer.getByte(4);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void skip_beyondReadable_throws() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 4), 0, 4);
+        buffer.skip(5);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readFrame_beyondReadable_throws() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 4), 0, 4);
+        buffer.readFrame(5, new Frames());
+    }
+
+    @Test
+    public void clear_emptiesBuffer() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 4), 0, 4);
+        buffer.clear();
+        assertEquals(0, buffer.readableBytes());
+        assertEquals(-1, buffer.indexOf(new byte[]{0}));
+    }
+
+    @Test
+    public void indexOf_acrossArrayEnd() {
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(bytes(0, 14), 0, 14);
+        buffer.skip(14);
+        buffer.write(new byte[]{'a', 'b', '\r', '\n'}, 0, 4);
+        assertEquals(2, buffer.indexOf(new byte[]{'\r', '\n'}));
+    }
+
+    @Test
+    public void indexOf_resumesAfterPartialDelimiter() {
+        byte[] delimiter = {'\r', '\n'};
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(new byte[]{'a', 'b', '\r'}, 0, 3);
+        assertEquals(-1, buffer.indexOf(delimiter));
+        //分隔符的后半部分后到达，不能跳过已到达的前半部分
+        buffer.write(new byte[]{'\n'}, 0, 1);
+        assertEquals(2, buffer.indexOf(delimiter));
+        //未取出时重复查找结果不变
+        assertEquals(2, buffer.indexOf(delimiter));
+    }
+
+    @Test
+    public void indexOf_afterConsumingFrame_findsNext() {
+        byte[] delimiter = {'\n'};
+        RingBuffer buffer = new RingBuffer(16);
+        buffer.write(new byte[]{'a', '\n', 'b', 'c'}, 0, 4);
+        assertEquals(1, buffer.indexOf(delimiter));
+        buffer.skip(2);
+        assertEquals(-1, buffer.indexOf(delimiter));
+        buffer.write(new byte[]{'\n'}, 0, 1);
+        assertEquals(2, buffer.indexOf(delimiter));
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * SequenceTracker：按序到达、跳号记丢失、迟到扣除丢失并记乱序、窗口内重复、序号回绕及发送方重启
+ */
+public class SequenceTrackerTest {
+
+    /**
+     * 统计结果：lost、reordered、duplicates
+     */
+    private static long[] totals(SequenceTracker tracker) {
+        long[] totals = new long[3];
+        tracker.addTo(totals);
+        return totals;
+    }
+
+    private static void assertTotals(SequenceTracker tracker, long lost, long reordered, long duplicates) {
+        assertArrayEquals(new long[]{lost, reordered, duplicates}, totals(tracker));
+    }
+
+    @Test
+    public void inOrder() {
+        SequenceTracker tracker = new SequenceTracker();
+        for (int sequence = 100; sequence < 200; sequence++) {
+            assertTrue(tracker.record(sequence));
+        }
+        assertTotals(tracker, 0, 0, 0);
+    }
+
+    @Test
+    public void gap_countedAsLost() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(0);
+        tracker.record(1);
+        tracker.record(5);
+        assertTotals(tracker, 3, 0, 0);
+    }
+
+    @Test
+    public void lateArrival_reorderedNotLost() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(0);
+        tracker.record(3);
+        assertTrue(tracker.record(1));
+        assertTrue(tracker.record(2));
+        assertTotals(tracker, 0, 2, 0);
+    }
+
+    @Test
+    public void duplicate_withinWindow_notDelivered() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(0);
+        tracker.record(1);
+        tracker.record(2);
+        assertFalse(tracker.record(2));
+        assertFalse(tracker.record(0));
+        //迟到包补上后再重复
+        tracker.record(10);
+        assertTrue(tracker.record(5));
+        assertFalse(tracker.record(5));
+        assertTotals(tracker, 6, 1, 3);
+    }
+
+    @Test
+    public void duplicate_atWindowEdge() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(0);
+        tracker.record(63);
+        //最大序号之前第63个仍在窗口内
+        assertFalse(tracker.record(0));
+        tracker.record(64);
+        //超出窗口无法判断，按乱序交付
+        assertTrue(tracker.record(0));
+        assertTotals(tracker, 61, 1, 1);
+    }
+
+    @Test
+    public void largeGap_resetsWindow() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(0);
+        tracker.record(1000);
+        assertFalse(tracker.record(1000));
+        assertTrue(tracker.record(999));
+        assertTotals(tracker, 998, 1, 1);
+    }
+
+    @Test
+    public void sequenceWrapsAround() {
+        SequenceTracker tracker = new SequenceTracker();
+        assertTrue(tracker.record(Integer.MAX_VALUE - 1));
+        assertTrue(tracker.record(Integer.MAX_VALUE));
+        assertTrue(tracker.record(Integer.MIN_VALUE));
+        assertTrue(tracker.record(Integer.MIN_VALUE + 2));
+        assertTrue(tracker.record(Integer.MIN_VALUE + 1));
+        assertFalse(tracker.record(Integer.MAX_VALUE));
+        assertTotals(tracker, 0, 1, 1);
+    }
+
+    @Test
+    public void largeBackwardJump_newStream() {
+        SequenceTracker tracker = new SequenceTracker();
+        for (int sequence = 5000; sequence < 5010; sequence++) {
+            tracker.record(sequence);
+        }
+        //发送方重启后从0编号，按新序列统计，不记乱序也不扣除丢失
+        for (int sequence = 0; sequence < 10; sequence++) {
+            assertTrue(tracker.record(sequence));
+        }
+        assertTotals(tracker, 0, 0, 0);
+        assertFalse(tracker.record(9));
+        assertTrue(tracker.record(12));
+        assertTotals(tracker, 2, 0, 1);
+    }
+
+    @Test
+    public void restart_keepsEarlierCounts() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(2000);
+        tracker.record(2005);
+        tracker.record(2005);
+        tracker.record(0);
+        tracker.record(1);
+        assertTotals(tracker, 4, 0, 1);
+    }
+
+    @Test
+    public void backwardJump_belowRestartDistance_reordered() {
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.record(0);
+        tracker.record(1500);
+        assertTrue(tracker.record(500));
+        assertTotals(tracker, 1498, 1, 0);
+    }
+
+    @Test
+    public void addTo_accumulates() {
+        SequenceTracker first = new SequenceTracker();
+        SequenceTracker second = new SequenceTracker();
+        first.record(0);
+        first.record(2);
+        second.record(0);
+        second.record(0);
+        long[] totals = new long[3];
+        first.addTo(totals);
+        second.addTo(totals);
+        assertArrayEquals(new long[]{1, 0, 1}, totals);
+    }
+
+}
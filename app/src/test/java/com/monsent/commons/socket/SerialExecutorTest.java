@@ -0,0 +1,198 @@
+package com.monsent.commons.socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * SerialExecutor：共享线程池中同一执行器的任务按提交顺序串行执行、排队上限、让出线程及线程池关闭
+ */
+public class SerialExecutorTest {
+
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void ordering_perExecutorAcrossThreads() throws InterruptedException {
+        final int executors = 8;
+        final int tasksPerExecutor = 2000;
+        final List<List<Integer>> orders = new ArrayList<List<Integer>>();
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final CountDownLatch done = new CountDownLatch(executors * tasksPerExecutor);
+        final List<SerialExecutor> serials = new ArrayList<SerialExecutor>();
+        final List<AtomicInteger> running = new ArrayList<AtomicInteger>();
+        for (int i = 0; i < executors; i++) {
+            orders.add(new ArrayList<Integer>());
+            serials.add(new SerialExecutor(pool));
+            running.add(new AtomicInteger(0));
+        }
+        //多个线程各自向所有执行器提交，同一执行器的提交顺序由提交线程串行保证
+        Thread[] submitters = new Thread[executors];
+        for (int i = 0; i < executors; i++) {
+            final int index = i;
+            submitters[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < tasksPerExecutor; n++) {
+                        final int value = n;
+                        serials.get(index).execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (running.get(index).incrementAndGet() != 1) {
+                                    overlapped.set(true);
+                                }
+                                orders.get(index).add(value);
+                                running.get(index).decrementAndGet();
+                                done.countDown();
+                            }
+                        }, 0);
+                    }
+                }
+            });
+            submitters[i].start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(overlapped.get());
+        for (int i = 0; i < executors; i++) {
+            List<Integer> order = orders.get(i);
+            assertEquals(tasksPerExecutor, order.size());
+            for (int n = 0; n < tasksPerExecutor; n++) {
+                assertEquals(n, (int) order.get(n));
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void maxPending_rejectsWhenFull() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        SerialExecutor executor = new SerialExecutor(pool);
+        assertTrue(executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 2));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        //正在执行的任务不计入排队数
+        assertTrue(executor.execute(noop(), 2));
+        assertTrue(executor.execute(noop(), 2));
+        assertFalse(executor.execute(noop(), 2));
+        assertEquals(2, executor.size());
+        //不限制时仍可加入
+        assertTrue(executor.execute(noop(), 0));
+        assertFalse(executor.isIdle());
+        assertEquals(3, executor.clear());
+        release.countDown();
+        awaitIdle(executor);
+    }
+
+    @Test
+    public void yieldsThreadAfterBatch() {
+        final List<Runnable> scheduled = new ArrayList<Runnable>();
+        SerialExecutor executor = new SerialExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduled.add(command);
+            }
+        });
+        final AtomicInteger ran = new AtomicInteger(0);
+        for (int i = 0; i < 100; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    ran.incrementAndGet();
+                }
+            }, 0);
+        }
+        //排队期间只提交一次
+        assertEquals(1, scheduled.size());
+        scheduled.get(0).run();
+        //执行64个后让出线程，重新提交
+        assertEquals(64, ran.get());
+        assertEquals(2, scheduled.size());
+        scheduled.get(1).run();
+        assertEquals(100, ran.get());
+        assertTrue(executor.isIdle());
+        assertEquals(2, scheduled.size());
+    }
+
+    @Test
+    public void taskException_doesNotStopLaterTasks() {
+        final List<Runnable> scheduled = new ArrayList<Runnable>();
+        SerialExecutor executor = new SerialExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                scheduled.add(command);
+            }
+        });
+        final AtomicInteger ran = new AtomicInteger(0);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected by test");
+            }
+        }, 0);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+            }
+        }, 0);
+        scheduled.get(0).run();
+        assertEquals(1, ran.get());
+        assertTrue(executor.isIdle());
+    }
+
+    @Test
+    public void poolShutdown_dropsTasks() {
+        pool.shutdown();
+        SerialExecutor executor = new SerialExecutor(pool);
+        assertTrue(executor.execute(noop(), 0));
+        assertTrue(executor.isIdle());
+        assertEquals(0, executor.size());
+    }
+
+    private static Runnable noop() {
+        return new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+    }
+
+    private static void awaitIdle(SerialExecutor executor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!executor.isIdle()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.monsent.commons.socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * TcpClientPool：回环连接上移除超时空闲连接，断开回调在连接的I/O线程执行；预热在I/O线程解析地址并建立空闲连接
+ */
+public class TcpClientPoolTest {
+
+    private ServerSocket serverSocket;
+    private TcpClientPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(5000);
+        pool = new TcpClientPool(1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        pool.close();
+        serverSocket.close();
+    }
+
+    @Test(timeout = 10000)
+    public void idleExpired_disconnectOnIoThread() throws Exception {
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final String[] threadName = new String[1];
+        pool.setCallback(new TcpClientPool.Callback() {
+            @Override
+            public void onReceive(PooledConnection connection, byte[] bytes) {
+            }
+
+            @Override
+            public void onDisconnect(PooledConnection connection) {
+                threadName[0] = Thread.currentThread().getName();
+                disconnected.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+            }
+        });
+        pool.setMaxIdleTime(1);
+        PooledConnection connection = pool.acquire(serverSocket.getInetAddress().getHostAddress(),
+                serverSocket.getLocalPort(), 5000);
+        Socket accepted = serverSocket.accept();
+        try {
+            connection.release();
+            assertTrue(disconnected.await(5, TimeUnit.SECONDS));
+            assertTrue(threadName[0], threadName[0].startsWith("TcpClientPool-io"));
+            assertFalse(connection.isOpen());
+            assertEquals(0, pool.getConnectionCount());
+        } finally {
+            accepted.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void warmUp_opensMinIdleConnections() throws Exception {
+        pool.setPoolSize(2, 4);
+        pool.warmUp(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+        Socket first = serverSocket.accept();
+        Socket second = serverSocket.accept();
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (pool.getIdleCount() < 2) {
+                assertTrue("idle connections: " + pool.getIdleCount(), System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            assertEquals(2, pool.getConnectionCount());
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void warmUp_unresolvedHost_reportedFromIoThread() throws Exception {
+        final CountDownLatch failed = new CountDownLatch(1);
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        final String[] threadName = new String[1];
+        pool.setCallback(new TcpClientPool.Callback() {
+            @Override
+            public void onReceive(PooledConnection connection, byte[] bytes) {
+            }
+
+            @Override
+            public void onDisconnect(PooledConnection connection) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                threadName[0] = Thread.currentThread().getName();
+                errors.add(e.getMessage());
+                failed.countDown();
+            }
+        });
+        pool.setPoolSize(1, 4);
+        //解析在I/O线程进行，调用线程不等待解析结果
+        pool.warmUp("nonexistent.invalid", 80);
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertTrue(threadName[0], threadName[0].startsWith("TcpClientPool-io"));
+        assertTrue(errors.get(0), errors.get(0).startsWith("Unresolved address"));
+        assertEquals(0, pool.getConnectionCount());
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.monsent.commons.socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * TcpClient：回环连接上的压缩握手及重连期间缓存写入的编码，心跳须配合帧解码器，零拷贝回调独占接收的数据，仅客户端开启压缩时断开
+ */
+public class TcpClientTest {
+
+    private final static byte DEFLATE = 1;
+    private final static byte DEFLATE_DICTIONARY = 2;
+    private final static byte[] DICTIONARY = "{\"type\":\"status\",\"device\":\"".getBytes();
+    private ServerSocket serverSocket;
+    private TcpClient client;
+
+    /**
+     * 记录连接事件
+     */
+    private static class Events implements TcpClient.Callback {
+
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        final AtomicInteger receivedCount = new AtomicInteger(0);
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+
+        @Override
+        public void onConnect() {
+            connected.countDown();
+        }
+
+        @Override
+        public void onReceive(byte[] bytes) {
+            receivedCount.incrementAndGet();
+            received.countDown();
+        }
+
+        @Override
+        public void onDisconnect() {
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+            errors.add(e);
+        }
+
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(5000);
+        client = new TcpClient();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.disconnect();
+        serverSocket.close();
+    }
+
+    private static byte[] dictionaryMessage() {
+        byte[] message = new byte[DICTIONARY.length * 4];
+        for (int i = 0; i < 4; i++) {
+            System.arraycopy(DICTIONARY, 0, message, i * DICTIONARY.length, DICTIONARY.length);
+        }
+        return message;
+    }
+
+    /**
+     * 读取对端握手
+     */
+    private static void readHello(DataInputStream in) throws IOException {
+        byte[] hello = new byte[8];
+        in.readFully(hello);
+        assertEquals(0x4D435A31, ByteBuffer.wrap(hello).getInt());
+    }
+
+    /**
+     * 读取一个压缩帧，返回帧类型
+     */
+    private static byte readCompressedFrame(DataInputStream in) throws IOException {
+        byte flag = in.readByte();
+        int length = in.readInt();
+        in.readInt();
+        in.readFully(new byte[length]);
+        return flag;
+    }
+
+    @Test(timeout = 10000)
+    public void reconnect_bufferedWritesNotEncodedWithOldDictionary() throws Exception {
+        Compression compression = new Compression(0, 9, DICTIONARY);
+        Events events = new Events();
+        client.setCallback(events);
+        client.setCompression(compression);
+        //重连延迟足够长，保证写入发生在断开期间
+        client.setReconnectPolicy(new ReconnectPolicy(500, 500, 1d, 0d, 0, true));
+        client.connect(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+
+        Socket first = serverSocket.accept();
+        DataInputStream in = new DataInputStream(first.getInputStream());
+        readHello(in);
+        OutputStream out = first.getOutputStream();
+        CompressionCodec peer = new CompressionCodec(compression, new CompressionMetrics());
+        ByteBuffer hello = peer.hello();
+        out.write(hello.array(), hello.arrayOffset(), hello.remaining());
+        //握手后的数据送达说明客户端已处理握手
+        ByteBuffer frame = peer.encode(ByteBuffer.wrap("ready".getBytes()));
+        out.write(frame.array(), frame.arrayOffset(), frame.remaining());
+        out.flush();
+        assertTrue(events.received.await(5, TimeUnit.SECONDS));
+        client.write(dictionaryMessage());
+        assertEquals(DEFLATE_DICTIONARY, readCompressedFrame(in));
+
+        first.close();
+        assertTrue(events.disconnected.await(5, TimeUnit.SECONDS));
+        WriteFuture buffered = client.write(dictionaryMessage());
+        assertFalse(buffered.isDone());
+
+        Socket second = serverSocket.accept();
+        try {
+            in = new DataInputStream(second.getInputStream());
+            readHello(in);
+            //新连接尚未发出握手，断开期间的写入不可使用字典
+            assertEquals(DEFLATE, readCompressedFrame(in));
+        } finally {
+            second.close();
+            peer.close();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void heartbeatWithoutFrameDecoder_rejected() {
+        client.setHeartbeat(new Heartbeat("ping".getBytes(), "pong".getBytes(), 1000, 3000));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void frameDecoderRemovedWithHeartbeat_rejected() {
+        client.setFrameDecoder(new DelimiterFrameDecoder("\n".getBytes()));
+        client.setHeartbeat(new Heartbeat("ping".getBytes(), "pong".getBytes(), 1000, 3000));
+        client.setFrameDecoder(null);
+    }
+
+    @Test(timeout = 10000)
+    public void bufferCallback_exclusiveOverCallback() throws Exception {
+        Events events = new Events();
+        final List<String> frames = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch framesReceived = new CountDownLatch(3);
+        client.setCallback(events);
+        client.setBufferCallback(new TcpClient.BufferCallback() {
+            @Override
+            public void onReceive(byte[] buffer, int offset, int length) {
+                frames.add(new String(buffer, offset, length));
+                framesReceived.countDown();
+            }
+        });
+        client.setFrameDecoder(new DelimiterFrameDecoder("\n".getBytes()));
+        client.connect(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+        Socket peer = serverSocket.accept();
+        try {
+            assertTrue(events.connected.await(5, TimeUnit.SECONDS));
+            OutputStream out = peer.getOutputStream();
+            out.write("a\nb\nc\n".getBytes());
+            out.flush();
+            assertTrue(framesReceived.await(5, TimeUnit.SECONDS));
+            assertEquals("a", frames.get(0));
+            assertEquals("b", frames.get(1));
+            assertEquals("c", frames.get(2));
+            //设置零拷贝回调后普通回调不再收到数据，仍收到连接事件
+            assertEquals(0, events.receivedCount.get());
+        } finally {
+            peer.close();
+        }
+        assertTrue(events.disconnected.await(5, TimeUnit.SECONDS));
+        assertEquals(0, events.receivedCount.get());
+    }
+
+    @Test(timeout = 10000)
+    public void compression_plainServerRejected() throws Exception {
+        Events events = new Events();
+        client.setCallback(events);
+        client.setCompression(new Compression());
+        client.connect(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+        //未开启压缩的服务端，收到的握手只是普通数据，直接回复
+        Socket peer = serverSocket.accept();
+        try {
+            DataInputStream in = new DataInputStream(peer.getInputStream());
+            readHello(in);
+            OutputStream out = peer.getOutputStream();
+            out.write("welcome\n".getBytes());
+            out.flush();
+            assertTrue(events.disconnected.await(5, TimeUnit.SECONDS));
+            assertEquals(0, events.receivedCount.get());
+            assertFalse(events.errors.isEmpty());
+            String message = events.errors.get(0).getMessage();
+            assertTrue(message, message.contains("both ends must enable"));
+        } finally {
+            peer.close();
+        }
+    }
+
+}
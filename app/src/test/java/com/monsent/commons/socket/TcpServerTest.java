@@ -0,0 +1,653 @@
+package com.monsent.commons.socket;
+
+import com.monsent.commons.buffer.BufferPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * TcpServer：广播参数校验，零拷贝回调独占接收的数据且稳定接收时不分配内存，仅服务端开启压缩时拒绝连接，回环连接上回调队列已满时的各处理方式、优雅关闭、高低水位可写状态切换及分多次发送的文件完整送达
+ */
+public class TcpServerTest {
+
+    private final static long TIMEOUT_MILLIS = 5000L;
+    private final static int SHUTDOWN_BYTES = 16 * 1024 * 1024;  //优雅关闭测试写入的字节数
+    private final static int SHUTDOWN_MESSAGES = 64;
+    private final static int FRAME_LENGTH = 64;     //零拷贝接收测试的消息长度
+    private final static long WATER_MARK_LOW = 64 * 1024L;   //水位测试的低水位
+    private final static long WATER_MARK_HIGH = 256 * 1024L;    //水位测试的高水位
+    private final static int SEND_FILE_BYTES = 8 * 1024 * 1024;  //文件发送测试的文件大小，远大于socket缓冲区
+    private TcpServer server;
+    private final List<Socket> clients = new ArrayList<Socket>();
+
+    /**
+     * 记录回调，首条消息的回调阻塞直到放行，使回调队列积压
+     */
+    private static class BlockingCallback implements TcpServer.Callback {
+
+        final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch accepted = new CountDownLatch(1);
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+
+        @Override
+        public void onAccept(Socket socket) {
+            accepted.countDown();
+        }
+
+        @Override
+        public void onReceive(Socket socket, byte[] bytes) {
+            firstStarted.countDown();
+            try {
+                release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(new String(bytes));
+        }
+
+        @Override
+        public void onDisconnect(Socket socket) {
+            disconnected.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+        }
+
+    }
+
+    @Before
+    public void setUp() {
+        server = new TcpServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Socket client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * 开启服务端并连接，服务端在接收线程中异步绑定，连接失败时重试
+     */
+    private Socket startAndConnect() throws Exception {
+        int port = freePort();
+        server.startAccept(port);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                Socket client = new Socket(InetAddress.getLoopbackAddress(), port);
+                clients.add(client);
+                return client;
+            } catch (ConnectException e) {
+                assertTrue("connect timeout", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * 回调线程1个、每个连接最多排队1个回调，等待连接回调执行后发送首条消息，其回调阻塞后再发送其余消息
+     */
+    private Socket sendWhileBlocked(BlockingCallback callback, RejectionPolicy policy, int messages)
+            throws Exception {
+        server.setCallback(callback);
+        server.setFrameDecoder(new DelimiterFrameDecoder("\n".getBytes()));
+        server.setCallbackDispatch(1, 1, policy);
+        Socket client = startAndConnect();
+        //连接回调同样占用回调队列，执行后再发送
+        assertTrue(callback.accepted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        OutputStream out = client.getOutputStream();
+        out.write("m0\n".getBytes());
+        out.flush();
+        assertTrue(callback.firstStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        StringBuilder rest = new StringBuilder();
+        for (int i = 1; i < messages; i++) {
+            rest.append('m').append(i).append('\n');
+        }
+        out.write(rest.toString().getBytes());
+        out.flush();
+        return client;
+    }
+
+    private static void awaitTrue(String message, Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.isTrue()) {
+            assertTrue(message, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+
+        boolean isTrue();
+
+    }
+
+    @Test
+    public void broadcast_nullBytes_returnsZero() {
+        assertEquals(0, server.broadcast((byte[]) null, 0, 1));
+    }
+
+    @Test
+    public void broadcast_outOfBounds_rejectedBeforeAcquire() {
+        //缓冲池中至少有一个可借用的缓冲区，借出未还时数量减少
+        BufferPool.direct().acquire(4).release();
+        int pooled = BufferPool.direct().getPooledCount();
+        int[][] bounds = {{-1, 1}, {0, -1}, {2, 3}, {0, 5}};
+        for (int[] bound : bounds) {
+            try {
+                server.broadcast(new byte[4], bound[0], bound[1]);
+                fail("off: " + bound[0] + ", len: " + bound[1]);
+            } catch (IndexOutOfBoundsException e) {
+                //越界
+            }
+        }
+        assertEquals(pooled, BufferPool.direct().getPooledCount());
+    }
+
+    @Test(timeout = 15000)
+    public void rejection_drop_countsDroppedMessages() throws Exception {
+        final BlockingCallback callback = new BlockingCallback();
+        sendWhileBlocked(callback, RejectionPolicy.DROP, 5);
+        //首条正在执行，m1排队，其余丢弃
+        awaitTrue("dropped", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return server.getDroppedCallbacks() == 3;
+            }
+        });
+        callback.release.countDown();
+        awaitTrue("received", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return callback.received.size() == 2;
+            }
+        });
+        assertEquals("m0", callback.received.get(0));
+        assertEquals("m1", callback.received.get(1));
+        assertEquals(1, server.getMetrics().getConnections());
+    }
+
+    @Test(timeout = 15000)
+    public void rejection_disconnect_closesConnection() throws Exception {
+        BlockingCallback callback = new BlockingCallback();
+        Socket client = sendWhileBlocked(callback, RejectionPolicy.DISCONNECT, 5);
+        client.setSoTimeout((int) TIMEOUT_MILLIS);
+        InputStream in = client.getInputStream();
+        assertEquals(-1, in.read());
+        assertTrue(server.getDroppedCallbacks() >= 1);
+        callback.release.countDown();
+        assertTrue(callback.disconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(0, server.getMetrics().getConnections());
+    }
+
+    @Test(timeout = 15000)
+    public void rejection_pauseRead_deliversAllInOrder() throws Exception {
+        final BlockingCallback callback = new BlockingCallback();
+        sendWhileBlocked(callback, RejectionPolicy.PAUSE_READ, 50);
+        Thread.sleep(100);
+        assertEquals(0, server.getDroppedCallbacks());
+        callback.release.countDown();
+        awaitTrue("received", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return callback.received.size() == 50;
+            }
+        });
+        for (int i = 0; i < 50; i++) {
+            assertEquals("m" + i, callback.received.get(i));
+        }
+        assertEquals(0, server.getDroppedCallbacks());
+    }
+
+    /**
+     * 客户端接收缓冲区较小，服务端向其写入大量数据，关闭开始时仍有数据在待发送队列中
+     */
+    private Socket writePending(final List<WriteFuture> futures) throws Exception {
+        server.setMaxPendingBytes(4L * SHUTDOWN_BYTES);
+        server.setWriteBufferWaterMark(SHUTDOWN_BYTES, 2L * SHUTDOWN_BYTES);
+        Socket[] accepts = new Socket[1];
+        Socket client = connectSlowReader(accepts);
+        byte[] message = new byte[SHUTDOWN_BYTES / SHUTDOWN_MESSAGES];
+        for (int i = 0; i < SHUTDOWN_MESSAGES; i++) {
+            futures.add(server.write(accepts[0], message));
+        }
+        return client;
+    }
+
+    /**
+     * 开启服务端并以较小的接收缓冲区连接，返回客户端，服务端一侧的连接存入accepts[0]
+     */
+    private Socket connectSlowReader(final Socket[] accepts) throws Exception {
+        final CountDownLatch accepted = new CountDownLatch(1);
+        server.setCallback(new TcpServer.Callback() {
+            @Override
+            public void onAccept(Socket socket) {
+                accepts[0] = socket;
+                accepted.countDown();
+            }
+
+            @Override
+            public void onReceive(Socket socket, byte[] bytes) {
+            }
+
+            @Override
+            public void onDisconnect(Socket socket) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+            }
+        });
+        int port = freePort();
+        server.startAccept(port);
+        Socket client = null;
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (client == null) {
+            client = new Socket();
+            client.setReceiveBufferSize(4096);
+            try {
+                client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            } catch (ConnectException e) {
+                client.close();
+                client = null;
+                assertTrue("connect timeout", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+        }
+        clients.add(client);
+        assertTrue(accepted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        return client;
+    }
+
+    @Test(timeout = 15000)
+    public void shutdownGracefully_drainsPendingWrites() throws Exception {
+        List<WriteFuture> futures = new ArrayList<WriteFuture>();
+        final Socket client = writePending(futures);
+        final AtomicLong read = new AtomicLong(0);
+        final CountDownLatch eof = new CountDownLatch(1);
+        //关闭开始后才读取
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[64 * 1024];
+                try {
+                    Thread.sleep(200);
+                    InputStream in = client.getInputStream();
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        read.addAndGet(n);
+                    }
+                    eof.countDown();
+                } catch (Exception e) {
+                    //读取失败时不计数，由断言发现
+                }
+            }
+        });
+        reader.start();
+        ShutdownReport report = server.shutdownGracefully(TIMEOUT_MILLIS);
+        assertTrue(report.toString(), report.isCompleted());
+        assertEquals(1, report.getConnections());
+        assertTrue(report.toString(), report.getBytesDrained() > 0);
+        assertTrue(report.toString(), report.getMessagesDrained() > 0);
+        assertTrue(report.getMessagesDrained() <= SHUTDOWN_MESSAGES);
+        assertEquals(0, report.getBytesDropped());
+        assertEquals(0, report.getMessagesDropped());
+        assertEquals(0, report.getCallbacksDropped());
+        for (WriteFuture future : futures) {
+            assertTrue(future.isSuccess());
+        }
+        //写完后关闭连接，客户端读到全部数据后读到结束
+        assertTrue(eof.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(SHUTDOWN_BYTES, read.get());
+    }
+
+    @Test(timeout = 15000)
+    public void shutdownGracefully_timeout_dropsPendingWrites() throws Exception {
+        List<WriteFuture> futures = new ArrayList<WriteFuture>();
+        writePending(futures);
+        //客户端不读取，超时后强制关闭
+        ShutdownReport report = server.shutdownGracefully(300);
+        assertFalse(report.toString(), report.isCompleted());
+        assertEquals(1, report.getConnections());
+        assertTrue(report.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertTrue(report.toString(), report.getBytesDropped() > 0);
+        assertTrue(report.toString(), report.getMessagesDropped() > 0);
+        assertTrue(report.getBytesDrained() + report.getBytesDropped() <= SHUTDOWN_BYTES);
+        assertEquals(0, server.getMetrics().getConnections());
+        //最后一条消息未写出，随连接关闭而失败
+        final WriteFuture last = futures.get(futures.size() - 1);
+        awaitTrue("last write failed", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return last.isDone();
+            }
+        });
+        assertFalse(last.isSuccess());
+    }
+
+    @Test(timeout = 30000)
+    public void waterMarks_writabilityFlipsOncePerTransition() throws Exception {
+        final List<Boolean> changes = Collections.synchronizedList(new ArrayList<Boolean>());
+        final List<Long> pendingAtChange = Collections.synchronizedList(new ArrayList<Long>());
+        server.setMaxPendingBytes(64L * WATER_MARK_HIGH);
+        server.setWriteBufferWaterMark(WATER_MARK_LOW, WATER_MARK_HIGH);
+        server.setWritabilityCallback(new TcpServer.WritabilityCallback() {
+            @Override
+            public void onWritabilityChanged(Socket socket, boolean writable) {
+                pendingAtChange.add(server.getMetrics(socket).getPendingBytes());
+                changes.add(writable);
+            }
+        });
+        Socket[] accepts = new Socket[1];
+        final Socket client = connectSlowReader(accepts);
+        //客户端不读取，socket缓冲区写满后待发送数据才会积压到高水位以上；写出前已回落的切换不通知，持续写到收到通知为止
+        byte[] message = new byte[16 * 1024];
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (changes.isEmpty()) {
+            assertTrue("unwritable notified", System.currentTimeMillis() < deadline);
+            if (server.isWritable(accepts[0])) {
+                assertNull(server.write(accepts[0], message).getCause());
+            } else {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(Boolean.FALSE, changes.get(0));
+        //超过高水位后不可写，通知前可能已写出一部分，但未降到低水位
+        assertTrue("pending: " + pendingAtChange.get(0), pendingAtChange.get(0) > WATER_MARK_LOW);
+        //不可写期间继续写入不再通知；写入量远超内核发送缓冲区，缓冲区自动增长也无法在客户端读取前写出到低水位
+        for (int i = 0; i < 384; i++) {
+            assertNull(server.write(accepts[0], message).getCause());
+        }
+        Thread.sleep(100);
+        assertEquals(1, changes.size());
+        assertFalse(server.isWritable(accepts[0]));
+        //客户端开始读取，写出到低水位及以下后恢复可写
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[64 * 1024];
+                try {
+                    InputStream in = client.getInputStream();
+                    while (in.read(buffer) >= 0) {
+                        //丢弃
+                    }
+                } catch (IOException e) {
+                    //连接关闭
+                }
+            }
+        });
+        reader.start();
+        awaitTrue("writable notified", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return changes.size() >= 2;
+            }
+        });
+        assertEquals(Boolean.TRUE, changes.get(1));
+        assertTrue("pending: " + pendingAtChange.get(1), pendingAtChange.get(1) <= WATER_MARK_LOW);
+        assertTrue(server.isWritable(accepts[0]));
+        Thread.sleep(100);
+        assertEquals(2, changes.size());
+    }
+
+    @Test(timeout = 30000)
+    public void sendFile_largerThanSocketBuffer_receivedIntact() throws Exception {
+        byte[] content = new byte[SEND_FILE_BYTES];
+        new Random(1).nextBytes(content);
+        File file = File.createTempFile("TcpServerTest", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            Socket[] accepts = new Socket[1];
+            Socket client = connectSlowReader(accepts);
+            final AtomicInteger progressCalls = new AtomicInteger(0);
+            final AtomicLong transferred = new AtomicLong(0);
+            WriteFuture future = server.sendFile(accepts[0], file, new ProgressListener() {
+                @Override
+                public void onProgress(long bytes, long total) {
+                    transferred.set(bytes);
+                    progressCalls.incrementAndGet();
+                }
+            });
+            //客户端未读取，socket缓冲区写满后transferTo只发送了一部分
+            awaitTrue("partial transfer", new Condition() {
+                @Override
+                public boolean isTrue() {
+                    return transferred.get() > 0;
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(future.isDone());
+            assertTrue(transferred.get() < content.length);
+            byte[] received = new byte[content.length];
+            InputStream in = client.getInputStream();
+            int read = 0;
+            while (read < received.length) {
+                int n = in.read(received, read, received.length - read);
+                assertTrue("eof after " + read, n >= 0);
+                read += n;
+            }
+            assertArrayEquals(content, received);
+            assertTrue(future.await(TIMEOUT_MILLIS));
+            assertTrue(future.isSuccess());
+            assertEquals(content.length, transferred.get());
+            assertTrue(progressCalls.get() > 1);
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * 同时设置普通回调及零拷贝回调，发送3帧，零拷贝回调收到全部帧而普通回调只收到连接事件
+     */
+    private void assertBufferCallbackExclusive() throws Exception {
+        final BlockingCallback callback = new BlockingCallback();
+        callback.release.countDown();
+        final List<String> frames = Collections.synchronizedList(new ArrayList<String>());
+        server.setCallback(callback);
+        server.setBufferCallback(new TcpServer.BufferCallback() {
+            @Override
+            public void onReceive(Socket socket, byte[] buffer, int offset, int length) {
+                frames.add(new String(buffer, offset, length));
+            }
+        });
+        server.setFrameDecoder(new DelimiterFrameDecoder("\n".getBytes()));
+        Socket client = startAndConnect();
+        assertTrue(callback.accepted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        OutputStream out = client.getOutputStream();
+        out.write("a\nb\nc\n".getBytes());
+        out.flush();
+        awaitTrue("frames", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return frames.size() == 3;
+            }
+        });
+        assertEquals("a", frames.get(0));
+        assertEquals("b", frames.get(1));
+        assertEquals("c", frames.get(2));
+        client.close();
+        assertTrue(callback.disconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(callback.received.isEmpty());
+    }
+
+    @Test(timeout = 15000)
+    public void bufferCallback_exclusiveOnIoThread() throws Exception {
+        assertBufferCallbackExclusive();
+    }
+
+    @Test(timeout = 15000)
+    public void bufferCallback_exclusiveWithDispatch() throws Exception {
+        server.setCallbackDispatch(1, 16, RejectionPolicy.PAUSE_READ);
+        assertBufferCallbackExclusive();
+    }
+
+    /**
+     * 发送count条定长消息并等待零拷贝回调全部收到
+     */
+    private static void sendFrames(OutputStream out, final AtomicInteger frames, int count) throws Exception {
+        final int expected = frames.get() + count;
+        byte[] batch = new byte[FRAME_LENGTH * 100];
+        for (int i = 0; i < count / 100; i++) {
+            out.write(batch);
+        }
+        out.flush();
+        awaitTrue("frames", new Condition() {
+            @Override
+            public boolean isTrue() {
+                return frames.get() == expected;
+            }
+        });
+    }
+
+    @Test(timeout = 30000)
+    public void bufferCallback_steadyStateAllocatesNothingPerMessage() throws Exception {
+        final AtomicInteger frames = new AtomicInteger(0);
+        final AtomicReference<Thread> ioThread = new AtomicReference<Thread>();
+        BlockingCallback callback = new BlockingCallback();
+        callback.release.countDown();
+        server.setCallback(callback);
+        server.setBufferCallback(new TcpServer.BufferCallback() {
+            @Override
+            public void onReceive(Socket socket, byte[] buffer, int offset, int length) {
+                ioThread.set(Thread.currentThread());
+                frames.incrementAndGet();
+            }
+        });
+        server.setFrameDecoder(new FixedLengthFrameDecoder(FRAME_LENGTH));
+        Socket client = startAndConnect();
+        assertTrue(callback.accepted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        OutputStream out = client.getOutputStream();
+        //预热，读缓冲区及帧累积缓冲区达到稳定大小
+        sendFrames(out, frames, 10000);
+        long pooled = BufferPool.heap().getAllocatedCount();
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long threadId = ioThread.get().getId();
+        long allocated = allocations == null ? 0 : allocations.getThreadAllocatedBytes(threadId);
+        int messages = 50000;
+        sendFrames(out, frames, messages);
+        //读缓冲区均由缓冲池复用
+        assertEquals(pooled, BufferPool.heap().getAllocatedCount());
+        //I/O线程平均每条消息分配不足一个数组头，即未为消息拷贝数组，余下为每次select、读取的开销
+        if (allocations != null && allocations.isThreadAllocatedMemoryEnabled()) {
+            long bytes = allocations.getThreadAllocatedBytes(threadId) - allocated;
+            assertTrue("allocated: " + bytes, bytes < messages * 16L);
+        }
+        assertTrue(callback.received.isEmpty());
+    }
+
+    @Test(timeout = 15000)
+    public void compression_plainClientRejected() throws Exception {
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        server.setCallback(new TcpServer.Callback() {
+            @Override
+            public void onAccept(Socket socket) {
+            }
+
+            @Override
+            public void onReceive(Socket socket, byte[] bytes) {
+                fail("plain data delivered: " + new String(bytes));
+            }
+
+            @Override
+            public void onDisconnect(Socket socket) {
+                disconnected.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                errors.add(e);
+            }
+        });
+        server.setCompression(new Compression());
+        int port = freePort();
+        server.startAccept(port);
+        //未开启压缩的客户端
+        final TcpClient client = new TcpClient();
+        final CountDownLatch clientDisconnected = new CountDownLatch(1);
+        final CountDownLatch clientConnected = new CountDownLatch(1);
+        client.setCallback(new TcpClient.Callback() {
+            @Override
+            public void onConnect() {
+                clientConnected.countDown();
+            }
+
+            @Override
+            public void onReceive(byte[] bytes) {
+            }
+
+            @Override
+            public void onDisconnect() {
+                clientDisconnected.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+            }
+        });
+        try {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (true) {
+                client.connect(InetAddress.getLoopbackAddress().getHostAddress(), port);
+                if (clientConnected.await(200, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+                assertTrue("connect timeout", System.currentTimeMillis() < deadline);
+            }
+            client.write("plain request");
+            assertTrue(disconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            assertTrue(clientDisconnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            assertFalse(errors.isEmpty());
+            assertTrue(errors.get(0).getMessage(), errors.get(0).getMessage().contains("both ends must enable"));
+        } finally {
+            client.disconnect();
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.monsent.commons.socket;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * TokenBucket：突发容量、按时间补充、透支后的暂停时长及并发取令牌
+ */
+public class TokenBucketTest {
+
+    private final static long MILLIS = 1000000L;
+
+    /**
+     * 每秒1000个令牌、容量1秒，每个令牌1毫秒
+     */
+    private static TokenBucket newBucket() {
+        return new TokenBucket(1000, 1000);
+    }
+
+    @Test
+    public void newBucket_isFull() {
+        TokenBucket bucket = newBucket();
+        long now = System.nanoTime();
+        assertEquals(1000, bucket.available(now));
+        assertEquals(0, bucket.delay(now));
+    }
+
+    @Test
+    public void burst_withinCapacity_noDelay() {
+        TokenBucket bucket = newBucket();
+        long now = System.nanoTime();
+        assertEquals(0, bucket.acquire(1000, now));
+        assertEquals(0, bucket.available(now));
+        assertEquals(MILLIS, bucket.acquire(1, now));
+    }
+
+    @Test
+    public void overdraw_returnsTimeToRepay() {
+        TokenBucket bucket = newBucket();
+        long now = System.nanoTime();
+        assertEquals(500 * MILLIS, bucket.acquire(1500, now));
+        assertEquals(0, bucket.available(now));
+        assertEquals(0, bucket.delay(now + 500 * MILLIS));
+    }
+
+    @Test
+    public void refill_overTime() {
+        TokenBucket bucket = newBucket();
+        long now = System.nanoTime();
+        bucket.acquire(1000, now);
+        assertEquals(500, bucket.available(now + 500 * MILLIS));
+        assertEquals(0, bucket.acquire(500, now + 500 * MILLIS));
+        assertEquals(0, bucket.available(now + 500 * MILLIS));
+    }
+
+    @Test
+    public void refill_cappedAtBurst() {
+        TokenBucket bucket = newBucket();
+        long now = System.nanoTime();
+        bucket.acquire(1000, now);
+        assertEquals(1000, bucket.available(now + 10000 * MILLIS));
+        //空闲很久后也只能突发容量内的令牌
+        assertEquals(MILLIS, bucket.acquire(1001, now + 10000 * MILLIS));
+    }
+
+    @Test
+    public void delay_doesNotConsume() {
+        TokenBucket bucket = newBucket();
+        long now = System.nanoTime();
+        bucket.acquire(1200, now);
+        assertEquals(200 * MILLIS, bucket.delay(now));
+        assertEquals(200 * MILLIS, bucket.delay(now));
+        assertEquals(100 * MILLIS, bucket.delay(now + 100 * MILLIS));
+        assertEquals(200 * MILLIS, bucket.acquire(0, now));
+        assertEquals(100, bucket.available(now + 300 * MILLIS));
+    }
+
+    @Test
+    public void concurrentAcquire_noTokenLost() throws InterruptedException {
+        final TokenBucket bucket = newBucket();
+        final long now = System.nanoTime();
+        final int threads = 4;
+        final int perThread = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < perThread; j++) {
+                        bucket.acquire(1, now);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        //40000个令牌，容量内1000个，其余透支
+        assertEquals((threads * perThread - 1000) * MILLIS, bucket.delay(now));
+    }
+
+}
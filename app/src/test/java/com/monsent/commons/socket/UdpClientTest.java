@@ -0,0 +1,161 @@
+package com.monsent.commons.socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * UdpClient、UdpServer：回环收发、地址在接收线程解析、连接完成前的写入暂存，零拷贝回调独占接收的数据
+ */
+public class UdpClientTest {
+
+    private final static long TIMEOUT_MILLIS = 5000L;
+    private UdpServer server;
+    private UdpClient client;
+    private final BlockingQueue<String> serverReceived = new ArrayBlockingQueue<String>(16);
+    private final BlockingQueue<String> clientReceived = new ArrayBlockingQueue<String>(16);
+    private final BlockingQueue<Exception> clientErrors = new ArrayBlockingQueue<Exception>(16);
+    private final CountDownLatch clientConnected = new CountDownLatch(1);
+    private final AtomicInteger clientReceiveCount = new AtomicInteger(0);
+
+    @Before
+    public void setUp() {
+        server = new UdpServer();
+        server.setCallback(new UdpServer.Callback() {
+            @Override
+            public void onReceive(InetSocketAddress address, byte[] bytes) {
+                serverReceived.offer(new String(bytes));
+                server.send(address, ("echo " + new String(bytes)).getBytes());
+            }
+
+            @Override
+            public void onError(Exception e) {
+            }
+        });
+        client = new UdpClient();
+        client.setCallback(new UdpClient.Callback() {
+            @Override
+            public void onConnect() {
+                clientConnected.countDown();
+            }
+
+            @Override
+            public void onReceive(byte[] bytes) {
+                clientReceiveCount.incrementAndGet();
+                clientReceived.offer(new String(bytes));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                clientErrors.offer(e);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        client.disconnect();
+        server.close();
+    }
+
+    private static int freePort() throws IOException {
+        DatagramSocket socket = new DatagramSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void loopback_sendAndEcho() throws Exception {
+        int port = freePort();
+        server.start(port);
+        client.connect("localhost", port);
+        assertTrue(clientConnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(client.isConnected());
+        //服务端异步绑定，未绑定前的数据报会丢失，重发直到收到
+        String echo = null;
+        while (echo == null) {
+            assertTrue(client.write("ping"));
+            echo = clientReceived.poll(100, TimeUnit.MILLISECONDS);
+        }
+        assertEquals("echo ping", echo);
+        assertEquals("ping", serverReceived.poll());
+        assertTrue(client.getStats().getDatagramsReceived() >= 1);
+    }
+
+    @Test(timeout = 10000)
+    public void unresolvedAddress_reportedFromIoThread() throws Exception {
+        client.connect("unresolved.invalid", 9);
+        Exception e = clientErrors.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull(e);
+        assertTrue(e.getMessage(), e.getMessage().contains("unresolved.invalid"));
+        assertFalse(client.isConnected());
+        assertEquals(1, clientConnected.getCount());
+        assertFalse(client.write("lost"));
+    }
+
+    @Test(timeout = 10000)
+    public void writeBeforeConnected_sentAfterOpen() throws Exception {
+        DatagramSocket peer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            peer.setSoTimeout((int) TIMEOUT_MILLIS);
+            client.connect(peer.getLocalAddress().getHostAddress(), peer.getLocalPort());
+            //地址仍在接收线程解析，写入暂存
+            assertTrue(client.write("first"));
+            assertTrue(client.write("second"));
+            assertEquals("first", receive(peer));
+            assertEquals("second", receive(peer));
+            assertTrue(clientConnected.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            assertEquals(2, client.getStats().getDatagramsSent());
+        } finally {
+            peer.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void bufferCallback_exclusiveOverCallback() throws Exception {
+        final BlockingQueue<String> buffered = new ArrayBlockingQueue<String>(16);
+        client.setBufferCallback(new UdpClient.BufferCallback() {
+            @Override
+            public void onReceive(byte[] buffer, int offset, int length) {
+                buffered.offer(new String(buffer, offset, length));
+            }
+        });
+        DatagramSocket peer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            peer.setSoTimeout((int) TIMEOUT_MILLIS);
+            client.connect(peer.getLocalAddress().getHostAddress(), peer.getLocalPort());
+            assertTrue(client.write("hello"));
+            DatagramPacket packet = new DatagramPacket(new byte[64], 64);
+            peer.receive(packet);
+            byte[] reply = "reply".getBytes();
+            peer.send(new DatagramPacket(reply, reply.length, packet.getSocketAddress()));
+            assertEquals("reply", buffered.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            assertEquals(0, clientReceiveCount.get());
+        } finally {
+            peer.close();
+        }
+    }
+
+    private static String receive(DatagramSocket socket) throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[64], 64);
+        socket.receive(packet);
+        return new String(packet.getData(), packet.getOffset(), packet.getLength());
+    }
+
+}
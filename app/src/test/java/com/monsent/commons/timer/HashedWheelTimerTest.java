@@ -0,0 +1,163 @@
+package com.monsent.commons.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * HashedWheelTimer：按刻度到期、超过一轮的多轮到期、到期顺序及取消
+ */
+public class HashedWheelTimerTest {
+
+    private final static long TICK_MILLIS = 10L;
+    private final static int TICKS_PER_WHEEL = 8;   //一轮80毫秒
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer("HashedWheelTimerTest", TICK_MILLIS, TICKS_PER_WHEEL);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    /**
+     * 到期时记录距添加的耗时(毫秒)
+     */
+    private static class Expiry implements Runnable {
+
+        private final long start = System.nanoTime();
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile long elapsedMillis = -1;
+
+        @Override
+        public void run() {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            latch.countDown();
+        }
+
+        long await() throws InterruptedException {
+            assertTrue("not expired", latch.await(5, TimeUnit.SECONDS));
+            return elapsedMillis;
+        }
+
+    }
+
+    @Test
+    public void expiresAfterDelay() throws InterruptedException {
+        Expiry expiry = new Expiry();
+        Timeout timeout = timer.newTimeout(expiry, 50);
+        long elapsed = expiry.await();
+        assertTrue("expired early: " + elapsed, elapsed >= 50 - TICK_MILLIS);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void zeroOrNegativeDelay_expiresOnNextTick() throws InterruptedException {
+        Expiry zero = new Expiry();
+        Expiry negative = new Expiry();
+        timer.newTimeout(zero, 0);
+        timer.newTimeout(negative, -100);
+        assertTrue(zero.await() < 1000);
+        assertTrue(negative.await() < 1000);
+    }
+
+    @Test
+    public void multipleRounds_notExpiredOnEarlierRound() throws InterruptedException {
+        //250毫秒超过3轮，所在槽位在第10毫秒、90毫秒等时刻也会被检查
+        Expiry expiry = new Expiry();
+        timer.newTimeout(expiry, 250);
+        long elapsed = expiry.await();
+        assertTrue("expired on an earlier round: " + elapsed, elapsed >= 250 - TICK_MILLIS);
+    }
+
+    @Test
+    public void expiresInDeadlineOrder() throws InterruptedException {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        long[] delays = {120, 30, 200};
+        for (int i = 0; i < delays.length; i++) {
+            final int index = i;
+            timer.newTimeout(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                    latch.countDown();
+                }
+            }, delays[i]);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 0, 2), order);
+    }
+
+    @Test
+    public void cancel_beforeExpiry_neverRuns() throws InterruptedException {
+        Expiry cancelled = new Expiry();
+        Timeout timeout = timer.newTimeout(cancelled, 50);
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        //已放入槽位后取消
+        Expiry later = new Expiry();
+        Timeout placed = timer.newTimeout(later, 200);
+        Thread.sleep(50);
+        assertTrue(placed.cancel());
+        Expiry control = new Expiry();
+        timer.newTimeout(control, 300);
+        control.await();
+        assertEquals(-1, cancelled.elapsedMillis);
+        assertEquals(-1, later.elapsedMillis);
+        assertFalse(placed.isExpired());
+    }
+
+    @Test
+    public void throwingTask_doesNotStopTimer() throws InterruptedException {
+        timer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected by test");
+            }
+        }, 10);
+        Expiry expiry = new Expiry();
+        timer.newTimeout(expiry, 50);
+        expiry.await();
+    }
+
+    @Test
+    public void newTimeout_afterStop_rejected() throws InterruptedException {
+        Expiry expiry = new Expiry();
+        timer.newTimeout(expiry, 10);
+        expiry.await();
+        timer.stop();
+        try {
+            timer.newTimeout(new Expiry(), 10);
+            fail("accepted after stop");
+        } catch (IllegalStateException e) {
+            //停止后添加的任务不会执行，直接拒绝
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newTimeout_stoppedBeforeStart_rejected() {
+        timer.stop();
+        timer.newTimeout(new Expiry(), 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullTask_rejected() {
+        timer.newTimeout(null, 10);
+    }
+
+}
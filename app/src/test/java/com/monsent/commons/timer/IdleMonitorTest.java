@@ -0,0 +1,108 @@
+package com.monsent.commons.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * IdleMonitor：到期触发空闲、读写推迟到期、读写空闲取较近一次、停止后不再触发
+ */
+public class IdleMonitorTest {
+
+    private final static long TIMEOUT_MILLIS = 5000L;
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer("IdleMonitorTest", 10L, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    /**
+     * 记录空闲事件及触发时距开始的耗时(毫秒)
+     */
+    private static class Events implements IdleMonitor.Listener {
+
+        final long start = System.nanoTime();
+        final List<IdleState> states = Collections.synchronizedList(new ArrayList<IdleState>());
+        final CountDownLatch first = new CountDownLatch(1);
+        volatile long firstElapsedMillis;
+
+        @Override
+        public void onIdle(IdleMonitor monitor, IdleState state) {
+            if (first.getCount() > 0) {
+                firstElapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            states.add(state);
+            first.countDown();
+        }
+
+    }
+
+    @Test(timeout = 10000)
+    public void readIdle_firesAfterIdleTime() throws InterruptedException {
+        Events events = new Events();
+        IdleMonitor monitor = new IdleMonitor(timer, 100, 0, 0, events);
+        monitor.start();
+        assertTrue(events.first.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        monitor.stop();
+        assertTrue("elapsed: " + events.firstElapsedMillis, events.firstElapsedMillis >= 100);
+        assertEquals(IdleState.READER_IDLE, events.states.get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void reads_postponeIdle() throws InterruptedException {
+        Events events = new Events();
+        IdleMonitor monitor = new IdleMonitor(timer, 100, 0, 0, events);
+        monitor.start();
+        //持续读到数据300毫秒，期间不空闲
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(30);
+            monitor.onRead();
+        }
+        assertTrue(events.states.isEmpty());
+        assertTrue(events.first.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        monitor.stop();
+        assertTrue("elapsed: " + events.firstElapsedMillis, events.firstElapsedMillis >= 400);
+    }
+
+    @Test(timeout = 10000)
+    public void allIdle_usesLatestReadOrWrite() throws InterruptedException {
+        Events events = new Events();
+        IdleMonitor monitor = new IdleMonitor(timer, 0, 0, 100, events);
+        monitor.start();
+        //只写不读，读写空闲以最近一次写为准
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(30);
+            monitor.onWrite();
+        }
+        assertTrue(events.states.isEmpty());
+        assertTrue(monitor.getLastWriteNanos() - monitor.getLastReadNanos() > 0);
+        assertTrue(events.first.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        monitor.stop();
+        assertEquals(IdleState.ALL_IDLE, events.states.get(0));
+    }
+
+    @Test(timeout = 10000)
+    public void stop_noMoreEvents() throws InterruptedException {
+        Events events = new Events();
+        IdleMonitor monitor = new IdleMonitor(timer, 50, 0, 0, events);
+        monitor.start();
+        monitor.stop();
+        Thread.sleep(200);
+        assertTrue(events.states.isEmpty());
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.monsent.commons.benchmark;
+
+import com.monsent.commons.socket.DelimiterFrameDecoder;
+import com.monsent.commons.socket.FrameDecoder;
+import com.monsent.commons.socket.LengthFieldFrameDecoder;
+import com.monsent.commons.socket.RingBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帧解码：一次读取包含多帧、且最后一帧跨读取边界时的解码开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+    private final static int FRAMES = 64;   //每次调用解码的帧数
+
+    @Param({"32", "512"})
+    private int frameLength;
+
+    private final RingBuffer cumulation = new RingBuffer();
+    private final FrameDecoder lengthFieldDecoder = new LengthFieldFrameDecoder(2);
+    private final FrameDecoder delimiterDecoder = new DelimiterFrameDecoder(new byte[]{'\r', '\n'});
+    private byte[] lengthFieldStream;
+    private byte[] delimiterStream;
+    private Blackhole blackhole;
+
+    private final FrameDecoder.FrameHandler handler = new FrameDecoder.FrameHandler() {
+        @Override
+        public void onFrame(byte[] bytes, int offset, int length) {
+            blackhole.consume(length);
+        }
+    };
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        Random random = new Random(frameLength);
+        lengthFieldStream = new byte[FRAMES * (frameLength + 2)];
+        delimiterStream = new byte[FRAMES * (frameLength + 2)];
+        for (int i = 0; i < FRAMES; i++) {
+            int offset = i * (frameLength + 2);
+            lengthFieldStream[offset] = (byte) (frameLength >> 8);
+            lengthFieldStream[offset + 1] = (byte) frameLength;
+            for (int j = 0; j < frameLength; j++) {
+                lengthFieldStream[offset + 2 + j] = (byte) random.nextInt();
+                //分隔符帧的内容避开\r\n
+                delimiterStream[offset + j] = (byte) ('a' + random.nextInt(26));
+            }
+            delimiterStream[offset + frameLength] = '\r';
+            delimiterStream[offset + frameLength + 1] = '\n';
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void lengthField() throws IOException {
+        decode(lengthFieldDecoder, lengthFieldStream);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void delimiter() throws IOException {
+        decode(delimiterDecoder, delimiterStream);
+    }
+
+    /**
+     * 分两次写入，第二次写入前第一部分的末帧不完整
+     */
+    private void decode(FrameDecoder decoder, byte[] stream) throws IOException {
+        int half = stream.length / 2 + 1;
+        cumulation.write(stream, 0, half);
+        decoder.decode(cumulation, handler);
+        cumulation.write(stream, half, stream.length - half);
+        decoder.decode(cumulation, handler);
+    }
+
+}
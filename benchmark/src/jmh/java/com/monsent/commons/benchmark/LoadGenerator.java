@@ -0,0 +1,395 @@
+package com.monsent.commons.benchmark;
+
+import com.monsent.commons.socket.LatencyHistogram;
+import com.monsent.commons.socket.LengthFieldFrameDecoder;
+import com.monsent.commons.socket.MetricsSnapshot;
+import com.monsent.commons.socket.PooledConnection;
+import com.monsent.commons.socket.RejectionPolicy;
+import com.monsent.commons.socket.TcpClientPool;
+import com.monsent.commons.socket.TcpServer;
+import com.monsent.commons.socket.WorkerChooser;
+import com.monsent.commons.socket.WriteFuture;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * TcpServer容量测试：本机启动回写服务端，按阶段逐步增加模拟客户端数，每个客户端以固定速率发送固定大小的消息，
+ * 各阶段输出吞吐、往返时延分位及服务端CPU、堆内存，时延随客户端数突增或收到速率跟不上发送速率即达到容量上限。
+ * <p>
+ * 模拟客户端与TcpClient使用相同的4字节长度前缀帧，共享TcpClientPool的少量I/O线程，数千个客户端不会占用数千个线程；
+ * 时延从计划发送时刻算起，发送线程落后时的排队时间也计入时延，避免只测到已发送消息的时延。
+ * 服务端与客户端在同一进程，堆内存为两者之和，CPU按线程名分开统计，以100%为一个核心。
+ * <p>
+ * 运行：./gradlew :benchmark:loadTest -PloadTest.args="--clients 100,1000,5000 --size 256 --rate 20"
+ */
+public class LoadGenerator {
+
+    private final static String USAGE = "Usage: LoadGenerator [--clients 100,500,1000] [--size 256] [--rate 10]"
+            + " [--warmup 5] [--duration 20] [--port 19091] [--workers n] [--dispatch 0] [--io-threads n]\n"
+            + "  --clients    每个阶段的客户端总数，逗号分隔，逐阶段递增\n"
+            + "  --size       消息大小(字节，不含4字节长度前缀)，至少8\n"
+            + "  --rate       每个客户端每秒发送的消息数\n"
+            + "  --warmup     每个阶段预热时长(秒)，不计入结果\n"
+            + "  --duration   每个阶段测量时长(秒)\n"
+            + "  --port       服务端端口号\n"
+            + "  --workers    服务端I/O线程数，默认CPU核心数\n"
+            + "  --dispatch   服务端回调线程数，0为在I/O线程回调\n"
+            + "  --io-threads 客户端I/O线程数，默认CPU核心数的一半";
+    private final static int LENGTH_FIELD_SIZE = 4;
+    private final static int TIMESTAMP_SIZE = 8;    //消息开头为计划发送时刻(纳秒)
+    private final static long CONNECT_TIMEOUT = 10000L;
+    private final static long SEND_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);  //发送线程检查间隔
+    private final static long MAX_PENDING_BYTES = 16 * 1024 * 1024L;
+    private final static int MAX_PENDING_CALLBACKS = 1024;   //回调排队已满时暂停读取，不丢弃消息
+    private final static double SATURATED_RATIO = 0.95;     //收到速率低于发送速率的该比例视为饱和
+
+    private int[] stages = {100, 500, 1000};
+    private int messageSize = 256;
+    private int rate = 10;
+    private int warmupSecond = 5;
+    private int durationSecond = 20;
+    private int port = 19091;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int dispatchThreads = 0;
+    private int ioThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    private final List<Client> clients = new ArrayList<Client>();
+    private final AtomicLong received = new AtomicLong(0);  //收到的回写消息数
+    private final AtomicLong rejected = new AtomicLong(0);  //待发送队列已满被拒绝的消息数
+    private final AtomicLong disconnects = new AtomicLong(0);
+    private final AtomicLong errors = new AtomicLong(0);
+    private volatile LatencyHistogram latency = new LatencyHistogram();
+    private TcpServer server;
+    private TcpClientPool pool;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        generator.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--help".equals(name) || "-h".equals(name)) {
+                throw new IllegalArgumentException("");
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value: " + name);
+            }
+            String value = args[++i];
+            if ("--clients".equals(name)) {
+                String[] items = value.split(",");
+                stages = new int[items.length];
+                for (int j = 0; j < items.length; j++) {
+                    stages[j] = positive(name, items[j].trim());
+                    if (j > 0 && stages[j] < stages[j - 1]) {
+                        throw new IllegalArgumentException("--clients must be ascending: " + value);
+                    }
+                }
+            } else if ("--size".equals(name)) {
+                messageSize = positive(name, value);
+                if (messageSize < TIMESTAMP_SIZE) {
+                    throw new IllegalArgumentException("--size must be at least " + TIMESTAMP_SIZE + ": " + value);
+                }
+            } else if ("--rate".equals(name)) {
+                rate = positive(name, value);
+            } else if ("--warmup".equals(name)) {
+                warmupSecond = nonNegative(name, value);
+            } else if ("--duration".equals(name)) {
+                durationSecond = positive(name, value);
+            } else if ("--port".equals(name)) {
+                port = positive(name, value);
+            } else if ("--workers".equals(name)) {
+                workers = positive(name, value);
+            } else if ("--dispatch".equals(name)) {
+                dispatchThreads = nonNegative(name, value);
+            } else if ("--io-threads".equals(name)) {
+                ioThreads = positive(name, value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+    }
+
+    private static int positive(String name, String value) {
+        int n = nonNegative(name, value);
+        if (n == 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return n;
+    }
+
+    private static int nonNegative(String name, String value) {
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+        if (n < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + value);
+        }
+        return n;
+    }
+
+    private void run() throws Exception {
+        startServer();
+        pool = new TcpClientPool(ioThreads);
+        pool.setFrameDecoder(new LengthFieldFrameDecoder(LENGTH_FIELD_SIZE));
+        pool.setPoolSize(0, stages[stages.length - 1]);
+        pool.setConnectTimeout(CONNECT_TIMEOUT);
+        pool.setCallback(new TcpClientPool.Callback() {
+            @Override
+            public void onReceive(PooledConnection connection, byte[] bytes) {
+                long sentAt = ByteBuffer.wrap(bytes).getLong();
+                latency.record(System.nanoTime() - sentAt);
+                received.incrementAndGet();
+            }
+
+            @Override
+            public void onDisconnect(PooledConnection connection) {
+                disconnects.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                errors.incrementAndGet();
+            }
+        });
+        System.out.println(String.format(Locale.ROOT, "size=%dB, rate=%d/s per client, warmup=%ds, duration=%ds,"
+                        + " server workers=%d, dispatch=%d, client io-threads=%d, cpus=%d",
+                messageSize, rate, warmupSecond, durationSecond, workers, dispatchThreads, ioThreads,
+                Runtime.getRuntime().availableProcessors()));
+        System.out.println(String.format(Locale.ROOT, "%8s %10s %10s %8s %9s %9s %9s %9s %8s %8s %8s %8s %7s",
+                "clients", "offered/s", "recv/s", "MB/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)",
+                "srvCPU%", "genCPU%", "heapMB", "gcMs", "errors"));
+        try {
+            for (int stage : stages) {
+                if (!connect(stage)) {
+                    break;
+                }
+                runStage();
+            }
+        } finally {
+            pool.close();
+            server.close();
+        }
+    }
+
+    private void startServer() throws InterruptedException {
+        server = new TcpServer();
+        server.setFrameDecoder(new LengthFieldFrameDecoder(LENGTH_FIELD_SIZE, ByteOrder.BIG_ENDIAN, false, false,
+                messageSize));
+        server.setMaxPendingBytes(MAX_PENDING_BYTES);
+        server.setWorkers(workers, WorkerChooser.ROUND_ROBIN);
+        if (dispatchThreads > 0) {
+            server.setCallbackDispatch(dispatchThreads, MAX_PENDING_CALLBACKS, RejectionPolicy.PAUSE_READ);
+        }
+        server.setCallback(new TcpServer.Callback() {
+            @Override
+            public void onAccept(Socket socket) {
+            }
+
+            @Override
+            public void onReceive(Socket socket, byte[] bytes) {
+                //帧含长度字段，原样回写
+                server.write(socket, bytes);
+            }
+
+            @Override
+            public void onDisconnect(Socket socket) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                errors.incrementAndGet();
+            }
+        });
+        server.startAccept(port);
+        //等待服务端开始监听
+        Thread.sleep(500);
+    }
+
+    /**
+     * 补足客户端数，连接失败时输出原因，通常为文件描述符或端口耗尽
+     *
+     * @param count 客户端总数
+     * @return 是否全部连接成功
+     */
+    private boolean connect(int count) {
+        long now = System.nanoTime();
+        while (clients.size() < count) {
+            try {
+                PooledConnection connection = pool.acquire("127.0.0.1", port, CONNECT_TIMEOUT);
+                clients.add(new Client(connection, now));
+            } catch (IOException e) {
+                System.out.println("Connect failed at " + (clients.size() + 1) + " clients: " + e);
+                return false;
+            }
+        }
+        //各客户端发送时刻均匀错开，避免同时发送
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            client.start = now + interval * i / clients.size();
+            client.sent = 0;
+        }
+        return true;
+    }
+
+    /**
+     * 预热后测量一个阶段并输出一行结果
+     */
+    private void runStage() {
+        send(TimeUnit.SECONDS.toNanos(warmupSecond));
+        latency = new LatencyHistogram();
+        long receivedBefore = received.get();
+        long errorsBefore = rejected.get() + disconnects.get() + errors.get();
+        long serverCpuBefore = cpuTime("TcpServer-" + port + "-");
+        long generatorCpuBefore = cpuTime("TcpClientPool-") + currentThreadCpuTime();
+        long gcBefore = gcTime();
+        MetricsSnapshot metricsBefore = server.getMetrics();
+        long begin = System.nanoTime();
+        long sent = send(TimeUnit.SECONDS.toNanos(durationSecond));
+        long elapsed = System.nanoTime() - begin;
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        MetricsSnapshot metricsAfter = server.getMetrics();
+        double seconds = elapsed / 1e9;
+        double offered = sent / seconds;
+        double recv = (received.get() - receivedBefore) / seconds;
+        double megabytes = (metricsAfter.getBytesWritten() - metricsBefore.getBytesWritten()) / seconds / 1e6;
+        double serverCpu = (cpuTime("TcpServer-" + port + "-") - serverCpuBefore) * 100d / elapsed;
+        double generatorCpu = (cpuTime("TcpClientPool-") + currentThreadCpuTime() - generatorCpuBefore)
+                * 100d / elapsed;
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long errorCount = rejected.get() + disconnects.get() + errors.get() - errorsBefore;
+        System.out.println(String.format(Locale.ROOT,
+                "%8d %10.0f %10.0f %8.2f %9.3f %9.3f %9.3f %9.3f %8.0f %8.0f %8d %8d %7d%s",
+                clients.size(), offered, recv, megabytes, millis(snapshot.getPercentile(0.5)),
+                millis(snapshot.getPercentile(0.99)), millis(snapshot.getPercentile(0.999)), millis(snapshot.getMax()),
+                serverCpu, generatorCpu, heap.getUsed() / (1024 * 1024), gcTime() - gcBefore, errorCount,
+                recv < offered * SATURATED_RATIO ? "  saturated" : ""));
+    }
+
+    /**
+     * 按计划发送消息，发送线程落后时补发
+     *
+     * @param durationNanos 时长(纳秒)
+     * @return 发送的消息数
+     */
+    private long send(long durationNanos) {
+        long end = System.nanoTime() + durationNanos;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long sent = 0;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            for (Client client : clients) {
+                long due = (now - client.start) / interval + 1;
+                while (client.sent < due) {
+                    client.write(client.start + client.sent * interval);
+                    client.sent++;
+                    sent++;
+                }
+            }
+            LockSupport.parkNanos(SEND_INTERVAL_NANOS);
+        }
+        return sent;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * 名称以指定前缀开头的线程累计CPU时间，不支持时为0
+     *
+     * @param prefix 线程名前缀
+     * @return CPU时间(纳秒)
+     */
+    private static long cpuTime(String prefix) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported()) {
+            return 0;
+        }
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(prefix)) {
+                long time = threads.getThreadCpuTime(info.getThreadId());
+                if (time > 0) {
+                    total += time;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long currentThreadCpuTime() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * 所有垃圾收集器的累计耗时
+     *
+     * @return 耗时(毫秒)
+     */
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(gc.getCollectionTime(), 0L);
+        }
+        return total;
+    }
+
+    /**
+     * 一个模拟客户端，只在发送线程访问
+     */
+    private class Client {
+
+        private final PooledConnection connection;
+        private long start;     //首条消息的计划发送时刻(纳秒)
+        private long sent;  //本阶段已发送的消息数
+
+        Client(PooledConnection connection, long start) {
+            this.connection = connection;
+            this.start = start;
+        }
+
+        /**
+         * 发送一条消息，写入完成前不可修改，每条消息单独分配
+         *
+         * @param scheduledAt 计划发送时刻(纳秒)
+         */
+        void write(long scheduledAt) {
+            byte[] frame = new byte[LENGTH_FIELD_SIZE + messageSize];
+            ByteBuffer.wrap(frame).putInt(messageSize).putLong(scheduledAt);
+            WriteFuture future = connection.write(frame);
+            if (future.isDone() && !future.isSuccess()) {
+                rejected.incrementAndGet();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.monsent.commons.benchmark;
+
+import com.monsent.commons.socket.TcpClient;
+import com.monsent.commons.socket.TcpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TcpServer/TcpClient本机回环：服务端原样回写，客户端以收到的回写字节数判定完成
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketBenchmark {
+
+    private final static int PORT = 19090;
+    private final static int BATCH = 256;   //吞吐测试每次调用发送的消息数
+    private final static long TIMEOUT_SECOND = 10L;
+    private final static long MAX_PENDING_BYTES = 64 * 1024 * 1024L;  //足够容纳一批消息，避免写入队列满
+
+    @Param({"64", "1024", "16384"})
+    private int messageSize;
+
+    private TcpServer server;
+    private TcpClient client;
+    private byte[] message;
+    private final Semaphore echoed = new Semaphore(0);  //收到的回写字节数
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        message = new byte[messageSize];
+        server = new TcpServer();
+        server.setMaxPendingBytes(MAX_PENDING_BYTES);
+        server.setBufferCallback(new TcpServer.BufferCallback() {
+            @Override
+            public void onReceive(Socket socket, byte[] buffer, int offset, int length) {
+                byte[] copy = new byte[length];
+                System.arraycopy(buffer, offset, copy, 0, length);
+                server.write(socket, copy);
+            }
+        });
+        server.startAccept(PORT);
+        client = new TcpClient();
+        client.setMaxPendingBytes(MAX_PENDING_BYTES);
+        client.setBufferCallback(new TcpClient.BufferCallback() {
+            @Override
+            public void onReceive(byte[] buffer, int offset, int length) {
+                echoed.release(length);
+            }
+        });
+        //等待服务端开始监听后连接
+        long deadline = System.currentTimeMillis() + TIMEOUT_SECOND * 1000;
+        while (!client.isConnected()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Connect timeout");
+            }
+            client.connect("127.0.0.1", PORT);
+            Thread.sleep(200);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.disconnect();
+        server.close();
+    }
+
+    /**
+     * 单条消息往返时延
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void roundTrip() throws Exception {
+        client.write(message);
+        await(messageSize);
+    }
+
+    /**
+     * 连续发送一批消息后等待全部回写，按消息计吞吐
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void throughput() throws Exception {
+        for (int i = 0; i < BATCH; i++) {
+            client.write(message);
+        }
+        await(BATCH * messageSize);
+    }
+
+    private void await(int bytes) throws Exception {
+        if (!echoed.tryAcquire(bytes, TIMEOUT_SECOND, TimeUnit.SECONDS)) {
+            throw new IOException("Echo timeout");
+        }
+    }
+
+}
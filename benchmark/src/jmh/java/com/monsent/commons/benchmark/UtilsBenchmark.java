@@ -0,0 +1,94 @@
+package com.monsent.commons.benchmark;
+
+import com.monsent.commons.util.ByteUtils;
+import com.monsent.commons.util.CrcUtils;
+import com.monsent.commons.util.TimeUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工具类热点方法：十六进制编解码、CRC16、时间格式化
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int size;
+
+    private byte[] bytes;
+    private String hex;
+    private String hexWithSeparator;
+    private Date date;
+    private String dateStr;
+
+    @Setup
+    public void setup() {
+        //固定种子，保证各次运行数据一致
+        bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        hex = ByteUtils.getHexStr(bytes);
+        hexWithSeparator = ByteUtils.getHexStr(bytes, " ");
+        date = new Date(1500000000000L);
+        dateStr = TimeUtils.dateFormat(date, TimeUtils.yyyyMMddHHmmssSSS);
+    }
+
+    @Benchmark
+    public String getHexStr() {
+        return ByteUtils.getHexStr(bytes);
+    }
+
+    @Benchmark
+    public String getHexStrWithSeparator() {
+        return ByteUtils.getHexStr(bytes, " ");
+    }
+
+    @Benchmark
+    public byte[] getHexBytes() {
+        return ByteUtils.getHexBytes(hex);
+    }
+
+    @Benchmark
+    public byte[] getHexBytesWithSeparator() {
+        return ByteUtils.getHexBytes(hexWithSeparator, " ");
+    }
+
+    @Benchmark
+    public int getCrc16() {
+        return CrcUtils.getCrc16(bytes);
+    }
+
+    @Benchmark
+    public String dateFormat() {
+        return TimeUtils.dateFormat(date, TimeUtils.yyyyMMddHHmmssSSS);
+    }
+
+    @Benchmark
+    public Date parseFormat() {
+        return TimeUtils.parseFormat(dateStr, TimeUtils.yyyyMMddHHmmssSSS);
+    }
+
+    @Benchmark
+    public String getUtcDateStr() {
+        return TimeUtils.getUtcDateStr(date, TimeUtils.yyyyMMddHHmmssSSS);
+    }
+
+}